@@ -24,9 +24,9 @@ tokens {
 @parser::header {
     package net.rptools.parser;
     
+    import java.util.Collections;
     import java.util.Map;
-    import java.util.HashMap;
-    import net.rptools.parser.symboltable.SymbolTable;
+    import java.util.LinkedHashMap;
     
     import net.rptools.lib.result.RollExpression;
 }
@@ -42,13 +42,11 @@ tokens {
 @parser::members {
     private int rollSequence = 0;
   
-    private Map<String, RollExpression> rolls = new HashMap<>();
+    private Map<String, RollExpression> rolls = new LinkedHashMap<>();
 
     
-    private SymbolTable symbolTable;
-    
-    public void setSymbolTable(SymbolTable stable) {
-        symbolTable = stable;
+    public Map<String, RollExpression> getRollExpressions() {
+        return Collections.unmodifiableMap(rolls);
     }
     
     public void reportError(RecognitionException e) {
@@ -191,7 +189,7 @@ roll
             rexpr = RollExpression.getRollExpression(rollStr);
          }
       
-         symbolTable.setRollExpression("Roll Sequence " + rollSequence, rexpr);
+         rolls.put("Roll Sequence " + rollSequence, rexpr);
 
  
       }
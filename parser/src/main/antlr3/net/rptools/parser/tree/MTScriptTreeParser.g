@@ -9,33 +9,38 @@ options {
 @header {
     package net.rptools.parser.tree;
     
-    import net.rptools.parser.symboltable.SymbolTable;
+    import java.util.Collections;
+    import java.util.Map;
+    
+    import net.rptools.lib.result.RollExpression;
     
 }
 
 @members {
-    private SymbolTable symbolTable;
-    
-    private net.rptools.parser.tree.ScriptNode scriptNode;
+    private Map<String, RollExpression> rollExpressions = Collections.emptyMap();
     
     
-    public void setSymbolTable(SymbolTable stable) {
-        symbolTable = stable;
+    public void setRollExpressions(Map<String, RollExpression> rolls) {
+        rollExpressions = rolls;
     }
 }
 
 evaluator   returns [net.rptools.parser.tree.ScriptTreeNode node] 
-  : { scriptNode = new net.rptools.parser.tree.ScriptNode(); }
-    statement+ { node = scriptNode; }
+  @init {
+      List<net.rptools.parser.tree.ScriptTreeNode> statements = new ArrayList<net.rptools.parser.tree.ScriptTreeNode>();
+  }
+  : (st=statement { statements.add(st); })+ { 
+      node = new net.rptools.parser.tree.ScriptNode(statements);
+    }
   ;
 
   
-statement
+statement returns [net.rptools.parser.tree.ScriptTreeNode node]
   : (asNode = assignment) { 
-      ((net.rptools.parser.tree.ScriptNode)scriptNode).addStatement(asNode);
+      node = asNode;
     }
   | (expNode = expression) { 
-      ((net.rptools.parser.tree.ScriptNode)scriptNode).addStatement(expNode);
+      node = expNode;
     }
   ;
   
@@ -166,7 +171,7 @@ expression returns [net.rptools.parser.tree.ScriptTreeNode node]
         node = new net.rptools.parser.tree.PropertyNode($Identifier.toString());
       }
     | ROLL { 
-        node = new net.rptools.parser.tree.RollNode($ROLL.toString());
+        node = new net.rptools.parser.tree.RollNode($ROLL.toString(), rollExpressions.get($ROLL.toString()));
       }
     | ^('&' op1=expression op2=expression) {
         node = new net.rptools.parser.tree.ListConcatNode(op1, op2);
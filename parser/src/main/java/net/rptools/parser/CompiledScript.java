@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.tree.MTScriptTreeParser;
+import net.rptools.parser.tree.ScriptTreeCompiler;
+import net.rptools.parser.tree.ScriptTreeNode;
+import net.rptools.parser.tree.ScriptTreeOptimizer;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.tree.CommonTree;
+import org.antlr.runtime.tree.CommonTreeNodeStream;
+
+/**
+ * CompiledScript holds the result of lexing and parsing the text of a script so
+ * that it can be evaluated any number of times without being parsed again.
+ * CompiledScript objects are immutable and do not depend on any symbol table, so
+ * the same compiled script can be evaluated against any number of
+ * {@link ScriptContext}s, including concurrently from different threads.
+ *
+ */
+public final class CompiledScript {
+
+	/**
+	 * The number of times a script is evaluated with {@link ScriptContext#isBytecodeCompilation()}
+	 * true before it is queued to be compiled into a JVM class.
+	 */
+	static final int BYTECODE_COMPILE_THRESHOLD = 100;
+
+	/** The text of the script. */
+	private final String source;
+
+	/** The root node of the parsed script. */
+	private final ScriptTreeNode scriptNode;
+
+	/** The roll expressions that were found while parsing the script. */
+	private final Map<String, RollExpression> rollExpressions;
+
+	/** The script compiled into a JVM class, or null if it has not been or could not be compiled. */
+	private volatile ScriptTreeNode bytecodeNode;
+
+	/** The compilation of the script into a JVM class, or null if it has not been started. */
+	private volatile Future<ScriptTreeNode> bytecodeCompilation;
+
+	/** The reason that the script could not be compiled into a JVM class, or null. */
+	private volatile Throwable bytecodeError;
+
+	/** The number of evaluations that could have used the compiled script before it was compiled. */
+	private final AtomicInteger bytecodeEvaluations = new AtomicInteger();
+
+	/**
+	 * Creates a new CompiledScript.
+	 *
+	 * @param text The text of the script.
+	 * @param node The root node of the parsed script.
+	 * @param rolls The roll expressions found while parsing the script.
+	 */
+	CompiledScript(String text, ScriptTreeNode node, Map<String, RollExpression> rolls) {
+		source = text;
+		scriptNode = node;
+		rollExpressions = Collections.unmodifiableMap(new LinkedHashMap<>(rolls));
+	}
+
+	/**
+	 * Lexes, parses and optimizes the text of a script into a CompiledScript.
+	 *
+	 * @param text The text of the script.
+	 *
+	 * @return the compiled script.
+	 *
+	 * @throws NullPointerException if text is null.
+	 */
+	static CompiledScript compile(String text) {
+		return compile(text, true);
+	}
+
+	/**
+	 * Lexes and parses the text of a script into a CompiledScript.
+	 *
+	 * @param text The text of the script.
+	 * @param optimize Should the parsed script be optimized with the {@link ScriptTreeOptimizer}.
+	 *
+	 * @return the compiled script.
+	 *
+	 * @throws NullPointerException if text is null.
+	 */
+	static CompiledScript compile(String text, boolean optimize) {
+		if (text == null) {
+			throw new NullPointerException("Text to parse can not be null.");
+		}
+
+		MTScriptLexer lexer = new MTScriptLexer(new ANTLRStringStream(text));
+		CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+		MTScriptParser parser = new MTScriptParser(tokenStream);
+
+		try {
+			CommonTree tree = (CommonTree) (parser.mtscript().getTree());
+
+			CommonTreeNodeStream nodeStream = new CommonTreeNodeStream(tree);
+			MTScriptTreeParser walker = new MTScriptTreeParser(nodeStream);
+			walker.setRollExpressions(parser.getRollExpressions());
+
+			ScriptTreeNode scriptNode = walker.evaluator();
+			if (optimize) {
+				scriptNode = ScriptTreeOptimizer.optimize(scriptNode);
+			}
+
+			return new CompiledScript(text, scriptNode, parser.getRollExpressions());
+		} catch (RecognitionException e) {
+			// TODO: log?
+			throw new ParserException(e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Evaluates the script and returns a {@link DataValue} with the results.
+	 * Since a script may have multiple statements the {@link DataValue} returned is
+	 * always of type {@link DataType#LIST} which contains the result of each statement.
+	 * <p>
+	 * If {@link ScriptContext#isBytecodeCompilation()} is true then the script is compiled
+	 * into a JVM class on a background thread once it has been evaluated
+	 * {@link #BYTECODE_COMPILE_THRESHOLD} times with such a context, and that class is used
+	 * for evaluations once it is ready. Until then, or if the script can not be compiled, it
+	 * is interpreted, see {@link #getBytecodeError()}.
+	 * </p>
+	 *
+	 * @param context The context to evaluate the script with.
+	 *
+	 * @return the results of evaluating the script.
+	 *
+	 * @throws ExpressionEvaluatorException if errors occur while evaluating the script.
+	 */
+	public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {
+		if (context.isBytecodeCompilation()) {
+			ScriptTreeNode node = compileIfHot();
+			if (node != null) {
+				return node.evaluate(context);
+			}
+		}
+
+		return scriptNode.evaluate(context);
+	}
+
+	/**
+	 * Returns the script compiled into a JVM class if it is ready, starting the compilation
+	 * once the script has been evaluated often enough. This never waits for the compilation.
+	 *
+	 * @return the compiled script, or null if it is not ready or could not be compiled.
+	 */
+	private ScriptTreeNode compileIfHot() {
+		ScriptTreeNode node = bytecodeNode;
+		if (node != null || bytecodeError != null) {
+			return node;
+		}
+
+		Future<ScriptTreeNode> compilation = bytecodeCompilation;
+		if (compilation == null) {
+			// Only the evaluation that reaches the threshold starts the compilation.
+			if (bytecodeEvaluations.incrementAndGet() == BYTECODE_COMPILE_THRESHOLD) {
+				bytecodeCompilation = ScriptTreeCompiler.compileInBackground(scriptNode);
+			}
+			return null;
+		}
+
+		if (!compilation.isDone()) {
+			return null;
+		}
+
+		try {
+			node = compilation.get();
+			bytecodeNode = node;
+			return node;
+		} catch (ExecutionException e) {
+			bytecodeError = e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the script compiled into a JVM class without compiling it.
+	 *
+	 * @return the compiled script, or null if it has not been or could not be compiled.
+	 */
+	ScriptTreeNode getBytecodeNode() {
+		return bytecodeNode;
+	}
+
+	/**
+	 * Returns the compilation of the script into a JVM class.
+	 *
+	 * @return the compilation, or null if it has not been started.
+	 */
+	Future<ScriptTreeNode> getBytecodeCompilation() {
+		return bytecodeCompilation;
+	}
+
+	/**
+	 * Returns the reason that the script could not be compiled into a JVM class, for example
+	 * because there is no Java compiler available or the script engine classes could not be
+	 * found on the class path. Scripts that could not be compiled are interpreted.
+	 *
+	 * @return the reason, or null if the script has not failed to compile.
+	 */
+	public Throwable getBytecodeError() {
+		return bytecodeError;
+	}
+
+	/**
+	 * Returns the text of the script.
+	 *
+	 * @return the text of the script.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the root node of the parsed script.
+	 *
+	 * @return the root node of the script.
+	 */
+	public ScriptTreeNode getScriptNode() {
+		return scriptNode;
+	}
+
+	/**
+	 * Returns the roll expressions that were found in the script mapped by
+	 * the name that their results are stored under in the symbol table.
+	 *
+	 * @return the roll expressions in the script.
+	 */
+	public Map<String, RollExpression> getRollExpressions() {
+		return rollExpressions;
+	}
+}
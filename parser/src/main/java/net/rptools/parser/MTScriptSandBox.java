@@ -14,17 +14,14 @@ new w * Licensed under the Apache License, Version 2.0 (the "License");
  */
 package net.rptools.parser;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.result.RollExpression;
 
 import net.rptools.parser.symboltable.SymbolTable;
 import net.rptools.parser.tree.ScriptTreeNode;
-import net.rptools.parser.tree.MTScriptTreeParser;
-
-import org.antlr.runtime.ANTLRFileStream;
-import org.antlr.runtime.CommonTokenStream;
-import org.antlr.runtime.tree.CommonTree;
-import org.antlr.runtime.tree.CommonTreeNodeStream;
 
 /**
  * 
@@ -37,22 +34,15 @@ public class MTScriptSandBox {
 	public static void mainOld(String[] args) throws Exception {
 		
 		long startTime = System.currentTimeMillis();
-		MTScriptLexer lexer = new MTScriptLexer(new ANTLRFileStream("/tmp/tst1.mts"));
-		
-		
-		CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-		
 		ScriptContext scriptContext = new ScriptContextBuilder().toScriptContext();
 		
 		SymbolTable symbolTable =  scriptContext.getSymbolTable();	
 	 
-		MTScriptParser parser = new MTScriptParser(tokenStream);
-		parser.setSymbolTable(symbolTable);
+		String text = new String(Files.readAllBytes(Paths.get("/tmp/tst1.mts")));
+		CompiledScript script = CompiledScript.compile(text);
 		
-		CommonTree tree = (CommonTree) (parser.mtscript().getTree());
-		System.out.println(tree.toStringTree());
 		System.out.println("--- START ROLLS ---");
-		for (RollExpression rxpr : symbolTable.getRollExpressions()) {
+		for (RollExpression rxpr : script.getRollExpressions().values()) {
 			System.out.print(rxpr.getRollString());
 			if (rxpr.isVerbose()) { 
 				System.out.print(" (verbose)");
@@ -61,12 +51,7 @@ public class MTScriptSandBox {
 		}
 		System.out.println("--- END ROLLS ---");
 		
-		CommonTreeNodeStream nodeStream = new CommonTreeNodeStream(tree);
-		MTScriptTreeParser walker = new MTScriptTreeParser(nodeStream); 
-		
-		walker.setSymbolTable(symbolTable);
-		
-		ScriptTreeNode scriptNode = walker.evaluator();
+		ScriptTreeNode scriptNode = script.getScriptNode();
 		
 		DataValue results = scriptNode.evaluate(scriptContext);
 	
@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.util.RandomUtil;
+import net.rptools.lib.util.RunningStatistics;
+
+/**
+ * MonteCarloSimulator gathers statistics for the result of a script by evaluating it
+ * many times, for scripts whose odds can not be calculated directly such as those that
+ * use JavaScript dice or repeat groups. The value recorded for each evaluation is the
+ * result of the last statement in the script.
+ * <p>
+ * The evaluations are split into tasks that run in parallel. Every evaluation gets its own
+ * {@link ScriptContext} whose variables and properties start out as those of the context
+ * builder, but changes made by one evaluation are only seen by that evaluation and are
+ * not written back to the builder's resolvers. The user data of the builder is shared by
+ * all of the evaluations, so functions that change it must be safe to call from several
+ * threads. Each task has its own seeded random number generator, so running a simulation
+ * with the same seed gives the same statistics however many threads it runs on. The
+ * {@link CompiledScript} is parsed once and shared by all of the evaluations.
+ * </p>
+ */
+public final class MonteCarloSimulator {
+
+	/** The number of evaluations performed by each task. */
+	private static final int SAMPLES_PER_TASK = 1024;
+
+	/** The increment used to derive the seed for each task from the simulation seed. */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** The pool that the simulation tasks are run on. */
+	private static final ExecutorService SIMULATION_POOL = new ForkJoinPool();
+
+	/** The script to evaluate. */
+	private final CompiledScript script;
+
+	/** The builder for the contexts the script is evaluated with. */
+	private final ScriptContextBuilder contextBuilder;
+
+	/** The seed for the random numbers used by the simulation. */
+	private long seed;
+
+	/** The number of threads to run the simulation on, 0 to use the shared pool. */
+	private int threads;
+
+	/**
+	 * Creates a new MonteCarloSimulator. The context builder is copied so changing it
+	 * afterwards does not affect the simulator, its random number settings are ignored as
+	 * each task uses its own generator.
+	 *
+	 * @param compiledScript The script to evaluate.
+	 * @param builder The builder for the contexts the script is evaluated with.
+	 *
+	 * @throws NullPointerException if compiledScript or builder is null.
+	 */
+	public MonteCarloSimulator(CompiledScript compiledScript, ScriptContextBuilder builder) {
+		if (compiledScript == null) {
+			throw new NullPointerException("Script can not be null.");
+		}
+		if (builder == null) {
+			throw new NullPointerException("Script context builder can not be null.");
+		}
+
+		script = compiledScript;
+		contextBuilder = builder.copy();
+		seed = ThreadLocalRandom.current().nextLong();
+	}
+
+	/**
+	 * Sets the seed for the random numbers used by the simulation, running a simulation
+	 * with the same seed and number of samples gives the same statistics. If no seed is
+	 * set a random one is used.
+	 *
+	 * @param s The seed.
+	 *
+	 * @return {@code this} so that methods can be chained.
+	 */
+	public MonteCarloSimulator setSeed(long s) {
+		seed = s;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads the simulation runs on. By default simulations run on a
+	 * pool shared by all simulators with a thread for each processor. The statistics for
+	 * a seed are the same whatever the number of threads.
+	 *
+	 * @param t The number of threads, 1 to run the simulation on the calling thread or 0
+	 *          to use the shared pool.
+	 *
+	 * @return {@code this} so that methods can be chained.
+	 *
+	 * @throws IllegalArgumentException if t is negative.
+	 */
+	public MonteCarloSimulator setThreads(int t) {
+		if (t < 0) {
+			throw new IllegalArgumentException("Number of threads can not be negative.");
+		}
+
+		threads = t;
+		return this;
+	}
+
+	/**
+	 * Evaluates the script a number of times and returns statistics for the results.
+	 *
+	 * @param samples The number of times to evaluate the script.
+	 *
+	 * @return the statistics for the results.
+	 *
+	 * @throws IllegalArgumentException if samples is less than 1.
+	 * @throws ExpressionEvaluatorException if an error occurs evaluating the script or its
+	 *                                      result is not a number.
+	 */
+	public RunningStatistics simulate(int samples) throws ExpressionEvaluatorException {
+		if (samples < 1) {
+			throw new IllegalArgumentException("Number of samples must be at least 1.");
+		}
+
+		List<SimulationTask> tasks = new ArrayList<>();
+		for (int from = 0, task = 0; from < samples; from += SAMPLES_PER_TASK, task++) {
+			int count = Math.min(SAMPLES_PER_TASK, samples - from);
+			tasks.add(new SimulationTask(count, taskSeed(task)));
+		}
+
+		if (threads == 1) {
+			RunningStatistics stats = new RunningStatistics();
+			for (SimulationTask task : tasks) {
+				stats.addAll(task.call());
+			}
+			return stats;
+		}
+
+		ExecutorService pool = threads == 0 ? SIMULATION_POOL : new ForkJoinPool(threads);
+		RunningStatistics stats = new RunningStatistics();
+		try {
+			// The results are combined in task order so they do not depend on which task finishes first.
+			for (Future<RunningStatistics> future : pool.invokeAll(tasks)) {
+				stats.addAll(future.get());
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ExpressionEvaluatorException) {
+				throw (ExpressionEvaluatorException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ExpressionEvaluatorException(cause.getMessage(), cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExpressionEvaluatorException("Simulation was interrupted.", e);
+		} finally {
+			if (pool != SIMULATION_POOL) {
+				pool.shutdown();
+			}
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Returns the seed for the random numbers used by a task.
+	 *
+	 * @param task The index of the task.
+	 *
+	 * @return the seed for the task.
+	 */
+	private long taskSeed(int task) {
+		// Mix the seeds so that the streams of consecutive tasks are unrelated.
+		long z = seed + (task + 1) * GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns the value recorded for an evaluation of the script.
+	 *
+	 * @param result The result of evaluating the script.
+	 *
+	 * @return the result of the last statement as a number.
+	 *
+	 * @throws ExpressionEvaluatorException if the script has no result or it is not a number.
+	 */
+	private static double sampleValue(DataValue result) throws ExpressionEvaluatorException {
+		List<DataValue> statements = result.asList();
+		if (statements.isEmpty()) {
+			throw new ExpressionEvaluatorException("Script did not produce a value to simulate.");
+		}
+
+		DataValue value = statements.get(statements.size() - 1);
+		try {
+			return value.asDouble();
+		} catch (NumberFormatException | UnsupportedOperationException e) {
+			throw new ExpressionEvaluatorException("Script result " + value + " is not a number.", e);
+		}
+	}
+
+	/**
+	 * Evaluates the script a number of times with its own random number generator.
+	 */
+	private final class SimulationTask implements Callable<RunningStatistics> {
+
+		/** The number of times to evaluate the script. */
+		private final int count;
+
+		/** The seed for the random numbers used by the task. */
+		private final long taskSeed;
+
+		/**
+		 * Creates a new SimulationTask.
+		 *
+		 * @param cnt The number of times to evaluate the script.
+		 * @param sd The seed for the random numbers used by the task.
+		 */
+		SimulationTask(int cnt, long sd) {
+			count = cnt;
+			taskSeed = sd;
+		}
+
+		@Override
+		public RunningStatistics call() throws ExpressionEvaluatorException {
+			RandomUtil randomUtil = RandomUtil.getSeededInstance(taskSeed);
+			RunningStatistics stats = new RunningStatistics();
+			for (int i = 0; i < count; i++) {
+				DataValue result = script.evaluate(contextBuilder.toIsolatedScriptContext(randomUtil));
+				stats.add(sampleValue(result));
+			}
+
+			return stats;
+		}
+	}
+}
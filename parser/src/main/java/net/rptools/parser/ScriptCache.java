@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ScriptCache is a bounded, least recently used cache of {@link CompiledScript}s
+ * keyed by the text of the script. It is safe to use from multiple threads.
+ *
+ */
+public final class ScriptCache {
+
+	/** The default maximum number of scripts held in the cache. */
+	public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	/** The shared cache used by {@link ScriptEvaluator}. */
+	private static final ScriptCache instance = new ScriptCache(DEFAULT_MAXIMUM_SIZE);
+
+	/** The cached scripts, in least recently used order. */
+	private final LinkedHashMap<String, CompiledScript> scripts;
+
+	/** The maximum number of scripts to hold in the cache. */
+	private int maximumSize;
+
+	/** The number of lookups that found a compiled script. */
+	private final AtomicLong hits = new AtomicLong();
+
+	/** The number of lookups that had to compile the script. */
+	private final AtomicLong misses = new AtomicLong();
+
+	/** The number of scripts that have been evicted from the cache. */
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a new ScriptCache.
+	 *
+	 * @param maxSize The maximum number of scripts to hold in the cache.
+	 *
+	 * @throws IllegalArgumentException if maxSize is negative.
+	 */
+	public ScriptCache(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Maximum cache size can not be negative.");
+		}
+
+		maximumSize = maxSize;
+		scripts = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+			/** The serial UID. */
+			private static final long serialVersionUID = 6216452093567237742L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+				if (size() > maximumSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cache shared by all {@link ScriptEvaluator}s.
+	 *
+	 * @return the shared cache.
+	 */
+	public static ScriptCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the compiled version of the script, compiling it and adding it to the
+	 * cache if it is not already there.
+	 *
+	 * @param text The text of the script.
+	 *
+	 * @return the compiled script.
+	 *
+	 * @throws NullPointerException if text is null.
+	 */
+	public CompiledScript getCompiledScript(String text) {
+		if (text == null) {
+			throw new NullPointerException("Text to parse can not be null.");
+		}
+
+		CompiledScript script;
+		synchronized (scripts) {
+			script = scripts.get(text);
+		}
+
+		if (script != null) {
+			hits.incrementAndGet();
+			return script;
+		}
+
+		misses.incrementAndGet();
+		// Compile outside of the lock so that other threads are not held up.
+		script = CompiledScript.compile(text);
+
+		synchronized (scripts) {
+			CompiledScript existing = scripts.get(text);
+			if (existing != null) {
+				return existing;
+			}
+			scripts.put(text, script);
+		}
+
+		return script;
+	}
+
+	/**
+	 * Sets the maximum number of scripts held in the cache, evicting the least
+	 * recently used scripts if there are more than this already in the cache.
+	 * A size of 0 disables caching.
+	 *
+	 * @param maxSize The maximum number of scripts to hold.
+	 *
+	 * @throws IllegalArgumentException if maxSize is negative.
+	 */
+	public void setMaximumSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Maximum cache size can not be negative.");
+		}
+
+		synchronized (scripts) {
+			maximumSize = maxSize;
+			Iterator<String> iter = scripts.keySet().iterator();
+			while (scripts.size() > maximumSize && iter.hasNext()) {
+				iter.next();
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of scripts held in the cache.
+	 *
+	 * @return the maximum number of scripts.
+	 */
+	public int getMaximumSize() {
+		synchronized (scripts) {
+			return maximumSize;
+		}
+	}
+
+	/**
+	 * Returns the number of scripts currently in the cache.
+	 *
+	 * @return the number of scripts.
+	 */
+	public int size() {
+		synchronized (scripts) {
+			return scripts.size();
+		}
+	}
+
+	/**
+	 * Removes all of the scripts from the cache. The hit, miss and eviction counts
+	 * are not reset.
+	 */
+	public void clear() {
+		synchronized (scripts) {
+			scripts.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that found the script already compiled.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that had to compile the script.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of scripts that have been evicted from the cache.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+}
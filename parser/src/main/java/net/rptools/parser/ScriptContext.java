@@ -15,6 +15,7 @@ w * Licensed under the Apache License, Version 2.0 (the "License");
 package net.rptools.parser;
 
 import net.rptools.lib.permissions.PlayerPermissions;
+import net.rptools.lib.util.RandomUtil;
 import net.rptools.parser.symboltable.SymbolTable;
 
 /**
@@ -42,18 +43,58 @@ public class ScriptContext {
 	 */
 	private final boolean debug;
 	
+	/**
+	 * Should scripts be compiled to JVM classes rather than interpreted.
+	 */
+	private final boolean bytecodeCompilation;
+
+	/**
+	 * The {@link RandomUtil} used to generate random numbers.
+	 */
+	private final RandomUtil randomUtil;
+
+	/**
+	 * The maximum number of JavaScript instructions each call to a JavaScript function or dice
+	 * can run, 0 if there is no limit.
+	 */
+	private final long javaScriptInstructionLimit;
+
+	/**
+	 * The maximum time in milliseconds each call to a JavaScript function or dice can run for,
+	 * 0 if there is no limit.
+	 */
+	private final long javaScriptTimeLimit;
+
+	/**
+	 * The maximum number of bytes each call to a JavaScript function or dice can allocate, 
+	 * 0 if there is no limit.
+	 */
+	private final long javaScriptMemoryLimit;
+	
 	/**
 	 * Creates a new ScriptContext object. 
 	 * 
 	 * @param permissions The player permissions that the script will execute with.
 	 * @param symTable The symbol table used to resolve symbols.
 	 * @param uData Any data you need made available to functions.
+	 * @param debugFlag Should the script be run in debug mode.
+	 * @param compile Should scripts be compiled to JVM classes.
+	 * @param random The {@link RandomUtil} used to generate random numbers.
+	 * @param jsInstructions The JavaScript instruction limit for each call, 0 for no limit.
+	 * @param jsTime The JavaScript time limit in milliseconds for each call, 0 for no limit.
+	 * @param jsMemory The JavaScript memory limit in bytes for each call, 0 for no limit.
 	 */
-	ScriptContext(PlayerPermissions permissions, SymbolTable symTable, Object uData, boolean debugFlag) {
+	ScriptContext(PlayerPermissions permissions, SymbolTable symTable, Object uData, boolean debugFlag, 
+			boolean compile, RandomUtil random, long jsInstructions, long jsTime, long jsMemory) {
 		playerPermissions = permissions;
 		symbolTable = symTable;
 		userData = uData;
 		debug = debugFlag;
+		bytecodeCompilation = compile;
+		randomUtil = random;
+		javaScriptInstructionLimit = jsInstructions;
+		javaScriptTimeLimit = jsTime;
+		javaScriptMemoryLimit = jsMemory;
 	}
 
 	/**
@@ -92,5 +133,56 @@ public class ScriptContext {
 		return debug;
 	}
 	
+	/**
+	 * Checks if scripts evaluated with this context should be compiled to JVM classes
+	 * rather than being interpreted.
+	 * 
+	 * @return true if scripts should be compiled.
+	 */
+	public boolean isBytecodeCompilation() {
+		return bytecodeCompilation;
+	}
+
+	/**
+	 * Returns the {@link RandomUtil} that dice and functions should use to generate random
+	 * numbers when evaluating scripts with this context. If the context was created with a 
+	 * seed its state can be saved and restored to replay rolls.
+	 * 
+	 * @return the {@link RandomUtil}.
+	 */
+	public RandomUtil getRandomUtil() {
+		return randomUtil;
+	}
+
+	/**
+	 * Returns the maximum number of JavaScript instructions that each call to a JavaScript
+	 * function or dice can run. The instructions are counted in blocks so a call may run
+	 * slightly more than this before it is stopped.
+	 * 
+	 * @return the instruction limit, 0 if there is no limit.
+	 */
+	public long getJavaScriptInstructionLimit() {
+		return javaScriptInstructionLimit;
+	}
+
+	/**
+	 * Returns the maximum time that each call to a JavaScript function or dice can run for.
+	 * 
+	 * @return the time limit in milliseconds, 0 if there is no limit.
+	 */
+	public long getJavaScriptTimeLimit() {
+		return javaScriptTimeLimit;
+	}
+
+	/**
+	 * Returns the maximum number of bytes that each call to a JavaScript function or dice can
+	 * allocate. This is only enforced if the JVM can measure the memory allocated by a thread.
+	 * 
+	 * @return the memory limit in bytes, 0 if there is no limit.
+	 */
+	public long getJavaScriptMemoryLimit() {
+		return javaScriptMemoryLimit;
+	}
+	
 	
 }
@@ -15,9 +15,15 @@
 package net.rptools.parser;
 
 import net.rptools.lib.permissions.PlayerPermissions;
+import net.rptools.lib.util.RandomState;
+import net.rptools.lib.util.RandomStrategy;
+import net.rptools.lib.util.RandomUtil;
+import net.rptools.parser.symboltable.OverlayPropertyResolver;
+import net.rptools.parser.symboltable.OverlayVariableResolver;
 import net.rptools.parser.symboltable.PropertyResolver;
 import net.rptools.parser.symboltable.SymbolTableBuilder;
 import net.rptools.parser.symboltable.VariableResolver;
+import net.rptools.parser.tree.ScriptTreeCompiler;
 
 /**
  * ScriptContextBuilder is used to build a ScriptContext for script execution.
@@ -40,6 +46,27 @@ public class ScriptContextBuilder {
 	/** Should the script be evaluated in debug mode. */
 	private boolean debug = false;
 	
+	/** Should scripts be compiled to JVM classes. */
+	private boolean bytecodeCompilation = false;
+
+	/** The strategy used to generate random numbers. */
+	private RandomStrategy randomStrategy = RandomStrategy.SECURE;
+
+	/** The seed for the random numbers, or {@code null} if they are not seeded. */
+	private Long randomSeed;
+
+	/** The saved random number state to continue from, or {@code null}. */
+	private RandomState randomState;
+
+	/** The JavaScript instruction limit for each call, 0 for no limit. */
+	private long javaScriptInstructionLimit;
+
+	/** The JavaScript time limit in milliseconds for each call, 0 for no limit. */
+	private long javaScriptTimeLimit;
+
+	/** The JavaScript memory limit in bytes for each call, 0 for no limit. */
+	private long javaScriptMemoryLimit;
+	
 	
 	/**
 	 * Sets the player permissions for the script context.
@@ -120,6 +147,146 @@ public class ScriptContextBuilder {
 		return this;
 	}
 	
+	/**
+	 * Sets if scripts should be compiled to JVM classes rather than being interpreted. 
+	 * Compiling a script is expensive the first time it is done so this is only
+	 * worthwhile for scripts that are evaluated many times. If a script can not be compiled
+	 * then it will be interpreted, see {@link CompiledScript#getBytecodeError()}.
+	 * 
+	 * @param compile Should scripts be compiled.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws UnsupportedOperationException if compile is true and there is no Java compiler
+	 *         available to compile scripts with.
+	 */
+	public ScriptContextBuilder setBytecodeCompilation(boolean compile) {
+		if (compile && !ScriptTreeCompiler.isAvailable()) {
+			throw new UnsupportedOperationException("Scripts can only be compiled when a Java compiler is available.");
+		}
+		bytecodeCompilation = compile;
+		return this;
+	}
+
+	/**
+	 * Sets the strategy used to generate random numbers for dice rolls and functions. 
+	 * The default is {@link RandomStrategy#SECURE}.
+	 * 
+	 * @param strategy The strategy used to generate random numbers.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws NullPointerException if strategy is null.
+	 */
+	public ScriptContextBuilder setRandomStrategy(RandomStrategy strategy) {
+		if (strategy == null) {
+			throw new NullPointerException("Random strategy can not be null.");
+		}
+		
+		randomStrategy = strategy;
+		randomSeed = null;
+		randomState = null;
+		return this;
+	}
+
+	/**
+	 * Sets the seed used to generate random numbers for dice rolls and functions. Each 
+	 * {@link ScriptContext} created by this builder gets its own generator with this seed, 
+	 * so evaluating the same scripts with those contexts produces the same rolls. This 
+	 * replaces any strategy set with {@link #setRandomStrategy(RandomStrategy)}.
+	 * 
+	 * @param seed The seed.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 */
+	public ScriptContextBuilder setRandomSeed(long seed) {
+		randomSeed = seed;
+		randomState = null;
+		return this;
+	}
+
+	/**
+	 * Sets the saved state that the random numbers for dice rolls and functions continue
+	 * from. Each {@link ScriptContext} created by this builder gets its own generator that 
+	 * starts from this state, see {@link RandomUtil#getState()}. This replaces any strategy 
+	 * or seed that has been set.
+	 * 
+	 * @param state The state to continue from.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws NullPointerException if state is null.
+	 */
+	public ScriptContextBuilder setRandomState(RandomState state) {
+		if (state == null) {
+			throw new NullPointerException("Random state can not be null.");
+		}
+		
+		randomState = state;
+		randomSeed = null;
+		return this;
+	}
+	
+	
+	/**
+	 * Sets the maximum number of JavaScript instructions that each call to a JavaScript function
+	 * or dice can run before it fails with a 
+	 * {@link net.rptools.parser.functions.ScriptFunctionException}.
+	 * 
+	 * @param limit The instruction limit, 0 for no limit.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws IllegalArgumentException if limit is negative.
+	 */
+	public ScriptContextBuilder setJavaScriptInstructionLimit(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("JavaScript instruction limit can not be negative.");
+		}
+		
+		javaScriptInstructionLimit = limit;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum time that each call to a JavaScript function or dice can run for before 
+	 * it fails with a {@link net.rptools.parser.functions.ScriptFunctionException}.
+	 * 
+	 * @param millis The time limit in milliseconds, 0 for no limit.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws IllegalArgumentException if millis is negative.
+	 */
+	public ScriptContextBuilder setJavaScriptTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("JavaScript time limit can not be negative.");
+		}
+		
+		javaScriptTimeLimit = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of bytes that each call to a JavaScript function or dice can 
+	 * allocate before it fails with a {@link net.rptools.parser.functions.ScriptFunctionException}.
+	 * This is only enforced if the JVM can measure the memory allocated by a thread.
+	 * 
+	 * @param bytes The memory limit in bytes, 0 for no limit.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws IllegalArgumentException if bytes is negative.
+	 */
+	public ScriptContextBuilder setJavaScriptMemoryLimit(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("JavaScript memory limit can not be negative.");
+		}
+		
+		javaScriptMemoryLimit = bytes;
+		return this;
+	}
+	
 	
 	/**
 	 * Returns a ScriptContext built from this object.
@@ -127,16 +294,95 @@ public class ScriptContextBuilder {
 	 * @return the ScriptContext.
 	 */
 	public ScriptContext toScriptContext() {
+		RandomUtil randomUtil;
+		if (randomState != null) {
+			randomUtil = RandomUtil.getSeededInstance(randomState);
+		} else if (randomSeed != null) {
+			randomUtil = RandomUtil.getSeededInstance(randomSeed);
+		} else {
+			randomUtil = RandomUtil.getInstance(randomStrategy);
+		}
+		
+		return toScriptContext(randomUtil);
+	}
+	
+	/**
+	 * Returns a ScriptContext built from this object that uses the specified {@link RandomUtil}
+	 * instead of the random number settings of this builder.
+	 * 
+	 * @param randomUtil The RandomUtil used to generate random numbers.
+	 * 
+	 * @return the ScriptContext.
+	 */
+	ScriptContext toScriptContext(RandomUtil randomUtil) {
+		return toScriptContext(randomUtil, variableResolver, propertyResolver);
+	}
+	
+	/**
+	 * Returns a ScriptContext built from this object that uses the specified {@link RandomUtil}
+	 * and keeps the variables and properties that scripts set to itself, so that it can be
+	 * used at the same time as other contexts built by this method. Variables and properties
+	 * that have not been set are read from the resolvers of this builder, see
+	 * {@link OverlayVariableResolver} and {@link OverlayPropertyResolver}. The user data is
+	 * still shared.
+	 * 
+	 * @param randomUtil The RandomUtil used to generate random numbers.
+	 * 
+	 * @return the ScriptContext.
+	 */
+	ScriptContext toIsolatedScriptContext(RandomUtil randomUtil) {
+		return toScriptContext(randomUtil, 
+				variableResolver == null ? null : new OverlayVariableResolver(variableResolver), 
+				propertyResolver == null ? null : new OverlayPropertyResolver(propertyResolver));
+	}
+	
+	/**
+	 * Returns a ScriptContext built from this object with the specified {@link RandomUtil} and
+	 * resolvers.
+	 * 
+	 * @param randomUtil The RandomUtil used to generate random numbers.
+	 * @param variables The variable resolver, or null to use a new default resolver.
+	 * @param properties The property resolver, or null to use a new default resolver.
+	 * 
+	 * @return the ScriptContext.
+	 */
+	private ScriptContext toScriptContext(RandomUtil randomUtil, VariableResolver variables, 
+			PropertyResolver properties) {
 		SymbolTableBuilder symTableBuilder = new SymbolTableBuilder();
-		if (propertyResolver != null) {
-			symTableBuilder.setPropertyResolver(propertyResolver);
+		if (properties != null) {
+			symTableBuilder.setPropertyResolver(properties);
 		}
 		
-		if (variableResolver != null) {
-			symTableBuilder.setVariableResolver(variableResolver);
+		if (variables != null) {
+			symTableBuilder.setVariableResolver(variables);
 		}
 		
-		return new ScriptContext(playerPermissions, symTableBuilder.toSymbolTable(), userData, debug);
+		return new ScriptContext(playerPermissions, symTableBuilder.toSymbolTable(), userData, debug, 
+				bytecodeCompilation, randomUtil, javaScriptInstructionLimit, javaScriptTimeLimit, 
+				javaScriptMemoryLimit);
+	}
+	
+	/**
+	 * Returns a copy of this builder, changes made to the copy do not affect this builder
+	 * and changes made to this builder do not affect the copy.
+	 * 
+	 * @return the copy.
+	 */
+	ScriptContextBuilder copy() {
+		ScriptContextBuilder builder = new ScriptContextBuilder();
+		builder.playerPermissions = playerPermissions;
+		builder.variableResolver = variableResolver;
+		builder.propertyResolver = propertyResolver;
+		builder.userData = userData;
+		builder.debug = debug;
+		builder.bytecodeCompilation = bytecodeCompilation;
+		builder.randomStrategy = randomStrategy;
+		builder.randomSeed = randomSeed;
+		builder.randomState = randomState;
+		builder.javaScriptInstructionLimit = javaScriptInstructionLimit;
+		builder.javaScriptTimeLimit = javaScriptTimeLimit;
+		builder.javaScriptMemoryLimit = javaScriptMemoryLimit;
+		return builder;
 	}
 	
 	
@@ -29,14 +29,6 @@ import net.rptools.parser.functions.ScriptFunction;
 import net.rptools.parser.functions.javascript.JavaScripEvaluator;
 import net.rptools.parser.functions.javascript.JavaScriptExports;
 import net.rptools.parser.symboltable.SymbolTable;
-import net.rptools.parser.tree.ScriptTreeNode;
-import net.rptools.parser.tree.MTScriptTreeParser;
-
-import org.antlr.runtime.ANTLRStringStream;
-import org.antlr.runtime.CommonTokenStream;
-import org.antlr.runtime.RecognitionException;
-import org.antlr.runtime.tree.CommonTree;
-import org.antlr.runtime.tree.CommonTreeNodeStream;
 
 /**
  * ScriptEvaluator evaluates the scripts passed in and returns the results.
@@ -56,7 +48,7 @@ public class ScriptEvaluator  {
 
 
     /** Has the ScriptEvaluator been initialised. */
-    private static boolean initialised = false;
+    private static volatile boolean initialised = false;
 
 	/**
 	 * Gets a ScriptEvaluator object to evaluate a script using
@@ -70,8 +62,7 @@ public class ScriptEvaluator  {
 	 */
 	private ScriptEvaluator(ScriptContext context, Collection<String> text) {
         if (!initialised) {
-            initJSApi();
-            initialised = true;
+            initialise();
         }
 
 		if (context == null) {
@@ -188,33 +179,27 @@ public class ScriptEvaluator  {
 			throw new IndexOutOfBoundsException("Evaluate Index = " + index + " input lines size = " + inputText.size()) ;
 		}
 		
-		MTScriptLexer lexer = new MTScriptLexer(new ANTLRStringStream(
-				inputText.get(index)));
-		CommonTokenStream tokenStream = new CommonTokenStream(lexer);
-		MTScriptParser parser = new MTScriptParser(tokenStream);
-		parser.setSymbolTable(scriptContext.getSymbolTable());
-
-		DataValue results;
-		try {
-			CommonTree tree = (CommonTree) (parser.mtscript().getTree());
-
-
-			CommonTreeNodeStream nodeStream = new CommonTreeNodeStream(tree);
-			MTScriptTreeParser walker = new MTScriptTreeParser(nodeStream);
+		CompiledScript script = ScriptCache.getInstance().getCompiledScript(inputText.get(index));
+		DataValue results = script.evaluate(scriptContext);
+		index++;
 
-			walker.setSymbolTable(scriptContext.getSymbolTable());
-
-			ScriptTreeNode scriptNode = walker.evaluator();
-
-			results = scriptNode.evaluate(scriptContext);
-            index++;
-		} catch (RecognitionException e) {
-			// TODO: log?
-			throw new ParserException(e.getLocalizedMessage(), e);
-		}
 		return results;
 	}
 
+	/**
+	 * Compiles the text of a script so that it can be evaluated multiple times without
+	 * being parsed again. Compiled scripts are held in the shared {@link ScriptCache}.
+	 *
+	 * @param text The text of the script to compile.
+	 *
+	 * @return the compiled script.
+	 *
+	 * @throws NullPointerException if text is null.
+	 */
+	public static CompiledScript compile(String text) {
+		return ScriptCache.getInstance().getCompiledScript(text);
+	}
+
     /**
      * Adds JavaScript code to the script engine and executes it. This code can provide either an API
      * for other JavaScript code or export functions or dice to RPTools script. Each of these scripts
@@ -249,11 +234,22 @@ public class ScriptEvaluator  {
     }
 
 
+    /**
+     * Initialises the ScriptEvaluator the first time that it is used. Only one thread will perform the
+     * initialisation, any others will wait for it to finish.
+     */
+    private static synchronized void initialise() {
+        if (!initialised) {
+            initJSApi();
+            initialised = true;
+        }
+    }
+
     // TODO: Temp remove
     /**
      * Initialise the JavaScript part of the script API.
      */
-    private void initJSApi() {
+    private static void initJSApi() {
         try {
             JavaScripEvaluator.getInstance().test();
             URL url = FunctionManager.class.getResource("/net/rptools/parser/javascript/api/API.js");
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.result.ResultBuilder;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * Base class for {@link Dice} implemented in Java that match roll strings with a case insensitive
+ * {@link DicePattern} and return their results in the same form as {@link StandardDice}.
+ */
+public abstract class AbstractPatternDice implements Dice {
+
+    /** The pattern used to match dice rolls. */
+    private final DicePattern dicePattern;
+
+    /**
+     * Creates a new AbstractPatternDice.
+     *
+     * @param pattern The dice pattern used to match dice rolls, see {@link DicePattern}.
+     */
+    protected AbstractPatternDice(String pattern) {
+        dicePattern = DicePattern.getCaseInsenstiveDicePattern(pattern);
+    }
+
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp) throws ScriptFunctionException {
+        return roll(context, exp, dicePattern.extractArgs(exp.getRollString()));
+    }
+
+    @Override
+    public boolean matches(RollExpression exp) {
+        return dicePattern.matches(exp.getRollString());
+    }
+
+    @Override
+    public DicePattern getDicePattern() {
+        return dicePattern;
+    }
+
+    /**
+     * Returns the value of an argument extracted from a roll string.
+     *
+     * @param args The arguments extracted from the roll string.
+     * @param name The name of the argument.
+     * @param min The lowest value allowed for the argument.
+     *
+     * @return the value of the argument.
+     *
+     * @throws ScriptFunctionException if the value is less than min or too large.
+     */
+    protected static int intArgument(Map<String, DataValue> args, String name, int min) throws ScriptFunctionException {
+        long val = args.get(name).asLong();
+        if (val < min || val > Integer.MAX_VALUE) {
+            throw new ScriptFunctionException("Invalid value " + val + " for " + name + " in dice roll.");
+        }
+
+        return (int) val;
+    }
+
+    /**
+     * Returns the result of a roll.
+     *
+     * @param exp The {@link RollExpression} that was rolled.
+     * @param values The values of the dice that make up the result.
+     * @param details The details of the roll shown to the user.
+     *
+     * @return the result.
+     */
+    protected static DataValue toResult(RollExpression exp, int[] values, String details) {
+        long total = 0;
+        for (int val : values) {
+            total += val;
+        }
+        DataValue valueList = DataValueFactory.listValueFromArray(values);
+
+        ResultBuilder res = new ResultBuilder();
+        if (exp.isVerbose() && exp.isSum() == false) {
+            res.setValue(valueList);
+        } else {
+            res.setLongValue(total);
+        }
+        res = res.setDetailedResult(DataValueFactory.stringValue(details));
+        res = res.setIndividualValues(valueList);
+        return DataValueFactory.resultValue(res.toResult());
+    }
+}
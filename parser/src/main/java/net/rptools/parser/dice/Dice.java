@@ -20,6 +20,8 @@ import net.rptools.lib.result.RollExpression;
 import net.rptools.parser.ScriptContext;
 import net.rptools.parser.functions.ScriptFunctionException;
 
+import java.util.Map;
+
 
 /**
  * Interface for classes that perform the dice roll mechanic for the RPTool script.
@@ -48,9 +50,30 @@ public interface Dice {
      */
     public DataValue roll(ScriptContext context, RollExpression exp) throws ScriptFunctionException;
 
+    /**
+     * Returns the result of the roll using arguments that have already been extracted from the roll string with
+     * the {@link DicePattern} returned by {@link #getDicePattern()}. This lets the arguments be extracted once
+     * and reused for every roll of the same {@link RollExpression}, see {@link RollPlan}. Dice that do not
+     * use the arguments need not implement this method, by default it calls
+     * {@link #roll(ScriptContext, RollExpression)}.
+     *
+     * @param context The {@link net.rptools.parser.ScriptContext} to perform the dice roll with.
+     * @param exp The {@link net.rptools.lib.result.RollExpression} to get the results for.
+     * @param args The arguments extracted from the roll string.
+     *
+     * @return the result of performing the {@link RollExpression}.
+     *
+     * @throws net.rptools.parser.ExpressionEvaluatorException if there is an error performing the roll.
+     */
+    public default DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args)
+            throws ScriptFunctionException {
+        return roll(context, exp);
+    }
+
 
     /**
-     * Checks to see if the {@link RollExpression} matches this Dice.
+     * Checks to see if the {@link RollExpression} matches this Dice. The result should only depend on the roll
+     * string of the {@link RollExpression} as the {@link DiceRoller} remembers which dice matched each roll string.
      *
      * @param exp The {@link RollExpression} to check.
      *
@@ -58,4 +81,16 @@ public interface Dice {
      */
     public boolean matches(RollExpression exp);
 
+    /**
+     * Returns the {@link DicePattern} used to match roll strings for this Dice. The pattern is used to index
+     * the dice so that only dice that could match a roll string are checked with
+     * {@link #matches(RollExpression)}. Dice that do not match roll strings with a {@link DicePattern} should
+     * return {@code null}, which is the default, they will be checked for every roll.
+     *
+     * @return the {@link DicePattern} or {@code null}.
+     */
+    public default DicePattern getDicePattern() {
+        return null;
+    }
+
 }
@@ -34,6 +34,10 @@ import java.util.regex.Pattern;
  * case that argument becomes optional. For example #{number:1}d#{sides} will match <i>2d6</i> and
  * <i>d6</i> if the optional argument is not provided then it will have the default value. All arguments
  * are numeric only.
+ * <p>
+ * Patterns that do not contain any regular expressions are matched by scanning the roll string once rather
+ * than with the regular expression, so checking a roll string that does not match allocates nothing.
+ * </p>
  */
 public class DicePattern {
 
@@ -43,6 +47,38 @@ public class DicePattern {
     /** The argument names for this dice pattern and their default values. */
     private final Map<String, DataValue> arguments = new LinkedHashMap<>();
 
+    /**
+     * The skeletons of the roll strings that this pattern can match, or {@code null} if the pattern contains
+     * regular expressions and can match roll strings with any skeleton.
+     *
+     * @see #skeletonOf(String)
+     */
+    private final Set<String> skeletons;
+
+    /**
+     * The literal text before, between and after the arguments if the pattern is a simple template that is
+     * matched by scanning the roll string, or {@code null} if the regular expression has to be used.
+     */
+    private final String[] templateLiterals;
+
+    /** Is each argument optional, indexed by argument. */
+    private final boolean[] optionalArgs;
+
+    /** The default value of each optional argument, indexed by argument. */
+    private final long[] defaultArgs;
+
+    /** Is the pattern case insensitive. */
+    private final boolean ignoreCase;
+
+    /** The number of digits that can always be parsed into a long without overflowing. */
+    private static final int MAX_SAFE_DIGITS = 18;
+
+    /** The maximum number of optional arguments a pattern can have and still be indexed by skeleton. */
+    private static final int MAX_OPTIONAL_SKELETON_ARGS = 6;
+
+    /** The characters that stop a pattern from being indexed by skeleton. */
+    private static final String NON_LITERAL_CHARS = "\\.[]{}()*+?^$|#0123456789";
+
     /**
      * Creates a new DicePattern.
      *
@@ -57,15 +93,37 @@ public class DicePattern {
 
         int startIndex = 0;
 
+        // The literal text before, between and after the arguments and whether each argument is optional.
+        List<String> literals = new ArrayList<>();
+        List<Boolean> optional = new ArrayList<>();
+
         while (matcher.find(startIndex)) {
             DataValue defaultArg = DataValueFactory.nullDataValue();
             if (matcher.group(2) != null) {
                 defaultArg = DataValueFactory.longValue(Long.parseLong(matcher.group(2)));
             }
             arguments.put(matcher.group(1), defaultArg);
+            literals.add(dicePattern.substring(startIndex, matcher.start()));
+            optional.add(matcher.group(2) != null);
 
             startIndex = matcher.end();
         }
+        literals.add(dicePattern.substring(startIndex));
+
+        skeletons = buildSkeletons(literals, optional);
+        ignoreCase = caseInsensitive;
+
+        optionalArgs = new boolean[optional.size()];
+        defaultArgs = new long[optional.size()];
+        int argIndex = 0;
+        for (DataValue defaultArg : arguments.values()) {
+            if (defaultArg.dataType() != DataType.NULL) {
+                optionalArgs[argIndex] = true;
+                defaultArgs[argIndex] = defaultArg.asLong();
+            }
+            argIndex++;
+        }
+        templateLiterals = isTemplate(literals, optional.size()) ? literals.toArray(new String[literals.size()]) : null;
 
         String regex = dicePattern;
 
@@ -88,6 +146,179 @@ public class DicePattern {
         }
     }
 
+    /**
+     * Checks to see if a pattern can be matched by scanning the roll string rather than with a regular expression.
+     * This is the case when the literal text contains no regular expression or digit characters, so each run of
+     * digits in the roll string must be an argument, and no two arguments are next to each other.
+     *
+     * @param literals The literal text before, between and after the arguments in the pattern.
+     * @param noArgs The number of arguments found in the pattern.
+     *
+     * @return true if the pattern can be matched by scanning.
+     */
+    private boolean isTemplate(List<String> literals, int noArgs) {
+        // Arguments with the same name can only be handled by the regular expression.
+        if (noArgs != arguments.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < literals.size(); i++) {
+            String literal = literals.get(i);
+            if (i > 0 && i < noArgs && literal.isEmpty()) {
+                return false;
+            }
+            for (int c = 0; c < literal.length(); c++) {
+                if (NON_LITERAL_CHARS.indexOf(literal.charAt(c)) >= 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Scans a roll string to see if it matches the template for this pattern, parsing the arguments as it goes
+     * if values is not {@code null}. Nothing is allocated unless an argument has too many digits to parse directly.
+     *
+     * @param rollString The roll string to scan.
+     * @param values The array to store the value of each argument in, or {@code null} if they are not needed.
+     *
+     * @return true if the roll string matches.
+     *
+     * @throws NumberFormatException if an argument is too large for a long.
+     */
+    private boolean scan(String rollString, long[] values) {
+        int pos = 0;
+        int len = rollString.length();
+        for (int i = 0; i < templateLiterals.length; i++) {
+            String literal = templateLiterals[i];
+            if (!rollString.regionMatches(ignoreCase, pos, literal, 0, literal.length())) {
+                return false;
+            }
+            pos += literal.length();
+
+            if (i == optionalArgs.length) {
+                break;
+            }
+
+            int start = pos;
+            long val = 0;
+            while (pos < len) {
+                char c = rollString.charAt(pos);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                val = val * 10 + (c - '0');
+                pos++;
+            }
+
+            if (pos == start) {
+                if (!optionalArgs[i]) {
+                    return false;
+                }
+                val = defaultArgs[i];
+            } else if (values != null && pos - start > MAX_SAFE_DIGITS) {
+                val = Long.parseLong(rollString.substring(start, pos));
+            }
+
+            if (values != null) {
+                values[i] = val;
+            }
+        }
+
+        return pos == len;
+    }
+
+    /**
+     * Returns the skeletons of all the roll strings that a pattern can match.
+     *
+     * @param literals The literal text before, between and after the arguments in the pattern.
+     * @param optional If each of the arguments in the pattern is optional.
+     *
+     * @return the skeletons or {@code null} if the pattern can not be indexed by skeleton.
+     */
+    private static Set<String> buildSkeletons(List<String> literals, List<Boolean> optional) {
+        int noOptional = 0;
+        for (int i = 0; i < optional.size(); i++) {
+            // Arguments next to each other could match a single run of digits.
+            if (i > 0 && literals.get(i).isEmpty()) {
+                return null;
+            }
+            if (optional.get(i)) {
+                noOptional++;
+            }
+        }
+
+        if (noOptional > MAX_OPTIONAL_SKELETON_ARGS) {
+            return null;
+        }
+
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (NON_LITERAL_CHARS.indexOf(literal.charAt(i)) >= 0) {
+                    return null;
+                }
+            }
+        }
+
+        // One skeleton for each combination of the optional arguments being present or not.
+        Set<String> skels = new HashSet<>();
+        for (int present = 0; present < (1 << noOptional); present++) {
+            StringBuilder sb = new StringBuilder();
+            int optionalIndex = 0;
+            for (int i = 0; i < optional.size(); i++) {
+                sb.append(literals.get(i));
+                if (optional.get(i) == false || (present & (1 << optionalIndex++)) != 0) {
+                    sb.append('#');
+                }
+            }
+            sb.append(literals.get(literals.size() - 1));
+            skels.add(sb.toString().toLowerCase(Locale.ROOT));
+        }
+
+        return Collections.unmodifiableSet(skels);
+    }
+
+    /**
+     * Returns the skeleton of a roll string, this is the roll string in lower case with each run of digits
+     * replaced by a single '#' character. For example the skeleton of <i>3D6</i> is <i>#d#</i>. A roll
+     * string can only match a pattern if its skeleton is one of the pattern's skeletons.
+     *
+     * @param rollString The roll string to return the skeleton of.
+     *
+     * @return the skeleton of the roll string.
+     */
+    static String skeletonOf(String rollString) {
+        StringBuilder sb = new StringBuilder(rollString.length());
+        boolean inDigits = false;
+        for (int i = 0; i < rollString.length(); i++) {
+            char c = rollString.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (inDigits == false) {
+                    sb.append('#');
+                    inDigits = true;
+                }
+            } else {
+                sb.append(c);
+                inDigits = false;
+            }
+        }
+
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the skeletons of the roll strings that this pattern can match.
+     *
+     * @return the skeletons or {@code null} if the pattern can match roll strings with any skeleton.
+     *
+     * @see #skeletonOf(String)
+     */
+    Set<String> getSkeletons() {
+        return skeletons;
+    }
+
     /**
      * Returns an instance of DicePattern that will match the specified string pattern.
      *
@@ -119,9 +350,53 @@ public class DicePattern {
      * @return true if the pattern matches the dice roll string.
      */
     public boolean matches(String rollString) {
+        if (templateLiterals != null) {
+            return scan(rollString, null);
+        }
+
         return pattern.matcher(rollString).matches();
     }
 
+    /**
+     * Extracts the values of the arguments from the dice roll string matching this pattern into an array in the
+     * same order as {@link #getArgNames()}, arguments that are not specified have their default value.
+     *
+     * @param rollString The roll string to extract the arguments from.
+     *
+     * @return the values of the arguments or {@code null} if the pattern does not match the roll string.
+     */
+    public long[] extractArgValues(String rollString) {
+        if (templateLiterals != null) {
+            // Check for a match first so that arguments are only parsed from roll strings that match.
+            if (!scan(rollString, null)) {
+                return null;
+            }
+            long[] values = new long[arguments.size()];
+            scan(rollString, values);
+            return values;
+        }
+
+        Matcher matcher = pattern.matcher(rollString);
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        long[] values = new long[arguments.size()];
+
+        int i = 0;
+        for (Map.Entry<String, DataValue> entry : arguments.entrySet()) {
+            String argStr = matcher.group(entry.getKey());
+            if (argStr == null) {  // not specified so use the default.
+                values[i] = entry.getValue().asLong();
+            } else {
+                values[i] = Long.parseLong(argStr);
+            }
+            i++;
+        }
+
+        return values;
+    }
+
     /**
      * Extracts the arguments from the dice roll string matching this pattern.
      * You must call {@link #matches(String)} first to ensure that the pattern matches the roll string, otherwise
@@ -132,23 +407,15 @@ public class DicePattern {
      * @return the arguments specified in the roll string.
      */
     public Map<String, DataValue> extractArgs(String rollString) {
-        Matcher matcher = pattern.matcher(rollString);
         Map<String, DataValue> rollArgs = new HashMap<>();
-        if (matcher.matches()) {
-
-            for (Map.Entry<String, DataValue> entry : arguments.entrySet()) {
-                String argStr = matcher.group(entry.getKey());
-                DataValue argVal;
-                if (argStr == null) {  // not specified so use the default.
-                    argVal = entry.getValue();
-                } else {
-                    argVal = DataValueFactory.longValue(Long.parseLong(argStr));
-                }
-
-                rollArgs.put(entry.getKey(), argVal);
+        long[] values = extractArgValues(rollString);
+        if (values != null) {
+            int i = 0;
+            for (String name : arguments.keySet()) {
+                rollArgs.put(name, DataValueFactory.longValue(values[i++]));
             }
-
         }
+
         return rollArgs;
     }
 
@@ -15,6 +15,7 @@
 package net.rptools.parser.dice;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
@@ -23,7 +24,6 @@ import net.rptools.lib.result.RollExpression;
 import net.rptools.lib.util.RandomUtil;
 import net.rptools.parser.ExpressionEvaluatorException;
 import net.rptools.parser.ScriptContext;
-import net.rptools.parser.functions.ScriptFunctionException;
 
 /**
  * The DiceRoller class manages dice patterns and the rolling of dice matching those patterns.
@@ -33,11 +33,20 @@ public class DiceRoller {
     /** The singleton instance. */
     private final static DiceRoller INSTANCE = new DiceRoller();
 
-    /** The defined built in dice. */
-    private final Set<Dice> builtInDice = new HashSet<>();
+    /** The maximum number of roll strings that the dice that matched them are remembered for. */
+    private static final int MAX_REMEMBERED_ROLLS = 1024;
 
-    /** The user defined dice. */
-    private final Set<Dice> userDefinedDice = new HashSet<>();
+    /** The defined built in dice, in the order they were added. */
+    private final List<Dice> builtInDice = new ArrayList<>();
+
+    /** The user defined dice, in the order they were added. */
+    private final List<Dice> userDefinedDice = new ArrayList<>();
+
+    /** The index used to find the dice for a roll, replaced whenever dice are added. */
+    private volatile DiceIndex diceIndex;
+
+    /** The number of times that the dice have changed. */
+    private long generation;
 
 
     /**
@@ -55,6 +64,13 @@ public class DiceRoller {
      */
     private DiceRoller() {
         builtInDice.add(new StandardDice());
+        builtInDice.add(KeepDice.keepHighest());
+        builtInDice.add(KeepDice.keepLowest());
+        builtInDice.add(KeepDice.dropLowest());
+        builtInDice.add(KeepDice.dropHighest());
+        builtInDice.add(new ExplodingDice());
+        builtInDice.add(new RerollDice());
+        diceIndex = new DiceIndex(priorityOrder(), generation);
     }
 
     /**
@@ -69,39 +85,165 @@ public class DiceRoller {
      * function.
      */
 	public DataValue roll(ScriptContext context, RollExpression rollExpression) throws ExpressionEvaluatorException {
-        // Check user defined dice first.
-        for (Dice dice : userDefinedDice) {
-            if (dice.matches(rollExpression)) {
-                try {
-                    return dice.roll(context, rollExpression);
-                } catch (ScriptFunctionException e) {
-                    throw new ExpressionEvaluatorException(e.getMessage(), e);
-                }
-            }
-        }
+        return plan(rollExpression).roll(context);
+	}
 
-        // If not a user defined dice then check the built in dice.
-        for (Dice dice : builtInDice) {
-            if (dice.matches(rollExpression)) {
-                try {
-                    return dice.roll(context, rollExpression);
-                } catch (ScriptFunctionException e) {
-                    throw new ExpressionEvaluatorException(e.getMessage(), e);
-                }
-            }
+    /**
+     * Returns a {@link RollPlan} that binds the {@link RollExpression} to the dice matching it and the arguments
+     * extracted from its roll string. The plan can be used to perform the roll any number of times while
+     * {@link #isCurrent(RollPlan)} returns true.
+     *
+     * @param rollExpression The {@link RollExpression} to match.
+     *
+     * @return the {@link RollPlan}.
+     *
+     * @throws ExpressionEvaluatorException if the dice pattern is not matched.
+     */
+    public RollPlan plan(RollExpression rollExpression) throws ExpressionEvaluatorException {
+        RollPlan plan = diceIndex.plan(rollExpression);
+        if (plan == null) {
+            throw new ExpressionEvaluatorException("Unknown dice pattern " + rollExpression.getRollString());
         }
 
-        throw new ExpressionEvaluatorException("Unknown dice pattern " + rollExpression.getRollString());
-	}
+        return plan;
+    }
+
+    /**
+     * Checks to see if a {@link RollPlan} is still current, a plan is no longer current once dice have been added
+     * as they may match the roll with a higher priority.
+     *
+     * @param plan The {@link RollPlan} to check.
+     *
+     * @return true if the {@link RollPlan} is current.
+     */
+    public boolean isCurrent(RollPlan plan) {
+        return plan.getGeneration() == diceIndex.generation;
+    }
 
     /**
-     * Adds user defined dice.
+     * Adds user defined dice. User defined dice are checked before the built in dice, and the most recently
+     * added user defined dice are checked first. Adding dice that have already been added makes them the most
+     * recently added.
      *
      * @param dice The dice to add.
      */
-    public void addUserDefinedDice(Dice dice) {
+    public synchronized void addUserDefinedDice(Dice dice) {
+        userDefinedDice.remove(dice);
         userDefinedDice.add(dice);
+        generation++;
+        diceIndex = new DiceIndex(priorityOrder(), generation);
+    }
+
+    /**
+     * Returns all of the dice in the order that they should be checked against a roll.
+     *
+     * @return the dice in priority order.
+     */
+    private List<Dice> priorityOrder() {
+        List<Dice> ordered = new ArrayList<>(userDefinedDice.size() + builtInDice.size());
+        for (int i = userDefinedDice.size() - 1; i >= 0; i--) {
+            ordered.add(userDefinedDice.get(i));
+        }
+        ordered.addAll(builtInDice);
+
+        return ordered;
     }
-	
 
+
+    /**
+     * Index of the dice by the skeletons of the roll strings they can match, so only the dice that could match a
+     * roll string are checked. The plans for recent roll strings are also remembered. The index is never
+     * modified after it is created, a new index is created when dice are added.
+     *
+     * @see DicePattern#skeletonOf(String)
+     */
+    private static final class DiceIndex {
+
+        /** The dice that can match each skeleton, in priority order. */
+        private final Map<String, Dice[]> skeletonDice = new HashMap<>();
+
+        /** The dice that can match any skeleton, in priority order. */
+        private final Dice[] anySkeletonDice;
+
+        /** The plans for recent roll strings. */
+        private final Map<String, RollPlan> rememberedRolls = new ConcurrentHashMap<>();
+
+        /** The generation of the dice that are indexed. */
+        private final long generation;
+
+        /**
+         * Creates a new DiceIndex.
+         *
+         * @param dice The dice to index in priority order.
+         * @param gen The generation of the dice.
+         */
+        private DiceIndex(List<Dice> dice, long gen) {
+            generation = gen;
+
+            Map<String, List<Dice>> index = new HashMap<>();
+            List<Dice> anySkeleton = new ArrayList<>();
+
+            for (Dice d : dice) {
+                DicePattern pattern = d.getDicePattern();
+                Set<String> skeletons = pattern == null ? null : pattern.getSkeletons();
+                if (skeletons == null) {
+                    anySkeleton.add(d);
+                    for (List<Dice> lst : index.values()) {
+                        lst.add(d);
+                    }
+                } else {
+                    for (String skel : skeletons) {
+                        List<Dice> lst = index.get(skel);
+                        if (lst == null) {
+                            // Any dice that match every skeleton and were seen so far have a higher priority.
+                            lst = new ArrayList<>(anySkeleton);
+                            index.put(skel, lst);
+                        }
+                        lst.add(d);
+                    }
+                }
+            }
+
+            for (Map.Entry<String, List<Dice>> entry : index.entrySet()) {
+                skeletonDice.put(entry.getKey(), entry.getValue().toArray(new Dice[entry.getValue().size()]));
+            }
+            anySkeletonDice = anySkeleton.toArray(new Dice[anySkeleton.size()]);
+        }
+
+        /**
+         * Returns the plan for the highest priority dice that matches a {@link RollExpression}.
+         *
+         * @param rollExpression The {@link RollExpression} to plan the roll for.
+         *
+         * @return the plan or {@code null} if no dice match.
+         */
+        private RollPlan plan(RollExpression rollExpression) {
+            String rollString = rollExpression.getRollString();
+            RollPlan plan = rememberedRolls.get(rollString);
+            if (plan != null) {
+                return plan.withRollExpression(rollExpression);
+            }
+
+            Dice[] candidates = skeletonDice.get(DicePattern.skeletonOf(rollString));
+            if (candidates == null) {
+                candidates = anySkeletonDice;
+            }
+
+            for (Dice d : candidates) {
+                if (d.matches(rollExpression)) {
+                    DicePattern pattern = d.getDicePattern();
+                    Map<String, DataValue> args = pattern == null ? null
+                            : Collections.unmodifiableMap(pattern.extractArgs(rollString));
+                    plan = new RollPlan(rollExpression, d, args, generation);
+                    if (rememberedRolls.size() >= MAX_REMEMBERED_ROLLS) {
+                        rememberedRolls.clear();
+                    }
+                    rememberedRolls.put(rollString, plan);
+                    return plan;
+                }
+            }
+
+            return null;
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+/**
+ * Utility methods for selecting the highest or lowest rolls from an array of rolls in linear time, without
+ * sorting the rolls or creating an object for each of them.
+ */
+final class DiceSelection {
+
+    /**
+     * Creates a new DiceSelection.
+     */
+    private DiceSelection() {
+    }
+
+    /**
+     * Selects the highest rolls. If several rolls have the same value as the lowest roll that is kept then the
+     * first of them are kept.
+     *
+     * @param rolls The rolls to select from.
+     * @param keep The number of rolls to keep.
+     *
+     * @return an array with {@code true} at the index of each roll that is kept.
+     */
+    static boolean[] keepHighest(int[] rolls, int keep) {
+        return select(rolls, keep, true);
+    }
+
+    /**
+     * Selects the lowest rolls. If several rolls have the same value as the highest roll that is kept then the
+     * first of them are kept.
+     *
+     * @param rolls The rolls to select from.
+     * @param keep The number of rolls to keep.
+     *
+     * @return an array with {@code true} at the index of each roll that is kept.
+     */
+    static boolean[] keepLowest(int[] rolls, int keep) {
+        return select(rolls, keep, false);
+    }
+
+    /**
+     * Selects the highest or lowest rolls.
+     *
+     * @param rolls The rolls to select from.
+     * @param keep The number of rolls to keep.
+     * @param highest Should the highest rolls be kept.
+     *
+     * @return an array with {@code true} at the index of each roll that is kept.
+     */
+    private static boolean[] select(int[] rolls, int keep, boolean highest) {
+        boolean[] kept = new boolean[rolls.length];
+        if (keep <= 0) {
+            return kept;
+        }
+        if (keep >= rolls.length) {
+            for (int i = 0; i < kept.length; i++) {
+                kept[i] = true;
+            }
+            return kept;
+        }
+
+        // The value of the last roll to be kept, every roll beyond it is kept and just enough rolls equal to it.
+        int threshold = nthSmallest(rolls.clone(), highest ? rolls.length - keep : keep - 1);
+        int beyond = 0;
+        for (int roll : rolls) {
+            if (highest ? roll > threshold : roll < threshold) {
+                beyond++;
+            }
+        }
+
+        int equal = keep - beyond;
+        for (int i = 0; i < rolls.length; i++) {
+            if (highest ? rolls[i] > threshold : rolls[i] < threshold) {
+                kept[i] = true;
+            } else if (rolls[i] == threshold && equal > 0) {
+                kept[i] = true;
+                equal--;
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * Returns the value that would be at an index if the values were sorted into increasing order, using
+     * quickselect. The values are reordered.
+     *
+     * @param values The values.
+     * @param n The index.
+     *
+     * @return the value.
+     */
+    private static int nthSmallest(int[] values, int n) {
+        int left = 0;
+        int right = values.length - 1;
+        while (left < right) {
+            int pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = values[i];
+                    values[i] = values[j];
+                    values[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (n <= j) {
+                right = j;
+            } else if (n >= i) {
+                left = i;
+            } else {
+                return values[n];
+            }
+        }
+
+        return values[n];
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.lib.util.RandomUtil;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The ExplodingDice class implements the <i>X</i>d<i>Y</i>e dice pattern where each die that rolls its highest
+ * face is rolled again and the new roll is added, for as long as the highest face keeps being rolled up to
+ * {@link #MAX_EXPLOSIONS} times for each die. The details of the roll mark the dice that exploded with a '!'.
+ */
+public class ExplodingDice extends AbstractPatternDice {
+
+    /** The maximum number of times a single die can explode. */
+    public static final int MAX_EXPLOSIONS = 100;
+
+    /**
+     * Creates a new ExplodingDice.
+     */
+    public ExplodingDice() {
+        super("#{number:1}d#{sides}e");
+    }
+
+    @Override
+    public String getName() {
+        return "Exploding Dice";
+    }
+
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args)
+            throws ScriptFunctionException {
+        int number = intArgument(args, "number", 0);
+        int sides = intArgument(args, "sides", 2);
+
+        RandomUtil randomUtil = context.getRandomUtil();
+        int[] values = randomUtil.rollDice(number, sides);
+        int count = values.length;
+        StringBuilder details = new StringBuilder();
+
+        for (int i = 0; i < number; i++) {
+            if (i > 0) {
+                details.append(", ");
+            }
+
+            int roll = values[i];
+            int explosions = 0;
+            while (roll == sides && explosions < MAX_EXPLOSIONS) {
+                details.append(roll).append("!, ");
+                roll = randomUtil.rollDie(sides);
+                explosions++;
+
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length + Math.max(values.length / 2, 4));
+                }
+                values[count++] = roll;
+            }
+            details.append(roll);
+        }
+
+        return toResult(exp, Arrays.copyOf(values, count), details.toString());
+    }
+}
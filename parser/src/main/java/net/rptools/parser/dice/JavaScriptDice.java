@@ -72,17 +72,28 @@ public class JavaScriptDice implements Dice {
 
     @Override
     public DataValue roll(ScriptContext context, RollExpression exp) throws ScriptFunctionException {
-        Map<String,DataValue> args = new HashMap<>();
-        args.putAll(dicePattern.extractArgs(exp.getRollString()));
+        return roll(context, exp, dicePattern.extractArgs(exp.getRollString()));
+    }
+
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args)
+            throws ScriptFunctionException {
+        Map<String,DataValue> callArgs = new HashMap<>();
+        callArgs.putAll(args);
 
-        args.put("__verbose", DataValueFactory.booleanValue(exp.isVerbose()));
-        args.put("__summed", DataValueFactory.booleanValue(exp.isSum()));
+        callArgs.put("__verbose", DataValueFactory.booleanValue(exp.isVerbose()));
+        callArgs.put("__summed", DataValueFactory.booleanValue(exp.isSum()));
 
-        return jsFunction.call(context, args);
+        return jsFunction.call(context, callArgs);
     }
 
     @Override
     public boolean matches(RollExpression exp) {
         return dicePattern.matches(exp.getRollString());
     }
+
+    @Override
+    public DicePattern getDicePattern() {
+        return dicePattern;
+    }
 }
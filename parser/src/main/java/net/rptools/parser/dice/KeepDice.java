@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * The KeepDice class implements the dice that roll a number of dice and only keep the highest or lowest of
+ * them, for example <i>4d6k3</i> keeps the highest three of four six sided dice and <i>4d6d1</i> drops the
+ * lowest one. The details of the roll show all of the dice with the dropped ones in brackets.
+ */
+public class KeepDice extends AbstractPatternDice {
+
+    /** The name of the dice. */
+    private final String name;
+
+    /** The name of the argument with the number of dice to keep or drop. */
+    private final String argument;
+
+    /** Are the highest dice kept, if not the lowest are. */
+    private final boolean highest;
+
+    /** Is the argument the number of dice to drop rather than keep. */
+    private final boolean drop;
+
+    /**
+     * Creates a new KeepDice.
+     *
+     * @param nm The name of the dice.
+     * @param pattern The dice pattern used to match dice rolls.
+     * @param arg The name of the argument with the number of dice to keep or drop.
+     * @param high Are the highest dice kept.
+     * @param drp Is the argument the number of dice to drop.
+     */
+    private KeepDice(String nm, String pattern, String arg, boolean high, boolean drp) {
+        super(pattern);
+        name = nm;
+        argument = arg;
+        highest = high;
+        drop = drp;
+    }
+
+    /**
+     * Returns dice that keep the highest rolls, <i>X</i>d<i>Y</i>k<i>Z</i>.
+     *
+     * @return the dice.
+     */
+    public static KeepDice keepHighest() {
+        return new KeepDice("Keep Highest Dice", "#{number:1}d#{sides}k#{keep}", "keep", true, false);
+    }
+
+    /**
+     * Returns dice that keep the lowest rolls, <i>X</i>d<i>Y</i>kl<i>Z</i>.
+     *
+     * @return the dice.
+     */
+    public static KeepDice keepLowest() {
+        return new KeepDice("Keep Lowest Dice", "#{number:1}d#{sides}kl#{keep}", "keep", false, false);
+    }
+
+    /**
+     * Returns dice that drop the lowest rolls, <i>X</i>d<i>Y</i>d<i>Z</i>.
+     *
+     * @return the dice.
+     */
+    public static KeepDice dropLowest() {
+        return new KeepDice("Drop Lowest Dice", "#{number:1}d#{sides}d#{drop}", "drop", true, true);
+    }
+
+    /**
+     * Returns dice that drop the highest rolls, <i>X</i>d<i>Y</i>dh<i>Z</i>.
+     *
+     * @return the dice.
+     */
+    public static KeepDice dropHighest() {
+        return new KeepDice("Drop Highest Dice", "#{number:1}d#{sides}dh#{drop}", "drop", false, true);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args)
+            throws ScriptFunctionException {
+        int number = intArgument(args, "number", 0);
+        int sides = intArgument(args, "sides", 1);
+        int count = intArgument(args, argument, 0);
+        int keep = drop ? Math.max(0, number - count) : count;
+
+        int[] rolls = context.getRandomUtil().rollDice(number, sides);
+        boolean[] kept = highest ? DiceSelection.keepHighest(rolls, keep) : DiceSelection.keepLowest(rolls, keep);
+
+        int[] values = new int[Math.min(keep, number)];
+        StringBuilder details = new StringBuilder();
+        for (int i = 0, v = 0; i < rolls.length; i++) {
+            if (i > 0) {
+                details.append(", ");
+            }
+            if (kept[i]) {
+                values[v++] = rolls[i];
+                details.append(rolls[i]);
+            } else {
+                details.append('(').append(rolls[i]).append(')');
+            }
+        }
+
+        return toResult(exp, values, details.toString());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.lib.util.RandomUtil;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * The RerollDice class implements the <i>X</i>d<i>Y</i>r<i>Z</i> dice pattern where each die that rolls less
+ * than <i>Z</i> is rolled again until it rolls at least <i>Z</i>, up to {@link #MAX_REROLLS} times for each die.
+ * The details of the roll show the rolls that were rerolled in brackets.
+ */
+public class RerollDice extends AbstractPatternDice {
+
+    /** The maximum number of times a single die can be rerolled. */
+    public static final int MAX_REROLLS = 100;
+
+    /**
+     * Creates a new RerollDice.
+     */
+    public RerollDice() {
+        super("#{number:1}d#{sides}r#{below}");
+    }
+
+    @Override
+    public String getName() {
+        return "Reroll Dice";
+    }
+
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args)
+            throws ScriptFunctionException {
+        int number = intArgument(args, "number", 0);
+        int sides = intArgument(args, "sides", 1);
+        int below = intArgument(args, "below", 0);
+        if (below > sides) {
+            throw new ScriptFunctionException("Can not reroll dice below " + below + " for " + sides + " sided dice.");
+        }
+
+        RandomUtil randomUtil = context.getRandomUtil();
+        int[] values = randomUtil.rollDice(number, sides);
+        StringBuilder details = new StringBuilder();
+
+        for (int i = 0; i < number; i++) {
+            if (i > 0) {
+                details.append(", ");
+            }
+
+            int rerolls = 0;
+            while (values[i] < below && rerolls < MAX_REROLLS) {
+                details.append('(').append(values[i]).append("), ");
+                values[i] = randomUtil.rollDie(sides);
+                rerolls++;
+            }
+            details.append(values[i]);
+        }
+
+        return toResult(exp, values, details.toString());
+    }
+}
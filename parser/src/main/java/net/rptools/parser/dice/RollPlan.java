@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.dice;
+
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ExpressionEvaluatorException;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+/**
+ * The RollPlan class binds a {@link RollExpression} to the {@link Dice} that matches it and the arguments
+ * extracted from its roll string, so that the same roll can be performed many times without matching and
+ * parsing the roll string each time. RollPlans are created with {@link DiceRoller#plan(RollExpression)} and 
+ * are no longer current once dice are added to the {@link DiceRoller}, see {@link DiceRoller#isCurrent(RollPlan)}.
+ */
+public final class RollPlan {
+
+    /** The roll expression to roll. */
+    private final RollExpression rollExpression;
+
+    /** The dice that matched the roll expression. */
+    private final Dice dice;
+
+    /** The arguments extracted from the roll string, or {@code null} if the dice has no pattern. */
+    private final Map<String, DataValue> arguments;
+
+    /** The generation of the dice in the {@link DiceRoller} when this plan was created. */
+    private final long generation;
+
+    /**
+     * Creates a new RollPlan.
+     *
+     * @param rollExpr The roll expression to roll.
+     * @param d The dice that matched the roll expression.
+     * @param args The unmodifiable arguments extracted from the roll string, or {@code null} if the dice has no
+     *             pattern.
+     * @param gen The generation of the dice in the {@link DiceRoller}.
+     */
+    RollPlan(RollExpression rollExpr, Dice d, Map<String, DataValue> args, long gen) {
+        assert rollExpr != null : "Roll expression can not be null.";
+        assert d != null : "Dice can not be null.";
+
+        rollExpression = rollExpr;
+        dice = d;
+        arguments = args;
+        generation = gen;
+    }
+
+    /**
+     * Returns the result of performing the roll.
+     *
+     * @param context {@link ScriptContext} the script context to perform the roll with.
+     *
+     * @return the result of performing the roll.
+     *
+     * @throws ExpressionEvaluatorException if an error occurs in the dice roll function.
+     */
+    public DataValue roll(ScriptContext context) throws ExpressionEvaluatorException {
+        try {
+            if (arguments == null) {
+                return dice.roll(context, rollExpression);
+            } else {
+                return dice.roll(context, rollExpression, arguments);
+            }
+        } catch (ScriptFunctionException e) {
+            throw new ExpressionEvaluatorException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a RollPlan that performs a different {@link RollExpression} with the same roll string.
+     *
+     * @param rollExpr The roll expression, which must have the same roll string as this plan's.
+     *
+     * @return the RollPlan.
+     */
+    RollPlan withRollExpression(RollExpression rollExpr) {
+        assert rollExpr.getRollString().equals(rollExpression.getRollString()) : "Roll strings do not match.";
+
+        if (rollExpr == rollExpression) {
+            return this;
+        }
+        return new RollPlan(rollExpr, dice, arguments, generation);
+    }
+
+    /**
+     * Returns the roll expression that is rolled.
+     *
+     * @return the roll expression.
+     */
+    public RollExpression getRollExpression() {
+        return rollExpression;
+    }
+
+    /**
+     * Returns the dice that matched the roll expression.
+     *
+     * @return the dice.
+     */
+    public Dice getDice() {
+        return dice;
+    }
+
+    /**
+     * Returns the generation of the dice in the {@link DiceRoller} when this plan was created.
+     *
+     * @return the generation.
+     */
+    long getGeneration() {
+        return generation;
+    }
+}
@@ -18,7 +18,7 @@ import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
 import net.rptools.lib.result.ResultBuilder;
 import net.rptools.lib.result.RollExpression;
-import net.rptools.lib.util.RandomUtil;
+import net.rptools.lib.util.DiceRollSummary;
 import net.rptools.parser.ScriptContext;
 
 import java.util.Map;
@@ -67,7 +67,12 @@ public class StandardDice implements Dice {
      * @param rolls The rolls to total.
      *
      * @return the total of the rolls.
+     *
+     * @deprecated Use {@link DiceRollSummary#getSum()} of the summary returned by
+     *             {@link net.rptools.lib.util.RandomUtil#rollDiceSummary(int, int, boolean)}, which is totalled
+     *             while the dice are rolled.
      */
+    @Deprecated
     public long totalRolls(int[] rolls) {
         long sum = 0;
         for (int i = 0; i < rolls.length; i++) {
@@ -85,28 +90,29 @@ public class StandardDice implements Dice {
 
     @Override
     public DataValue roll(ScriptContext context, RollExpression exp) {
+        return roll(context, exp, dicePattern.extractArgs(exp.getRollString()));
+    }
 
-        Map<String,DataValue> args = dicePattern.extractArgs(exp.getRollString());
+    @Override
+    public DataValue roll(ScriptContext context, RollExpression exp, Map<String, DataValue> args) {
 
         int numberRolls = (int) args.get("number").asLong();
 
         int sides = (int) args.get("sides").asLong();
 
-        int[] rolls = RandomUtil.getInstance().rollDice(numberRolls, sides);
-        long total = totalRolls(rolls);
+        DiceRollSummary summary = context.getRandomUtil().rollDiceSummary(numberRolls, sides, true);
+        int[] rolls = summary.getRolls();
         String details = rollsToString(rolls, ", ");
         DataValue rollList = DataValueFactory.listValueFromArray(rolls);
 
-
-
         ResultBuilder res = new ResultBuilder();
-        if (exp.isVerbose() && exp.isSum() == false)  {
+        if (exp.isVerbose() && exp.isSum() == false) {
             res.setValue(rollList);
         } else {
-            res.setLongValue(total);
+            res.setLongValue(summary.getSum());
         }
         res = res.setDetailedResult(DataValueFactory.stringValue(details));
-        res = res.setIndividualValues(rollList.asList());
+        res = res.setIndividualValues(rollList);
         return DataValueFactory.resultValue(res.toResult());
 
     }
@@ -115,4 +121,9 @@ public class StandardDice implements Dice {
     public boolean matches(RollExpression exp) {
         return dicePattern.matches(exp.getRollString());
     }
+
+    @Override
+    public DicePattern getDicePattern() {
+        return dicePattern;
+    }
 }
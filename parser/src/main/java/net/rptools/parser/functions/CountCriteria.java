@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions;
+
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+
+/**
+ * The criteria used to select numeric values by the count function and the functions that
+ * work out the odds of a count. Each criterion is an optional argument to the function and
+ * a value matches if it meets all of the criteria that were specified.
+ */
+public final class CountCriteria {
+
+	/** The name of the argument that values must be greater than. */
+	public static final String GREATER_THAN = "greaterThan";
+
+	/** The name of the argument that values must be less than. */
+	public static final String LESS_THAN = "lessThan";
+
+	/** The name of the argument that values must be equal to. */
+	public static final String EQUAL_TO = "equals";
+
+	/** The name of the argument that values must be greater than or equal to. */
+	public static final String AT_LEAST = "atLeast";
+
+	/** The name of the argument that values must be less than or equal to. */
+	public static final String AT_MOST = "atMost";
+
+	/** The name of the argument that values must not be equal to. */
+	public static final String NOT = "not";
+
+	/** The names of all of the criteria arguments. */
+	private static final String[] NAMES = { EQUAL_TO, NOT, GREATER_THAN, LESS_THAN, AT_LEAST, AT_MOST };
+
+	/** The argument for each criterion, in the same order as {@link #NAMES}. */
+	private final DataValue[] criteria = new DataValue[NAMES.length];
+
+	/**
+	 * Creates a new CountCriteria.
+	 *
+	 * @param args The arguments passed to the function.
+	 */
+	private CountCriteria(Map<String, DataValue> args) {
+		for (int i = 0; i < NAMES.length; i++) {
+			criteria[i] = args.get(NAMES[i]);
+		}
+	}
+
+	/**
+	 * Returns the criteria that were passed to a function.
+	 *
+	 * @param args The arguments passed to the function.
+	 *
+	 * @return the criteria.
+	 *
+	 * @throws NullPointerException if args is null.
+	 */
+	public static CountCriteria fromArguments(Map<String, DataValue> args) {
+		if (args == null) {
+			throw new NullPointerException("Function arguments can not be null.");
+		}
+
+		return new CountCriteria(args);
+	}
+
+	/**
+	 * Adds the optional parameters for the criteria to a function definition.
+	 *
+	 * @param builder The builder for the function definition.
+	 *
+	 * @return the builder.
+	 */
+	public static FunctionDefinitionBuilder addParameters(FunctionDefinitionBuilder builder) {
+		for (String name : NAMES) {
+			builder.addParameter(name, DataType.DOUBLE, DataValueFactory.nullDataValue());
+		}
+
+		return builder;
+	}
+
+	/**
+	 * Checks to see if all of the criteria that have been specified are {@link DataType#DOUBLE}
+	 * values, which they will be unless the function is called directly rather than from a script.
+	 *
+	 * @return true if all of the specified criteria are {@link DataType#DOUBLE} values.
+	 */
+	public boolean isNumeric() {
+		for (DataValue dv : criteria) {
+			if (isSpecified(dv) && dv.dataType() != DataType.DOUBLE) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks to see if any of the criteria have been specified.
+	 *
+	 * @return true if at least one of the criteria has been specified.
+	 */
+	public boolean isEmpty() {
+		for (DataValue dv : criteria) {
+			if (isSpecified(dv)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks to see if a value matches all of the criteria that have been specified.
+	 *
+	 * @param val The value to check.
+	 *
+	 * @return true if the value matches.
+	 */
+	public boolean matches(double val) {
+		DataValue equal = criteria[0];
+		DataValue not = criteria[1];
+		DataValue greater = criteria[2];
+		DataValue less = criteria[3];
+		DataValue atLeast = criteria[4];
+		DataValue atMost = criteria[5];
+
+		if (isSpecified(equal) && val != equal.asDouble()) {
+			return false;
+		}
+		if (isSpecified(not) && val == not.asDouble()) {
+			return false;
+		}
+		if (isSpecified(greater) && !(val > greater.asDouble())) {
+			return false;
+		}
+		if (isSpecified(less) && !(val < less.asDouble())) {
+			return false;
+		}
+		if (isSpecified(atLeast) && !(val >= atLeast.asDouble())) {
+			return false;
+		}
+		if (isSpecified(atMost) && !(val <= atMost.asDouble())) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of whole numbers in a range that match all of the criteria that have
+	 * been specified, without checking each of them in turn.
+	 *
+	 * @param low The lowest number in the range.
+	 * @param high The highest number in the range.
+	 *
+	 * @return the number of whole numbers between low and high inclusive that match.
+	 */
+	public long countMatches(long low, long high) {
+		double from = low;
+		double to = high;
+
+		// Nothing is equal to, greater than or less than NaN.
+		if (isNaN(criteria[0]) || isNaN(criteria[2]) || isNaN(criteria[3]) || isNaN(criteria[4])
+				|| isNaN(criteria[5])) {
+			return 0;
+		}
+
+		if (isSpecified(criteria[0])) {
+			double equal = criteria[0].asDouble();
+			if (equal != Math.rint(equal)) {
+				return 0;
+			}
+			from = Math.max(from, equal);
+			to = Math.min(to, equal);
+		}
+		if (isSpecified(criteria[2])) {
+			from = Math.max(from, Math.floor(criteria[2].asDouble()) + 1);
+		}
+		if (isSpecified(criteria[3])) {
+			to = Math.min(to, Math.ceil(criteria[3].asDouble()) - 1);
+		}
+		if (isSpecified(criteria[4])) {
+			from = Math.max(from, Math.ceil(criteria[4].asDouble()));
+		}
+		if (isSpecified(criteria[5])) {
+			to = Math.min(to, Math.floor(criteria[5].asDouble()));
+		}
+
+		if (from > to) {
+			return 0;
+		}
+
+		long count = (long) (to - from) + 1;
+		if (isSpecified(criteria[1])) {
+			double not = criteria[1].asDouble();
+			if (not == Math.rint(not) && not >= from && not <= to) {
+				count--;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Checks to see if a criterion has been specified.
+	 *
+	 * @param dv The argument for the criterion.
+	 *
+	 * @return true if the criterion has been specified.
+	 */
+	private static boolean isSpecified(DataValue dv) {
+		return dv != null && dv.dataType() != DataType.NULL;
+	}
+
+	/**
+	 * Checks to see if a criterion has been specified as NaN.
+	 *
+	 * @param dv The argument for the criterion.
+	 *
+	 * @return true if the criterion is NaN.
+	 */
+	private static boolean isNaN(DataValue dv) {
+		return isSpecified(dv) && Double.isNaN(dv.asDouble());
+	}
+}
@@ -103,6 +103,15 @@ public class FunctionAlias implements ScriptFunction {
 		return definition;
 	}
 
+	/**
+	 * Returns the function that is aliased.
+	 * 
+	 * @return the aliased function.
+	 */
+	public ScriptFunction getAliasedFunction() {
+		return aliasedFunction;
+	}
+
 	@Override
 	public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
 		return aliasedFunction.call(context, args);
@@ -18,7 +18,8 @@ import java.util.*;
 
 
 import net.rptools.lib.datavalue.DataValue;
-import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.datavalue.DictionaryDataValueBuilder;
+import net.rptools.lib.datavalue.ListDataValueBuilder;
 import net.rptools.lib.permissions.PermissionLevel;
 import net.rptools.parser.EvaluationPermissionException;
 import net.rptools.parser.ExpressionEvaluatorException;
@@ -137,6 +138,73 @@ public final class FunctionDispatcher {
 			throw new ExpressionEvaluatorException("Unknown function " + functionName);
 		}
 		
+		return invoke(functionName, function, args, context);
+	}
+	
+	/**
+	 * Calls a built in function that has already been looked up with the specified arguments.
+	 * Unless the name of the function begins with {@link #BUILT_IN_PREFIX} a user defined 
+	 * function with the same name will be called instead if one has been defined, in the 
+	 * same way as {@link #call(String, ArgumentList, ScriptContext)}.
+	 * 
+	 * @param functionName The name of the function to call.
+	 * @param builtinFunction The built in function that the name resolves to. 
+	 * @param args The arguments to call the function with.
+	 * @param context The script context to evaluate with.
+	 * 
+	 * @return The result of calling the function.
+	 * 
+	 * @throws ExpressionEvaluatorException if an error occurs during the function call or the 
+	 * 		   arguments don't match the function parameters.
+	 * 
+	 * @throws EvaluationPermissionException if the context does not contain the required
+	 * 		   permission to call the function.
+	 * 
+	 * @throws NullPointerException if any of the arguments are null.
+	 */
+	public DataValue call(String functionName, ScriptFunction builtinFunction, ArgumentList args, ScriptContext context)
+                throws ExpressionEvaluatorException {
+		if (functionName == null) {
+			throw new NullPointerException("Function name can not be null in function call.");
+		}
+		
+		if (builtinFunction == null) {
+			throw new NullPointerException("Function can not be null in function call.");
+		}
+		
+		if (args == null) {
+			throw new NullPointerException("Argument list can not be null in function call.");
+		}
+		
+		if (context == null) {
+			throw new NullPointerException("Context can not be null in function call.");
+		}
+		
+		ScriptFunction function = builtinFunction;
+		if (functionName.startsWith(BUILT_IN_PREFIX) == false 
+				&& FunctionManager.getInstance().containsUserFunction(functionName)) {
+			function = FunctionManager.getInstance().getUserFunction(functionName);
+		}
+		
+		return invoke(functionName, function, args, context);
+	}
+	
+	/**
+	 * Checks the permissions for, resolves the arguments for and then calls the function. 
+	 * Aliased functions are called directly rather than through their alias.
+	 * 
+	 * @param functionName The name the function was called with.
+	 * @param function The function to call.
+	 * @param args The arguments to call the function with.
+	 * @param context The script context to evaluate with.
+	 * 
+	 * @return The result of calling the function.
+	 * 
+	 * @throws ExpressionEvaluatorException if an error occurs during the function call or the 
+	 * 		   arguments don't match the function parameters.
+	 */
+	private DataValue invoke(String functionName, ScriptFunction function, ArgumentList args, ScriptContext context)
+				throws ExpressionEvaluatorException {
 		PermissionLevel plevel = context.getPlayerPermissions().getPermissionLevel();
 		PermissionLevel requiredLevel = FunctionManager.getInstance().getFunctionPermission(function);
 		
@@ -147,9 +215,14 @@ public final class FunctionDispatcher {
 		
 		Map<String, DataValue> argMap = resolveArguments(function.getDefinition(), args);
 		
+		ScriptFunction target = function;
+		while (target instanceof FunctionAlias) {
+			target = ((FunctionAlias) target).getAliasedFunction();
+		}
+		
 		DataValue res;
 		try {
-			res = function.call(context, argMap);
+			res = target.call(context, argMap);
             res = function.getDefinition().getReturnType().coerce(res);
         } catch (ScriptFunctionException es) {
 			throw new ExpressionEvaluatorException(es.getMessage(), es);
@@ -180,7 +253,7 @@ public final class FunctionDispatcher {
 		final Map<String, DataValue> argMap = new HashMap<>();
 		final Iterator<FunctionParameter> iter = def.parameters().iterator();	
 		
-		List<DataValue> consumerList = new ArrayList<>();
+		ListDataValueBuilder consumerList = new ListDataValueBuilder();
 		for (DataValue dv : args.getPositionalArguments()) {
 			if (iter.hasNext() == false) {
 				if (def.hasPositionalArgumentConsumer()) {
@@ -199,7 +272,7 @@ public final class FunctionDispatcher {
 		}
 
         if (def.hasPositionalArgumentConsumer()) {
-		    argMap.put(def.getPositionalArgumentConsumer().name(), DataValueFactory.listValue(consumerList));
+		    argMap.put(def.getPositionalArgumentConsumer().name(), consumerList.toDataValue());
         }
 
 		return argMap;
@@ -227,7 +300,7 @@ public final class FunctionDispatcher {
 		Map<String, DataValue> argMap = resolvePositionalArguments(def, args);
 
         // Unknown parementers that will be assigned to a named consumer if one exists.
-        Map<String, DataValue> unknownArgs = new LinkedHashMap<>();
+        DictionaryDataValueBuilder unknownArgs = new DictionaryDataValueBuilder();
 
         // Next step is to add any named parameters.
 		for (String namep : args.getNamedArguments().keySet()) {
@@ -255,7 +328,7 @@ public final class FunctionDispatcher {
 
         // If there is a named parameter consumer then consume any unknown arguments.
         if (def.hasNamedArgumentConsumer()) {
-            argMap.put(def.getNamedArgumentConsumer().name(), DataValueFactory.dictionaryValue(unknownArgs));
+            argMap.put(def.getNamedArgumentConsumer().name(), unknownArgs.toDataValue());
         }
 		
 		// Finally add any parameters with default arguments.
@@ -32,6 +32,9 @@ import net.rptools.parser.functions.javascript.JavaScripEvaluator;
  * Manages the list of function and the permissions required to call the
  * functions defined for the scripting engine.
  *
+ * Functions can be looked up from multiple threads while user defined functions
+ * are being defined or removed.
+ *
  */
 public class FunctionManager {
 
@@ -44,11 +47,17 @@ public class FunctionManager {
 	/** The list of permissions required to run the function. */
 	private final Map<ScriptFunction, PermissionLevel> builtinFunctionPermissions = new HashMap<>();
 	
-	/** The list of built in functions. */
-	private final Map<String, ScriptFunction> userFunctions = new TreeMap<>();
+	/**
+	 * The list of user defined functions. This is never modified, a new copy is made each time a function is
+	 * defined or removed so that it can be read without locking.
+	 */
+	private volatile Map<String, ScriptFunction> userFunctions = Collections.emptyMap();
 	
-	/** The list of permissions required to run the function. */
-	private final Map<ScriptFunction, PermissionLevel> userFunctionPermissions = new HashMap<>();
+	/**
+	 * The list of permissions required to run the user defined functions. This is never modified, a new copy
+	 * is made each time a function is defined or removed so that it can be read without locking.
+	 */
+	private volatile Map<ScriptFunction, PermissionLevel> userFunctionPermissions = Collections.emptyMap();
 
 
     /**
@@ -156,8 +165,9 @@ public class FunctionManager {
 			throw new NullPointerException("Function is null.");
 		}
 	
-		if (userFunctionPermissions.containsKey(function)) {
-			return userFunctionPermissions.get(function);
+		PermissionLevel permission = userFunctionPermissions.get(function);
+		if (permission != null) {
+			return permission;
 		} else {
 			return builtinFunctionPermissions.get(function);
 		}
@@ -173,7 +183,7 @@ public class FunctionManager {
 	 * @throws IllegalArgumentException if the function exists as built in function
 	 *         or a function with the same name exists as a user defined function.
 	 */
-	public void definFunction(ScriptFunction function) {
+	public synchronized void definFunction(ScriptFunction function) {
 		if (function == null) {
 			throw new NullPointerException("Function is null.");
 		}
@@ -183,8 +193,14 @@ public class FunctionManager {
 			throw new IllegalArgumentException("Function has already been defined.");
 		}
 		
-		userFunctions.put(function.getDefinition().name(), function);
-		userFunctionPermissions.put(function, function.getDefinition().defaultRequiredPermissionLevel());
+		Map<String, ScriptFunction> functions = new TreeMap<>(userFunctions);
+		functions.put(function.getDefinition().name(), function);
+		Map<ScriptFunction, PermissionLevel> permissions = new HashMap<>(userFunctionPermissions);
+		permissions.put(function, function.getDefinition().defaultRequiredPermissionLevel());
+
+		// The permission is published first so that it is there as soon as the function can be found.
+		userFunctionPermissions = Collections.unmodifiableMap(permissions);
+		userFunctions = Collections.unmodifiableMap(functions);
 	}
 	
 	/**
@@ -194,23 +210,29 @@ public class FunctionManager {
 	 * 
 	 * @throws NullPointerException if the function is null.
 	 */
-	public void undefineFunction(ScriptFunction function) {
+	public synchronized void undefineFunction(ScriptFunction function) {
 		if (function == null) {
 			throw new NullPointerException("Function is null.");
 		}
 	
 		if (userFunctionPermissions.containsKey(function)) {
-			userFunctionPermissions.remove(function);
-			userFunctions.remove(function.getDefinition().name());
+			Map<String, ScriptFunction> functions = new TreeMap<>(userFunctions);
+			functions.remove(function.getDefinition().name());
+			Map<ScriptFunction, PermissionLevel> permissions = new HashMap<>(userFunctionPermissions);
+			permissions.remove(function);
+
+			// The function is removed first so that it can not be found without its permission.
+			userFunctions = Collections.unmodifiableMap(functions);
+			userFunctionPermissions = Collections.unmodifiableMap(permissions);
 		}
 	}
 	
 	/**
 	 * Removes all the user defined functions.
 	 */
-	public void undefineAll() {
-		userFunctionPermissions.clear();
-		userFunctions.clear();
+	public synchronized void undefineAll() {
+		userFunctions = Collections.emptyMap();
+		userFunctionPermissions = Collections.emptyMap();
 	}
 	
 	/**
@@ -223,12 +245,13 @@ public class FunctionManager {
 	}
 	
 	/**
-	 * Returns the user defined functions.
+	 * Returns the user defined functions. Functions defined or removed after this call are
+	 * not reflected in the returned collection.
 	 * 
 	 * @return the user defined functions.
 	 */
 	public Collection<ScriptFunction> getUserDefinedFunctions() {
-		return Collections.unmodifiableCollection(userFunctions.values());
+		return userFunctions.values();
 	}
 
 
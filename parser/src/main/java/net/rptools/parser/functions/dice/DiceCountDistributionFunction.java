@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.dice;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.util.DiceDistribution;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.CountCriteria;
+import net.rptools.parser.functions.FunctionDefinition;
+import net.rptools.parser.functions.FunctionDefinitionBuilder;
+import net.rptools.parser.functions.ScriptFunction;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * Implements the dice.countDistribution script function which returns a dictionary of the exact probability
+ * of each possible result of the count function for the individual rolls of a standard dice roll. For example
+ * {@code dice.countDistribution("3d20", atLeast: 15)} gives the odds for {@code count(rolls, atLeast: 15)}.
+ */
+public class DiceCountDistributionFunction implements ScriptFunction {
+
+    /** The singleton instance. */
+    private static final DiceCountDistributionFunction INSTANCE = new DiceCountDistributionFunction();
+
+    /** The function definition for the script function. */
+    private final FunctionDefinition functionDefinition;
+
+    /**
+     * Creates a new DiceCountDistributionFunction.
+     */
+    private DiceCountDistributionFunction() {
+        FunctionDefinitionBuilder builder = new FunctionDefinitionBuilder().setName("dice.countDistribution")
+                .setReturnType(DataType.DICTIONARY)
+                .addParameter(DiceFunctionUtil.ROLL, DataType.STRING);
+        functionDefinition = CountCriteria.addParameters(builder).toFunctionDefinition();
+    }
+
+    /**
+     * Gets the singleton instance for the DiceCountDistributionFunction.
+     *
+     * @return the instance of DiceCountDistributionFunction.
+     */
+    public static DiceCountDistributionFunction getDiceCountDistributionFunction() {
+        return INSTANCE;
+    }
+
+    @Override
+    public FunctionDefinition getDefinition() {
+        return functionDefinition;
+    }
+
+    @Override
+    public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
+        int[] dice = DiceFunctionUtil.numberAndSides(args.get(DiceFunctionUtil.ROLL).asString());
+        int number = dice[0];
+        int sides = dice[1];
+
+        int matching = (int) CountCriteria.fromArguments(args).countMatches(1, sides);
+
+        try {
+            return DiceFunctionUtil.toDictionary(DiceDistribution.ofMatches(number, sides, matching));
+        } catch (IllegalArgumentException e) {
+            throw new ScriptFunctionException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.dice;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.FunctionDefinition;
+import net.rptools.parser.functions.FunctionDefinitionBuilder;
+import net.rptools.parser.functions.ScriptFunction;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * Implements the dice.distribution script function which returns a dictionary of the exact probability of each
+ * total for a standard dice roll such as 4d6.
+ */
+public class DiceDistributionFunction implements ScriptFunction {
+
+    /** The singleton instance. */
+    private static final DiceDistributionFunction INSTANCE = new DiceDistributionFunction();
+
+    /** The function definition for the script function. */
+    private final FunctionDefinition functionDefinition;
+
+    /**
+     * Creates a new DiceDistributionFunction.
+     */
+    private DiceDistributionFunction() {
+        functionDefinition = new FunctionDefinitionBuilder().setName("dice.distribution")
+                .setReturnType(DataType.DICTIONARY)
+                .addParameter(DiceFunctionUtil.ROLL, DataType.STRING)
+                .toFunctionDefinition();
+    }
+
+    /**
+     * Gets the singleton instance for the DiceDistributionFunction.
+     *
+     * @return the instance of DiceDistributionFunction.
+     */
+    public static DiceDistributionFunction getDiceDistributionFunction() {
+        return INSTANCE;
+    }
+
+    @Override
+    public FunctionDefinition getDefinition() {
+        return functionDefinition;
+    }
+
+    @Override
+    public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
+        return DiceFunctionUtil.toDictionary(DiceFunctionUtil.distribution(args.get(DiceFunctionUtil.ROLL).asString()));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.dice;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.datavalue.DictionaryDataValueBuilder;
+import net.rptools.lib.util.DiceDistribution;
+import net.rptools.parser.dice.DicePattern;
+import net.rptools.parser.dice.StandardDice;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * Utility methods shared by the dice.* script functions which work out the odds of {@link StandardDice} rolls
+ * without rolling them.
+ */
+final class DiceFunctionUtil {
+
+    /** The name of the parameter holding the roll string. */
+    static final String ROLL = "roll";
+
+    /** The pattern used by the standard dice, which the roll strings are matched against. */
+    private static final DicePattern DICE_PATTERN = new StandardDice().getDicePattern();
+
+    /**
+     * Creates a new DiceFunctionUtil.
+     */
+    private DiceFunctionUtil() {
+    }
+
+    /**
+     * Returns the number of dice and number of sides for a standard dice roll string.
+     *
+     * @param roll The roll string, for example 4d6.
+     *
+     * @return an array holding the number of dice followed by the number of sides.
+     *
+     * @throws ScriptFunctionException if the roll string is not a standard dice roll.
+     */
+    static int[] numberAndSides(String roll) throws ScriptFunctionException {
+        if (!DICE_PATTERN.matches(roll)) {
+            throw new ScriptFunctionException(roll + " is not a standard dice roll.");
+        }
+
+        Map<String, DataValue> args = DICE_PATTERN.extractArgs(roll);
+        return new int[] { intArgument(args, "number"), intArgument(args, "sides") };
+    }
+
+    /**
+     * Returns the value of an argument extracted from a roll string.
+     *
+     * @param args The arguments extracted from the roll string.
+     * @param name The name of the argument.
+     *
+     * @return the value of the argument.
+     *
+     * @throws ScriptFunctionException if the value is negative or too large for an int.
+     */
+    private static int intArgument(Map<String, DataValue> args, String name) throws ScriptFunctionException {
+        long val = args.get(name).asLong();
+        if (val < 0 || val > Integer.MAX_VALUE) {
+            throw new ScriptFunctionException("Invalid value " + val + " for " + name + " in dice roll.");
+        }
+
+        return (int) val;
+    }
+
+    /**
+     * Returns the distribution of the total for a standard dice roll string.
+     *
+     * @param roll The roll string, for example 4d6.
+     *
+     * @return the distribution of the total.
+     *
+     * @throws ScriptFunctionException if the roll string is not a standard dice roll or the distribution can not
+     *                                 be calculated.
+     */
+    static DiceDistribution distribution(String roll) throws ScriptFunctionException {
+        int[] dice = numberAndSides(roll);
+        try {
+            return DiceDistribution.of(dice[0], dice[1]);
+        } catch (IllegalArgumentException e) {
+            throw new ScriptFunctionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a dictionary of the probability of each total in a distribution, keyed by total in increasing order.
+     *
+     * @param dist The distribution.
+     *
+     * @return the dictionary.
+     */
+    static DataValue toDictionary(DiceDistribution dist) {
+        DictionaryDataValueBuilder builder = new DictionaryDataValueBuilder();
+        for (long total = dist.getMin(); total <= dist.getMax(); total++) {
+            builder.put(Long.toString(total), DataValueFactory.doubleValue(dist.getProbability(total)));
+        }
+
+        return builder.toDataValue();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.dice;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.util.DiceDistribution;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.CountCriteria;
+import net.rptools.parser.functions.FunctionDefinition;
+import net.rptools.parser.functions.FunctionDefinitionBuilder;
+import net.rptools.parser.functions.ScriptFunction;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import java.util.Map;
+
+/**
+ * Implements the dice.probability script function which returns the exact probability that the total of a
+ * standard dice roll matches all of the criteria, which are the same as for the count function. For example
+ * {@code dice.probability("3d6", atLeast: 15)}.
+ */
+public class DiceProbabilityFunction implements ScriptFunction {
+
+    /** The singleton instance. */
+    private static final DiceProbabilityFunction INSTANCE = new DiceProbabilityFunction();
+
+    /** The function definition for the script function. */
+    private final FunctionDefinition functionDefinition;
+
+    /**
+     * Creates a new DiceProbabilityFunction.
+     */
+    private DiceProbabilityFunction() {
+        FunctionDefinitionBuilder builder = new FunctionDefinitionBuilder().setName("dice.probability")
+                .setReturnType(DataType.DOUBLE)
+                .addParameter(DiceFunctionUtil.ROLL, DataType.STRING);
+        functionDefinition = CountCriteria.addParameters(builder).toFunctionDefinition();
+    }
+
+    /**
+     * Gets the singleton instance for the DiceProbabilityFunction.
+     *
+     * @return the instance of DiceProbabilityFunction.
+     */
+    public static DiceProbabilityFunction getDiceProbabilityFunction() {
+        return INSTANCE;
+    }
+
+    @Override
+    public FunctionDefinition getDefinition() {
+        return functionDefinition;
+    }
+
+    @Override
+    public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
+        DiceDistribution dist = DiceFunctionUtil.distribution(args.get(DiceFunctionUtil.ROLL).asString());
+
+        CountCriteria criteria = CountCriteria.fromArguments(args);
+        double prob = 0;
+        for (long total = dist.getMin(); total <= dist.getMax(); total++) {
+            if (criteria.matches(total)) {
+                prob += dist.getProbability(total);
+            }
+        }
+
+        return DataValueFactory.doubleValue(Math.min(prob, 1.0));
+    }
+}
@@ -24,7 +24,8 @@ import net.rptools.parser.functions.FunctionDefinitionBuilder;
 import net.rptools.parser.functions.ScriptFunction;
 import net.rptools.parser.functions.ScriptFunctionException;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -62,10 +63,6 @@ public class DictRemoveFunction implements ScriptFunction {
 
     @Override
     public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
-        Map<String, DataValue> dict = new HashMap<>();
-
-        dict.putAll(args.get("__dict").asDictionary());
-
         DataValue keys = args.get("__keys");
 
 
@@ -74,10 +71,11 @@ public class DictRemoveFunction implements ScriptFunction {
             keys = keys.asList().get(0);
         }
 
+        List<String> names = new ArrayList<>(keys.asList().size());
         for (DataValue dv : keys.asList()) {
-            dict.remove(dv.asString());
+            names.add(dv.asString());
         }
 
-        return DataValueFactory.dictionaryValue(dict);
+        return DataValueFactory.dictionaryValueRemove(args.get("__dict"), names);
     }
 }
@@ -23,7 +23,6 @@ import net.rptools.parser.functions.FunctionDefinitionBuilder;
 import net.rptools.parser.functions.ScriptFunction;
 import net.rptools.parser.functions.ScriptFunctionException;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -61,11 +60,7 @@ public class DictSetFunction implements ScriptFunction {
 
     @Override
     public DataValue call(ScriptContext context, Map<String, DataValue> args) throws ScriptFunctionException {
-        Map<String, DataValue> vals = new HashMap<>();
-        vals.putAll(args.get("__dict").asDictionary());
         // Set new values
-        vals.putAll(args.get("__values").asDictionary());
-
-        return DataValueFactory.dictionaryValue(vals);
+        return DataValueFactory.dictionaryValuePut(args.get("__dict"), args.get("__values").asDictionary());
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.javascript;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Rhino {@link ContextFactory} for contexts that count the instructions they run and check them against the
+ * {@link CallBudget} of the JavaScript function call being made in the context.
+ */
+final class BudgetContextFactory extends ContextFactory {
+
+    /** The number of instructions between each check of the budget. */
+    static final int INSTRUCTION_THRESHOLD = 10000;
+
+    /** The key of the budget in the context. */
+    private static final Object BUDGET_KEY = new Object();
+
+    @Override
+    protected Context makeContext() {
+        Context jsContext = super.makeContext();
+        // Compiled JavaScript only counts instructions if it was compiled to do so.
+        jsContext.setGenerateObserverCount(true);
+        jsContext.setInstructionObserverThreshold(INSTRUCTION_THRESHOLD);
+        return jsContext;
+    }
+
+    @Override
+    protected void observeInstructionCount(Context cx, int instructionCount) {
+        CallBudget budget = (CallBudget) cx.getThreadLocal(BUDGET_KEY);
+        if (budget != null) {
+            budget.addInstructions(instructionCount);
+        }
+    }
+
+    /**
+     * Returns the budget for the call being made in a context.
+     *
+     * @param jsContext The context the call is made in.
+     *
+     * @return the budget, or {@code null} if there is no call being made.
+     */
+    static CallBudget getBudget(Context jsContext) {
+        return (CallBudget) jsContext.getThreadLocal(BUDGET_KEY);
+    }
+
+    /**
+     * Sets the budget for the call being made in a context.
+     *
+     * @param jsContext The context the call is made in.
+     * @param budget The budget for the call, or {@code null} if there is no call.
+     *
+     * @return the budget that was set before, or {@code null} if there was none.
+     */
+    static CallBudget setBudget(Context jsContext, CallBudget budget) {
+        CallBudget previous = (CallBudget) jsContext.getThreadLocal(BUDGET_KEY);
+        jsContext.putThreadLocal(BUDGET_KEY, budget);
+        return previous;
+    }
+}
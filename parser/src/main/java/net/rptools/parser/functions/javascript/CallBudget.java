@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.javascript;
+
+import net.rptools.parser.ScriptContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the instructions, time and memory used by a single call to a JavaScript function against the limits
+ * set in the {@link ScriptContext}. When JavaScript calls back into a function that runs more JavaScript, the
+ * instructions run by the inner call are also counted against the budget of the outer call. A CallBudget is
+ * only used by the thread that makes the call.
+ */
+final class CallBudget {
+
+    /** Used to measure the memory allocated by the thread, or {@code null} if the JVM can not measure it. */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    /** The maximum number of instructions, 0 if there is no limit. */
+    private final long instructionLimit;
+
+    /** The maximum time in nanoseconds, 0 if there is no limit. */
+    private final long timeLimit;
+
+    /** The maximum number of bytes allocated, 0 if there is no limit. */
+    private final long memoryLimit;
+
+    /** The time the call started. */
+    private final long startTime;
+
+    /** The number of bytes the thread had allocated when the call started. */
+    private final long startAllocated;
+
+    /** The budget of the call that this call was made from, or {@code null} if there is none. */
+    private final CallBudget parent;
+
+    /** The number of instructions that have been run. */
+    private long instructions;
+
+    /**
+     * Creates a new CallBudget starting now.
+     *
+     * @param context The script context holding the limits.
+     */
+    CallBudget(ScriptContext context) {
+        this(context, null);
+    }
+
+    /**
+     * Creates a new CallBudget starting now for a call made from within another call.
+     *
+     * @param context The script context holding the limits.
+     * @param outer The budget of the call that this call is made from, or {@code null} if there is none.
+     */
+    CallBudget(ScriptContext context, CallBudget outer) {
+        parent = outer;
+        instructionLimit = context.getJavaScriptInstructionLimit();
+        timeLimit = TimeUnit.MILLISECONDS.toNanos(context.getJavaScriptTimeLimit());
+        memoryLimit = ALLOCATION_BEAN == null ? 0 : context.getJavaScriptMemoryLimit();
+        startAllocated = memoryLimit > 0 ? allocated() : 0;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Adds to the number of instructions that have been run and checks that none of the limits have been
+     * exceeded.
+     *
+     * @param count The number of instructions run since the last call.
+     *
+     * @throws ExceededError if a limit of this budget or of the budget of an outer call has been exceeded.
+     */
+    void addInstructions(int count) {
+        instructions += count;
+
+        if (instructionLimit > 0 && instructions > instructionLimit) {
+            throw new ExceededError(this, "exceeded the limit of " + instructionLimit + " instructions.");
+        }
+
+        if (timeLimit > 0 && getElapsedTime() > timeLimit) {
+            throw new ExceededError(this, "exceeded the time limit of " + TimeUnit.NANOSECONDS.toMillis(timeLimit)
+                    + " ms.");
+        }
+
+        if (memoryLimit > 0 && allocated() - startAllocated > memoryLimit) {
+            throw new ExceededError(this, "exceeded the memory limit of " + memoryLimit + " bytes.");
+        }
+
+        if (parent != null) {
+            parent.addInstructions(count);
+        }
+    }
+
+    /**
+     * Returns the number of instructions that have been run.
+     *
+     * @return the number of instructions.
+     */
+    long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Returns the time since the call started.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getElapsedTime() {
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread.
+     *
+     * @return the number of bytes.
+     */
+    private static long allocated() {
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the bean used to measure the memory allocated by a thread.
+     *
+     * @return the bean, or {@code null} if the JVM can not measure the memory allocated by a thread.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocBean = (com.sun.management.ThreadMXBean) bean;
+                if (allocBean.isThreadAllocatedMemorySupported() && allocBean.isThreadAllocatedMemoryEnabled()) {
+                    return allocBean;
+                }
+            }
+        } catch (LinkageError e) {
+            // Not a JVM that provides com.sun.management, memory limits will not be enforced.
+        }
+
+        return null;
+    }
+
+    /**
+     * Thrown when a call exceeds one of its limits. This is an {@link Error} so that the JavaScript being run can
+     * not catch it and carry on.
+     */
+    static final class ExceededError extends Error {
+
+        /** The serial UID. */
+        private static final long serialVersionUID = -5127390458839361207L;
+
+        /** The budget that was exceeded. */
+        private final transient CallBudget budget;
+
+        /**
+         * Creates a new ExceededError.
+         *
+         * @param exceeded The budget that was exceeded.
+         * @param msg The message describing the limit that was exceeded.
+         */
+        ExceededError(CallBudget exceeded, String msg) {
+            super(msg);
+            budget = exceeded;
+        }
+
+        /**
+         * Returns the budget that was exceeded, which is the budget of an outer call if that is the one that ran
+         * out.
+         *
+         * @return the budget.
+         */
+        CallBudget getBudget() {
+            return budget;
+        }
+    }
+}
@@ -17,14 +17,14 @@ package net.rptools.parser.functions.javascript;
 import net.rptools.lib.datavalue.DataType;
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
-import net.rptools.lib.result.ResultBuilder;
+import net.rptools.lib.util.RandomUtil;
 import net.rptools.parser.ScriptContext;
 import net.rptools.parser.dice.JavaScriptDice;
 import net.rptools.parser.functions.FunctionDefinitionBuilder;
-import net.rptools.parser.functions.ScriptFunction;
 import net.rptools.parser.functions.ScriptFunctionException;
 import net.rptools.parser.jsapi.ExportJS;
 import net.rptools.parser.jsapi.ExportedFunction;
+import net.rptools.parser.jsapi.RandomJS;
 import org.mozilla.javascript.*;
 
 import java.io.IOException;
@@ -44,20 +44,23 @@ public class JavaScripEvaluator {
     /** The name of the JavaScript function that converts return to a {@link DataValue}. */
     private final static String DATAVALUE_CONVERSION_FUNCTION = "rptools.convertToDataValue";
 
-    /** The id of the JavaScript object to use as the value of the result. */
-    private final static String RESULT_VALUE_ID = "value";
-
-    /** The id of the JavaScript object to use as the individual rolls of the result. */
-    private final static String RESULT_INDIVIDUAL_ID = "individual";
-
-    /** The id of the JavaScript object to use as the details of the result. */
-    private final static String RESULT_DETAILS_ID = "details";
+    /** The default Rhino optimization level used to compile JavaScript, which is Rhino's own default. */
+    public final static int DEFAULT_OPTIMIZATION_LEVEL = 0;
 
     /** The singleton instance. */
 	private final static JavaScripEvaluator INSTANCE = new JavaScripEvaluator();
 
-    /** Contains the scope that each of the functions lives in. */
-	private Map<ScriptFunction, Scriptable> functionScopes = new HashMap<>();
+    /**
+     * The Rhino context for each thread, which is entered again for each call rather than creating a new one.
+     * Rhino contexts can only be used by one thread at a time so they are not shared between threads.
+     */
+    private final ThreadLocal<Context> threadContexts = new ThreadLocal<>();
+
+    /** The factory used to create the Rhino contexts, which enforces the limits on each call. */
+    private final BudgetContextFactory contextFactory = new BudgetContextFactory();
+
+    /** The Rhino optimization level used to compile JavaScript, -1 for interpreted mode. */
+    private volatile int optimizationLevel = DEFAULT_OPTIMIZATION_LEVEL;
 
     /** The top level scope where all the JavaScript code that forms the base rptools API lives. */
     private Scriptable topLevelScope;
@@ -73,13 +76,14 @@ public class JavaScripEvaluator {
 	 */
 	private JavaScripEvaluator() {
 
-        Context jsContext = Context.enter();
+        // Enter through the factory so the API is compiled to count instructions like all other JavaScript.
+        Context jsContext = contextFactory.enterContext();
         try {
             URL url = this.getClass().getResource("/net/rptools/parser/javascript/api/BaseAPI.js");
             Path p = Paths.get(url.toURI());
             byte[] bytes = Files.readAllBytes(p);
             topLevelScope = jsContext.initStandardObjects();
-            jsContext.evaluateString(topLevelScope, new String(bytes), "BaseAPI", 0, null);
+            evaluate(jsContext, topLevelScope, "BaseAPI", new String(bytes));
 
 
             URL apiurl = this.getClass().getResource("/net/rptools/parser/javascript/api/SharedAPI.js");
@@ -88,14 +92,79 @@ public class JavaScripEvaluator {
             sharedScope = jsContext.newObject(topLevelScope);
             sharedScope.setPrototype(topLevelScope);
             sharedScope.setParentScope(null);
-            jsContext.evaluateString(sharedScope, new String(apibytes), "SharedAPI", 0, null);
+            evaluate(jsContext, sharedScope, "SharedAPI", new String(apibytes));
         } catch (URISyntaxException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
         } catch (IOException e) {
             e.printStackTrace();  //To change body of catch statement use File | Settings | File Templates.
         } finally {
-            jsContext.exit();
+            Context.exit();
+        }
+    }
+
+    /**
+     * Enters the Rhino context for the current thread, reusing the context the thread used last time rather than
+     * creating a new one. If the thread is already in a context, for example because JavaScript has called back
+     * into the script, that context is entered again through the {@link BudgetContextFactory}. Every call must be
+     * matched by a call to {@link Context#exit()}.
+     *
+     * @return the context.
+     */
+    private Context enterContext() {
+        if (Context.getCurrentContext() != null) {
+            return contextFactory.enterContext();
+        }
+
+        Context jsContext = threadContexts.get();
+        if (jsContext == null) {
+            jsContext = contextFactory.enterContext();
+            threadContexts.set(jsContext);
+        } else {
+            contextFactory.enterContext(jsContext);
         }
+        jsContext.setOptimizationLevel(optimizationLevel);
+
+        return jsContext;
+    }
+
+    /**
+     * Runs JavaScript in a scope, using the compiled version of the script from the {@link JavaScriptCache} if
+     * the same JavaScript has already been compiled at the current optimization level.
+     *
+     * @param jsContext The context to run the script in.
+     * @param scope The scope to run the script in.
+     * @param name The name of the script.
+     * @param source The JavaScript source.
+     *
+     * @return the result of the script.
+     */
+    private Object evaluate(Context jsContext, Scriptable scope, String name, String source) {
+        return JavaScriptCache.getInstance().getCompiledScript(jsContext, name, source).exec(jsContext, scope);
+    }
+
+    /**
+     * Sets the Rhino optimization level used to compile JavaScript added after this call. Level -1 runs the
+     * JavaScript in interpreted mode, which starts quicker, levels 0 to 9 compile it to Java byte code.
+     *
+     * @param level The optimization level.
+     *
+     * @throws IllegalArgumentException if the level is not a valid Rhino optimization level.
+     */
+    public void setOptimizationLevel(int level) {
+        if (!Context.isValidOptimizationLevel(level)) {
+            throw new IllegalArgumentException("Invalid JavaScript optimization level " + level + ".");
+        }
+
+        optimizationLevel = level;
+    }
+
+    /**
+     * Returns the Rhino optimization level used to compile JavaScript.
+     *
+     * @return the optimization level.
+     */
+    public int getOptimizationLevel() {
+        return optimizationLevel;
     }
 
     /**
@@ -140,64 +209,51 @@ public class JavaScripEvaluator {
             throw new NullPointerException("Return type of function call is null.");
         }
 
-        if (functionScopes.containsKey(function) == false) {
+        Function callFunc = function.getJsFunction();
+        Scriptable scope = function.getJsScope();
+        if (scope == null) {
             throw new ScriptFunctionException("Unable to find JavaScript call for " + function.getDefinition().name());
         }
 
+        if (callFunc == null) {
+            throw new ScriptFunctionException(function.jsFunctionName() + " not defined.");
+        }
 
-        Scriptable scope = functionScopes.get(function);
-        Context jsContext = Context.enter();
+        Context jsContext = enterContext();
+        CallBudget outerBudget = BudgetContextFactory.getBudget(jsContext);
+        CallBudget budget = new CallBudget(context, outerBudget);
+        BudgetContextFactory.setBudget(jsContext, budget);
+        RandomUtil outerRandomUtil = RandomJS.setRandomUtil(context.getRandomUtil());
+        boolean exceeded = false;
         DataValue result = null;
         try {
+            Object callArgs[] = { JavaScriptConverter.toJavaScript(jsContext, scope, args) };
 
-            Object rptoolsNS = topLevelScope.get("rptools", scope);
-            if (rptoolsNS == null) {
-                throw new ScriptFunctionException("Can not find the rptools scope");
-            }
-
-            Object oArgsConv = ((Scriptable)rptoolsNS).get("convertArgs", topLevelScope);
-            if (!(oArgsConv instanceof Function)) {
-                throw new ScriptFunctionException("Can not find argument conversion function.");
-            }
-            Function fArgsConv = (Function) oArgsConv;
-            Object a1[] = { args };
-            Object callArg = fArgsConv.call(jsContext, scope, scope, a1);
-            Object callArgs[] = { callArg };
-
-            Object fObject = scope.get(function.jsFunctionName(), scope);
-            if (!(fObject instanceof Function)) {
-                throw new ScriptFunctionException(function.jsFunctionName() + " not defined.");
-            }
-
-
-            Function callFunc = (Function)fObject;
-
-            //Object functionArgs[] = toJSArgs(args);
             Object oresult = callFunc.call(jsContext, scope, scope, callArgs);
 
 
             // Now convert to DataValue
             switch(returnType) {
                 case LONG:
-                    result = convertToLongValue(oresult);
+                    result = JavaScriptConverter.toLongValue(oresult);
                     break;
                 case DOUBLE:
-                    result = convertToDoubleValue(oresult);
+                    result = JavaScriptConverter.toDoubleValue(oresult);
                     break;
                 case STRING:
-                    result = convertToStringValue(oresult);
+                    result = JavaScriptConverter.toStringValue(oresult);
                     break;
                 case LIST:
-                    result = convertToListValue(scope, oresult);
+                    result = JavaScriptConverter.toListValue(oresult);
                     break;
                 case DICTIONARY:
-                    result = convertToDictionary(scope, oresult);
+                    result = JavaScriptConverter.toDictionary(oresult);
                     break;
                 case RESULT:
-                    result = convertToResult(scope, oresult);
+                    result = JavaScriptConverter.toResult(oresult);
                     break;
                 case BOOLEAN:
-                    result = convertToBoolean(oresult);
+                    result = JavaScriptConverter.toBoolean(oresult);
                     break;
                 case NULL:
                     result = DataValueFactory.nullDataValue();
@@ -206,204 +262,28 @@ public class JavaScripEvaluator {
                     throw new ScriptFunctionException("Invalid return type for function " + returnType);
             }
 
-        }  catch(Exception e) {
-            jsContext.exit();
+        } catch (CallBudget.ExceededError e) {
+            if (e.getBudget() != budget) {
+                // The outer call ran out, it has to stop without the JavaScript that made this call catching it.
+                throw e;
+            }
+            exceeded = true;
+            throw new ScriptFunctionException(function.getDefinition().name() + " " + e.getMessage(), e);
+        } catch (ScriptFunctionException e) {
+            throw e;
+        } catch (Exception e) {
             throw new ScriptFunctionException(e.getLocalizedMessage(), e);
+        } finally {
+            BudgetContextFactory.setBudget(jsContext, outerBudget);
+            RandomJS.setRandomUtil(outerRandomUtil);
+            function.recordCall(budget.getInstructions(), budget.getElapsedTime(), exceeded);
+            Context.exit();
         }
 
-        jsContext.exit();
-
 
         return result;
     }
 
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#BOOLEAN} representation of the object.
-     *
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     */
-    private DataValue convertToBoolean(Object o) {
-        Boolean val = (Boolean)Context.jsToJava(o, boolean.class);
-        return DataValueFactory.booleanValue(val.booleanValue());
-    }
-
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#LONG} representation of the object.
-     *
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     */
-    private DataValue convertToLongValue(Object o) {
-        Long val = (Long)Context.jsToJava(o, long.class);
-        return DataValueFactory.longValue(val.longValue());
-    }
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#DOUBLE} representation of the object.
-     *
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     */
-    private DataValue convertToDoubleValue(Object o) {
-        Double val = (Double)Context.jsToJava(o, double.class);
-        return DataValueFactory.doubleValue(val.doubleValue());
-    }
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#STRING} representation of the object.
-     *
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     */
-    private DataValue convertToStringValue(Object o) {
-        if (o instanceof NativeArray) {
-            throw new UnsupportedOperationException("Can't convert JavaScript array to string.");
-        }
-
-        if (o instanceof NativeObject) {
-            throw new UnsupportedOperationException("Can't convert JavaScript object to string.");
-        }
-
-        return DataValueFactory.stringValue(o.toString());
-    }
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#LIST} representation of the object.
-     *
-     * @param scope The JavaScript scope that this object is defined in.
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     */
-    private DataValue convertToListValue(Scriptable scope, Object o) {
-        DataValue listVal = null;
-        if (o instanceof NativeArray) {
-            List<DataValue> lst = new ArrayList<>();
-            NativeArray arr = (NativeArray)o;
-            for (Object ele : arr.getAllIds()) {
-                DataValue val = convertToDataValue(scope, ele);
-                lst.add(val);
-            }
-            listVal = DataValueFactory.listValue(lst);
-        } else {
-            listVal = DataValueFactory.listValue(Collections.singletonList(convertToDataValue(scope, o)));
-        }
-
-        return listVal;
-    }
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#DICTIONARY} representation of the object.
-     *
-     * @param scope The JavaScript scope that this object is defined in.
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     * @throws UnsupportedOperationException if the object is not a type that can be converted into a
-     *         dictionary.
-     *
-     */
-    private DataValue convertToDictionary(Scriptable scope, Object o) {
-        if (!(o instanceof NativeObject)) {
-            throw new UnsupportedOperationException("Only JavaScript objects can be converted to dictionaries.");
-        }
-
-        Map<String, DataValue> dict = new HashMap<>();
-        NativeObject no = (NativeObject) o;
-
-        for (Object id : no.getIds()) {
-            dict.put(id.toString(), convertToDataValue(scope, no.get(id.toString(), scope)));
-        }
-        return DataValueFactory.dictionaryValue(dict);
-    }
-
-    /**
-     * Returns the {@link DataValue} of type {@link DataType#RESULT} representation of the object.
-     *
-     * @param scope The JavaScript scope that this object is defined in.
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     * @throws UnsupportedOperationException if the object is not a type that can be converted into a
-     *         result.
-     *
-     */
-    private DataValue convertToResult(Scriptable scope, Object o) {
-        NativeObject no = (NativeObject)o;
-
-        Map<String, Object> vals = new HashMap<>();
-        for (Object id : no.keySet()) {
-            vals.put(id.toString(), no.get(id));
-        }
-
-        if (vals.containsKey(RESULT_VALUE_ID) == false) {
-            throw new UnsupportedOperationException("JavaScript object can not be converted to a result.");
-        }
-
-
-        ResultBuilder resultBuilder = new ResultBuilder();
-        resultBuilder.setValue(convertToDataValue(scope, vals.get(RESULT_VALUE_ID)));
-
-        if (vals.containsKey(RESULT_DETAILS_ID)) {
-            resultBuilder.setDetailedResult(convertToDataValue(scope, vals.get(RESULT_DETAILS_ID)));
-        }
-
-        if (vals.containsKey(RESULT_INDIVIDUAL_ID)) {
-            resultBuilder.setIndividualValues(convertToDataValue(scope, vals.get(RESULT_INDIVIDUAL_ID)).asList());
-        }
-
-        DataValue dv =  DataValueFactory.resultValue(resultBuilder.toResult());
-
-        return dv;
-    }
-
-
-    /**
-     * Returns the best {@link DataValue} representation of the object.
-     *
-     * @param scope The JavaScript scope that this object is defined in.
-     * @param o The object to convert.
-     *
-     * @return the {@link DataValue}.
-     *
-     */
-    private DataValue convertToDataValue(Scriptable scope, Object o) {
-        DataValue retVal = null;
-        if (o instanceof NativeArray) {
-            List<DataValue> lst = new ArrayList<>();
-            NativeArray arr = (NativeArray)o;
-            for (Object ele : arr.toArray()) {
-                DataValue val = convertToDataValue(scope, ele);
-                lst.add(val);
-            }
-            retVal = DataValueFactory.listValue(lst);
-        } else if (o instanceof NativeObject) {
-            retVal = convertToDictionary(scope, o);
-        } else if (o instanceof String || o instanceof ConsString) {
-            retVal = convertToStringValue(o);
-        } else {
-            DataValue num = convertToDoubleValue(o);
-            if (Math.round(num.asDouble()) == num.asLong()) {
-                num = num.asLongValue();
-            }
-            retVal = num;
-        }
-
-        return retVal;
-    }
-
     /**
      * Resets the list of recently defined functions and dice used during function definition.
      */
@@ -440,7 +320,7 @@ public class JavaScripEvaluator {
                 } else {
                     Object defVal = nobj.get("defaultVal");
                     if (defVal != null) {
-                        fdb.addParameter(paramName, paramType, convertToDataValue(scope, defVal));
+                        fdb.addParameter(paramName, paramType, JavaScriptConverter.toDataValue(defVal));
                     } else {
                         fdb.addParameter(paramName, paramType);
                     }
@@ -474,7 +354,7 @@ public class JavaScripEvaluator {
 
         List<JavaScriptFunction> definedFunctions = new ArrayList<>();
 
-        Context jsContext = Context.enter();
+        Context jsContext = enterContext();
 
         resetRecentlyDefined();
 
@@ -483,9 +363,12 @@ public class JavaScripEvaluator {
             if (scope != null) {
                 scriptScope = scope;
             } else  {
+                // The new scope is a top level scope that inherits the shared scope, so variables that scripts
+                // assign to without declaring them are created in their own scope rather than in the shared
+                // scope that every thread uses.
                 scriptScope = jsContext.newObject(sharedScope);
                 scriptScope.setPrototype(sharedScope);
-                scriptScope.setParentScope(sharedScope);
+                scriptScope.setParentScope(null);
             }
 
             for (Map.Entry<String, String> script : scripts.entrySet()) {
@@ -497,29 +380,38 @@ public class JavaScripEvaluator {
                     throw new NullPointerException("Script body can not be null");
                 }
 
-                Object result = jsContext.evaluateString(scriptScope, script.getValue(), script.getKey(), 0, null);
+                evaluate(jsContext, scriptScope, script.getKey(), script.getValue());
             }
 
 
             for (JavaScriptFunction function : getRecentlyDefined(scope)) {
-                functionScopes.put(function, scriptScope);
+                bindFunction(function, scriptScope);
                 definedFunctions.add(function);
             }
 
             for (JavaScriptDice dice : ExportJS.getExportedDice()) {
-                functionScopes.put(dice.getJavaScriptFunction(), scriptScope);
+                bindFunction(dice.getJavaScriptFunction(), scriptScope);
             }
 
             return new JavaScriptExports(definedFunctions, ExportJS.getExportedDice());
-
-
-
-        } catch (Exception e) {
-            jsContext.exit();
-            throw e;
+        } finally {
+            resetRecentlyDefined();
+            Context.exit();
         }
     }
 
+    /**
+     * Binds a {@link JavaScriptFunction} to the scope it was defined in and the JavaScript function it calls, so
+     * the function does not have to be looked up by name each time it is called.
+     *
+     * @param function The function to bind.
+     * @param scope The scope the function was defined in.
+     */
+    private void bindFunction(JavaScriptFunction function, Scriptable scope) {
+        Object fObject = scope.get(function.jsFunctionName(), scope);
+        function.bind(scope, fObject instanceof Function ? (Function) fObject : null);
+    }
+
     /**
      * Adds a JavaScript file to the list of available script files and returns any functions
      * that were defined for the RPTools scripting language. All scripts added with this function
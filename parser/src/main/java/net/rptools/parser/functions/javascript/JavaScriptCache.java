@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.javascript;
+
+import net.rptools.lib.MD5Key;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JavaScriptCache is a bounded, least recently used cache of compiled JavaScript {@link Script}s keyed by the
+ * {@link MD5Key} of the JavaScript source and the optimization level it was compiled at. Loading the same
+ * JavaScript again only runs the compiled script rather than compiling it again. It is safe to use from
+ * multiple threads.
+ *
+ * Scripts with the same source share the compiled script even if they were added with different names, so error
+ * messages will report the name the script was first compiled with.
+ */
+public final class JavaScriptCache {
+
+    /** The default maximum number of scripts held in the cache. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 64;
+
+    /** The shared cache used by {@link JavaScripEvaluator}. */
+    private static final JavaScriptCache instance = new JavaScriptCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** The cached scripts, in least recently used order. */
+    private final LinkedHashMap<Key, Script> scripts;
+
+    /** The maximum number of scripts to hold in the cache. */
+    private int maximumSize;
+
+    /** The number of lookups that found a compiled script. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of lookups that had to compile the script. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of scripts that have been evicted from the cache. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** The total time spent compiling scripts in nanoseconds. */
+    private final AtomicLong compileTime = new AtomicLong();
+
+    /**
+     * Creates a new JavaScriptCache.
+     *
+     * @param maxSize The maximum number of scripts to hold in the cache.
+     *
+     * @throws IllegalArgumentException if maxSize is negative.
+     */
+    public JavaScriptCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size can not be negative.");
+        }
+
+        maximumSize = maxSize;
+        scripts = new LinkedHashMap<Key, Script>(16, 0.75f, true) {
+            /** The serial UID. */
+            private static final long serialVersionUID = -3209125946460172833L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Script> eldest) {
+                if (size() > maximumSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all JavaScript evaluation.
+     *
+     * @return the shared cache.
+     */
+    public static JavaScriptCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the compiled version of the JavaScript at the optimization level of the context, compiling it and
+     * adding it to the cache if it is not already there.
+     *
+     * @param jsContext The context to compile the script with.
+     * @param name The name of the script, used in error messages.
+     * @param source The JavaScript source.
+     *
+     * @return the compiled script.
+     *
+     * @throws NullPointerException if any of the arguments are null.
+     */
+    public Script getCompiledScript(Context jsContext, String name, String source) {
+        if (jsContext == null) {
+            throw new NullPointerException("JavaScript context can not be null.");
+        }
+
+        if (name == null) {
+            throw new NullPointerException("Name of script can not be null.");
+        }
+
+        if (source == null) {
+            throw new NullPointerException("Script body can not be null.");
+        }
+
+        Key key = new Key(new MD5Key(source.getBytes(StandardCharsets.UTF_8)), jsContext.getOptimizationLevel());
+        Script script;
+        synchronized (scripts) {
+            script = scripts.get(key);
+        }
+
+        if (script != null) {
+            hits.incrementAndGet();
+            return script;
+        }
+
+        misses.incrementAndGet();
+        // Compile outside of the lock so that other threads are not held up.
+        long start = System.nanoTime();
+        script = jsContext.compileString(source, name, 0, null);
+        compileTime.addAndGet(System.nanoTime() - start);
+
+        synchronized (scripts) {
+            Script existing = scripts.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            scripts.put(key, script);
+        }
+
+        return script;
+    }
+
+    /**
+     * Sets the maximum number of scripts held in the cache, evicting the least recently used scripts if there are
+     * more than this already in the cache. A size of 0 disables caching.
+     *
+     * @param maxSize The maximum number of scripts to hold.
+     *
+     * @throws IllegalArgumentException if maxSize is negative.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Maximum cache size can not be negative.");
+        }
+
+        synchronized (scripts) {
+            maximumSize = maxSize;
+            Iterator<Key> iter = scripts.keySet().iterator();
+            while (scripts.size() > maximumSize && iter.hasNext()) {
+                iter.next();
+                iter.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the maximum number of scripts held in the cache.
+     *
+     * @return the maximum number of scripts.
+     */
+    public int getMaximumSize() {
+        synchronized (scripts) {
+            return maximumSize;
+        }
+    }
+
+    /**
+     * Returns the number of scripts currently in the cache.
+     *
+     * @return the number of scripts.
+     */
+    public int size() {
+        synchronized (scripts) {
+            return scripts.size();
+        }
+    }
+
+    /**
+     * Removes all of the scripts from the cache. The hit, miss, eviction and compile time counts are not reset.
+     */
+    public void clear() {
+        synchronized (scripts) {
+            scripts.clear();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found the script already compiled.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to compile the script.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of scripts that have been evicted from the cache.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the total time spent compiling scripts that were not in the cache.
+     *
+     * @return the compile time in nanoseconds.
+     */
+    public long getCompileTime() {
+        return compileTime.get();
+    }
+
+    /**
+     * The key of a compiled script in the cache.
+     */
+    private static final class Key {
+
+        /** The digest of the JavaScript source. */
+        private final MD5Key digest;
+
+        /** The optimization level the script was compiled at. */
+        private final int optimizationLevel;
+
+        /**
+         * Creates a new Key.
+         *
+         * @param md5 The digest of the JavaScript source.
+         * @param level The optimization level the script was compiled at.
+         */
+        private Key(MD5Key md5, int level) {
+            digest = md5;
+            optimizationLevel = level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return optimizationLevel == other.optimizationLevel && digest.equals(other.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * digest.hashCode() + optimizationLevel;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.functions.javascript;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.datavalue.DictionaryDataValueBuilder;
+import net.rptools.lib.datavalue.ListDataValueBuilder;
+import net.rptools.lib.result.Result;
+import net.rptools.lib.result.ResultBuilder;
+import net.rptools.parser.functions.ScriptFunctionException;
+import org.mozilla.javascript.ConsString;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.Wrapper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts {@link DataValue}s to JavaScript objects and back. The JavaScript objects and arrays are built
+ * directly with the Rhino API rather than by JavaScript code walking the Java objects through reflection.
+ */
+final class JavaScriptConverter {
+
+    /** The name of the JavaScript constructor used to create results. */
+    private static final String RESULT_CONSTRUCTOR = "Result";
+
+    /** The id of the JavaScript object to use as the value of the result. */
+    private static final String RESULT_VALUE_ID = "value";
+
+    /** The id of the JavaScript object to use as the individual rolls of the result. */
+    private static final String RESULT_INDIVIDUAL_ID = "individual";
+
+    /** The id of the JavaScript object to use as the details of the result. */
+    private static final String RESULT_DETAILS_ID = "details";
+
+    /**
+     * Creates a new JavaScriptConverter.
+     */
+    private JavaScriptConverter() {
+    }
+
+    /**
+     * Returns the JavaScript object holding the arguments for a function call, with a property for each
+     * argument.
+     *
+     * @param jsContext The context to create the objects in.
+     * @param scope The scope to create the objects in.
+     * @param args The arguments to convert.
+     *
+     * @return the JavaScript object.
+     */
+    static Scriptable toJavaScript(Context jsContext, Scriptable scope, Map<String, DataValue> args) {
+        Scriptable obj = jsContext.newObject(scope);
+        for (Map.Entry<String, DataValue> arg : args.entrySet()) {
+            putProperty(obj, arg.getKey(), toJavaScript(jsContext, scope, arg.getValue()));
+        }
+
+        return obj;
+    }
+
+    /**
+     * Returns the JavaScript representation of a {@link DataValue}. Lists are converted to arrays, dictionaries
+     * to objects and results to <i>Result</i> objects.
+     *
+     * @param jsContext The context to create the objects in.
+     * @param scope The scope to create the objects in.
+     * @param dv The value to convert.
+     *
+     * @return the JavaScript representation.
+     */
+    static Object toJavaScript(Context jsContext, Scriptable scope, DataValue dv) {
+        if (dv == null) {
+            return null;
+        }
+
+        switch (dv.dataType()) {
+            case LIST:
+                return toJavaScriptArray(jsContext, scope, dv.asList());
+            case DICTIONARY:
+                Scriptable obj = jsContext.newObject(scope);
+                for (Map.Entry<String, DataValue> entry : dv.asDictionary().entrySet()) {
+                    putProperty(obj, entry.getKey(), toJavaScript(jsContext, scope, entry.getValue()));
+                }
+                return obj;
+            case RESULT:
+                Result res = dv.asResult();
+                Object[] resArgs = {
+                        toJavaScript(jsContext, scope, res.getValue()),
+                        toJavaScript(jsContext, scope, res.getDetailedResult()),
+                        toJavaScriptArray(jsContext, scope, res.getValues())
+                };
+                return jsContext.newObject(scope, RESULT_CONSTRUCTOR, resArgs);
+            case BOOLEAN:
+                return Boolean.valueOf(dv.asBoolean());
+            case NULL:
+                return null;
+            case LONG:
+                // JavaScript numbers are all doubles, this is what Rhino converts a Java long to.
+                return Double.valueOf(dv.asLong());
+            case DOUBLE:
+                return Double.valueOf(dv.asDouble());
+            default:
+                return dv.asString();
+        }
+    }
+
+    /**
+     * Sets a property of a JavaScript object. Rhino keeps properties whose names are integers, such as "2", in
+     * separate index slots that <i>obj[2]</i>, <i>obj["2"]</i> and <i>for (k in obj)</i> all use, so those
+     * properties are set by index rather than by name.
+     *
+     * @param obj The object to set the property of.
+     * @param name The name of the property.
+     * @param val The value of the property.
+     */
+    private static void putProperty(Scriptable obj, String name, Object val) {
+        Integer index = toIndex(name);
+        if (index != null) {
+            obj.put(index, obj, val);
+        } else {
+            obj.put(name, obj, val);
+        }
+    }
+
+    /**
+     * Returns the integer that a property name represents, if it is the canonical string form of an integer.
+     *
+     * @param name The name of the property.
+     *
+     * @return the integer, or {@code null} if the name is not an integer.
+     */
+    private static Integer toIndex(String name) {
+        if (name.isEmpty() || name.length() > 11) {
+            return null;
+        }
+
+        char first = name.charAt(0);
+        if (first != '-' && (first < '0' || first > '9')) {
+            return null;
+        }
+
+        try {
+            int index = Integer.parseInt(name);
+            return Integer.toString(index).equals(name) ? Integer.valueOf(index) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a JavaScript array containing the JavaScript representation of each of the values.
+     *
+     * @param jsContext The context to create the array in.
+     * @param scope The scope to create the array in.
+     * @param values The values to convert.
+     *
+     * @return the JavaScript array.
+     */
+    private static Scriptable toJavaScriptArray(Context jsContext, Scriptable scope, List<DataValue> values) {
+        Object[] elements = new Object[values.size()];
+        int i = 0;
+        for (DataValue val : values) {
+            elements[i++] = toJavaScript(jsContext, scope, val);
+        }
+
+        return jsContext.newArray(scope, elements);
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#BOOLEAN} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     */
+    static DataValue toBoolean(Object o) {
+        return DataValueFactory.booleanValue(Context.toBoolean(o));
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#LONG} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     *
+     * @throws ScriptFunctionException if the object is not a number.
+     */
+    static DataValue toLongValue(Object o) throws ScriptFunctionException {
+        Number num = toNumber(o, DataType.LONG);
+        if (num instanceof Double || num instanceof Float) {
+            double val = num.doubleValue();
+            if (Double.isNaN(val)) {
+                throw new ScriptFunctionException("Can't convert JavaScript NaN to " + DataType.LONG + ".");
+            }
+            return DataValueFactory.longValue((long) val);
+        }
+
+        return DataValueFactory.longValue(num.longValue());
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#DOUBLE} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     *
+     * @throws ScriptFunctionException if the object is not a number.
+     */
+    static DataValue toDoubleValue(Object o) throws ScriptFunctionException {
+        return DataValueFactory.doubleValue(toNumber(o, DataType.DOUBLE).doubleValue());
+    }
+
+    /**
+     * Returns the number that a JavaScript object holds, without converting strings, booleans or other objects
+     * to numbers the way JavaScript would.
+     *
+     * @param o The object to convert.
+     * @param type The type of {@link DataValue} the number is being converted to, used in the error message.
+     *
+     * @return the number.
+     *
+     * @throws ScriptFunctionException if the object is not a number.
+     */
+    private static Number toNumber(Object o, DataType type) throws ScriptFunctionException {
+        Object val = o instanceof Wrapper ? ((Wrapper) o).unwrap() : o;
+        if (val instanceof Number) {
+            return (Number) val;
+        }
+
+        if (val instanceof DataValue) {
+            DataValue dv = (DataValue) val;
+            if (dv.dataType() == DataType.LONG) {
+                return Long.valueOf(dv.asLong());
+            } else if (dv.dataType() == DataType.DOUBLE) {
+                return Double.valueOf(dv.asDouble());
+            }
+        }
+
+        String description;
+        if (val == null || val == Undefined.instance || val == Scriptable.NOT_FOUND) {
+            description = "undefined";
+        } else if (val instanceof String || val instanceof ConsString) {
+            description = "string \"" + val + "\"";
+        } else if (val instanceof Boolean) {
+            description = "boolean";
+        } else if (val instanceof NativeArray) {
+            description = "array";
+        } else {
+            description = "object";
+        }
+
+        throw new ScriptFunctionException("Can't convert JavaScript " + description + " to " + type + ".");
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#STRING} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     *
+     * @throws UnsupportedOperationException if the object is a JavaScript array or object.
+     */
+    static DataValue toStringValue(Object o) {
+        if (o instanceof NativeArray) {
+            throw new UnsupportedOperationException("Can't convert JavaScript array to string.");
+        }
+
+        if (o instanceof NativeObject) {
+            throw new UnsupportedOperationException("Can't convert JavaScript object to string.");
+        }
+
+        return DataValueFactory.stringValue(o.toString());
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#LIST} representation of the object. Anything other
+     * than a JavaScript array is returned as a list containing just that value.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     */
+    static DataValue toListValue(Object o) {
+        if (o instanceof NativeArray) {
+            return arrayToList((NativeArray) o);
+        }
+
+        ListDataValueBuilder lst = new ListDataValueBuilder();
+        lst.add(toDataValue(o));
+        return lst.toDataValue();
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#DICTIONARY} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     *
+     * @throws UnsupportedOperationException if the object is not a JavaScript object.
+     */
+    static DataValue toDictionary(Object o) {
+        if (!(o instanceof NativeObject)) {
+            throw new UnsupportedOperationException("Only JavaScript objects can be converted to dictionaries.");
+        }
+
+        NativeObject no = (NativeObject) o;
+        DictionaryDataValueBuilder dict = new DictionaryDataValueBuilder();
+        for (Object id : no.getIds()) {
+            Object val = id instanceof Integer ? no.get((Integer) id, no) : no.get(id.toString(), no);
+            dict.put(id.toString(), toDataValue(val));
+        }
+
+        return dict.toDataValue();
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#RESULT} representation of the object.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     *
+     * @throws UnsupportedOperationException if the object is not a JavaScript object with a value.
+     */
+    static DataValue toResult(Object o) {
+        if (!(o instanceof Scriptable)) {
+            throw new UnsupportedOperationException("JavaScript object can not be converted to a result.");
+        }
+
+        Scriptable obj = (Scriptable) o;
+        Object value = ScriptableObject.getProperty(obj, RESULT_VALUE_ID);
+        if (value == Scriptable.NOT_FOUND) {
+            throw new UnsupportedOperationException("JavaScript object can not be converted to a result.");
+        }
+
+        ResultBuilder resultBuilder = new ResultBuilder();
+        resultBuilder.setValue(toDataValue(value));
+
+        Object details = ScriptableObject.getProperty(obj, RESULT_DETAILS_ID);
+        if (details != Scriptable.NOT_FOUND) {
+            resultBuilder.setDetailedResult(toDataValue(details));
+        }
+
+        Object individual = ScriptableObject.getProperty(obj, RESULT_INDIVIDUAL_ID);
+        if (individual != Scriptable.NOT_FOUND) {
+            resultBuilder.setIndividualValues(toDataValue(individual));
+        }
+
+        return DataValueFactory.resultValue(resultBuilder.toResult());
+    }
+
+    /**
+     * Returns the best {@link DataValue} representation of the object. Whole numbers are converted to
+     * {@link DataType#LONG} values and other numbers to {@link DataType#DOUBLE} values.
+     *
+     * @param o The object to convert.
+     *
+     * @return the {@link DataValue}.
+     */
+    static DataValue toDataValue(Object o) {
+        if (o instanceof Wrapper) {
+            o = ((Wrapper) o).unwrap();
+            if (o instanceof DataValue) {
+                return (DataValue) o;
+            }
+        }
+
+        if (o == null || o == Undefined.instance || o == Scriptable.NOT_FOUND) {
+            return DataValueFactory.nullDataValue();
+        } else if (o instanceof NativeArray) {
+            return arrayToList((NativeArray) o);
+        } else if (o instanceof NativeObject) {
+            return toDictionary(o);
+        } else if (o instanceof String || o instanceof ConsString) {
+            return DataValueFactory.stringValue(o.toString());
+        } else if (o instanceof Boolean) {
+            return DataValueFactory.booleanValue((Boolean) o);
+        } else {
+            double val = Context.toNumber(o);
+            long lval = (long) val;
+            if (val == lval) {
+                return DataValueFactory.longValue(lval);
+            }
+            return DataValueFactory.doubleValue(val);
+        }
+    }
+
+    /**
+     * Returns the {@link DataValue} of type {@link DataType#LIST} holding the elements of a JavaScript array.
+     *
+     * @param arr The array to convert.
+     *
+     * @return the {@link DataValue}.
+     */
+    private static DataValue arrayToList(NativeArray arr) {
+        ListDataValueBuilder lst = new ListDataValueBuilder();
+        long length = arr.getLength();
+        for (int i = 0; i < length; i++) {
+            lst.add(toDataValue(arr.get(i, arr)));
+        }
+
+        return lst.toDataValue();
+    }
+}
@@ -15,12 +15,15 @@
 package net.rptools.parser.functions.javascript;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.parser.ScriptContext;
 import net.rptools.parser.functions.FunctionDefinition;
 import net.rptools.parser.functions.ScriptFunction;
 import net.rptools.parser.functions.ScriptFunctionException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
 
 /**
  * The JavaScriptFunction implements the ScriptFunction interface on behalf of JavaScript functions that are exported
@@ -35,6 +38,27 @@ public class JavaScriptFunction implements ScriptFunction {
     /** The function definition. */
     private final FunctionDefinition functionDefinition;
 
+    /** The scope that the JavaScript function was defined in, set when the function is registered. */
+    private volatile Scriptable jsScope;
+
+    /**
+     * The JavaScript function to call, resolved when the function is registered. This is always written after
+     * {@link #jsScope} so a thread that reads it first will see the matching scope.
+     */
+    private volatile Function jsFunction;
+
+    /** The number of times the function has been called. */
+    private final AtomicLong callCount = new AtomicLong();
+
+    /** The number of JavaScript instructions run by calls to the function. */
+    private final AtomicLong instructionCount = new AtomicLong();
+
+    /** The time spent in calls to the function in nanoseconds. */
+    private final AtomicLong callTime = new AtomicLong();
+
+    /** The number of calls to the function that exceeded their limits. */
+    private final AtomicLong limitExceededCount = new AtomicLong();
+
 
     /**
      * Creates a new JavaScriptFunction object.
@@ -75,4 +99,89 @@ public class JavaScriptFunction implements ScriptFunction {
         return jsFunctionName;
     }
 
+    /**
+     * Binds this function to the scope it was defined in and the JavaScript function resolved from that scope,
+     * so that calls do not have to look the function up by name.
+     *
+     * @param scope The scope the function was defined in.
+     * @param function The JavaScript function, or {@code null} if it is not defined in the scope.
+     */
+    void bind(Scriptable scope, Function function) {
+        jsScope = scope;
+        jsFunction = function;
+    }
+
+    /**
+     * Returns the JavaScript function to call.
+     *
+     * @return the JavaScript function, or {@code null} if it has not been resolved.
+     */
+    Function getJsFunction() {
+        return jsFunction;
+    }
+
+    /**
+     * Returns the scope that the JavaScript function was defined in.
+     *
+     * @return the scope, or {@code null} if the function has not been registered.
+     */
+    Scriptable getJsScope() {
+        return jsScope;
+    }
+
+    /**
+     * Records the budget used by a call to the function.
+     *
+     * @param instructions The number of JavaScript instructions run by the call.
+     * @param time The time taken by the call in nanoseconds.
+     * @param exceeded Did the call exceed its limits.
+     */
+    void recordCall(long instructions, long time, boolean exceeded) {
+        callCount.incrementAndGet();
+        instructionCount.addAndGet(instructions);
+        callTime.addAndGet(time);
+        if (exceeded) {
+            limitExceededCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of times the function has been called.
+     *
+     * @return the number of calls.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Returns the number of JavaScript instructions run by calls to the function. Instructions are counted in
+     * blocks of {@value BudgetContextFactory#INSTRUCTION_THRESHOLD} so calls that run fewer instructions than
+     * this are not counted.
+     *
+     * @return the number of instructions.
+     */
+    public long getInstructionCount() {
+        return instructionCount.get();
+    }
+
+    /**
+     * Returns the total time spent in calls to the function.
+     *
+     * @return the time in nanoseconds.
+     */
+    public long getCallTime() {
+        return callTime.get();
+    }
+
+    /**
+     * Returns the number of calls to the function that failed because they exceeded the instruction, time or
+     * memory limit of their {@link ScriptContext}.
+     *
+     * @return the number of calls that exceeded their limits.
+     */
+    public long getLimitExceededCount() {
+        return limitExceededCount.get();
+    }
+
 }
@@ -17,7 +17,9 @@ package net.rptools.parser.functions.list;
 import net.rptools.lib.datavalue.DataType;
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.datavalue.NumericListDataValue;
 import net.rptools.parser.ScriptContext;
+import net.rptools.parser.functions.CountCriteria;
 import net.rptools.parser.functions.FunctionDefinition;
 import net.rptools.parser.functions.FunctionDefinitionBuilder;
 import net.rptools.parser.functions.ScriptFunction;
@@ -37,13 +39,6 @@ public class ListCountFunction implements ScriptFunction {
     private FunctionDefinition functionDefinition;
 
 
-    private static final String GREATER_THAN = "greaterThan";
-    private static final String LESS_THAN = "lessThan";
-    private static final String EQUAL_TO = "equals";
-    private static final String AT_LEAST = "atLeast";
-    private static final String AT_MOST = "atMost";
-    private static final String NOT = "not";
-
     /**
      * Creates a new ListCountFunction.
      */
@@ -51,12 +46,12 @@ public class ListCountFunction implements ScriptFunction {
         functionDefinition = new FunctionDefinitionBuilder().setName("count")
                 .setReturnType(DataType.LONG)
                 .addParameter("list", DataType.LIST)
-                .addParameter(GREATER_THAN, DataType.DOUBLE, DataValueFactory.nullDataValue())
-                .addParameter(LESS_THAN, DataType.DOUBLE, DataValueFactory.nullDataValue())
-                .addParameter(EQUAL_TO, DataType.DOUBLE, DataValueFactory.nullDataValue())
-                .addParameter(AT_LEAST, DataType.DOUBLE, DataValueFactory.nullDataValue())
-                .addParameter(AT_MOST, DataType.DOUBLE, DataValueFactory.nullDataValue())
-                .addParameter(NOT, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.GREATER_THAN, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.LESS_THAN, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.EQUAL_TO, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.AT_LEAST, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.AT_MOST, DataType.DOUBLE, DataValueFactory.nullDataValue())
+                .addParameter(CountCriteria.NOT, DataType.DOUBLE, DataValueFactory.nullDataValue())
                 .toFunctionDefinition();
     }
 
@@ -87,6 +82,27 @@ public class ListCountFunction implements ScriptFunction {
     }
 
 
+    /**
+     * Counts the values in a numeric list that match all of the criteria without creating
+     * a {@link DataValue} for each value in the list.
+     *
+     * @param values The values to count.
+     * @param criteria The criteria the values must match.
+     *
+     * @return the number of values that match.
+     */
+    private long countNumeric(NumericListDataValue values, CountCriteria criteria) {
+        long count = 0;
+        for (int i = 0; i < values.size(); i++) {
+            if (criteria.matches(values.getDouble(i))) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
     @Override
     public FunctionDefinition getDefinition() {
         return functionDefinition;
@@ -102,13 +118,18 @@ public class ListCountFunction implements ScriptFunction {
             return DataValueFactory.longValue(0);
         }
 
+        CountCriteria criteria = CountCriteria.fromArguments(args);
+        if (values instanceof NumericListDataValue && criteria.isNumeric()) {
+            return DataValueFactory.longValue(countNumeric((NumericListDataValue) values, criteria));
+        }
+
         containsNonNumeric = checkForNonNumeric(values);
 
-        List<DataValue> matching = new ArrayList<>();
-        matching.addAll(values.asList());
+        // The list is never modified so the values can be filtered without copying them first.
+        List<DataValue> matching = values.asList();
 
         // Perform equal to checks
-        DataValue equal = args.get(EQUAL_TO);
+        DataValue equal = args.get(CountCriteria.EQUAL_TO);
         if (equal.dataType() != DataType.NULL) {
             List<DataValue> lst = new ArrayList<>();
             for (DataValue dv : matching) {
@@ -122,7 +143,7 @@ public class ListCountFunction implements ScriptFunction {
 
 
         // Perform not checks
-        DataValue not = args.get(NOT);
+        DataValue not = args.get(CountCriteria.NOT);
         if (not.dataType() != DataType.NULL) {
             List<DataValue> lst = new ArrayList<>();
             for (DataValue dv : matching) {
@@ -135,7 +156,7 @@ public class ListCountFunction implements ScriptFunction {
         }
 
         // Perform greater than checks.
-        DataValue greater = args.get(GREATER_THAN);
+        DataValue greater = args.get(CountCriteria.GREATER_THAN);
         if (greater.dataType() != DataType.NULL) {
             if (containsNonNumeric) {
                 throw new ScriptFunctionException("Can not do comparison count if list contains non numeric values.");
@@ -151,7 +172,7 @@ public class ListCountFunction implements ScriptFunction {
         }
 
         // Perform less than checks
-        DataValue less = args.get(LESS_THAN);
+        DataValue less = args.get(CountCriteria.LESS_THAN);
         if (less.dataType() != DataType.NULL) {
             if (containsNonNumeric) {
                 throw new ScriptFunctionException("Can not do comparison count if list contains non numeric values.");
@@ -167,7 +188,7 @@ public class ListCountFunction implements ScriptFunction {
         }
 
         // Perform at least checks
-        DataValue atLeast = args.get(AT_LEAST);
+        DataValue atLeast = args.get(CountCriteria.AT_LEAST);
         if (atLeast.dataType() != DataType.NULL) {
             if (containsNonNumeric) {
                 throw new ScriptFunctionException("Can not do comparison count if list contains non numeric values.");
@@ -183,7 +204,7 @@ public class ListCountFunction implements ScriptFunction {
         }
 
         // Perform at most checks
-        DataValue atMost = args.get(AT_MOST);
+        DataValue atMost = args.get(CountCriteria.AT_MOST);
         if (atMost.dataType() != DataType.NULL) {
             if (containsNonNumeric) {
                 throw new ScriptFunctionException("Can not do comparison count if list contains non numeric values.");
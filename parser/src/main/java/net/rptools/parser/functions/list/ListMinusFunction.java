@@ -14,7 +14,6 @@
  */
 package net.rptools.parser.functions.list;
 
-import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -68,7 +67,7 @@ public class ListMinusFunction implements ScriptFunction {
 	public DataValue call(ScriptContext context, Map<String, DataValue> args) {
 		DataValue values = args.get("values");
 		if (values.asList().size() == 0) {
-			return DataValueFactory.listValue(new ArrayList<DataValue>());
+			return values;
 		}
 		
 		Set<DataValue> result = new LinkedHashSet<>();
@@ -15,7 +15,6 @@
 package net.rptools.parser.functions.list;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -75,7 +74,7 @@ public class ListShuffleFunction implements ScriptFunction {
 		}
 		list.addAll(values.asList());
 
-		Collections.shuffle(list);
+		context.getRandomUtil().shuffle(list);
 		
 		return DataValueFactory.listValue(list);
 	}
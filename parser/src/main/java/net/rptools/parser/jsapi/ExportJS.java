@@ -27,14 +27,29 @@ import java.util.*;
 /**
  * Class used for JavaScript API call to export JavaScript functions.
  *
+ * The exported functions and dice are recorded separately for each thread, so several threads can run
+ * JavaScript that exports functions or dice at the same time without seeing each other's exports.
+ *
  */
 public class ExportJS {
 
-    /** The temporary list of exported functions */
-    private static final List<ExportedFunction> exportedFunctions = new ArrayList<>();
-
-    /** The temporary list of exported dice rolls. */
-    private static final List<JavaScriptDice> exportedDice = new ArrayList<>();
+    /** The temporary list of exported functions for each thread. */
+    private static final ThreadLocal<List<ExportedFunction>> exportedFunctions =
+            new ThreadLocal<List<ExportedFunction>>() {
+                @Override
+                protected List<ExportedFunction> initialValue() {
+                    return new ArrayList<>();
+                }
+            };
+
+    /** The temporary list of exported dice rolls for each thread. */
+    private static final ThreadLocal<List<JavaScriptDice>> exportedDice =
+            new ThreadLocal<List<JavaScriptDice>>() {
+                @Override
+                protected List<JavaScriptDice> initialValue() {
+                    return new ArrayList<>();
+                }
+            };
 
     private ExportJS() {
         // Stop instantiation.
@@ -42,20 +57,20 @@ public class ExportJS {
 
 
     /**
-     * Clear the currently exported functions. This should be run before calling a new JavaScript
-     * script so that you can record which functions were defined in the script.
+     * Clear the functions currently exported by this thread. This should be run before calling a new
+     * JavaScript script so that you can record which functions were defined in the script.
      */
     public static void clearExportedFunctions() {
-        exportedFunctions.clear();
+        exportedFunctions.get().clear();
     }
 
     /**
-     * Returns the exported functions since the last {@code clearExportedFunctions()} call.
+     * Returns the functions exported by this thread since the last {@code clearExportedFunctions()} call.
      *
      * @return the exported functions.
      */
     public static Collection<ExportedFunction> getExportedFunctions() {
-        return Collections.unmodifiableCollection(exportedFunctions);
+        return Collections.unmodifiableCollection(exportedFunctions.get());
     }
 
     /**
@@ -80,25 +95,25 @@ public class ExportJS {
         ExportedFunction ef = new ExportedFunction(name, DataType.valueOf(returnType.toUpperCase()),
                                                    params, jsFunctionName, PermissionLevel.valueOf(perm.toUpperCase()));
 
-        exportedFunctions.add(ef);
+        exportedFunctions.get().add(ef);
     }
 
     /**
-     * Clear the list of currently exported dice. This should be run before calling a new JavaScript script
-     * so that cou can record which dice were defined in the script.
+     * Clear the list of dice currently exported by this thread. This should be run before calling a new
+     * JavaScript script so that cou can record which dice were defined in the script.
      */
     public static void clearExportedDice() {
-        exportedDice.clear();
+        exportedDice.get().clear();
     }
 
 
     /**
-     * Returns a list of the exported dice.
+     * Returns a list of the dice exported by this thread.
      *
      * @return the exported dice.
      */
     public static Collection<JavaScriptDice> getExportedDice() {
-        return Collections.unmodifiableCollection(exportedDice);
+        return Collections.unmodifiableCollection(exportedDice.get());
     }
 
 
@@ -136,7 +151,7 @@ public class ExportJS {
         JavaScriptDice jsd = new JavaScriptDice(dicePattern, name, jsf);
 
 
-        exportedDice.add(jsd);
+        exportedDice.get().add(jsd);
 
     }
 }
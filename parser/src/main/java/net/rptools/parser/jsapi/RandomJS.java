@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.jsapi;
+
+import net.rptools.lib.util.RandomUtil;
+import net.rptools.parser.ScriptContext;
+
+/**
+ * Class used for JavaScript API calls that need random numbers, so that JavaScript functions and dice use the
+ * {@link RandomUtil} of the {@link ScriptContext} they were called with, including its seed, rather than
+ * JavaScript's own {@code Math.random()}.
+ *
+ * The random number generator is recorded separately for each thread while a JavaScript function is being called.
+ *
+ */
+public class RandomJS {
+
+    /** The random number generator of the script context for the call being made by each thread. */
+    private static final ThreadLocal<RandomUtil> randomUtils = new ThreadLocal<>();
+
+    private RandomJS() {
+        // Stop instantiation.
+    }
+
+    /**
+     * Sets the random number generator used by JavaScript called from this thread. This should be set to the
+     * generator of the {@link ScriptContext} before calling a JavaScript function, and set back to the generator
+     * that was returned afterwards.
+     *
+     * @param randomUtil The random number generator, or {@code null} to use the default generator.
+     *
+     * @return the random number generator that was set before, or {@code null} if there was none.
+     */
+    public static RandomUtil setRandomUtil(RandomUtil randomUtil) {
+        RandomUtil previous = randomUtils.get();
+        if (randomUtil == null) {
+            randomUtils.remove();
+        } else {
+            randomUtils.set(randomUtil);
+        }
+
+        return previous;
+    }
+
+    /**
+     * Returns the random number generator used by JavaScript called from this thread.
+     *
+     * @return the random number generator.
+     */
+    public static RandomUtil getRandomUtil() {
+        RandomUtil randomUtil = randomUtils.get();
+        return randomUtil == null ? RandomUtil.getInstance() : randomUtil;
+    }
+
+    /**
+     * Callback to roll a die.
+     *
+     * @param sides The number of sides of the die.
+     *
+     * @return a random number between 1 and sides.
+     */
+    public static int rollDie(int sides) {
+        return getRandomUtil().rollDie(sides);
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * 
+ */
+package net.rptools.parser.symboltable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+
+/**
+ * OverlayPropertyResolver is a property resolver that keeps the properties set through it to
+ * itself, properties that have not been set through it are looked up in another resolver.
+ * The other resolver still decides which properties exist, their types and the values they
+ * can be set to. This lets several evaluations that run at the same time read the same
+ * properties without seeing each other's changes or changing the shared resolver. Calls to
+ * the shared resolver are synchronized on it, as it may not expect to be used by several
+ * threads.
+ * 
+ */
+public final class OverlayPropertyResolver implements PropertyResolver {
+
+	/** The resolver for the properties that have not been set. */
+	private final PropertyResolver shared;
+
+	/** The properties of the default property holder that have been set. */
+	private final Map<String, DataValue> defaultProperties = new LinkedHashMap<>();
+
+	/** The properties that have been set, mapped by the id of their holder. */
+	private final Map<String, Map<String, DataValue>> allProperties = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new OverlayPropertyResolver.
+	 * 
+	 * @param resolver The resolver for the properties that have not been set.
+	 * 
+	 * @throws NullPointerException if resolver is null.
+	 */
+	public OverlayPropertyResolver(PropertyResolver resolver) {
+		if (resolver == null) {
+			throw new NullPointerException("Property resolver can not be null.");
+		}
+
+		shared = resolver;
+	}
+
+	@Override
+	public void setProperty(String name, DataValue value) {
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		if (value == null) {
+			throw new NullPointerException("Value stored in property can not be null.");
+		}
+
+		if (!canBeSetTo(name, value.dataType())) {
+			throw new IllegalArgumentException("Property " + name + " can not be set to a " + value.dataType().toString());
+		}
+
+		defaultProperties.put(name, value);
+	}
+
+	@Override
+	public DataValue getProperty(String name) {
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		if (defaultProperties.containsKey(name)) {
+			return defaultProperties.get(name);
+		}
+
+		synchronized (shared) {
+			return shared.getProperty(name);
+		}
+	}
+
+	@Override
+	public boolean containsProperty(String name) {
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		if (defaultProperties.containsKey(name)) {
+			return true;
+		}
+
+		synchronized (shared) {
+			return shared.containsProperty(name);
+		}
+	}
+
+	@Override
+	public boolean canBeSetTo(String name, DataType type) {
+		synchronized (shared) {
+			return shared.canBeSetTo(name, type);
+		}
+	}
+
+	@Override
+	public DataType dataType(String name) {
+		synchronized (shared) {
+			return shared.dataType(name);
+		}
+	}
+
+	@Override
+	public Collection<String> getPropertyNames() {
+		Set<String> names;
+		synchronized (shared) {
+			names = new LinkedHashSet<>(shared.getPropertyNames());
+		}
+		names.addAll(defaultProperties.keySet());
+
+		return Collections.unmodifiableCollection(names);
+	}
+
+	@Override
+	public void setProperty(String id, String name, DataValue value) {
+		if (id == null) {
+			throw new NullPointerException("Id of property holder can not be null.");
+		}
+
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		if (value == null) {
+			throw new NullPointerException("Value stored in property can not be null.");
+		}
+
+		if (!canBeSetTo(id, name, value.dataType())) {
+			throw new IllegalArgumentException("Property " + name + " can not be set to a " + value.dataType().toString());
+		}
+
+		Map<String, DataValue> properties = allProperties.get(id);
+		if (properties == null) {
+			properties = new LinkedHashMap<>();
+			allProperties.put(id, properties);
+		}
+		properties.put(name, value);
+	}
+
+	@Override
+	public DataValue getProperty(String id, String name) {
+		if (id == null) {
+			throw new NullPointerException("Id of property holder can not be null.");
+		}
+
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		Map<String, DataValue> properties = allProperties.get(id);
+		if (properties != null && properties.containsKey(name)) {
+			return properties.get(name);
+		}
+
+		synchronized (shared) {
+			return shared.getProperty(id, name);
+		}
+	}
+
+	@Override
+	public boolean containsProperty(String id, String name) {
+		if (id == null) {
+			throw new NullPointerException("Id of property holder can not be null.");
+		}
+
+		if (name == null) {
+			throw new NullPointerException("Property name can not be null.");
+		}
+
+		Map<String, DataValue> properties = allProperties.get(id);
+		if (properties != null && properties.containsKey(name)) {
+			return true;
+		}
+
+		synchronized (shared) {
+			return shared.containsProperty(id, name);
+		}
+	}
+
+	@Override
+	public boolean canBeSetTo(String id, String name, DataType type) {
+		synchronized (shared) {
+			return shared.canBeSetTo(id, name, type);
+		}
+	}
+
+	@Override
+	public DataType dataType(String id, String name) {
+		synchronized (shared) {
+			return shared.dataType(id, name);
+		}
+	}
+
+	@Override
+	public Collection<String> getPropertyNames(String id) {
+		Set<String> names;
+		synchronized (shared) {
+			names = new LinkedHashSet<>(shared.getPropertyNames(id));
+		}
+		Map<String, DataValue> properties = allProperties.get(id);
+		if (properties != null) {
+			names.addAll(properties.keySet());
+		}
+
+		return Collections.unmodifiableCollection(names);
+	}
+
+	@Override
+	public boolean hasDefaultId() {
+		synchronized (shared) {
+			return shared.hasDefaultId();
+		}
+	}
+
+	@Override
+	public boolean hasId(String id) {
+		synchronized (shared) {
+			return shared.hasId(id);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * 
+ */
+package net.rptools.parser.symboltable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.rptools.lib.datavalue.DataValue;
+
+/**
+ * OverlayVariableResolver is a variable resolver that keeps the variables set through it to
+ * itself, variables that have not been set through it are looked up in another resolver.
+ * This lets several evaluations that run at the same time read the same variables without
+ * seeing each other's changes or changing the shared resolver. Lookups in the shared
+ * resolver are synchronized on it, as it may not expect to be used by several threads.
+ * 
+ */
+public final class OverlayVariableResolver implements VariableResolver {
+
+	/** The resolver for the variables that have not been set. */
+	private final VariableResolver shared;
+
+	/** The variables that have been set. */
+	private final Map<String, DataValue> variables = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new OverlayVariableResolver.
+	 * 
+	 * @param resolver The resolver for the variables that have not been set.
+	 * 
+	 * @throws NullPointerException if resolver is null.
+	 */
+	public OverlayVariableResolver(VariableResolver resolver) {
+		if (resolver == null) {
+			throw new NullPointerException("Variable resolver can not be null.");
+		}
+
+		shared = resolver;
+	}
+
+	@Override
+	public void setVariable(String name, DataValue value) {
+		if (name == null) {
+			throw new NullPointerException("Variable name can not be null.");
+		}
+
+		variables.put(name, value);
+	}
+
+	@Override
+	public DataValue getVariable(String name) {
+		if (name == null) {
+			throw new NullPointerException("Variable name can not be null.");
+		}
+
+		if (variables.containsKey(name)) {
+			return variables.get(name);
+		}
+
+		synchronized (shared) {
+			return shared.getVariable(name);
+		}
+	}
+
+	@Override
+	public boolean containsVariable(String name) {
+		if (name == null) {
+			throw new NullPointerException("Variable name can not be null.");
+		}
+
+		if (variables.containsKey(name)) {
+			return true;
+		}
+
+		synchronized (shared) {
+			return shared.containsVariable(name);
+		}
+	}
+
+	@Override
+	public Collection<String> getVariableName() {
+		Set<String> names;
+		synchronized (shared) {
+			names = new LinkedHashSet<>(shared.getVariableName());
+		}
+		names.addAll(variables.keySet());
+
+		return Collections.unmodifiableCollection(names);
+	}
+}
@@ -53,5 +53,23 @@ class AssignPropertyNode implements ScriptTreeNode {
 		return val;
 	}
 
+	/**
+	 * Returns the name of the property that is assigned.
+	 * 
+	 * @return the name of the property.
+	 */
+	public String getPropertyName() {
+		return propertyName;
+	}
+
+	/**
+	 * Returns the node of the expression that is assigned.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
+
 	
 }
@@ -54,5 +54,23 @@ class AssignVariableNode implements ScriptTreeNode {
 		return val;
 	}
 
+	/**
+	 * Returns the name of the variable that is assigned.
+	 * 
+	 * @return the name of the variable.
+	 */
+	public String getVariableName() {
+		return variableName;
+	}
+
+	/**
+	 * Returns the node of the expression that is assigned.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
+
 	
 }
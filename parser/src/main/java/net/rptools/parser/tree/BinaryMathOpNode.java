@@ -24,13 +24,13 @@ import net.rptools.parser.ScriptContext;
 class BinaryMathOpNode implements ScriptTreeNode {
 
 	/** The operation to perform. */
-	private Operation operation;
+	private final Operation operation;
 	
 	/** The child node left hand side of the operator. */
-	private ScriptTreeNode leftChild;
+	private final ScriptTreeNode leftChild;
 	
 	/** The child node on the right hand side of the operator. */
-	private ScriptTreeNode rightChild;
+	private final ScriptTreeNode rightChild;
 
 	/**
 	 * Enumeration used for determining the operator type. 
@@ -200,4 +200,31 @@ class BinaryMathOpNode implements ScriptTreeNode {
 		return val;
 	}
 
+	/**
+	 * Returns the operation that is performed.
+	 * 
+	 * @return the operation.
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Returns the child node on the left hand side of the operator.
+	 * 
+	 * @return the left child node.
+	 */
+	public ScriptTreeNode getLeftChild() {
+		return leftChild;
+	}
+
+	/**
+	 * Returns the child node on the right hand side of the operator.
+	 * 
+	 * @return the right child node.
+	 */
+	public ScriptTreeNode getRightChild() {
+		return rightChild;
+	}
+
 }
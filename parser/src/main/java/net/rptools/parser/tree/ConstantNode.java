@@ -59,9 +59,30 @@ class ConstantNode implements ScriptTreeNode {
     public ConstantNode(boolean val) {
         value = DataValueFactory.booleanValue(val);
     }
+
+	/**
+	 * Creates a new ConstantNode for a value that has already been calculated.
+	 * 
+	 * @param val The value of the constant.
+	 */
+	ConstantNode(DataValue val) {
+		assert val != null : "Constant value can not be null";
+
+		value = val;
+	}
+
 	@Override
 	public DataValue evaluate(ScriptContext context) {
 		return value;
 	}
 
+	/**
+	 * Returns the value of the constant.
+	 * 
+	 * @return the value.
+	 */
+	public DataValue getValue() {
+		return value;
+	}
+
 }
@@ -24,6 +24,7 @@ import net.rptools.parser.ExpressionEvaluatorException;
 import net.rptools.parser.ScriptContext;
 import net.rptools.parser.functions.FunctionDispatcher;
 import net.rptools.parser.functions.ArgumentList;
+import net.rptools.parser.functions.ScriptFunction;
 
 /**
  * Script node that represents a function call.
@@ -37,6 +38,9 @@ class FunctionCallNode implements ScriptTreeNode {
 	/** The name of the function to call. */
 	private final String name;
 	
+	/** The built in function that the name resolved to before evaluation, or null if not resolved. */
+	private final ScriptFunction builtinFunction;
+	
 	
 	/**
 	 * Creates a new FunctionCallNode.
@@ -45,11 +49,23 @@ class FunctionCallNode implements ScriptTreeNode {
 	 * @param argList The argument list for the function.
 	 */
 	public FunctionCallNode(String funcName, FunctionArgumentList argList) {
+		this(funcName, argList, null);
+	}
+	
+	/**
+	 * Creates a new FunctionCallNode for a built in function that has already been looked up.
+	 * 
+	 * @param funcName the name of the function.
+	 * @param argList The argument list for the function.
+	 * @param builtin The built in function the name resolves to, or null to look it up on every call.
+	 */
+	FunctionCallNode(String funcName, FunctionArgumentList argList, ScriptFunction builtin) {
 		assert funcName != null : "Function name can not be null";
 		assert argList != null : "Argument list node can not be null";
 
 		name = funcName;
 		argumentList = argList;
+		builtinFunction = builtin;
 	}
 	
 	
@@ -69,6 +85,9 @@ class FunctionCallNode implements ScriptTreeNode {
 
 		ArgumentList alist = new ArgumentList(posArgs, namedArgs);
 		
+		if (builtinFunction != null) {
+			return FunctionDispatcher.getFunctionDispatcher().call(name, builtinFunction, alist, context);
+		}
 		return FunctionDispatcher.getFunctionDispatcher().call(name, alist, context);	
 	}
 
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License. 
+ * 
+ */
+package net.rptools.parser.tree;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.ExpressionEvaluatorException;
+import net.rptools.parser.ScriptContext;
+
+/**
+ * Evaluates a sub expression of the body of a repeat group that does not change between
+ * repetitions only once for each evaluation of the group. The value is worked out the first
+ * time the node is evaluated within the group, so it is evaluated at the same point and with
+ * the same errors as it would be without this node, and then reused for the later repetitions.
+ * <p>
+ * The values are held in a frame for each evaluation of the {@link RepeatGroupNode} that owns
+ * this node, which is kept for the thread evaluating it, so the same tree can be evaluated by
+ * several threads at once.
+ * </p>
+ */
+class HoistedValueNode implements ScriptTreeNode {
+
+	/** The value frame of the repeat group being evaluated by each thread. */
+	private static final ThreadLocal<DataValue[]> frames = new ThreadLocal<>();
+
+	/** The index of the value in the frame of the repeat group. */
+	private final int slot;
+
+	/** The sub expression to evaluate. */
+	private final ScriptTreeNode child;
+
+	/**
+	 * Creates a new HoistedValueNode.
+	 * 
+	 * @param slot The index of the value in the frame of the repeat group.
+	 * @param child The sub expression to evaluate.
+	 */
+	HoistedValueNode(int slot, ScriptTreeNode child) {
+		assert child != null : "Child node can not be null";
+
+		this.slot = slot;
+		this.child = child;
+	}
+
+	@Override
+	public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {
+		DataValue[] frame = frames.get();
+		DataValue val = frame[slot];
+		if (val == null) {
+			val = child.evaluate(context);
+			frame[slot] = val;
+		}
+
+		return val;
+	}
+
+	/**
+	 * Returns the sub expression that is evaluated.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
+
+	/**
+	 * Starts a new frame of values for an evaluation of a repeat group.
+	 * 
+	 * @param size The number of values hoisted out of the body of the repeat group.
+	 * 
+	 * @return the frame of the repeat group that was being evaluated before, which must be
+	 *         passed to {@link #exitFrame(DataValue[])} once the group has been evaluated.
+	 */
+	static DataValue[] enterFrame(int size) {
+		DataValue[] outer = frames.get();
+		frames.set(new DataValue[size]);
+		return outer;
+	}
+
+	/**
+	 * Ends the frame of values for an evaluation of a repeat group.
+	 * 
+	 * @param outer The frame returned by {@link #enterFrame(int)}.
+	 */
+	static void exitFrame(DataValue[] outer) {
+		if (outer == null) {
+			frames.remove();
+		} else {
+			frames.set(outer);
+		}
+	}
+}
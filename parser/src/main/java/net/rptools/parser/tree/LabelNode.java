@@ -56,6 +56,24 @@ class LabelNode implements ScriptTreeNode {
 
 		return DataValueFactory.labeledValue(val, new DataLabel(label, 0));
 	}
+
+	/**
+	 * Returns the name of the label.
+	 * 
+	 * @return the name of the label.
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * Returns the child node that is labeled.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
 	
 	
 
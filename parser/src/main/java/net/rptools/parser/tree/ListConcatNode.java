@@ -14,9 +14,6 @@
  */
 package net.rptools.parser.tree;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
 import net.rptools.parser.ExpressionEvaluatorException;
@@ -56,11 +53,25 @@ class ListConcatNode implements ScriptTreeNode {
 		final DataValue l = left.evaluate(context);
 		final DataValue r = right.evaluate(context);
 		
-		final List<DataValue> lst = new ArrayList<DataValue>();
-		lst.addAll(l.asList());
-		lst.addAll(r.asList());
-		
-		return DataValueFactory.listValue(lst);
+		return DataValueFactory.listValueConcat(l, r);
+	}
+
+	/**
+	 * Returns the left list to concatenate.
+	 * 
+	 * @return the left child node.
+	 */
+	public ScriptTreeNode getLeft() {
+		return left;
+	}
+
+	/**
+	 * Returns the right list to concatenate.
+	 * 
+	 * @return the right child node.
+	 */
+	public ScriptTreeNode getRight() {
+		return right;
 	}
 	
 	
@@ -44,6 +44,15 @@ class NegateNode implements ScriptTreeNode {
 		final DataValue val = child.evaluate(context);
 		return val.negate();
 	}
+
+	/**
+	 * Returns the child node that is negated.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
 	
 	
 
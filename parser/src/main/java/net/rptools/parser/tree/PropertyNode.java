@@ -44,4 +44,13 @@ class PropertyNode implements ScriptTreeNode {
 		return context.getSymbolTable().getProperty(propertyName);
 	}
 
+	/**
+	 * Returns the name of the property.
+	 * 
+	 * @return the name of the property.
+	 */
+	public String getPropertyName() {
+		return propertyName;
+	}
+
 }
@@ -14,12 +14,11 @@
  */
 package net.rptools.parser.tree;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.datavalue.DataValueFactory;
 import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.ListDataValueBuilder;
+import net.rptools.lib.datavalue.NumericListDataValue;
 import net.rptools.parser.ExpressionEvaluatorException;
 import net.rptools.parser.ScriptContext;
 
@@ -50,6 +49,15 @@ class RepeatGroupNode implements ScriptTreeNode {
 	/** Should the user be prompted for the number of times to repeat. */
 	private final boolean prompt;
 	
+	/** 
+	 * Does the child always evaluate to the same value within a single evaluation of the group,
+	 * in which case it only needs to be evaluated once.
+	 */
+	private final boolean invariantChild;
+	
+	/** The number of {@link HoistedValueNode}s in the child that belong to this group. */
+	private final int hoistedValues;
+	
 	/** The name to use for the prompt. */
 	private static String PROMPT_NAME = "Repeat Group Prompt";
 	
@@ -78,6 +86,24 @@ class RepeatGroupNode implements ScriptTreeNode {
 	 * @param promptMsg
 	 */
 	RepeatGroupNode(int times, ScriptTreeNode child, boolean sum, String variable, String property, boolean prompt, String promptMsg) {
+		this(times, child, sum, variable, property, prompt, promptMsg, false, 0);
+	}
+	
+	/**
+	 * Creates a new RepeatGroupNode. 
+	 * 
+	 * @param times The number of times to repeat.
+	 * @param child The child to repeat.
+	 * @param sum Is the repeat group a sum group.
+	 * @param variable The variable to get the number times to repeat from.
+	 * @param property The property to get the number of times to repeat from.
+	 * @param prompt Should the number of times to repeat be prompted for.
+	 * @param promptMsg The message to display when prompting. 
+	 * @param invariant Does the child always evaluate to the same value.
+	 * @param hoisted The number of {@link HoistedValueNode}s in the child that belong to this group.
+	 */
+	private RepeatGroupNode(int times, ScriptTreeNode child, boolean sum, String variable, String property, boolean prompt, 
+			String promptMsg, boolean invariant, int hoisted) {
 		this.times = times;
 		this.child = child;
 		this.sum = sum;
@@ -85,6 +111,8 @@ class RepeatGroupNode implements ScriptTreeNode {
 		this.property = property;
 		this.promptMsg = promptMsg;
 		this.prompt = prompt;
+		this.invariantChild = invariant;
+		this.hoistedValues = hoisted;
 	}
 	
 	/**
@@ -190,8 +218,6 @@ class RepeatGroupNode implements ScriptTreeNode {
 
 	@Override
 	public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {
-		final List<DataValue> values = new ArrayList<>();
-		
 		long noTimes;
 		
 		if (prompt) {
@@ -216,30 +242,177 @@ class RepeatGroupNode implements ScriptTreeNode {
 			noTimes = times;
 		}
 		
-		DataValue total = DataValueFactory.longValue(0);
+		if (hoistedValues == 0) {
+			return evaluateChild(context, noTimes);
+		}
+
+		DataValue[] outerFrame = HoistedValueNode.enterFrame(hoistedValues);
+		try {
+			return evaluateChild(context, noTimes);
+		} finally {
+			HoistedValueNode.exitFrame(outerFrame);
+		}
+	}
+
+	/**
+	 * Evaluates the child a number of times and returns the results.
+	 * 
+	 * @param context The context to evaluate the child with.
+	 * @param noTimes The number of times to evaluate the child.
+	 * 
+	 * @return the list of results, or their sum for a repeat sum group.
+	 * 
+	 * @throws ExpressionEvaluatorException if an error occurs evaluating the child.
+	 */
+	private DataValue evaluateChild(ScriptContext context, long noTimes) throws ExpressionEvaluatorException {
+		if (sum) {
+			return evaluateSum(context, noTimes);
+		}
+		
+		// The child may roll dice or set variables so it has to be evaluated now rather than 
+		// lazily, but the builder adds the results straight into the leaves of the list.
+		final ListDataValueBuilder values = new ListDataValueBuilder();
+		DataValue val = null;
 		for (int i = 0; i < noTimes; i++) {
-			DataValue val = child.evaluate(context);
+			if (i == 0 || invariantChild == false) {
+				val = child.evaluate(context);
+			}
 			values.add(val);
+		}
+		
+		return values.toDataValue();
+	}
+
+	/**
+	 * Evaluates the child a number of times and returns the sum of the results without 
+	 * keeping the results.
+	 * 
+	 * @param context The context to evaluate the child with.
+	 * @param noTimes The number of times to evaluate the child.
+	 * 
+	 * @return the sum of the results.
+	 * 
+	 * @throws ExpressionEvaluatorException if an error occurs evaluating the child.
+	 */
+	private DataValue evaluateSum(ScriptContext context, long noTimes) throws ExpressionEvaluatorException {
+		final SumAccumulator total = new SumAccumulator();
+		DataValue val = null;
+		for (int i = 0; i < noTimes; i++) {
+			if (i == 0 || invariantChild == false) {
+				val = child.evaluate(context);
+			}
 			
-			if (sum) {
-				if (val.dataType() == DataType.LIST) {
-					for (DataValue v : val.asList()) {
-						total = total.add(v);
+			if (val instanceof NumericListDataValue) {
+				total.addAll((NumericListDataValue) val);
+			} else if (val.dataType() == DataType.LIST) {
+				for (DataValue v : val.asList()) {
+					total.add(v);
+				}
+			} else {
+				total.add(val);
+			}
+		}
+		
+		return total.toDataValue();
+	}
+
+	/**
+	 * Accumulates the sum for a repeat sum group. While only numbers have been added the 
+	 * total is kept as a primitive so no {@link DataValue} is created for each value, the 
+	 * result is the same as starting with a {@link DataType#LONG} 0 and adding each value 
+	 * to the total in turn with {@link DataValue#add(DataValue)}.
+	 */
+	private static final class SumAccumulator {
+		
+		/** The total while it is a {@link DataType#LONG}. */
+		private long longTotal;
+		
+		/** The total once it is a {@link DataType#DOUBLE}. */
+		private double doubleTotal;
+		
+		/** Has a {@link DataType#DOUBLE} been added. */
+		private boolean isDouble;
+		
+		/** The total once a value that is not a number has been added, otherwise null. */
+		private DataValue total;
+		
+		/**
+		 * Adds a value to the total.
+		 * 
+		 * @param val The value to add.
+		 */
+		void add(DataValue val) {
+			if (total == null) {
+				DataValue dv = val;
+				while (dv.dataType() == DataType.RESULT) {
+					dv = dv.asResult().getValue();
+				}
+				
+				if (dv.dataType() == DataType.LONG) {
+					if (isDouble) {
+						doubleTotal += dv.asLong();
+					} else {
+						longTotal += dv.asLong();
 					}
-				} else {
-					total = total.add(val);
+					return;
+				} else if (dv.dataType() == DataType.DOUBLE) {
+					toDouble();
+					doubleTotal += dv.asDouble();
+					return;
 				}
+				
+				total = toDataValue();
 			}
+			
+			total = total.add(val);
 		}
 		
-		DataValue retval;
-		if (sum) {
-			retval = total;
-		} else {
-			retval = DataValueFactory.listValue(values);
+		/**
+		 * Adds all of the values in a list of numbers to the total.
+		 * 
+		 * @param lst The values to add.
+		 */
+		void addAll(NumericListDataValue lst) {
+			if (total != null) {
+				for (DataValue v : lst.asList()) {
+					total = total.add(v);
+				}
+			} else if (!isDouble && lst.isIntegral()) {
+				for (int i = 0; i < lst.size(); i++) {
+					longTotal += lst.getLong(i);
+				}
+			} else {
+				toDouble();
+				for (int i = 0; i < lst.size(); i++) {
+					doubleTotal += lst.getDouble(i);
+				}
+			}
+		}
+		
+		/**
+		 * Switches the total to a floating point value if it is not one already.
+		 */
+		private void toDouble() {
+			if (!isDouble) {
+				doubleTotal = longTotal;
+				isDouble = true;
+			}
 		}
 		
-		return retval;
+		/**
+		 * Returns the total.
+		 * 
+		 * @return the total.
+		 */
+		DataValue toDataValue() {
+			if (total != null) {
+				return total;
+			} else if (isDouble) {
+				return DataValueFactory.doubleValue(doubleTotal);
+			} else {
+				return DataValueFactory.longValue(longTotal);
+			}
+		}
 	}
 
 	/**
@@ -251,4 +424,28 @@ class RepeatGroupNode implements ScriptTreeNode {
 		return promptMsg;
 	}
 
+	/**
+	 * Returns the child that is repeated.
+	 * 
+	 * @return the child node.
+	 */
+	public ScriptTreeNode getChild() {
+		return child;
+	}
+
+	/**
+	 * Returns a copy of this RepeatGroupNode that repeats a different child.
+	 * 
+	 * @param node The child to repeat.
+	 * @param invariant Does the child always evaluate to the same value, if so it 
+	 *        will only be evaluated once for each evaluation of the group.
+	 * @param hoisted The number of {@link HoistedValueNode}s in the child that belong to
+	 *        this group, numbered from 0.
+	 * 
+	 * @return the RepeatGroupNode.
+	 */
+	RepeatGroupNode withChild(ScriptTreeNode node, boolean invariant, int hoisted) {
+		return new RepeatGroupNode(times, node, sum, variable, property, prompt, promptMsg, invariant, hoisted);
+	}
+
 }
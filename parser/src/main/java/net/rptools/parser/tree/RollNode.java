@@ -18,33 +18,95 @@ import net.rptools.lib.datavalue.DataValue;
 import net.rptools.lib.result.RollExpression;
 import net.rptools.parser.ExpressionEvaluatorException;
 import net.rptools.parser.ScriptContext;
+import net.rptools.parser.dice.DiceRoller;
+import net.rptools.parser.dice.RollPlan;
 
 /**
  * Represents the ScriptTreeNode that performs dice rolls.
  */
 class RollNode implements ScriptTreeNode {
 
-	/** The name of the dice roll in the symbol table. */
+	/** The name of the dice roll results in the symbol table. */
 	private final String rollName;
 	
+	/** The roll expression to roll. */
+	private final RollExpression rollExpression;
+
+	/** The plan used to perform the roll, replaced when it is no longer current. */
+	private volatile RollPlan rollPlan;
+	
 	/**
 	 * Creates a new RollNode.
 	 * 
-	 * @param name The name of the dice roll in the symbol table.
+	 * @param name The name of the dice roll results in the symbol table.
+	 * @param rollExpr The roll expression to roll.
 	 */
-	public RollNode(String name) {
+	public RollNode(String name, RollExpression rollExpr) {
 		assert name != null : "Roll name can not be null.";
+		assert rollExpr != null : "Roll expression can not be null.";
 		
 		rollName = name;
+		rollExpression = rollExpr;
+	}
+
+	/**
+	 * Creates a new RollNode that uses an existing {@link RollPlan}.
+	 * 
+	 * @param name The name of the dice roll results in the symbol table.
+	 * @param plan The plan used to perform the roll.
+	 */
+	private RollNode(String name, RollPlan plan) {
+		this(name, plan.getRollExpression());
+		rollPlan = plan;
+	}
+
+	/**
+	 * Returns a RollNode that has already matched its roll expression to the dice that
+	 * will roll it. If no dice match the roll expression this node is returned so that 
+	 * the error happens when the roll is performed.
+	 * 
+	 * @return the RollNode.
+	 */
+	public RollNode withPlan() {
+		try {
+			return new RollNode(rollName, DiceRoller.getInstance().plan(rollExpression));
+		} catch (ExpressionEvaluatorException e) {
+			return this;
+		}
 	}
 	
 	
 	@Override
 	public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {
-        DataValue rollRes = context.getSymbolTable().resolveRoll(context, rollName);
+        DiceRoller diceRoller = DiceRoller.getInstance();
+        RollPlan plan = rollPlan;
+        if (plan == null || diceRoller.isCurrent(plan) == false) {
+            plan = diceRoller.plan(rollExpression);
+            rollPlan = plan;
+        }
+
+        DataValue rollRes = plan.roll(context);
         context.getSymbolTable().addRollResult(rollName, rollRes);
 
         return rollRes;
 	}
 
+	/**
+	 * Returns the name of the dice roll results in the symbol table.
+	 * 
+	 * @return the name of the roll.
+	 */
+	public String getRollName() {
+		return rollName;
+	}
+
+	/**
+	 * Returns the roll expression that is rolled.
+	 * 
+	 * @return the roll expression.
+	 */
+	public RollExpression getRollExpression() {
+		return rollExpression;
+	}
+
 }
@@ -19,7 +19,7 @@ import java.util.Collections;
 import java.util.List;
 
 import net.rptools.lib.datavalue.DataValue;
-import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.datavalue.ListDataValueBuilder;
 import net.rptools.parser.ExpressionEvaluatorException;
 import net.rptools.parser.ScriptContext;
 
@@ -30,28 +30,38 @@ import net.rptools.parser.ScriptContext;
 class ScriptNode implements ScriptTreeNode {
 	
 	/** The statements that make up the script. */
-	private final List<ScriptTreeNode> statements = new ArrayList<>();
+	private final List<ScriptTreeNode> statements;
 
 	/**
-	 * Adds a statement to the script.
+	 * Creates a new ScriptNode.
 	 * 
-	 * @param node the node for the statement to add.
+	 * @param nodes the nodes for the statements that make up the script.
 	 */
-	public void addStatement(ScriptTreeNode node) {
-		assert node != null : "Child null can not be null.";
-		statements.add(node);
+	public ScriptNode(List<ScriptTreeNode> nodes) {
+		assert nodes != null : "Statements can not be null.";
+
+		statements = Collections.unmodifiableList(new ArrayList<>(nodes));
+	}
+
+	/**
+	 * Returns the statements that make up the script.
+	 * 
+	 * @return the statements.
+	 */
+	public List<ScriptTreeNode> getStatements() {
+		return statements;
 	}
 	
 	@Override
 	public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {
 
-        List<DataValue> results = new ArrayList<>(statements.size());
+		ListDataValueBuilder results = new ListDataValueBuilder();
 		for (ScriptTreeNode node : statements) {
 			DataValue val = node.evaluate(context);
-            results.add(val);
+			results.add(val);
 		}
 		
-		return DataValueFactory.listValue(results);
+		return results.toDataValue();
 	}
 
 }
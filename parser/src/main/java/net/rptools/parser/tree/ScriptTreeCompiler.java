@@ -0,0 +1,619 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.ScriptContext;
+
+/**
+ * ScriptTreeCompiler compiles a tree of {@link ScriptTreeNode}s into a JVM class that
+ * implements {@link ScriptTreeNode}, so that the script can be JIT compiled like any
+ * other Java code rather than being walked node by node.
+ * <p>
+ * Constants, variable and property lookups and assignments, mathematical operations,
+ * negation and list concatenation are compiled into the generated class. Any other node
+ * (along with its children), such as dice rolls, function calls and repeat groups, is left
+ * to the interpreter and called from the generated class.
+ * </p>
+ * <p>
+ * Generated classes are cached by their source, so scripts with the same structure, such
+ * as a script that is parsed again after being evicted from the {@code ScriptCache}, share
+ * a class and are only compiled once.
+ * </p>
+ * <p>
+ * Compilation uses the system Java compiler so it is only available when running on a JDK,
+ * see {@link #isAvailable()}. Compiling a class takes a long time compared to evaluating a
+ * script, so {@link #compileInBackground(ScriptTreeNode)} compiles on a separate thread and
+ * the script can be interpreted until the class is ready.
+ * </p>
+ */
+public final class ScriptTreeCompiler {
+
+	/** The package that generated classes are placed in. */
+	private static final String PACKAGE_NAME = "net.rptools.parser.tree.generated";
+
+	/**
+	 * The name of the generated classes. Every generated class is loaded by its own class
+	 * loader so they can all have the same name, which lets the source be used as the key
+	 * for the cache.
+	 */
+	private static final String CLASS_NAME = "GeneratedScript";
+
+	/** The maximum number of generated classes that are cached. */
+	private static final int MAX_CACHED_CLASSES = 256;
+
+	/** The system Java compiler, or null if it is not available. */
+	private static final JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+
+	/** The thread that compiles classes in the background. */
+	private static final ExecutorService compilerThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Script Compiler");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/** The constructors of the generated classes, keyed by their source. */
+	private static final Map<String, Constructor<?>> constructors =
+			new LinkedHashMap<String, Constructor<?>>(16, 0.75f, true) {
+				private static final long serialVersionUID = -2914853203184452137L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Constructor<?>> eldest) {
+					return size() > MAX_CACHED_CLASSES;
+				}
+			};
+
+	/**
+	 * Private constructor to stop instantiation.
+	 */
+	private ScriptTreeCompiler() {
+	}
+
+	/**
+	 * Checks to see if the system Java compiler needed to compile scripts is available.
+	 *
+	 * @return true if scripts can be compiled.
+	 */
+	public static boolean isAvailable() {
+		return javaCompiler != null;
+	}
+
+	/**
+	 * Compiles the script tree into a JVM class and returns an instance of it. The calling
+	 * thread waits for the class to be compiled.
+	 *
+	 * @param node The root node of the tree to compile.
+	 *
+	 * @return the compiled node.
+	 *
+	 * @throws NullPointerException if node is null.
+	 * @throws UnsupportedOperationException if the system Java compiler is not available.
+	 * @throws IllegalStateException if the generated class can not be compiled or loaded.
+	 */
+	public static ScriptTreeNode compile(ScriptTreeNode node) {
+		if (node == null) {
+			throw new NullPointerException("Node to compile can not be null.");
+		}
+
+		SourceGenerator generator = new SourceGenerator(CLASS_NAME);
+		String source = generator.generate(node);
+
+		try {
+			return (ScriptTreeNode) getConstructor(source).newInstance(generator.getConstants(),
+					generator.getNames(), generator.getNodes());
+		} catch (ReflectiveOperationException | IOException e) {
+			throw new IllegalStateException("Unable to load compiled script: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Compiles the script tree into a JVM class on a background thread. The result of the
+	 * {@link Future} is the compiled node, or the exception thrown by
+	 * {@link #compile(ScriptTreeNode)} if the tree could not be compiled.
+	 *
+	 * @param node The root node of the tree to compile.
+	 *
+	 * @return the {@link Future} holding the compiled node.
+	 *
+	 * @throws NullPointerException if node is null.
+	 */
+	public static Future<ScriptTreeNode> compileInBackground(final ScriptTreeNode node) {
+		if (node == null) {
+			throw new NullPointerException("Node to compile can not be null.");
+		}
+
+		return compilerThread.submit(new Callable<ScriptTreeNode>() {
+			@Override
+			public ScriptTreeNode call() {
+				return compile(node);
+			}
+		});
+	}
+
+	/**
+	 * Returns the constructor of the generated class for a tree, compiling the class if one
+	 * with the same source has not already been compiled.
+	 *
+	 * @param source The source generated for the tree, which is also the key for the cache.
+	 *
+	 * @return the constructor.
+	 *
+	 * @throws ReflectiveOperationException if the compiled class can not be loaded.
+	 * @throws IOException if an error occurs while compiling.
+	 */
+	private static Constructor<?> getConstructor(String source) throws ReflectiveOperationException, IOException {
+		synchronized (constructors) {
+			Constructor<?> constructor = constructors.get(source);
+			if (constructor != null) {
+				return constructor;
+			}
+		}
+
+		if (javaCompiler == null) {
+			throw new UnsupportedOperationException("Scripts can only be compiled when a Java compiler is available.");
+		}
+
+		Class<?> cls = compileClass(javaCompiler, PACKAGE_NAME + "." + CLASS_NAME, source);
+		Constructor<?> constructor = cls.getConstructor(DataValue[].class, String[].class, ScriptTreeNode[].class);
+		synchronized (constructors) {
+			constructors.put(source, constructor);
+		}
+
+		return constructor;
+	}
+
+	/**
+	 * Compiles the source for a class and loads it.
+	 *
+	 * @param compiler The compiler to use.
+	 * @param className The fully qualified name of the class.
+	 * @param source The source of the class.
+	 *
+	 * @return the class.
+	 *
+	 * @throws IOException if an error occurs while compiling.
+	 * @throws ClassNotFoundException if the compiled class can not be loaded.
+	 * @throws IllegalStateException if the source does not compile, for example because the
+	 *         script engine classes could not be found on the class path.
+	 */
+	private static Class<?> compileClass(JavaCompiler compiler, String className, String source)
+			throws IOException, ClassNotFoundException {
+		StandardJavaFileManager standardManager = compiler.getStandardFileManager(null, null, null);
+		MemoryFileManager fileManager = new MemoryFileManager(standardManager);
+
+		try {
+			List<String> options = Arrays.asList("-classpath", getClassPath(), "-g:none");
+			JavaFileObject sourceFile = new SourceFile(className, source);
+			DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+			Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+					Collections.singleton(sourceFile)).call();
+
+			if (!Boolean.TRUE.equals(success)) {
+				StringBuilder sb = new StringBuilder("Unable to compile script:");
+				for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+					sb.append(' ').append(diagnostic.getMessage(null));
+				}
+				throw new IllegalStateException(sb.toString());
+			}
+		} finally {
+			fileManager.close();
+		}
+
+		return new GeneratedClassLoader(ScriptTreeNode.class.getClassLoader(), fileManager.getClasses())
+				.loadClass(className);
+	}
+
+	/**
+	 * Returns the class path to compile generated classes with. This is the class path of
+	 * the application plus the locations that the script engine classes were loaded from.
+	 *
+	 * @return the class path.
+	 */
+	private static String getClassPath() {
+		Set<String> paths = new LinkedHashSet<>();
+		for (Class<?> cls : new Class<?>[] { ScriptTreeNode.class, DataValue.class }) {
+			CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+			if (codeSource != null && codeSource.getLocation() != null) {
+				try {
+					paths.add(new File(codeSource.getLocation().toURI()).getPath());
+				} catch (URISyntaxException | IllegalArgumentException e) {
+					// Fall back to the application class path.
+				}
+			}
+		}
+
+		String classPath = System.getProperty("java.class.path");
+		if (classPath != null && classPath.length() > 0) {
+			paths.add(classPath);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (String path : paths) {
+			if (sb.length() > 0) {
+				sb.append(File.pathSeparator);
+			}
+			sb.append(path);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Generates the Java source code for a tree of {@link ScriptTreeNode}s.
+	 */
+	private static final class SourceGenerator {
+
+		/** The name of the class to generate. */
+		private final String className;
+
+		/** The constant values used by the generated class. */
+		private final List<DataValue> constants = new ArrayList<>();
+
+		/** The variable and property names used by the generated class. */
+		private final List<String> names = new ArrayList<>();
+
+		/** The nodes that the generated class leaves to the interpreter. */
+		private final List<ScriptTreeNode> nodes = new ArrayList<>();
+
+		/** The methods of the generated class that evaluate each statement. */
+		private final StringBuilder methods = new StringBuilder();
+
+		/**
+		 * Creates a new SourceGenerator.
+		 *
+		 * @param name The name of the class to generate.
+		 */
+		SourceGenerator(String name) {
+			className = name;
+		}
+
+		/**
+		 * Generates the source code for a class that evaluates the tree.
+		 *
+		 * @param root The root node of the tree.
+		 *
+		 * @return the source code.
+		 */
+		String generate(ScriptTreeNode root) {
+			StringBuilder body = new StringBuilder();
+			if (root instanceof ScriptNode) {
+				List<ScriptTreeNode> statements = ((ScriptNode) root).getStatements();
+				body.append("        ListDataValueBuilder results = new ListDataValueBuilder();\n");
+				for (int i = 0; i < statements.size(); i++) {
+					addStatementMethod(i, statements.get(i));
+					body.append("        results.add(statement").append(i).append("(context));\n");
+				}
+				body.append("        return results.toDataValue();\n");
+			} else {
+				addStatementMethod(0, root);
+				body.append("        return statement0(context);\n");
+			}
+
+			StringBuilder sb = new StringBuilder();
+			sb.append("package ").append(PACKAGE_NAME).append(";\n\n");
+			sb.append("import net.rptools.lib.datavalue.DataValue;\n");
+			sb.append("import net.rptools.lib.datavalue.DataValueFactory;\n");
+			sb.append("import net.rptools.lib.datavalue.ListDataValueBuilder;\n");
+			sb.append("import net.rptools.parser.ExpressionEvaluatorException;\n");
+			sb.append("import net.rptools.parser.ScriptContext;\n");
+			sb.append("import net.rptools.parser.tree.ScriptTreeNode;\n\n");
+			sb.append("public final class ").append(className).append(" implements ScriptTreeNode {\n\n");
+			sb.append("    private final DataValue[] constants;\n");
+			sb.append("    private final String[] names;\n");
+			sb.append("    private final ScriptTreeNode[] nodes;\n\n");
+			sb.append("    public ").append(className).append("(DataValue[] c, String[] n, ScriptTreeNode[] t) {\n");
+			sb.append("        constants = c;\n");
+			sb.append("        names = n;\n");
+			sb.append("        nodes = t;\n");
+			sb.append("    }\n\n");
+			sb.append("    @Override\n");
+			sb.append("    public DataValue evaluate(ScriptContext context) throws ExpressionEvaluatorException {\n");
+			sb.append(body);
+			sb.append("    }\n\n");
+			sb.append(methods);
+			sb.append("    private static DataValue setVariable(ScriptContext context, String name, DataValue val) {\n");
+			sb.append("        context.getSymbolTable().setVariable(name, val);\n");
+			sb.append("        return val;\n");
+			sb.append("    }\n\n");
+			sb.append("    private static DataValue setProperty(ScriptContext context, String name, DataValue val) {\n");
+			sb.append("        context.getSymbolTable().setProperty(name, val);\n");
+			sb.append("        return val;\n");
+			sb.append("    }\n\n");
+			sb.append("}\n");
+
+			return sb.toString();
+		}
+
+		/**
+		 * Adds a method that evaluates a single statement of the script.
+		 *
+		 * @param index The index of the statement.
+		 * @param statement The statement.
+		 */
+		private void addStatementMethod(int index, ScriptTreeNode statement) {
+			methods.append("    private DataValue statement").append(index);
+			methods.append("(ScriptContext context) throws ExpressionEvaluatorException {\n");
+			methods.append("        return ").append(expression(statement)).append(";\n");
+			methods.append("    }\n\n");
+		}
+
+		/**
+		 * Returns the Java expression that evaluates a node. Operands are always evaluated left
+		 * to right, the same as the interpreter.
+		 *
+		 * @param node The node.
+		 *
+		 * @return the Java expression.
+		 */
+		private String expression(ScriptTreeNode node) {
+			if (node instanceof ConstantNode) {
+				constants.add(((ConstantNode) node).getValue());
+				return "constants[" + (constants.size() - 1) + "]";
+			} else if (node instanceof VariableNode) {
+				return "context.getSymbolTable().getVariable(" + name(((VariableNode) node).getVariableName()) + ")";
+			} else if (node instanceof PropertyNode) {
+				return "context.getSymbolTable().getProperty(" + name(((PropertyNode) node).getPropertyName()) + ")";
+			} else if (node instanceof AssignVariableNode) {
+				AssignVariableNode assign = (AssignVariableNode) node;
+				return "setVariable(context, " + name(assign.getVariableName()) + ", " + expression(assign.getChild()) + ")";
+			} else if (node instanceof AssignPropertyNode) {
+				AssignPropertyNode assign = (AssignPropertyNode) node;
+				return "setProperty(context, " + name(assign.getPropertyName()) + ", " + expression(assign.getChild()) + ")";
+			} else if (node instanceof NegateNode) {
+				return "(" + expression(((NegateNode) node).getChild()) + ").negate()";
+			} else if (node instanceof ListConcatNode) {
+				ListConcatNode concat = (ListConcatNode) node;
+				return "DataValueFactory.listValueConcat(" + expression(concat.getLeft()) + ", " 
+						+ expression(concat.getRight()) + ")";
+			} else if (node instanceof BinaryMathOpNode) {
+				BinaryMathOpNode opNode = (BinaryMathOpNode) node;
+				String left = expression(opNode.getLeftChild());
+				String right = expression(opNode.getRightChild());
+				return "(" + left + ")." + methodName(opNode.getOperation()) + "(" + right + ")";
+			}
+
+			nodes.add(node);
+			return "nodes[" + (nodes.size() - 1) + "].evaluate(context)";
+		}
+
+		/**
+		 * Returns the Java expression for a variable or property name.
+		 *
+		 * @param name The name.
+		 *
+		 * @return the Java expression.
+		 */
+		private String name(String name) {
+			names.add(name);
+			return "names[" + (names.size() - 1) + "]";
+		}
+
+		/**
+		 * Returns the name of the {@link DataValue} method that performs an operation.
+		 *
+		 * @param op The operation.
+		 *
+		 * @return the name of the method.
+		 */
+		private String methodName(BinaryMathOpNode.Operation op) {
+			switch (op) {
+				case ADD:
+					return "add";
+				case SUBTRACT:
+					return "subtract";
+				case MULTIPLY:
+					return "multiply";
+				case DIVIDE:
+					return "divide";
+				case REMAINDER:
+					return "remainder";
+				case POWER:
+					return "power";
+				default:
+					throw new IllegalStateException("Unknown operation " + op);
+			}
+		}
+
+		/**
+		 * Returns the constant values used by the generated class.
+		 *
+		 * @return the constants.
+		 */
+		DataValue[] getConstants() {
+			return constants.toArray(new DataValue[constants.size()]);
+		}
+
+		/**
+		 * Returns the variable and property names used by the generated class.
+		 *
+		 * @return the names.
+		 */
+		String[] getNames() {
+			return names.toArray(new String[names.size()]);
+		}
+
+		/**
+		 * Returns the nodes the generated class leaves to the interpreter.
+		 *
+		 * @return the nodes.
+		 */
+		ScriptTreeNode[] getNodes() {
+			return nodes.toArray(new ScriptTreeNode[nodes.size()]);
+		}
+	}
+
+	/**
+	 * The source code of a generated class held in memory.
+	 */
+	private static final class SourceFile extends SimpleJavaFileObject {
+
+		/** The source code. */
+		private final String source;
+
+		/**
+		 * Creates a new SourceFile.
+		 *
+		 * @param className The fully qualified name of the class.
+		 * @param src The source code.
+		 */
+		SourceFile(String className, String src) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			source = src;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	/**
+	 * A compiled class file held in memory.
+	 */
+	private static final class ClassFile extends SimpleJavaFileObject {
+
+		/** The bytes of the class file. */
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		/**
+		 * Creates a new ClassFile.
+		 *
+		 * @param className The fully qualified name of the class.
+		 */
+		ClassFile(String className) {
+			super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return bytes;
+		}
+
+		/**
+		 * Returns the bytes of the class file.
+		 *
+		 * @return the bytes.
+		 */
+		byte[] getBytes() {
+			return bytes.toByteArray();
+		}
+	}
+
+	/**
+	 * File manager that keeps compiled classes in memory instead of writing them out.
+	 */
+	private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+		/** The compiled classes. */
+		private final Map<String, ClassFile> classFiles = new HashMap<>();
+
+		/**
+		 * Creates a new MemoryFileManager.
+		 *
+		 * @param manager The file manager to forward to.
+		 */
+		MemoryFileManager(StandardJavaFileManager manager) {
+			super(manager);
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+				FileObject sibling) {
+			ClassFile classFile = new ClassFile(className);
+			classFiles.put(className, classFile);
+			return classFile;
+		}
+
+		/**
+		 * Returns the bytes of the compiled classes.
+		 *
+		 * @return the compiled classes mapped by class name.
+		 */
+		Map<String, byte[]> getClasses() {
+			Map<String, byte[]> classes = new HashMap<>();
+			for (Map.Entry<String, ClassFile> entry : classFiles.entrySet()) {
+				classes.put(entry.getKey(), entry.getValue().getBytes());
+			}
+			return classes;
+		}
+	}
+
+	/**
+	 * Class loader for generated classes. Each compiled script gets its own class loader so that
+	 * the class can be unloaded once the script is no longer used.
+	 */
+	private static final class GeneratedClassLoader extends ClassLoader {
+
+		/** The bytes of the generated classes. */
+		private final Map<String, byte[]> classes;
+
+		/**
+		 * Creates a new GeneratedClassLoader.
+		 *
+		 * @param parent The parent class loader.
+		 * @param generated The generated classes mapped by class name.
+		 */
+		GeneratedClassLoader(ClassLoader parent, Map<String, byte[]> generated) {
+			super(parent);
+			classes = generated;
+		}
+
+		@Override
+		protected Class<?> findClass(String name) throws ClassNotFoundException {
+			byte[] bytes = classes.get(name);
+			if (bytes == null) {
+				throw new ClassNotFoundException(name);
+			}
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
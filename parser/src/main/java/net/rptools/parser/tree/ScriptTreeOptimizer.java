@@ -0,0 +1,316 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.parser.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.ExpressionEvaluatorException;
+import net.rptools.parser.functions.FunctionDispatcher;
+import net.rptools.parser.functions.FunctionManager;
+import net.rptools.parser.functions.ScriptFunction;
+
+/**
+ * ScriptTreeOptimizer rewrites a tree of {@link ScriptTreeNode}s produced by the
+ * tree parser into an equivalent tree that is cheaper to evaluate. The optimizations
+ * performed are
+ * <ul>
+ *   <li>Folding mathematical, negation and list concatenation operations whose operands
+ *       are all constants into a single constant.</li>
+ *   <li>Evaluating the body of a repeat group only once per evaluation of the group when
+ *       it can not change between repetitions.</li>
+ *   <li>Evaluating the parts of the body of a repeat group that can not change between
+ *       repetitions, such as {@code $a * 2} in {@code 3{1d6 + $a * 2}}, only once per
+ *       evaluation of the group when the rest of the body does change.</li>
+ *   <li>Looking up built in functions (and the targets of their aliases) once rather than on
+ *       every call.</li>
+ *   <li>Matching dice rolls to their dice and extracting the roll arguments once rather than
+ *       on every roll.</li>
+ * </ul>
+ * An optimized tree always produces exactly the same results, side effects and errors as
+ * the tree it was created from. Operations that fail when folded are left to fail when
+ * the script is evaluated.
+ */
+public final class ScriptTreeOptimizer {
+
+	/**
+	 * Private constructor to stop instantiation.
+	 */
+	private ScriptTreeOptimizer() {
+	}
+
+	/**
+	 * Returns an optimized version of the script tree. The tree passed in is not modified.
+	 *
+	 * @param node The root node of the tree to optimize.
+	 *
+	 * @return the optimized tree.
+	 *
+	 * @throws NullPointerException if node is null.
+	 */
+	public static ScriptTreeNode optimize(ScriptTreeNode node) {
+		if (node == null) {
+			throw new NullPointerException("Node to optimize can not be null.");
+		}
+
+		if (node instanceof ScriptNode) {
+			List<ScriptTreeNode> statements = new ArrayList<>();
+			for (ScriptTreeNode statement : ((ScriptNode) node).getStatements()) {
+				statements.add(optimize(statement));
+			}
+			return new ScriptNode(statements);
+		} else if (node instanceof BinaryMathOpNode) {
+			return optimizeBinaryMathOp((BinaryMathOpNode) node);
+		} else if (node instanceof NegateNode) {
+			return optimizeNegate((NegateNode) node);
+		} else if (node instanceof ListConcatNode) {
+			return optimizeListConcat((ListConcatNode) node);
+		} else if (node instanceof RepeatGroupNode) {
+			RepeatGroupNode repeat = (RepeatGroupNode) node;
+			ScriptTreeNode child = optimize(repeat.getChild());
+			if (isInvariant(child)) {
+				return repeat.withChild(child, true, 0);
+			} else if (mayChangeVariables(child)) {
+				return repeat.withChild(child, false, 0);
+			}
+
+			int[] slots = { 0 };
+			child = hoist(child, slots);
+			return repeat.withChild(child, false, slots[0]);
+		} else if (node instanceof LabelNode) {
+			LabelNode label = (LabelNode) node;
+			return new LabelNode(label.getLabel(), optimize(label.getChild()));
+		} else if (node instanceof AssignVariableNode) {
+			AssignVariableNode assign = (AssignVariableNode) node;
+			return new AssignVariableNode(assign.getVariableName(), optimize(assign.getChild()));
+		} else if (node instanceof AssignPropertyNode) {
+			AssignPropertyNode assign = (AssignPropertyNode) node;
+			return new AssignPropertyNode(assign.getPropertyName(), optimize(assign.getChild()));
+		} else if (node instanceof FunctionCallNode) {
+			return optimizeFunctionCall((FunctionCallNode) node);
+		} else if (node instanceof RollNode) {
+			return ((RollNode) node).withPlan();
+		}
+
+		return node;
+	}
+
+	/**
+	 * Optimizes a binary mathematical operation, replacing it with a constant if both
+	 * operands are constant.
+	 *
+	 * @param node The node to optimize.
+	 *
+	 * @return the optimized node.
+	 */
+	private static ScriptTreeNode optimizeBinaryMathOp(BinaryMathOpNode node) {
+		ScriptTreeNode left = optimize(node.getLeftChild());
+		ScriptTreeNode right = optimize(node.getRightChild());
+		BinaryMathOpNode opNode = new BinaryMathOpNode(node.getOperation(), left, right);
+
+		if (left instanceof ConstantNode && right instanceof ConstantNode) {
+			return fold(opNode);
+		}
+
+		return opNode;
+	}
+
+	/**
+	 * Optimizes a negation, replacing it with a constant if the operand is constant.
+	 *
+	 * @param node The node to optimize.
+	 *
+	 * @return the optimized node.
+	 */
+	private static ScriptTreeNode optimizeNegate(NegateNode node) {
+		ScriptTreeNode child = optimize(node.getChild());
+		NegateNode negNode = new NegateNode(child);
+
+		if (child instanceof ConstantNode) {
+			return fold(negNode);
+		}
+
+		return negNode;
+	}
+
+	/**
+	 * Optimizes a list concatenation, replacing it with a constant if both operands are
+	 * constant.
+	 *
+	 * @param node The node to optimize.
+	 *
+	 * @return the optimized node.
+	 */
+	private static ScriptTreeNode optimizeListConcat(ListConcatNode node) {
+		ScriptTreeNode left = optimize(node.getLeft());
+		ScriptTreeNode right = optimize(node.getRight());
+		ListConcatNode concatNode = new ListConcatNode(left, right);
+
+		if (left instanceof ConstantNode && right instanceof ConstantNode) {
+			return fold(concatNode);
+		}
+
+		return concatNode;
+	}
+
+	/**
+	 * Optimizes a function call by optimizing its arguments and looking up the built in
+	 * function that it calls.
+	 *
+	 * @param node The node to optimize.
+	 *
+	 * @return the optimized node.
+	 */
+	private static ScriptTreeNode optimizeFunctionCall(FunctionCallNode node) {
+		FunctionArgumentList args = new FunctionArgumentList();
+		FunctionArgumentList oldArgs = node.getArgumentList();
+
+		for (ScriptFunctionArgument arg : oldArgs.getPositionalArguments()) {
+			args.addArgument(new ScriptFunctionArgument(optimize(arg.getExpression())));
+		}
+
+		for (String name : oldArgs.getArgumentNames()) {
+			ScriptFunctionArgument arg = oldArgs.getArgument(name);
+			args.addArgument(new ScriptFunctionArgument(name, optimize(arg.getExpression())));
+		}
+
+		String name = node.getFunctionName();
+		ScriptFunction builtin;
+		if (name.startsWith(FunctionDispatcher.BUILT_IN_PREFIX)) {
+			builtin = FunctionManager.getInstance().getBuiltinFunction(
+					name.substring(FunctionDispatcher.BUILT_IN_PREFIX.length()));
+		} else {
+			builtin = FunctionManager.getInstance().getBuiltinFunction(name);
+		}
+
+		return new FunctionCallNode(name, args, builtin);
+	}
+
+	/**
+	 * Evaluates a node whose operands are all constants and returns a constant node with the
+	 * result. If the evaluation fails the node is returned so that the error occurs when the
+	 * script is evaluated.
+	 *
+	 * @param node The node to fold.
+	 *
+	 * @return the constant node, or node if it can not be folded.
+	 */
+	private static ScriptTreeNode fold(ScriptTreeNode node) {
+		try {
+			DataValue value = node.evaluate(null);
+			if (value != null) {
+				return new ConstantNode(value);
+			}
+		} catch (ExpressionEvaluatorException | RuntimeException e) {
+			// Leave it to fail at evaluation time.
+		}
+
+		return node;
+	}
+
+	/**
+	 * Replaces the largest invariant sub expressions of the body of a repeat group with
+	 * {@link HoistedValueNode}s so that they are only evaluated once for each evaluation of
+	 * the group. Constants and variables are cheaper to evaluate than a hoisted value so are
+	 * left as they are, as are the bodies of nested repeat groups which hoist their own.
+	 *
+	 * @param node The node to hoist sub expressions from.
+	 * @param slots Holds the next free slot in the frame of the repeat group.
+	 *
+	 * @return the node with the invariant sub expressions replaced.
+	 */
+	private static ScriptTreeNode hoist(ScriptTreeNode node, int[] slots) {
+		if (node instanceof ConstantNode || node instanceof VariableNode) {
+			return node;
+		} else if (isInvariant(node)) {
+			return new HoistedValueNode(slots[0]++, node);
+		} else if (node instanceof BinaryMathOpNode) {
+			BinaryMathOpNode opNode = (BinaryMathOpNode) node;
+			ScriptTreeNode left = hoist(opNode.getLeftChild(), slots);
+			ScriptTreeNode right = hoist(opNode.getRightChild(), slots);
+			return new BinaryMathOpNode(opNode.getOperation(), left, right);
+		} else if (node instanceof NegateNode) {
+			return new NegateNode(hoist(((NegateNode) node).getChild(), slots));
+		} else if (node instanceof ListConcatNode) {
+			ListConcatNode concatNode = (ListConcatNode) node;
+			ScriptTreeNode left = hoist(concatNode.getLeft(), slots);
+			ScriptTreeNode right = hoist(concatNode.getRight(), slots);
+			return new ListConcatNode(left, right);
+		} else if (node instanceof LabelNode) {
+			LabelNode label = (LabelNode) node;
+			return new LabelNode(label.getLabel(), hoist(label.getChild(), slots));
+		}
+
+		return node;
+	}
+
+	/**
+	 * Checks to see if evaluating a node could change the value of a variable or property,
+	 * which would stop the sub expressions that use them from being invariant. Function
+	 * calls are assumed to change them.
+	 *
+	 * @param node The node to check.
+	 *
+	 * @return true if the node could change a variable or property.
+	 */
+	private static boolean mayChangeVariables(ScriptTreeNode node) {
+		if (node instanceof ConstantNode || node instanceof VariableNode || node instanceof PropertyNode
+				|| node instanceof RollNode) {
+			return false;
+		} else if (node instanceof BinaryMathOpNode) {
+			BinaryMathOpNode opNode = (BinaryMathOpNode) node;
+			return mayChangeVariables(opNode.getLeftChild()) || mayChangeVariables(opNode.getRightChild());
+		} else if (node instanceof NegateNode) {
+			return mayChangeVariables(((NegateNode) node).getChild());
+		} else if (node instanceof ListConcatNode) {
+			ListConcatNode concatNode = (ListConcatNode) node;
+			return mayChangeVariables(concatNode.getLeft()) || mayChangeVariables(concatNode.getRight());
+		} else if (node instanceof LabelNode) {
+			return mayChangeVariables(((LabelNode) node).getChild());
+		} else if (node instanceof RepeatGroupNode) {
+			return mayChangeVariables(((RepeatGroupNode) node).getChild());
+		} else if (node instanceof HoistedValueNode) {
+			return mayChangeVariables(((HoistedValueNode) node).getChild());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks to see if a node always evaluates to the same value as long as no variables are
+	 * changed. The node is also guaranteed not to change any variables or have any other
+	 * side effects itself.
+	 *
+	 * @param node The node to check.
+	 *
+	 * @return true if the node is invariant.
+	 */
+	private static boolean isInvariant(ScriptTreeNode node) {
+		if (node instanceof ConstantNode || node instanceof VariableNode) {
+			return true;
+		} else if (node instanceof BinaryMathOpNode) {
+			BinaryMathOpNode opNode = (BinaryMathOpNode) node;
+			return isInvariant(opNode.getLeftChild()) && isInvariant(opNode.getRightChild());
+		} else if (node instanceof NegateNode) {
+			return isInvariant(((NegateNode) node).getChild());
+		} else if (node instanceof ListConcatNode) {
+			ListConcatNode concatNode = (ListConcatNode) node;
+			return isInvariant(concatNode.getLeft()) && isInvariant(concatNode.getRight());
+		}
+
+		return false;
+	}
+}
@@ -43,4 +43,13 @@ class VariableNode implements ScriptTreeNode {
 		return context.getSymbolTable().getVariable(variableName);
 	}
 
+	/**
+	 * Returns the name of the variable.
+	 * 
+	 * @return the name of the variable.
+	 */
+	public String getVariableName() {
+		return variableName;
+	}
+
 }
@@ -74,7 +74,7 @@ function doShowResult(args) {
 }
 
 function rand(max) {
-    return Math.floor(Math.random() * max) + 1;
+    return rptools.rollDie(max);
 }
 
 function arrayAsString(arr, delim) {
@@ -214,6 +214,23 @@ rptools.convertArgs = function(args) {
 }
 
 
+//////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+//
+// Function used to roll a die with the random number generator of the script that called the JavaScript, so that
+// seeded scripts and simulations give the same rolls every time. Math.random() does not use this generator and can
+// not be seeded, so JavaScript functions and dice should use this instead.
+//
+// Parameters:
+//      sides               The number of sides of the die.
+//
+// Returns:
+//  A random number between 1 and sides.
+//
+rptools.rollDie = function(sides) {
+    return net.rptools.parser.jsapi.RandomJS.rollDie(sides);
+}
+
+
 //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 //
 // Function used to export a case sensitive dice to the RPTools script.
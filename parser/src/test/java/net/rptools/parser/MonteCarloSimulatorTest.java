@@ -0,0 +1,100 @@
+package net.rptools.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.util.RunningStatistics;
+import net.rptools.parser.symboltable.VariableResolver;
+import org.junit.Test;
+
+public class MonteCarloSimulatorTest {
+
+	private static final String SCRIPT = "$a = 3d6; 2{$a + 1d4}";
+
+	private RunningStatistics simulate(int threads, long seed, int samples) throws ExpressionEvaluatorException {
+		return new MonteCarloSimulator(CompiledScript.compile(SCRIPT), new ScriptContextBuilder())
+				.setSeed(seed).setThreads(threads).simulate(samples);
+	}
+
+	private void assertSameStatistics(RunningStatistics expected, RunningStatistics actual) {
+		assertEquals(expected.getCount(), actual.getCount());
+		assertEquals(expected.getMean(), actual.getMean(), 0.0);
+		assertEquals(expected.getVariance(), actual.getVariance(), 0.0);
+		assertEquals(expected.getMin(), actual.getMin(), 0.0);
+		assertEquals(expected.getMax(), actual.getMax(), 0.0);
+		assertEquals(expected.getHistogram(), actual.getHistogram());
+	}
+
+	@Test public void sameSeedSameStatistics() throws ExpressionEvaluatorException {
+		RunningStatistics single = simulate(1, 42, 20000);
+
+		assertSameStatistics(single, simulate(1, 42, 20000));
+		assertSameStatistics(single, simulate(4, 42, 20000));
+		assertSameStatistics(single, simulate(0, 42, 20000));
+	}
+
+	@Test public void statistics() throws ExpressionEvaluatorException {
+		RunningStatistics stats = simulate(0, 7, 50000);
+
+		assertEquals(50000, stats.getCount());
+		// 2 * 3d6 + 2d4
+		assertEquals(26.0, stats.getMean(), 0.2);
+		assertTrue(stats.getMin() >= 8);
+		assertTrue(stats.getMax() <= 44);
+		assertTrue(stats.getMean() != simulate(0, 8, 50000).getMean());
+	}
+
+	/** Variable resolver that is not safe to use from several threads. */
+	private static final class MapVariableResolver implements VariableResolver {
+
+		private final Map<String, DataValue> variables = new LinkedHashMap<>();
+
+		@Override
+		public void setVariable(String name, DataValue value) {
+			variables.put(name, value);
+		}
+
+		@Override
+		public DataValue getVariable(String name) {
+			return variables.get(name);
+		}
+
+		@Override
+		public boolean containsVariable(String name) {
+			return variables.containsKey(name);
+		}
+
+		@Override
+		public Collection<String> getVariableName() {
+			return variables.keySet();
+		}
+	}
+
+	@Test public void assignmentsIsolated() throws ExpressionEvaluatorException {
+		MapVariableResolver shared = new MapVariableResolver();
+		shared.setVariable("b", DataValueFactory.longValue(10));
+		ScriptContextBuilder builder = new ScriptContextBuilder().setVariableResolver(shared);
+		// If the assignments leaked between evaluations $b would keep growing.
+		CompiledScript script = CompiledScript.compile("$a = $b + 1d6; $b = $a; $b");
+
+		RunningStatistics parallel = new MonteCarloSimulator(script, builder).setSeed(5).setThreads(4)
+				.simulate(20000);
+		assertEquals(11.0, parallel.getMin(), 0.0);
+		assertEquals(16.0, parallel.getMax(), 0.0);
+		assertSameStatistics(new MonteCarloSimulator(script, builder).setSeed(5).setThreads(1).simulate(20000),
+				parallel);
+
+		assertEquals(1, shared.getVariableName().size());
+		assertEquals(10, shared.getVariable("b").asLong());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeThreads() {
+		new MonteCarloSimulator(CompiledScript.compile("1"), new ScriptContextBuilder()).setThreads(-1);
+	}
+}
@@ -0,0 +1,55 @@
+package net.rptools.parser;
+
+import static org.junit.Assert.*;
+import net.rptools.lib.datavalue.DataValue;
+import org.junit.Test;
+
+public class ScriptCacheTest {
+
+	@Test public void cacheHit() throws ExpressionEvaluatorException {
+		ScriptCache cache = new ScriptCache(10);
+
+		CompiledScript script1 = cache.getCompiledScript("1 + 2");
+		CompiledScript script2 = cache.getCompiledScript("1 + 2");
+
+		assertSame(script1, script2);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.size());
+
+		DataValue dv = script1.evaluate(new ScriptContextBuilder().toScriptContext());
+		assertEquals(3, dv.asList().get(0).asLong());
+	}
+
+	@Test public void cacheEviction() {
+		ScriptCache cache = new ScriptCache(2);
+
+		CompiledScript script1 = cache.getCompiledScript("1");
+		cache.getCompiledScript("2");
+		cache.getCompiledScript("1");
+		cache.getCompiledScript("3");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertSame(script1, cache.getCompiledScript("1"));
+
+		cache.setMaximumSize(0);
+		assertEquals(0, cache.size());
+		assertEquals(3, cache.getEvictionCount());
+	}
+
+	@Test public void rollExpressions() throws ExpressionEvaluatorException {
+		CompiledScript script = new ScriptCache(1).getCompiledScript("1d6 + 2d8!");
+
+		assertEquals(2, script.getRollExpressions().size());
+
+		ScriptContext context1 = new ScriptContextBuilder().toScriptContext();
+		ScriptContext context2 = new ScriptContextBuilder().toScriptContext();
+		script.evaluate(context1);
+		script.evaluate(context2);
+		script.evaluate(context2);
+
+		assertEquals(1, context1.getSymbolTable().getRollResult("Roll Sequence 1").size());
+		assertEquals(2, context2.getSymbolTable().getRollResult("Roll Sequence 1").size());
+	}
+}
@@ -0,0 +1,177 @@
+package net.rptools.parser;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.symboltable.VariableResolver;
+import net.rptools.parser.tree.ScriptTreeCompiler;
+import net.rptools.parser.tree.ScriptTreeNode;
+import org.junit.Test;
+
+/**
+ * Checks that optimized scripts produce exactly the same results as the scripts
+ * evaluated by the unoptimized tree walker.
+ */
+public class ScriptOptimizationTest {
+
+	private static final String[] SCRIPTS = {
+		"6 + 7", "6 - 7", "6 * 7", "12 / 5", "12 ^ 2", "22 % 7", "-45",
+		"6.1 + 7.3", "6.2 - 7.5", "6.1 * 7", "12.0 / 5", "49 ^ 0.5", "22.5 % 7", "-45.7",
+		"2 * 3 + 4", "-(2 * 3.5) + 1", "2 ^ 3 ^ 2", "(1 + 2) * (3 + 4) / 2",
+		"'string1' + 'string2'", "'string1string2' - 'ing'", "'string1' * 2", "4.3 * 'string1'",
+		"true; false", "1 / 0", "5 % 0", "'a' / 2",
+		"2 & 3", "(1 + 1) & (2 * 2) & 'x'", "3{2 * 3}", "4[1 + 2]", "2{3{1 + 1}}", "3[2{1} & 4]",
+		"$a = 5; 3{$a * 2}; 4[$a + 1]; $a",
+		"$a = 2; $b = 3{$a & -$a}; $b",
+		"$a = 1; 3{$a = $a + 1}; $a",
+		"list(1 + 2, 3 * 4, 5)", "list.create(1, 2 * 3)",
+		"$a = list(4, 2, 5, 7, 88, -2, 2); count($a, atLeast: 1 + 1)",
+		"$a = list(4, 2, 5, 7, 88, -2, 2); list.count($a, greaterThan: 2, lessThan: 5 * 2)",
+		"$a = dict(v1: 'test', v2: 1 + 1, vv: 2.2) ; dict.set($a, v7: -97, vg: -22/2)",
+		"net.rptools.list(1, 2)",
+	};
+
+	@Test public void optimizedMatchesUnoptimized() throws ExpressionEvaluatorException {
+		for (String script : SCRIPTS) {
+			assertSameResult(script);
+		}
+	}
+
+	@Test public void bytecodeMatchesInterpreted() throws ExpressionEvaluatorException {
+		for (String script : SCRIPTS) {
+			CompiledScript compiled = CompiledScript.compile(script);
+			ScriptTreeNode node = ScriptTreeCompiler.compile(compiled.getScriptNode());
+			assertNotNull(script, node);
+			assertTrue(script, node.getClass().getName().startsWith("net.rptools.parser.tree.generated."));
+
+			String expected = evaluate(compiled, new ScriptContextBuilder().toScriptContext());
+			String actual = evaluate(node, new ScriptContextBuilder().toScriptContext());
+
+			assertEquals(script, expected, actual);
+		}
+	}
+
+	/** Variable resolver that records whether the generated class looked the variables up. */
+	private static final class ProbeResolver implements VariableResolver {
+
+		private final Map<String, DataValue> variables = new LinkedHashMap<>();
+
+		private boolean calledFromGeneratedClass;
+
+		private void probe() {
+			for (StackTraceElement element : new Throwable().getStackTrace()) {
+				if (element.getClassName().startsWith("net.rptools.parser.tree.generated.")) {
+					calledFromGeneratedClass = true;
+				}
+			}
+		}
+
+		@Override
+		public void setVariable(String name, DataValue value) {
+			probe();
+			variables.put(name, value);
+		}
+
+		@Override
+		public DataValue getVariable(String name) {
+			probe();
+			return variables.get(name);
+		}
+
+		@Override
+		public boolean containsVariable(String name) {
+			return variables.containsKey(name);
+		}
+
+		@Override
+		public Collection<String> getVariableName() {
+			return variables.keySet();
+		}
+	}
+
+	private static ScriptContext probedContext(ProbeResolver resolver) {
+		return new ScriptContextBuilder().setBytecodeCompilation(true).setVariableResolver(resolver)
+				.toScriptContext();
+	}
+
+	@Test public void bytecodeCompiledWhenHot() throws Exception {
+		CompiledScript compiled = CompiledScript.compile("$a = 5; 3{$a * 2}; $a + 1");
+		String expected = evaluate(compiled, new ScriptContextBuilder().toScriptContext());
+
+		for (int i = 1; i < CompiledScript.BYTECODE_COMPILE_THRESHOLD; i++) {
+			evaluate(compiled, new ScriptContextBuilder().setBytecodeCompilation(true).toScriptContext());
+			assertNull(compiled.getBytecodeCompilation());
+		}
+
+		// The evaluation that reaches the threshold starts the compilation but does not wait for it.
+		ProbeResolver interpreted = new ProbeResolver();
+		assertEquals(expected, evaluate(compiled, probedContext(interpreted)));
+		assertFalse(interpreted.calledFromGeneratedClass);
+
+		Future<ScriptTreeNode> compilation = compiled.getBytecodeCompilation();
+		assertNotNull(compilation);
+		ScriptTreeNode node = compilation.get(60, TimeUnit.SECONDS);
+		assertNotNull(node);
+
+		ProbeResolver generated = new ProbeResolver();
+		assertEquals(expected, evaluate(compiled, probedContext(generated)));
+		assertTrue(generated.calledFromGeneratedClass);
+		assertSame(node, compiled.getBytecodeNode());
+		assertNull(compiled.getBytecodeError());
+
+		// A script with the same structure reuses the compiled class.
+		ScriptTreeNode other = ScriptTreeCompiler.compile(CompiledScript.compile("$b = 7; 3{$b * 4}; $b + 9")
+				.getScriptNode());
+		assertSame(node.getClass(), other.getClass());
+	}
+
+	@Test public void constantsFolded() throws ExpressionEvaluatorException {
+		CompiledScript script = CompiledScript.compile("2 * 3 + 4");
+		DataValue dv1 = script.evaluate(new ScriptContextBuilder().toScriptContext());
+		DataValue dv2 = script.evaluate(new ScriptContextBuilder().toScriptContext());
+
+		assertEquals(10, dv1.asList().get(0).asLong());
+		assertSame(dv1.asList().get(0), dv2.asList().get(0));
+	}
+
+	private void assertSameResult(String text) {
+		String expected = evaluate(CompiledScript.compile(text, false));
+		String actual = evaluate(CompiledScript.compile(text, true));
+
+		assertEquals(text, expected, actual);
+	}
+
+	private String evaluate(CompiledScript script) {
+		return evaluate(script, new ScriptContextBuilder().toScriptContext());
+	}
+
+	private String evaluate(CompiledScript script, ScriptContext context) {
+		try {
+			return describe(script.evaluate(context), context);
+		} catch (Exception e) {
+			return e.getClass().getName() + ": " + e.getMessage();
+		}
+	}
+
+	private String evaluate(ScriptTreeNode node, ScriptContext context) {
+		try {
+			return describe(node.evaluate(context), context);
+		} catch (Exception e) {
+			return e.getClass().getName() + ": " + e.getMessage();
+		}
+	}
+
+	private String describe(DataValue result, ScriptContext context) {
+		StringBuilder sb = new StringBuilder(result.toString());
+		for (String name : context.getSymbolTable().getVariableNames()) {
+			sb.append(' ').append(name).append('=').append(context.getSymbolTable().getVariable(name));
+		}
+		return sb.toString();
+	}
+}
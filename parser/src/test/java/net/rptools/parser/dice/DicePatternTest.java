@@ -0,0 +1,106 @@
+package net.rptools.parser.dice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.rptools.lib.datavalue.DataValue;
+
+import org.junit.Test;
+
+public class DicePatternTest {
+
+	@Test public void skeletonOf() {
+		assertEquals("#d#", DicePattern.skeletonOf("3d6"));
+		assertEquals("#d#", DicePattern.skeletonOf("300D20"));
+		assertEquals("d#", DicePattern.skeletonOf("d6"));
+		assertEquals("#d#kh#", DicePattern.skeletonOf("4d6KH3"));
+		assertEquals("df", DicePattern.skeletonOf("dF"));
+	}
+
+	@Test public void skeletons() {
+		DicePattern standard = DicePattern.getCaseInsenstiveDicePattern("#{number:1}d#{sides}");
+		assertEquals(new HashSet<>(Arrays.asList("#d#", "d#")), standard.getSkeletons());
+
+		DicePattern keep = DicePattern.getDicePattern("#{number}d#{sides}kh#{keep:1}");
+		assertEquals(new HashSet<>(Arrays.asList("#d#kh#", "#d#kh")), keep.getSkeletons());
+
+		// Patterns with regular expressions or adjacent arguments can not be indexed.
+		assertNull(DicePattern.getDicePattern("#{number}d(6|10)").getSkeletons());
+		assertNull(DicePattern.getDicePattern("#{number}#{sides}").getSkeletons());
+		assertNull(DicePattern.getDicePattern("#{number}d6").getSkeletons());
+	}
+
+	@Test public void skeletonsMatch() {
+		String[] patterns = { "#{number:1}d#{sides}", "#{number}d#{sides}kh#{keep:1}", "x#{aa:2}y#{bb:3}z", "fudge" };
+		String[] rolls = { "3d6", "d6", "D6", "4d6kh3", "4d6kh", "xyz", "x1yz", "xy1z", "x1y2z", "fudge", "FUDGE", "3d", "d" };
+
+		for (String pat : patterns) {
+			for (boolean caseInsensitive : new boolean[] { false, true }) {
+				DicePattern dp = caseInsensitive ? DicePattern.getCaseInsenstiveDicePattern(pat) : DicePattern.getDicePattern(pat);
+				for (String roll : rolls) {
+					if (dp.matches(roll)) {
+						assertTrue(pat + " " + roll, dp.getSkeletons().contains(DicePattern.skeletonOf(roll)));
+					}
+				}
+			}
+		}
+
+		assertFalse(DicePattern.getDicePattern("fudge").matches("FUDGE"));
+	}
+
+	@Test public void scannedMatchesRegex() {
+		String[][] patterns = {
+				{ "#{number:1}d#{sides}", "([0-9]+)?d([0-9]+)" },
+				{ "#{number}d#{sides}kh#{keep:1}", "([0-9]+)d([0-9]+)kh([0-9]+)?" },
+				{ "x#{aa:2}y#{bb:3}z", "x([0-9]+)?y([0-9]+)?z" },
+				{ "fudge", "fudge" },
+				{ "#{number}d(6|10)", "([0-9]+)d(?:6|10)" },
+		};
+		String[] rolls = { "3d6", "d6", "D6", "4d6kh3", "4d6kh", "xyz", "x1yz", "xy1z", "x1y2z", "fudge", "FUDGE", "3d", 
+				"d", "", "3d6x", "03d0006", "3d10", "3dd6", "12345678901234567890d6" };
+
+		for (String[] pat : patterns) {
+			for (boolean caseInsensitive : new boolean[] { false, true }) {
+				DicePattern dp = caseInsensitive ? DicePattern.getCaseInsenstiveDicePattern(pat[0]) : DicePattern.getDicePattern(pat[0]);
+				Pattern regex = caseInsensitive ? Pattern.compile(pat[1], Pattern.CASE_INSENSITIVE) : Pattern.compile(pat[1]);
+				for (String roll : rolls) {
+					Matcher matcher = regex.matcher(roll);
+					boolean matches = matcher.matches();
+					assertEquals(pat[0] + " " + roll, matches, dp.matches(roll));
+					if (matches && roll.length() < 19) {
+						long[] vals = dp.extractArgValues(roll);
+						Map<String, DataValue> args = dp.extractArgs(roll);
+						int i = 0;
+						for (String name : dp.getArgNames()) {
+							String group = matcher.group(i + 1);
+							if (group != null) {
+								assertEquals(Long.parseLong(group), vals[i]);
+							}
+							assertEquals(vals[i], args.get(name).asLong());
+							i++;
+						}
+					} else if (!matches) {
+						assertNull(dp.extractArgValues(roll));
+						assertTrue(dp.extractArgs(roll).isEmpty());
+					}
+				}
+			}
+		}
+
+		long[] defaults = DicePattern.getDicePattern("#{number}d#{sides}kh#{keep:1}").extractArgValues("4d6kh");
+		assertEquals(1, defaults[2]);
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void argumentTooLarge() {
+		DicePattern.getDicePattern("#{number:1}d#{sides}").extractArgValues("99999999999999999999d6");
+	}
+}
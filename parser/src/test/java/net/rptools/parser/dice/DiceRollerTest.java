@@ -0,0 +1,80 @@
+package net.rptools.parser.dice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class DiceRollerTest {
+
+    /** Dice that only implement the methods of {@link Dice} that have no default. */
+    private static final Dice USER_DICE = new Dice() {
+        @Override
+        public String getName() {
+            return "Roller test dice";
+        }
+
+        @Override
+        public DataValue roll(ScriptContext context, RollExpression exp) {
+            return DataValueFactory.longValue(-1);
+        }
+
+        @Override
+        public boolean matches(RollExpression exp) {
+            return "7d13".equals(exp.getRollString());
+        }
+    };
+
+    private final DiceRoller roller = DiceRoller.getInstance();
+
+    private final ScriptContext context = new ScriptContextBuilder().toScriptContext();
+
+    @Test public void defaultMethods() throws Exception {
+        RollExpression exp = RollExpression.getRollExpression("7d13");
+
+        assertNull(USER_DICE.getDicePattern());
+        assertEquals(-1, USER_DICE.roll(context, exp, new HashMap<String, DataValue>()).asLong());
+    }
+
+    @Test public void planReused() throws Exception {
+        RollExpression exp = RollExpression.getRollExpression("3d8");
+        RollPlan plan = roller.plan(exp);
+
+        assertSame(plan, roller.plan(exp));
+        assertTrue(roller.isCurrent(plan));
+
+        RollExpression detailed = RollExpression.getDetailedRollExpression("3d8");
+        RollPlan detailedPlan = roller.plan(detailed);
+        assertSame(detailed, detailedPlan.getRollExpression());
+        assertSame(plan.getDice(), detailedPlan.getDice());
+        assertTrue(roller.isCurrent(detailedPlan));
+    }
+
+    @Test public void planInvalidated() throws Exception {
+        RollExpression exp = RollExpression.getRollExpression("7d13");
+        RollPlan before = roller.plan(exp);
+        RollPlan unaffected = roller.plan(RollExpression.getRollExpression("3d8"));
+
+        roller.addUserDefinedDice(USER_DICE);
+
+        assertFalse(roller.isCurrent(before));
+        assertFalse(roller.isCurrent(unaffected));
+
+        RollPlan after = roller.plan(exp);
+        assertSame(USER_DICE, after.getDice());
+        assertTrue(roller.isCurrent(after));
+        assertSame(after, roller.plan(exp));
+        assertEquals(-1, after.roll(context).asLong());
+    }
+}
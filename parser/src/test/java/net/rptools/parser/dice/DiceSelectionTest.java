@@ -0,0 +1,79 @@
+package net.rptools.parser.dice;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DiceSelectionTest {
+
+	Random random = new Random(1);
+
+	@Test public void keepHighest() {
+		int[] rolls = { 3, 6, 1, 6, 4, 3 };
+
+		assertEquals(Arrays.toString(new boolean[] { false, true, false, true, true, false }), Arrays.toString(DiceSelection.keepHighest(rolls, 3)));
+		// Ties are broken by keeping the first.
+		assertEquals(Arrays.toString(new boolean[] { true, true, false, true, true, false }), Arrays.toString(DiceSelection.keepHighest(rolls, 4)));
+		assertEquals(Arrays.toString(new boolean[6]), Arrays.toString(DiceSelection.keepHighest(rolls, 0)));
+		assertEquals(Arrays.toString(new boolean[] { true, true, true, true, true, true }), Arrays.toString(DiceSelection.keepHighest(rolls, 10)));
+	}
+
+	@Test public void keepLowest() {
+		int[] rolls = { 3, 6, 1, 6, 4, 3 };
+
+		assertEquals(Arrays.toString(new boolean[] { true, false, true, false, false, false }), Arrays.toString(DiceSelection.keepLowest(rolls, 2)));
+		assertEquals(Arrays.toString(new boolean[] { true, false, true, false, false, true }), Arrays.toString(DiceSelection.keepLowest(rolls, 3)));
+	}
+
+	@Test public void matchesSorting() {
+		for (int test = 0; test < 500; test++) {
+			int[] rolls = new int[random.nextInt(50) + 1];
+			for (int i = 0; i < rolls.length; i++) {
+				rolls[i] = random.nextInt(10) + 1;
+			}
+			int keep = random.nextInt(rolls.length + 1);
+
+			int[] sorted = rolls.clone();
+			Arrays.sort(sorted);
+
+			boolean[] highest = DiceSelection.keepHighest(rolls, keep);
+			boolean[] lowest = DiceSelection.keepLowest(rolls, keep);
+
+			assertEquals(keep, keptCount(highest));
+			assertEquals(keep, keptCount(lowest));
+			assertEquals(sum(sorted, sorted.length - keep, sorted.length), keptSum(rolls, highest));
+			assertEquals(sum(sorted, 0, keep), keptSum(rolls, lowest));
+		}
+	}
+
+	private long sum(int[] vals, int from, int to) {
+		long total = 0;
+		for (int i = from; i < to; i++) {
+			total += vals[i];
+		}
+		return total;
+	}
+
+	private long keptSum(int[] rolls, boolean[] kept) {
+		long total = 0;
+		for (int i = 0; i < rolls.length; i++) {
+			if (kept[i]) {
+				total += rolls[i];
+			}
+		}
+		return total;
+	}
+
+	private int keptCount(boolean[] kept) {
+		int count = 0;
+		for (boolean k : kept) {
+			if (k) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,85 @@
+package net.rptools.parser.dice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.Result;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class PatternDiceTest {
+
+	ScriptContext context = new ScriptContextBuilder().setRandomSeed(1).toScriptContext();
+
+	private Result roll(Dice dice, String rollString) throws Exception {
+		RollExpression exp = RollExpression.getRollExpression(rollString);
+		assertTrue(rollString, dice.matches(exp));
+		return dice.roll(context, exp).asResult();
+	}
+
+	private long total(List<DataValue> values) {
+		long total = 0;
+		for (DataValue dv : values) {
+			total += dv.asLong();
+		}
+		return total;
+	}
+
+	@Test public void keep() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			Result res = roll(KeepDice.keepHighest(), "4d6k3");
+			assertEquals(3, res.getValues().size());
+			assertEquals(total(res.getValues()), res.getValue().asLong());
+			assertTrue(res.getValue().asLong() >= 3 && res.getValue().asLong() <= 18);
+
+			res = roll(KeepDice.dropLowest(), "4D6d1");
+			assertEquals(3, res.getValues().size());
+
+			res = roll(KeepDice.keepLowest(), "2d20kl1");
+			assertEquals(1, res.getValues().size());
+
+			res = roll(KeepDice.dropHighest(), "3d6dh5");
+			assertEquals(0, res.getValue().asLong());
+		}
+
+		assertFalse(KeepDice.keepHighest().matches(RollExpression.getRollExpression("4d6kl3")));
+		assertFalse(KeepDice.keepHighest().matches(RollExpression.getRollExpression("4d6")));
+	}
+
+	@Test public void exploding() throws Exception {
+		boolean exploded = false;
+		for (int i = 0; i < 200; i++) {
+			Result res = roll(new ExplodingDice(), "3d4e");
+			List<DataValue> values = res.getValues();
+			assertTrue(values.size() >= 3);
+			assertEquals(total(values), res.getValue().asLong());
+			if (values.size() > 3) {
+				exploded = true;
+				assertTrue(res.getDetailedResult().asString().contains("4!"));
+			}
+		}
+		assertTrue(exploded);
+	}
+
+	@Test(expected=Exception.class)
+	public void explodingOneSide() throws Exception {
+		roll(new ExplodingDice(), "3d1e");
+	}
+
+	@Test public void reroll() throws Exception {
+		for (int i = 0; i < 200; i++) {
+			Result res = roll(new RerollDice(), "5d6r3");
+			assertEquals(5, res.getValues().size());
+			for (DataValue dv : res.getValues()) {
+				assertTrue(dv.asLong() >= 3);
+			}
+		}
+	}
+}
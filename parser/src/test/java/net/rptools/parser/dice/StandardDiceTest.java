@@ -0,0 +1,52 @@
+package net.rptools.parser.dice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.result.Result;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class StandardDiceTest {
+
+	private final StandardDice dice = new StandardDice();
+
+	private Result roll(RollExpression exp, long seed) {
+		return dice.roll(new ScriptContextBuilder().setRandomSeed(seed).toScriptContext(), exp).asResult();
+	}
+
+	@Test public void total() {
+		for (long seed = 0; seed < 20; seed++) {
+			Result total = roll(RollExpression.getRollExpression("10d6"), seed);
+			Result summed = roll(RollExpression.getDetailedSummedRollExpression("10d6"), seed);
+
+			assertEquals(summed.getValue().asLong(), total.getValue().asLong());
+			assertEquals(summed.getValues(), total.getValues());
+			assertEquals(summed.getDetailedResult(), total.getDetailedResult());
+			assertEquals(10, total.getValues().size());
+		}
+	}
+
+	@Test public void verbose() {
+		Result res = roll(RollExpression.getDetailedRollExpression("5d20"), 3);
+		List<DataValue> values = res.getValues();
+
+		assertEquals(5, values.size());
+		assertEquals(values, res.getValue().asList());
+
+		StringBuilder details = new StringBuilder();
+		for (DataValue dv : values) {
+			assertTrue(dv.asLong() >= 1 && dv.asLong() <= 20);
+			if (details.length() > 0) {
+				details.append(", ");
+			}
+			details.append(dv.asLong());
+		}
+		assertEquals(details.toString(), res.getDetailedResult().asString());
+	}
+}
@@ -0,0 +1,65 @@
+package net.rptools.parser.functions;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+
+import org.junit.Test;
+
+public class CountCriteriaTest {
+
+	private static CountCriteria criteria(Object... namesAndValues) {
+		Map<String, DataValue> args = new HashMap<String, DataValue>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			args.put((String) namesAndValues[i], DataValueFactory.doubleValue((Double) namesAndValues[i + 1]));
+		}
+		return CountCriteria.fromArguments(args);
+	}
+
+	private static void assertCount(CountCriteria criteria, long low, long high) {
+		long expected = 0;
+		for (long i = low; i <= high; i++) {
+			if (criteria.matches(i)) {
+				expected++;
+			}
+		}
+		assertEquals(expected, criteria.countMatches(low, high));
+	}
+
+	@Test public void matches() {
+		CountCriteria criteria = criteria(CountCriteria.AT_LEAST, 3.0, CountCriteria.LESS_THAN, 6.0);
+
+		assertFalse(criteria.matches(2));
+		assertTrue(criteria.matches(3));
+		assertTrue(criteria.matches(5.5));
+		assertFalse(criteria.matches(6));
+		assertFalse(criteria.isEmpty());
+		assertTrue(criteria(new Object[0]).isEmpty());
+		assertTrue(criteria(new Object[0]).matches(Double.NaN));
+	}
+
+	@Test public void countMatches() {
+		assertCount(criteria(new Object[0]), 1, 20);
+		assertCount(criteria(CountCriteria.EQUAL_TO, 4.0), 1, 20);
+		assertCount(criteria(CountCriteria.EQUAL_TO, 4.5), 1, 20);
+		assertCount(criteria(CountCriteria.EQUAL_TO, 40.0), 1, 20);
+		assertCount(criteria(CountCriteria.NOT, 4.0), 1, 20);
+		assertCount(criteria(CountCriteria.NOT, 4.5), 1, 20);
+		assertCount(criteria(CountCriteria.GREATER_THAN, 4.5), 1, 20);
+		assertCount(criteria(CountCriteria.GREATER_THAN, 4.0), 1, 20);
+		assertCount(criteria(CountCriteria.LESS_THAN, 4.0), 1, 20);
+		assertCount(criteria(CountCriteria.LESS_THAN, -4.5), 1, 20);
+		assertCount(criteria(CountCriteria.AT_LEAST, 15.5), 1, 20);
+		assertCount(criteria(CountCriteria.AT_MOST, 15.0), 1, 20);
+		assertCount(criteria(CountCriteria.AT_LEAST, 5.0, CountCriteria.AT_MOST, 9.0, CountCriteria.NOT, 7.0), 1, 20);
+		assertCount(criteria(CountCriteria.AT_LEAST, 5.0, CountCriteria.AT_MOST, 9.0, CountCriteria.NOT, 12.0), 1, 20);
+		assertCount(criteria(CountCriteria.GREATER_THAN, 9.0, CountCriteria.LESS_THAN, 5.0), 1, 20);
+		assertCount(criteria(CountCriteria.AT_LEAST, Double.NaN), 1, 20);
+		assertCount(criteria(CountCriteria.NOT, Double.NaN), 1, 20);
+		assertCount(criteria(CountCriteria.AT_MOST, Double.POSITIVE_INFINITY), 1, 20);
+	}
+}
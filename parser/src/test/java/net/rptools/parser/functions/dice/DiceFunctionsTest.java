@@ -0,0 +1,117 @@
+package net.rptools.parser.functions.dice;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+import net.rptools.parser.functions.CountCriteria;
+import net.rptools.parser.functions.ScriptFunction;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import org.junit.Test;
+
+public class DiceFunctionsTest {
+
+    private final ScriptContext context = new ScriptContextBuilder().toScriptContext();
+
+    private static Map<String, DataValue> args(String roll) {
+        Map<String, DataValue> args = new HashMap<String, DataValue>();
+        args.put(DiceFunctionUtil.ROLL, DataValueFactory.stringValue(roll));
+        return args;
+    }
+
+    private static Map<String, DataValue> args(String roll, String criterion, double val) {
+        Map<String, DataValue> args = args(roll);
+        args.put(criterion, DataValueFactory.doubleValue(val));
+        return args;
+    }
+
+    private DataValue call(ScriptFunction function, Map<String, DataValue> args) throws ScriptFunctionException {
+        return function.call(context, args);
+    }
+
+    private void assertFails(ScriptFunction function, Map<String, DataValue> args) {
+        try {
+            call(function, args);
+            fail("Expected failure for " + args.get(DiceFunctionUtil.ROLL));
+        } catch (ScriptFunctionException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    @Test public void mean() throws ScriptFunctionException {
+        assertEquals(10.5, call(DiceMeanFunction.getDiceMeanFunction(), args("3d6")).asDouble(), 1e-12);
+    }
+
+    @Test public void distribution() throws ScriptFunctionException {
+        Map<String, DataValue> dist = call(DiceDistributionFunction.getDiceDistributionFunction(), args("2d6"))
+                .asDictionary();
+
+        assertEquals(11, dist.size());
+        assertEquals(1 / 36.0, dist.get("2").asDouble(), 1e-15);
+        assertEquals(6 / 36.0, dist.get("7").asDouble(), 1e-15);
+        assertNull(dist.get("13"));
+    }
+
+    @Test public void probabilityCriteria() throws ScriptFunctionException {
+        ScriptFunction prob = DiceProbabilityFunction.getDiceProbabilityFunction();
+
+        assertEquals(1.0, call(prob, args("3d6")).asDouble(), 1e-12);
+        assertEquals(6 / 36.0, call(prob, args("2d6", CountCriteria.EQUAL_TO, 7)).asDouble(), 1e-15);
+        assertEquals(30 / 36.0, call(prob, args("2d6", CountCriteria.NOT, 7)).asDouble(), 1e-15);
+        assertEquals(3 / 36.0, call(prob, args("2d6", CountCriteria.GREATER_THAN, 10)).asDouble(), 1e-15);
+        assertEquals(3 / 36.0, call(prob, args("2d6", CountCriteria.LESS_THAN, 4)).asDouble(), 1e-15);
+        assertEquals(6 / 36.0, call(prob, args("2d6", CountCriteria.AT_LEAST, 10)).asDouble(), 1e-15);
+        assertEquals(6 / 36.0, call(prob, args("2d6", CountCriteria.AT_MOST, 4)).asDouble(), 1e-15);
+        assertEquals(0.0, call(prob, args("2d6", CountCriteria.EQUAL_TO, 7.5)).asDouble(), 0.0);
+
+        Map<String, DataValue> between = args("2d6", CountCriteria.AT_LEAST, 6);
+        between.put(CountCriteria.AT_MOST, DataValueFactory.doubleValue(8));
+        between.put(CountCriteria.NOT, DataValueFactory.doubleValue(7));
+        assertEquals(10 / 36.0, call(prob, between).asDouble(), 1e-15);
+    }
+
+    @Test public void countDistributionCriteria() throws ScriptFunctionException {
+        ScriptFunction count = DiceCountDistributionFunction.getDiceCountDistributionFunction();
+
+        Map<String, DataValue> dist = call(count, args("3d20", CountCriteria.AT_LEAST, 15)).asDictionary();
+        assertEquals(4, dist.size());
+        assertEquals(0.7 * 0.7 * 0.7, dist.get("0").asDouble(), 1e-15);
+        assertEquals(0.3 * 0.3 * 0.3, dist.get("3").asDouble(), 1e-15);
+
+        dist = call(count, args("2d6", CountCriteria.NOT, 1)).asDictionary();
+        assertEquals(25 / 36.0, dist.get("2").asDouble(), 1e-15);
+
+        dist = call(count, args("2d6")).asDictionary();
+        assertEquals(1.0, dist.get("2").asDouble(), 0.0);
+
+        // The matching faces are counted without checking each face so huge dice are fine.
+        dist = call(count, args("1d2000000000", CountCriteria.GREATER_THAN, 1999999998)).asDictionary();
+        assertEquals(1e-9, dist.get("1").asDouble(), 1e-21);
+    }
+
+    @Test public void invalidRolls() {
+        assertFails(DiceMeanFunction.getDiceMeanFunction(), args("3x6"));
+        assertFails(DiceDistributionFunction.getDiceDistributionFunction(), args("3d6+1"));
+        assertFails(DiceProbabilityFunction.getDiceProbabilityFunction(), args("3d6e"));
+        assertFails(DiceCountDistributionFunction.getDiceCountDistributionFunction(), args("hello"));
+    }
+
+    @Test public void limits() {
+        // Too large for an int.
+        assertFails(DiceMeanFunction.getDiceMeanFunction(), args("4294967297d6"));
+        assertFails(DiceMeanFunction.getDiceMeanFunction(), args("1d4294967302"));
+
+        // Too many dice or possible totals for a distribution.
+        assertFails(DiceDistributionFunction.getDiceDistributionFunction(), args("1001d2"));
+        assertFails(DiceDistributionFunction.getDiceDistributionFunction(), args("100d1000"));
+        assertFails(DiceProbabilityFunction.getDiceProbabilityFunction(), args("100d1000"));
+        assertFails(DiceCountDistributionFunction.getDiceCountDistributionFunction(), args("1001d6"));
+        assertFails(DiceMeanFunction.getDiceMeanFunction(), args("1d0"));
+    }
+}
@@ -0,0 +1,63 @@
+package net.rptools.parser.functions.javascript;
+
+import static org.junit.Assert.*;
+
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class CallBudgetTest {
+
+    @Test public void noLimits() {
+        CallBudget budget = new CallBudget(new ScriptContextBuilder().toScriptContext());
+        for (int i = 0; i < 1000; i++) {
+            budget.addInstructions(BudgetContextFactory.INSTRUCTION_THRESHOLD);
+        }
+
+        assertEquals(1000L * BudgetContextFactory.INSTRUCTION_THRESHOLD, budget.getInstructions());
+    }
+
+    @Test public void instructionLimit() {
+        CallBudget budget = new CallBudget(new ScriptContextBuilder().setJavaScriptInstructionLimit(25000)
+                .toScriptContext());
+        budget.addInstructions(10000);
+        budget.addInstructions(10000);
+        try {
+            budget.addInstructions(10000);
+            fail("Instruction limit not enforced.");
+        } catch (CallBudget.ExceededError e) {
+            assertEquals(30000, budget.getInstructions());
+        }
+    }
+
+    @Test public void outerInstructionLimit() {
+        CallBudget outer = new CallBudget(new ScriptContextBuilder().setJavaScriptInstructionLimit(25000)
+                .toScriptContext());
+        CallBudget inner = new CallBudget(new ScriptContextBuilder().toScriptContext(), outer);
+        inner.addInstructions(10000);
+        inner.addInstructions(10000);
+        try {
+            inner.addInstructions(10000);
+            fail("Outer instruction limit not enforced.");
+        } catch (CallBudget.ExceededError e) {
+            assertSame(outer, e.getBudget());
+            assertEquals(30000, inner.getInstructions());
+            assertEquals(30000, outer.getInstructions());
+        }
+    }
+
+    @Test public void timeLimit() throws InterruptedException {
+        CallBudget budget = new CallBudget(new ScriptContextBuilder().setJavaScriptTimeLimit(1).toScriptContext());
+        Thread.sleep(10);
+        try {
+            budget.addInstructions(10000);
+            fail("Time limit not enforced.");
+        } catch (CallBudget.ExceededError e) {
+            assertTrue(budget.getElapsedTime() > 1000000);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void negativeLimit() {
+        new ScriptContextBuilder().setJavaScriptMemoryLimit(-1);
+    }
+}
@@ -0,0 +1,68 @@
+package net.rptools.parser.functions.javascript;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+public class JavaScriptCacheTest {
+
+    private Context jsContext;
+
+    @Before public void setUp() {
+        jsContext = Context.enter();
+    }
+
+    @After public void tearDown() {
+        Context.exit();
+    }
+
+    @Test public void cacheHit() {
+        JavaScriptCache cache = new JavaScriptCache(10);
+
+        Script script1 = cache.getCompiledScript(jsContext, "one", "var x = 1 + 2; x;");
+        Script script2 = cache.getCompiledScript(jsContext, "two", "var x = 1 + 2; x;");
+
+        assertSame(script1, script2);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        Scriptable scope = jsContext.initStandardObjects();
+        assertEquals(3, ((Number) script1.exec(jsContext, scope)).intValue());
+    }
+
+    @Test public void optimizationLevel() {
+        JavaScriptCache cache = new JavaScriptCache(10);
+
+        jsContext.setOptimizationLevel(-1);
+        Script interpreted = cache.getCompiledScript(jsContext, "test", "1;");
+        jsContext.setOptimizationLevel(9);
+        Script compiled = cache.getCompiledScript(jsContext, "test", "1;");
+
+        assertNotSame(interpreted, compiled);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test public void cacheEviction() {
+        JavaScriptCache cache = new JavaScriptCache(2);
+
+        Script script1 = cache.getCompiledScript(jsContext, "1", "1;");
+        cache.getCompiledScript(jsContext, "2", "2;");
+        cache.getCompiledScript(jsContext, "1", "1;");
+        cache.getCompiledScript(jsContext, "3", "3;");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(script1, cache.getCompiledScript(jsContext, "1", "1;"));
+
+        cache.setMaximumSize(0);
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,86 @@
+package net.rptools.parser.functions.javascript;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class JavaScriptConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private static final int CALLS = 200;
+
+    /**
+     * Every script uses the same JavaScript function and variable names, the variable is assigned without being
+     * declared, so each thread only gets the right answers if the scripts do not share a scope.
+     */
+    private static String script(int factor) {
+        return "factor = " + factor + ";\n"
+                + "function multiply(args) { return args.x * factor; }\n"
+                + "var f = new ExportedFunction('concurrencyTest" + factor + "', ExportedFunction.DATA_TYPE_LONG,"
+                + " 'multiply');\n"
+                + "f.addParameter('x', ExportedFunction.DATA_TYPE_LONG);\n"
+                + "f.export();\n";
+    }
+
+    @Test public void loadAndCallConcurrently() throws Exception {
+        final JavaScripEvaluator evaluator = JavaScripEvaluator.getInstance();
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int factor = t + 2;
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        start.await();
+                        JavaScriptExports exports = evaluator.addJavaScripts(Collections.singletonMap(
+                                "concurrencyTest" + factor, script(factor)));
+                        assertEquals(1, exports.getExportedFunctions().size());
+                        assertTrue(exports.getExportedDice().isEmpty());
+
+                        JavaScriptFunction function = exports.getExportedFunctions().iterator().next();
+                        assertEquals("concurrencyTest" + factor, function.getDefinition().name());
+
+                        ScriptContext context = new ScriptContextBuilder().toScriptContext();
+                        long total = 0;
+                        for (int x = 0; x < CALLS; x++) {
+                            Map<String, DataValue> args = Collections.singletonMap("x",
+                                    DataValueFactory.longValue(x));
+                            long val = function.call(context, args).asLong();
+                            assertEquals(x * factor, val);
+                            total += val;
+                        }
+                        assertEquals(CALLS, function.getCallCount());
+
+                        return total;
+                    }
+                }));
+            }
+
+            for (int t = 0; t < THREADS; t++) {
+                long expected = (long) (t + 2) * CALLS * (CALLS - 1) / 2;
+                assertEquals(expected, futures.get(t).get(60, TimeUnit.SECONDS).longValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package net.rptools.parser.functions.javascript;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.result.ResultBuilder;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.Scriptable;
+
+public class JavaScriptConverterTest {
+
+    private Context jsContext;
+
+    private Scriptable scope;
+
+    @Before public void setUp() {
+        jsContext = Context.enter();
+        scope = jsContext.initStandardObjects();
+        jsContext.evaluateString(scope, "function Result(v, d, i) { this.value = v; this.details = d; "
+                + "this.individual = i; }", "Result", 0, null);
+    }
+
+    @After public void tearDown() {
+        Context.exit();
+    }
+
+    @Test public void largeListArgument() {
+        List<DataValue> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i % 2 == 0 ? DataValueFactory.longValue(i) : DataValueFactory.doubleValue(i + 0.5));
+        }
+        Map<String, DataValue> args = new HashMap<>();
+        args.put("list", DataValueFactory.listValue(values));
+
+        Scriptable jsArgs = JavaScriptConverter.toJavaScript(jsContext, scope, args);
+        Object jsList = jsArgs.get("list", jsArgs);
+        assertTrue(jsList instanceof NativeArray);
+        assertEquals(1000, ((NativeArray) jsList).getLength());
+
+        DataValue dv = JavaScriptConverter.toListValue(jsList);
+        assertEquals(DataType.LIST, dv.dataType());
+        assertEquals(values, dv.asList());
+    }
+
+    @Test public void dictionary() {
+        Map<String, DataValue> dict = new HashMap<>();
+        dict.put("name", DataValueFactory.stringValue("test"));
+        dict.put("flag", DataValueFactory.booleanValue(true));
+        dict.put("nested", DataValueFactory.listValue(new ArrayList<DataValue>()));
+
+        Object obj = JavaScriptConverter.toJavaScript(jsContext, scope, DataValueFactory.dictionaryValue(dict));
+        DataValue dv = JavaScriptConverter.toDictionary(obj);
+
+        assertEquals(DataType.DICTIONARY, dv.dataType());
+        assertEquals("test", dv.asDictionary().get("name").asString());
+        assertTrue(dv.asDictionary().get("flag").asBoolean());
+        assertEquals(0, dv.asDictionary().get("nested").asList().size());
+    }
+
+    @Test public void numericKeys() {
+        Map<String, DataValue> dict = new HashMap<>();
+        dict.put("2", DataValueFactory.longValue(20));
+        dict.put("10", DataValueFactory.longValue(100));
+        dict.put("-3", DataValueFactory.longValue(-30));
+        dict.put("007", DataValueFactory.stringValue("bond"));
+        dict.put("name", DataValueFactory.stringValue("test"));
+
+        Map<String, DataValue> args = new HashMap<>();
+        args.put("dict", DataValueFactory.dictionaryValue(dict));
+        args.put("5", DataValueFactory.longValue(50));
+        Scriptable jsArgs = JavaScriptConverter.toJavaScript(jsContext, scope, args);
+        scope.put("args", scope, jsArgs);
+
+        assertEquals("20 20 100 -30 bond test 50 50", Context.toString(jsContext.evaluateString(scope,
+                "var d = args.dict; [d[2], d['2'], d[10], d[-3], d['007'], d.name, args[5], args['5']].join(' ')",
+                "test", 0, null)));
+        assertEquals(185.0, Context.toNumber(jsContext.evaluateString(scope,
+                "var total = 0; for (var k in args.dict) { if (k != '007' && k != 'name') total += args.dict[k]; }"
+                        + " total + args[5] + 45", "test", 0, null)), 0.0);
+
+        DataValue dv = JavaScriptConverter.toDictionary(jsArgs.get("dict", jsArgs));
+        assertEquals(dict, dv.asDictionary());
+    }
+
+    @Test public void result() {
+        ResultBuilder builder = new ResultBuilder();
+        builder.setLongValue(7);
+        builder.setDetailedResult(DataValueFactory.stringValue("3, 4"));
+        DataValue res = DataValueFactory.resultValue(builder.toResult());
+
+        DataValue dv = JavaScriptConverter.toResult(JavaScriptConverter.toJavaScript(jsContext, scope, res));
+        assertEquals(DataType.RESULT, dv.dataType());
+        assertEquals(7, dv.asResult().getValue().asLong());
+        assertEquals("3, 4", dv.asResult().getDetailedResult().asString());
+    }
+
+    @Test public void numbers() {
+        assertEquals(DataType.LONG, JavaScriptConverter.toDataValue(jsContext.evaluateString(scope, "6 / 2",
+                "test", 0, null)).dataType());
+        assertEquals(DataType.DOUBLE, JavaScriptConverter.toDataValue(jsContext.evaluateString(scope, "-5 / 2",
+                "test", 0, null)).dataType());
+        assertEquals(DataType.NULL, JavaScriptConverter.toDataValue(jsContext.evaluateString(scope, "undefined",
+                "test", 0, null)).dataType());
+    }
+
+    private Object evaluate(String js) {
+        return jsContext.evaluateString(scope, js, "test", 0, null);
+    }
+
+    @Test public void numericResults() throws ScriptFunctionException {
+        assertEquals(3, JavaScriptConverter.toLongValue(evaluate("7 / 2")).asLong());
+        assertEquals(-4, JavaScriptConverter.toLongValue(evaluate("-4")).asLong());
+        assertEquals(3.5, JavaScriptConverter.toDoubleValue(evaluate("7 / 2")).asDouble(), 0.0);
+        assertEquals(2.0, JavaScriptConverter.toDoubleValue(evaluate("2")).asDouble(), 0.0);
+    }
+
+    @Test public void nonNumericResults() {
+        String[] values = { "'12'", "'abc'", "true", "undefined", "null", "[1]", "({ a: 1 })" };
+        for (String js : values) {
+            try {
+                JavaScriptConverter.toLongValue(evaluate(js));
+                fail("Converted " + js + " to a long.");
+            } catch (ScriptFunctionException e) {
+                // expected
+            }
+            try {
+                JavaScriptConverter.toDoubleValue(evaluate(js));
+                fail("Converted " + js + " to a double.");
+            } catch (ScriptFunctionException e) {
+                // expected
+            }
+        }
+
+        try {
+            JavaScriptConverter.toLongValue(evaluate("0 / 0"));
+            fail("Converted NaN to a long.");
+        } catch (ScriptFunctionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.rptools.parser.functions.javascript;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+import net.rptools.parser.functions.FunctionManager;
+import net.rptools.parser.functions.ScriptFunctionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class JavaScriptLimitsTest {
+
+    private static final Map<String, DataValue> NO_ARGS = Collections.emptyMap();
+
+    private final JavaScripEvaluator evaluator = JavaScripEvaluator.getInstance();
+
+    private final int optimizationLevel = evaluator.getOptimizationLevel();
+
+    @After public void tearDown() {
+        evaluator.setOptimizationLevel(optimizationLevel);
+    }
+
+    private static String export(String name, String jsFunctionName) {
+        return "var f = new ExportedFunction('" + name + "', ExportedFunction.DATA_TYPE_LONG, '" + jsFunctionName
+                + "');\nf.export();\n";
+    }
+
+    private JavaScriptFunction load(String name, String script) {
+        JavaScriptExports exports = evaluator.addJavaScripts(Collections.singletonMap(name, script));
+        assertEquals(1, exports.getExportedFunctions().size());
+        return exports.getExportedFunctions().iterator().next();
+    }
+
+    // Only the instruction limit is set, so the call can only stop if the instructions are observed.
+    @Test(timeout = 60000) public void runawayFunctionStopped() throws Exception {
+        int[] levels = { -1, 0, 9 };
+        for (int l = 0; l < levels.length; l++) {
+            int level = levels[l];
+            evaluator.setOptimizationLevel(level);
+            JavaScriptFunction function = load("runaway" + l, "function runaway(args) { while (true) {} }\n"
+                    + export("runaway" + l, "runaway"));
+
+            ScriptContext context = new ScriptContextBuilder().setJavaScriptInstructionLimit(100000)
+                    .toScriptContext();
+            for (int i = 1; i <= 2; i++) {
+                try {
+                    function.call(context, NO_ARGS);
+                    fail("Runaway function was not stopped at optimization level " + level + ".");
+                } catch (ScriptFunctionException e) {
+                    assertEquals(i, function.getLimitExceededCount());
+                }
+            }
+            assertTrue(function.getInstructionCount() > 200000);
+        }
+    }
+
+    @Test(timeout = 60000) public void nestedCallsCountAgainstOuterLimit() throws Exception {
+        JavaScriptFunction inner = load("budgetInner", "function inner(args) {\n"
+                + "    var total = 0;\n"
+                + "    for (var i = 0; i < 20000; i++) { total += i; }\n"
+                + "    return total;\n"
+                + "}\n"
+                + export("budgetInner", "inner"));
+        FunctionManager.getInstance().definFunction(inner);
+        try {
+            JavaScriptFunction outer = load("budgetOuter", "function outer(args) {\n"
+                    + "    var f = Packages.net.rptools.parser.functions.FunctionManager.getInstance()"
+                    + ".getUserFunction('budgetInner');\n"
+                    + "    var ctx = new Packages.net.rptools.parser.ScriptContextBuilder().toScriptContext();\n"
+                    + "    for (var i = 0; i < 20; i++) {\n"
+                    + "        try { f.call(ctx, java.util.Collections.emptyMap()); } catch (e) { }\n"
+                    + "    }\n"
+                    + "    return 1;\n"
+                    + "}\n"
+                    + export("budgetOuter", "outer"));
+
+            // The outer function itself runs far fewer instructions than its limit.
+            assertEquals(1, outer.call(new ScriptContextBuilder().toScriptContext(), NO_ARGS).asLong());
+            assertEquals(0, outer.getLimitExceededCount());
+
+            try {
+                outer.call(new ScriptContextBuilder().setJavaScriptInstructionLimit(200000).toScriptContext(),
+                        NO_ARGS);
+                fail("Instructions run by nested calls were not counted against the outer call.");
+            } catch (ScriptFunctionException e) {
+                assertEquals(1, outer.getLimitExceededCount());
+                assertEquals(0, inner.getLimitExceededCount());
+            }
+        } finally {
+            FunctionManager.getInstance().undefineFunction(inner);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package net.rptools.parser.jsapi;
+
+import static org.junit.Assert.*;
+
+import net.rptools.lib.util.RandomUtil;
+
+import org.junit.Test;
+
+public class RandomJSTest {
+
+    @Test public void usesCallersRandomUtil() {
+        RandomUtil expected = RandomUtil.getSeededInstance(17);
+        RandomUtil previous = RandomJS.setRandomUtil(RandomUtil.getSeededInstance(17));
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(expected.rollDie(20), RandomJS.rollDie(20));
+            }
+        } finally {
+            RandomJS.setRandomUtil(previous);
+        }
+    }
+
+    @Test public void restoresPrevious() {
+        RandomUtil outer = RandomUtil.getSeededInstance(1);
+        RandomUtil inner = RandomUtil.getSeededInstance(2);
+
+        assertNull(RandomJS.setRandomUtil(outer));
+        assertSame(outer, RandomJS.setRandomUtil(inner));
+        assertSame(inner, RandomJS.getRandomUtil());
+        assertSame(inner, RandomJS.setRandomUtil(outer));
+        assertSame(outer, RandomJS.setRandomUtil(null));
+        assertSame(RandomUtil.getInstance(), RandomJS.getRandomUtil());
+    }
+}
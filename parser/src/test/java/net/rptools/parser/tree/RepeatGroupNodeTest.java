@@ -0,0 +1,108 @@
+package net.rptools.parser.tree;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.rptools.lib.datavalue.DataType;
+import net.rptools.lib.datavalue.DataValue;
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.parser.ExpressionEvaluatorException;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class RepeatGroupNodeTest {
+
+	/** Returns each of the values in turn. */
+	private static final class SequenceNode implements ScriptTreeNode {
+
+		private final DataValue[] values;
+
+		private int next;
+
+		SequenceNode(DataValue... vals) {
+			values = vals;
+		}
+
+		@Override
+		public DataValue evaluate(ScriptContext context) {
+			return values[next++ % values.length];
+		}
+	}
+
+	/** The sum as it was calculated before the totals were kept as primitives. */
+	private static DataValue eagerSum(DataValue... vals) {
+		DataValue total = DataValueFactory.longValue(0);
+		for (DataValue val : vals) {
+			if (val.dataType() == DataType.LIST) {
+				for (DataValue v : val.asList()) {
+					total = total.add(v);
+				}
+			} else {
+				total = total.add(val);
+			}
+		}
+		return total;
+	}
+
+	private static void assertSum(DataValue... vals) throws ExpressionEvaluatorException {
+		ScriptContext context = new ScriptContextBuilder().toScriptContext();
+		DataValue expected = eagerSum(vals);
+		DataValue actual = RepeatGroupNode.getRepeatSumNode(vals.length, new SequenceNode(vals)).evaluate(context);
+
+		assertEquals(expected.dataType(), actual.dataType());
+		assertEquals(expected.toString(), actual.toString());
+	}
+
+	private static DataValue l(long val) {
+		return DataValueFactory.longValue(val);
+	}
+
+	private static DataValue d(double val) {
+		return DataValueFactory.doubleValue(val);
+	}
+
+	private static DataValue s(String val) {
+		return DataValueFactory.stringValue(val);
+	}
+
+	@Test public void longOnly() throws ExpressionEvaluatorException {
+		assertSum(l(1), l(2), DataValueFactory.listValueFromArray(new long[] { 3, 4, 5 }), l(-7));
+		assertSum(l(Long.MAX_VALUE), l(1));
+		assertSum(DataValueFactory.listValue(Arrays.asList(l(10), l(20))), l(3));
+		assertSum();
+	}
+
+	@Test public void doubles() throws ExpressionEvaluatorException {
+		assertSum(l(1), d(2.5), l(3), DataValueFactory.listValueFromArray(new long[] { 3, 4 }));
+		assertSum(DataValueFactory.listValueFromArray(new double[] { 0.25, 1 }), l(7));
+		assertSum(l(4), DataValueFactory.listValue(Arrays.asList(l(1), d(0.5))));
+		assertSum(d(0.1), d(0.2), d(0.3));
+	}
+
+	@Test public void mixedTypes() throws ExpressionEvaluatorException {
+		assertSum(l(1), d(2.5), s("abc"), l(4), DataValueFactory.listValueFromArray(new long[] { 5, 6 }));
+		assertSum(l(1), DataValueFactory.listValue(Arrays.asList(l(2), s("x"), d(1.5))), l(3));
+		assertSum(s("start"), l(1), DataValueFactory.listValueFromArray(new double[] { 0.5 }));
+	}
+
+	@Test public void undefinedVariable() throws ExpressionEvaluatorException {
+		ScriptContext context = new ScriptContextBuilder().toScriptContext();
+		ScriptTreeNode undefined = new VariableNode("undefined");
+
+		// $undefined; 3{$undefined}
+		DataValue results = new ScriptNode(Arrays.asList(undefined, RepeatGroupNode.getRepeatNode(3, undefined)))
+				.evaluate(context);
+
+		assertEquals(2, results.asList().size());
+		assertEquals(DataType.NULL, results.asList().get(0).dataType());
+		List<DataValue> repeated = results.asList().get(1).asList();
+		assertEquals(3, repeated.size());
+		for (DataValue dv : repeated) {
+			assertEquals(DataType.NULL, dv.dataType());
+		}
+	}
+}
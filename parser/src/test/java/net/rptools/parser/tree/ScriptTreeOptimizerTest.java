@@ -0,0 +1,75 @@
+package net.rptools.parser.tree;
+
+import static org.junit.Assert.*;
+
+import net.rptools.lib.datavalue.DataValueFactory;
+import net.rptools.lib.result.RollExpression;
+import net.rptools.parser.ExpressionEvaluatorException;
+import net.rptools.parser.ScriptContext;
+import net.rptools.parser.ScriptContextBuilder;
+
+import org.junit.Test;
+
+public class ScriptTreeOptimizerTest {
+
+	private static ScriptTreeNode roll(String rollString) {
+		return new RollNode("roll", RollExpression.getRollExpression(rollString));
+	}
+
+	private static ScriptTreeNode timesA(long val) {
+		return BinaryMathOpNode.getMultiplyNode(new VariableNode("a"), new ConstantNode(val));
+	}
+
+	private static String evaluate(ScriptTreeNode node) throws ExpressionEvaluatorException {
+		ScriptContext context = new ScriptContextBuilder().setRandomSeed(99).toScriptContext();
+		context.getSymbolTable().setVariable("a", DataValueFactory.longValue(5));
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			sb.append(node.evaluate(context)).append(' ');
+		}
+		return sb.append(context.getSymbolTable().getVariable("a")).toString();
+	}
+
+	private static void assertSameResult(ScriptTreeNode original, ScriptTreeNode optimized)
+			throws ExpressionEvaluatorException {
+		assertEquals(evaluate(original), evaluate(optimized));
+	}
+
+	@Test public void hoistsInvariantSubExpressions() throws ExpressionEvaluatorException {
+		// 3{1d6 + $a * 2}
+		ScriptTreeNode body = BinaryMathOpNode.getAddNode(roll("1d6"), timesA(2));
+		for (RepeatGroupNode group : new RepeatGroupNode[] { RepeatGroupNode.getRepeatNode(3, body),
+				RepeatGroupNode.getRepeatSumNode(3, body) }) {
+			ScriptTreeNode optimized = ScriptTreeOptimizer.optimize(group);
+
+			BinaryMathOpNode child = (BinaryMathOpNode) ((RepeatGroupNode) optimized).getChild();
+			assertTrue(child.getLeftChild() instanceof RollNode);
+			assertTrue(child.getRightChild() instanceof HoistedValueNode);
+			assertSameResult(group, optimized);
+		}
+	}
+
+	@Test public void nestedGroups() throws ExpressionEvaluatorException {
+		// 2[1d6 + $a * 2 + 3{1d4 - $a * 3} + -($a * 4)]
+		ScriptTreeNode inner = RepeatGroupNode.getRepeatSumNode(3, BinaryMathOpNode.getSubtractNode(roll("1d4"),
+				timesA(3)));
+		ScriptTreeNode body = BinaryMathOpNode.getAddNode(BinaryMathOpNode.getAddNode(
+				BinaryMathOpNode.getAddNode(roll("1d6"), timesA(2)), inner), new NegateNode(timesA(4)));
+		RepeatGroupNode group = RepeatGroupNode.getRepeatNode(2, body);
+
+		assertSameResult(group, ScriptTreeOptimizer.optimize(group));
+	}
+
+	@Test public void noHoistingWhenVariablesChange() throws ExpressionEvaluatorException {
+		// 3[($a = $a + 1d6) & $a * 2]
+		ScriptTreeNode assign = new AssignVariableNode("a", BinaryMathOpNode.getAddNode(new VariableNode("a"),
+				roll("1d6")));
+		RepeatGroupNode group = RepeatGroupNode.getRepeatNode(3, new ListConcatNode(assign, timesA(2)));
+		ScriptTreeNode optimized = ScriptTreeOptimizer.optimize(group);
+
+		ListConcatNode child = (ListConcatNode) ((RepeatGroupNode) optimized).getChild();
+		assertFalse(child.getRight() instanceof HoistedValueNode);
+		assertSameResult(group, optimized);
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import net.rptools.lib.result.Result;
+import net.rptools.lib.result.ResultBuilder;
+
+/**
+ * Base class for the DataValues that represent the list data type. Sub classes only
+ * need to provide the list of values, all list DataValues are equal to each other if
+ * they contain equal values regardless of how the values are stored.
+ *
+ */
+abstract class AbstractListDataValue implements DataValue {
+
+	/** The value of the list as a string, created when it is first needed. */
+	private String string;
+
+	/** The string representation of the list, created when it is first needed. */
+	private String description;
+
+	@Override
+	public String asString() {
+		// Like String.hashCode() a race only means the string may be created more than once. 
+		String str = string;
+		if (str == null) {
+			StringBuilder sb = new StringBuilder();
+			try {
+				appendValues(sb);
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // Can not happen with a StringBuilder.
+			}
+			str = sb.toString();
+			string = str;
+		}
+		return str;
+	}
+
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		String str = string;
+		if (str != null) {
+			out.append(str);
+		} else {
+			appendValues(out);
+		}
+	}
+
+	/**
+	 * Appends the values in the list to an {@link Appendable} in the format returned 
+	 * by {@link #asString()}.
+	 * 
+	 * @param out The {@link Appendable} to append to.
+	 * 
+	 * @throws IOException if an error occurs appending to out.
+	 */
+	private void appendValues(Appendable out) throws IOException {
+		out.append("[ ");
+		boolean first = true;
+		for (DataValue dv : asList()) {
+			if (first == false) {
+				out.append(", ");
+			} else {
+				first = false;
+			}
+			dv.appendTo(out);
+		}
+		out.append(" ]");
+	}
+
+	@Override
+	public long asLong() {
+		throw new NumberFormatException("Can not convert list to a numeric value");
+	}
+
+	@Override
+	public double asDouble() {
+		throw new NumberFormatException("Can not convert list to a numeric value");
+	}
+
+	@Override
+	public DataValue add(DataValue val) {
+        return DataValueOperations.add(this, val);
+	}
+
+	@Override
+	public DataValue subtract(DataValue val) {
+        return DataValueOperations.subtract(this, val);
+	}
+
+	@Override
+	public DataValue multiply(DataValue val) {
+        return DataValueOperations.multiply(this, val);
+	}
+
+	@Override
+	public DataValue divide(DataValue val) {
+        return DataValueOperations.divide(this, val);
+	}
+
+	@Override
+	public DataValue remainder(DataValue val) {
+        return DataValueOperations.remainder(this, val);
+	}
+
+	@Override
+	public DataValue power(DataValue exp) {
+        return DataValueOperations.power(this, exp);
+	}
+
+	@Override
+	public DataValue negate() {
+		throw new UnsupportedOperationException("Can not convert list to a numeric value");
+	}
+
+	@Override
+	public DataType dataType() {
+		return DataType.LIST;
+	}
+
+	@Override
+	public boolean hasLabel() {
+		return false;
+	}
+
+	@Override
+	public DataLabel getLabel() {
+		return DataLabel.NO_LABEL;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		boolean eq = false;
+		if (o instanceof AbstractListDataValue) {
+			final List<DataValue> value = asList();
+			final List<DataValue> lst = ((DataValue) o).asList();
+			if (value.size() == lst.size()) {
+				final Iterator<DataValue> viter = value.iterator();
+				final Iterator<DataValue> liter = lst.iterator();
+				eq = true;
+
+				while (viter.hasNext()) {
+					final DataValue dv1 = viter.next();
+					final DataValue dv2 = liter.next();
+
+					if (dv1.equals(dv2) == false) {
+						eq = false;
+						break;
+					}
+				}
+			}
+		}
+		return eq;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 31;
+		for (DataValue dv : asList()) {
+			hash = hash + 31 * dv.hashCode();
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		String desc = description;
+		if (desc == null) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(dataType().toString());
+			sb.append(" ");
+			sb.append("[ ");
+			boolean first = true;
+			for (DataValue dv : asList()) {
+				if (first == false) {
+					sb.append(", ");
+				} else {
+					first = false;
+				}
+				sb.append(dv.toString());
+			}
+			sb.append(" ]");
+			desc = sb.toString();
+			description = desc;
+		}
+		return desc;
+	}
+
+	@Override
+	public DataValue asLongValue() {
+		return DataValueFactory.longValue(asLong());
+	}
+
+	@Override
+	public DataValue asDoubleValue() {
+		return DataValueFactory.doubleValue(asDouble());
+	}
+
+	@Override
+	public DataValue asStringValue() {
+		return DataValueFactory.stringValue(asString());
+	}
+
+	@Override
+	public DataValue asListValue() {
+		return this;
+	}
+
+	@Override
+	public Map<String, DataValue> asDictionary() {
+		throw new UnsupportedOperationException("Can not a list value to a dictionary.");
+	}
+
+	@Override
+	public DataValue asDictionaryValue() {
+		return DataValueFactory.dictionaryValue(asDictionary());
+	}
+
+	@Override
+	public Result asResult() {
+		return new ResultBuilder().setValue(this).toResult();
+	}
+
+    @Override
+    public boolean asBoolean() {
+        return asList().size() != 0;
+    }
+
+    @Override
+	public DataValue asResultValue() {
+		return DataValueFactory.resultValue(asResult());
+	}
+
+    @Override
+    public DataValue asBooleanValue() {
+        return DataValueFactory.booleanValue(asBoolean());
+    }
+
+}
@@ -17,6 +17,7 @@ package net.rptools.lib.datavalue;
 import net.rptools.lib.result.Result;
 import net.rptools.lib.result.ResultBuilder;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -74,6 +75,11 @@ public class BooleanDataValue implements DataValue {
         return Boolean.toString(value);
     }
 
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        out.append(asString());
+    }
+
     @Override
     public long asLong() {
         throw new NumberFormatException("Can not convert boolean to a number.");
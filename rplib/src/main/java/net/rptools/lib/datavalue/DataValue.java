@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +54,17 @@ public interface DataValue {
 	 */
 	public String asString();
 
+	/**
+	 * Appends the value of this DataValue as returned by {@link #asString()} to an 
+	 * {@link Appendable}. List and dictionary values are written a value at a time so 
+	 * large values can be output without first building the whole {@link String}.
+	 * 
+	 * @param out The {@link Appendable} to append the value to.
+	 * 
+	 * @throws IOException if an error occurs appending to out.
+	 */
+	public void appendTo(Appendable out) throws IOException;
+
 	/**
 	 * Returns the value of this DataValue as a long. 
 	 * 
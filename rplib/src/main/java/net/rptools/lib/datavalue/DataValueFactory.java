@@ -16,6 +16,7 @@ package net.rptools.lib.datavalue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -29,15 +30,116 @@ import net.rptools.lib.result.Result;
  *
  */
 public final class DataValueFactory {
-	
+
+	/** 
+	 * The name of the system property used to set the lowest value in the cache of 
+	 * {@link DataType#LONG} values.
+	 */
+	public static final String LONG_CACHE_LOW_PROPERTY = "net.rptools.lib.datavalue.longCache.low";
+
+	/** 
+	 * The name of the system property used to set the highest value in the cache of 
+	 * {@link DataType#LONG} values.
+	 */
+	public static final String LONG_CACHE_HIGH_PROPERTY = "net.rptools.lib.datavalue.longCache.high";
+
+	/** The default lowest value in the cache of {@link DataType#LONG} values. */
+	private static final long DEFAULT_LONG_CACHE_LOW = -128;
+
+	/** The default highest value in the cache of {@link DataType#LONG} values. */
+	private static final long DEFAULT_LONG_CACHE_HIGH = 1024;
+
+	/** The maximum number of values that can be held in the cache of {@link DataType#LONG} values. */
+	private static final long MAXIMUM_LONG_CACHE_SIZE = 1 << 16;
+
+	/** The empty {@link DataType#STRING} value. */
+	private static final DataValue EMPTY_STRING = new StringDataValue("");
+
+	/** The empty {@link DataType#LIST} value. */
+	private static final DataValue EMPTY_LIST = new ListDataValue(Collections.<DataValue>emptyList());
+
+	/** The empty {@link DataType#DICTIONARY} value. */
+	private static final DataValue EMPTY_DICTIONARY = new DictionaryDataValue(Collections.<String, DataValue>emptyMap());
+
+	/**
+	 * Holds the cache of {@link DataType#LONG} values, this is in its own class so that 
+	 * the cache is only created when it is first used.
+	 */
+	private static final class LongCache {
+
+		/** The lowest value in the cache. */
+		static final long low;
+
+		/** The highest value in the cache. */
+		static final long high;
+
+		/** The cached values. */
+		static final DataValue[] cache;
+
+		static {
+			long[] range = longCacheRange(Long.getLong(LONG_CACHE_LOW_PROPERTY, DEFAULT_LONG_CACHE_LOW),
+					Long.getLong(LONG_CACHE_HIGH_PROPERTY, DEFAULT_LONG_CACHE_HIGH));
+
+			low = range[0];
+			high = range[1];
+			cache = new DataValue[(int) (high - low + 1)];
+			for (int i = 0; i < cache.length; i++) {
+				cache[i] = new LongDataValue(low + i);
+			}
+		}
+
+		/**
+		 * Private constructor to stop instantiation.
+		 */
+		private LongCache() {
+		}
+	}
+
 	/**
-	 * Creates a {@link DataValue} of type {@link DataType#LONG}.
+	 * Private constructor to stop instantiation.
+	 */
+	private DataValueFactory() {
+	}
+
+	/**
+	 * Returns the range of values held in the cache of {@link DataType#LONG} values. The 
+	 * requested values are limited to the range of an int so that the size of the cache 
+	 * can be calculated without overflowing, and the cache holds at most 
+	 * {@link #MAXIMUM_LONG_CACHE_SIZE} values.
+	 * 
+	 * @param requestedLow The requested lowest value in the cache.
+	 * @param requestedHigh The requested highest value in the cache.
+	 * 
+	 * @return an array holding the lowest and highest values in the cache, if the cache is
+	 *         empty the highest value is one less than the lowest.
+	 */
+	static long[] longCacheRange(long requestedLow, long requestedHigh) {
+		long l = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, requestedLow));
+		long h = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, requestedHigh));
+
+		if (h < l) {
+			h = l - 1;
+		} else if (h - l >= MAXIMUM_LONG_CACHE_SIZE) {
+			h = l + MAXIMUM_LONG_CACHE_SIZE - 1;
+		}
+
+		return new long[] { l, h };
+	}
+
+	/**
+	 * Returns a {@link DataValue} of type {@link DataType#LONG}. Values in the range 
+	 * set by the {@link #LONG_CACHE_LOW_PROPERTY} and {@link #LONG_CACHE_HIGH_PROPERTY} 
+	 * system properties (-128 to 1024 by default) are cached so the same instance is 
+	 * returned for each call.
 	 * 
 	 * @param val the long value to create a {@link DataValue} for.
 	 * 
-	 * @return the new {@link DataValue}.
+	 * @return the {@link DataValue}.
 	 */
 	public static DataValue longValue(long val) {
+		if (val >= LongCache.low && val <= LongCache.high) {
+			return LongCache.cache[(int) (val - LongCache.low)];
+		}
 		return new LongDataValue(val);
 	}
 	
@@ -57,9 +159,12 @@ public final class DataValueFactory {
 	 * 
 	 * @param val the String value to create a {@link DataValue} for.
 	 * 
-	 * @return the new {@link DataValue}.
+	 * @return the {@link DataValue}.
 	 */
 	public static DataValue stringValue(String val) {
+		if (val != null && val.isEmpty()) {
+			return EMPTY_STRING;
+		}
 		return new StringDataValue(val);
 	}
 	
@@ -68,9 +173,12 @@ public final class DataValueFactory {
 	 * 
 	 * @param vals the Collection to create a {@link DataValue} for.
 	 * 
-	 * @return the new {@link DataValue}.
+	 * @return the {@link DataValue}.
 	 */
 	public static DataValue listValue(Collection<? extends DataValue> vals) {
+		if (vals.isEmpty()) {
+			return EMPTY_LIST;
+		}
 		return new ListDataValue(vals);
 	}
 
@@ -79,12 +187,106 @@ public final class DataValueFactory {
 	 * 
 	 * @param vals the Map value to create a {@link DataValue} for.
 	 * 
-	 * @return the new {@link DataValue}.
+	 * @return the {@link DataValue}.
 	 */
 	public static DataValue dictionaryValue(Map<String, DataValue> vals) {
+		if (vals.isEmpty()) {
+			return EMPTY_DICTIONARY;
+		}
 		return new DictionaryDataValue(vals);
 	}
 	
+	/**
+	 * Creates a {@link DataValue} of type {@link DataType#LIST} that uses a 
+	 * {@link PersistentVector} without copying it.
+	 * 
+	 * @param vals the values of the list.
+	 * 
+	 * @return the {@link DataValue}.
+	 */
+	static DataValue listValue(PersistentVector<DataValue> vals) {
+		if (vals.isEmpty()) {
+			return EMPTY_LIST;
+		}
+		return new ListDataValue(vals);
+	}
+
+	/**
+	 * Creates a {@link DataValue} of type {@link DataType#DICTIONARY} that uses a 
+	 * {@link PersistentOrderedMap} without copying it.
+	 * 
+	 * @param vals the mappings of the dictionary.
+	 * 
+	 * @return the {@link DataValue}.
+	 */
+	static DataValue dictionaryValue(PersistentOrderedMap<String, DataValue> vals) {
+		if (vals.isEmpty()) {
+			return EMPTY_DICTIONARY;
+		}
+		return new DictionaryDataValue(vals);
+	}
+
+	/**
+	 * Returns a {@link DataValue} of type {@link DataType#LIST} that contains the values
+	 * of the first list followed by the values of the second. If the first value is a 
+	 * {@link DataType#LIST} then the new list shares its structure, so only the values
+	 * of the second list are copied.
+	 * 
+	 * @param left The values at the start of the new list.
+	 * @param right The values at the end of the new list.
+	 * 
+	 * @return the new {@link DataValue}.
+	 */
+	public static DataValue listValueConcat(DataValue left, DataValue right) {
+		if (left instanceof ListDataValue) {
+			return ((ListDataValue) left).withAll(right.asList());
+		}
+
+		List<DataValue> lst = new ArrayList<>(left.asList().size() + right.asList().size());
+		lst.addAll(left.asList());
+		lst.addAll(right.asList());
+		return listValue(lst);
+	}
+
+	/**
+	 * Returns a {@link DataValue} of type {@link DataType#DICTIONARY} with the mappings 
+	 * of a dictionary plus the specified mappings, which replace any existing mappings for
+	 * the same names. The new dictionary shares the structure of the original.
+	 * 
+	 * @param dict The dictionary to add to.
+	 * @param vals The mappings to add.
+	 * 
+	 * @return the new {@link DataValue}.
+	 */
+	public static DataValue dictionaryValuePut(DataValue dict, Map<String, DataValue> vals) {
+		if (dict instanceof DictionaryDataValue) {
+			return ((DictionaryDataValue) dict).withAll(vals);
+		}
+
+		return new DictionaryDataValue(dict.asDictionary()).withAll(vals);
+	}
+
+	/**
+	 * Returns a {@link DataValue} of type {@link DataType#DICTIONARY} with the mappings 
+	 * of a dictionary except for those with the specified names. The new dictionary shares
+	 * the structure of the original.
+	 * 
+	 * @param dict The dictionary to remove from.
+	 * @param names The names of the mappings to remove.
+	 * 
+	 * @return the new {@link DataValue}.
+	 */
+	public static DataValue dictionaryValueRemove(DataValue dict, Collection<String> names) {
+		DataValue dv;
+		if (dict instanceof DictionaryDataValue) {
+			dv = ((DictionaryDataValue) dict).without(names);
+		} else {
+			dv = new DictionaryDataValue(dict.asDictionary()).without(names);
+		}
+
+		return dv.asDictionary().isEmpty() ? EMPTY_DICTIONARY : dv;
+	}
+
 	/**
 	 * Creates a {@link DataValue} of type {@link DataType#RESULT}.
 	 * 
@@ -147,12 +349,13 @@ public final class DataValueFactory {
 	 * @return a {@link DataType#LIST} DataType containing the values.
 	 */
 	public static DataValue doubleListValue(Collection<Double> vals) {
-		List<DataValue> lst = new ArrayList<>(vals.size());
+		double[] arr = new double[vals.size()];
+		int i = 0;
 		for (Double d : vals) {
-			lst.add(doubleValue(d));
+			arr[i++] = d;
 		}
 		
-		return listValue(lst);
+		return numericListValue(arr);
 	}
 	
 	/**
@@ -181,12 +384,13 @@ public final class DataValueFactory {
 	 * @return a {@link DataType#LIST} DataType containing the values.
 	 */
 	public static DataValue longListValue(Collection<Long> vals) {
-		List<DataValue> lst = new ArrayList<>(vals.size());
+		long[] arr = new long[vals.size()];
+		int i = 0;
 		for (Long l : vals) {
-			lst.add(longValue(l));
+			arr[i++] = l;
 		}
 
-		return listValue(lst);
+		return numericListValue(arr);
 	}
 
     /**
@@ -198,12 +402,13 @@ public final class DataValueFactory {
      * @return a {@link DataType#LIST} DataType containing the values.
      */
     public static DataValue intListValue(Collection<Integer> vals) {
-        List<DataValue> lst = new ArrayList<>(vals.size());
-        for (Integer i : vals) {
-            lst.add(longValue(i));
+        long[] arr = new long[vals.size()];
+        int i = 0;
+        for (Integer val : vals) {
+            arr[i++] = val;
         }
 
-        return listValue(lst);
+        return numericListValue(arr);
     }
 
 
@@ -216,12 +421,12 @@ public final class DataValueFactory {
      * @return a {@link DataType#LIST} DataType containing the values.
      */
     public static DataValue listValueFromArray(int[] arr) {
-        List<DataValue> lst = new ArrayList<>(arr.length);
+        long[] vals = new long[arr.length];
         for (int i = 0; i < arr.length; i++) {
-            lst.add(longValue(arr[i]));
+            vals[i] = arr[i];
         }
 
-        return listValue(lst);
+        return numericListValue(vals);
     }
 
     /**
@@ -233,12 +438,47 @@ public final class DataValueFactory {
      * @return a {@link DataType#LIST} DataType containing the values.
      */
     public static DataValue listValueFromArray(long[] arr) {
-        List<DataValue> lst = new ArrayList<>(arr.length);
-        for (int i = 0; i < arr.length; i++) {
-            lst.add(longValue(arr[i]));
+        return numericListValue(arr.clone());
+    }
+
+    /**
+     * Creates a {@link DataValue} of type {@link DataType#LIST} containing
+     * {@link DataType#DOUBLE} values created from an array of doubles.
+     *
+     * @param arr The array to create the list from.
+     *
+     * @return a {@link DataType#LIST} DataType containing the values.
+     */
+    public static DataValue listValueFromArray(double[] arr) {
+        return numericListValue(arr.clone());
+    }
+
+    /**
+     * Returns a {@link NumericListDataValue} that takes ownership of the array.
+     *
+     * @param arr The array, which must not be modified afterwards.
+     *
+     * @return a {@link DataType#LIST} DataType containing the values.
+     */
+    private static DataValue numericListValue(long[] arr) {
+        if (arr.length == 0) {
+            return EMPTY_LIST;
         }
+        return new LongListDataValue(arr);
+    }
 
-        return listValue(lst);
+    /**
+     * Returns a {@link NumericListDataValue} that takes ownership of the array.
+     *
+     * @param arr The array, which must not be modified afterwards.
+     *
+     * @return a {@link DataType#LIST} DataType containing the values.
+     */
+    private static DataValue numericListValue(double[] arr) {
+        if (arr.length == 0) {
+            return EMPTY_LIST;
+        }
+        return new DoubleListDataValue(arr);
     }
 
 
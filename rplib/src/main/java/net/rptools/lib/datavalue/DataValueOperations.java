@@ -36,54 +36,45 @@ class DataValueOperations {
     public static DataValue add(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
-
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return addNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // Adding two lists or to a list.
-        if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
-            List<DataValue> lst = new ArrayList<>();
-            lst.addAll(dv1.asList());
-            lst.addAll(dv2.asList());
-
-            return DataValueFactory.listValue(lst);
+        if (t1 == DataType.LIST || t2 == DataType.LIST) {
+            return DataValueFactory.listValueConcat(dv1, dv2);
         }
 
         // Adding a null to something
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform addition on a null.");
         }
 
         // Adding to a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not perform addition with a dictionary.");
         }
 
         // Adding boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not perform addition with a boolean.");
         }
 
         // Adding to a string.
-        if (dv1.dataType() == DataType.STRING || dv2.dataType() == DataType.STRING) {
+        if (t1 == DataType.STRING || t2 == DataType.STRING) {
             return DataValueFactory.stringValue(dv1.asString() + dv2.asString());
         }
 
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(dv1.asDouble() + dv2.asDouble());
-        } else {
-            return DataValueFactory.longValue(dv1.asLong() + dv2.asLong());
-        }
+        return addNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
 
 
     }
@@ -101,58 +92,53 @@ class DataValueOperations {
     public static DataValue subtract(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
-
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return subtractNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // Subtracting two lists or to a list.
-        if (dv1.dataType() == DataType.LIST && dv2.dataType() == DataType.LIST) {
+        if (t1 == DataType.LIST && t2 == DataType.LIST) {
             List<DataValue> lst = new ArrayList<>();
             lst.addAll(dv1.asList());
             lst.removeAll(dv2.asList());
 
             return DataValueFactory.listValue(lst);
-        } else if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
+        } else if (t1 == DataType.LIST || t2 == DataType.LIST) {
             throw new UnsupportedOperationException("Can only subtract a list from another list.");
         }
 
         // Subtracting a null from something
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform subtraction on a null.");
         }
 
         // Subtracting from a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not perform subtraction with a dictionary.");
         }
 
         // Subtracting boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not perform subtraction with a boolean.");
         }
 
         // Subtracting from a string.
-        if (dv1.dataType() == DataType.STRING && dv2.dataType() == DataType.STRING) {
+        if (t1 == DataType.STRING && t2 == DataType.STRING) {
             return DataValueFactory.stringValue(dv1.asString().replace(dv2.asString(), ""));
-        } else if (dv1.dataType() == DataType.STRING || dv2.dataType() == DataType.STRING) {
+        } else if (t1 == DataType.STRING || t2 == DataType.STRING) {
             throw new UnsupportedOperationException("Can not subtract a number from a string.");
         }
 
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(dv1.asDouble() - dv2.asDouble());
-        } else {
-            return DataValueFactory.longValue(dv1.asLong() - dv2.asLong());
-        }
+        return subtractNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
 
     }
 
@@ -171,40 +157,39 @@ class DataValueOperations {
     public static DataValue multiply(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
-
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return multiplyNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // Multiply two lists or to a list.
-        if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
+        if (t1 == DataType.LIST || t2 == DataType.LIST) {
             throw new UnsupportedOperationException("Can not multiply a list.");
         }
 
         // Multiply by a null
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform multiplication by a null.");
         }
 
         // Adding to a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not multiply dictionary.");
         }
 
         // Adding boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not multiply a boolean.");
         }
 
         // multiply a string.
-        if (dv1.dataType() == DataType.STRING) {
-            if (dv2.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.LONG) {
+        if (t1 == DataType.STRING) {
+            if (t2 == DataType.DOUBLE || t2 == DataType.LONG) {
                 StringBuilder sb = new StringBuilder();
                 for (int i = (int)dv2.asLong(); i > 0; i--) {
                     sb.append(dv1.asString());
@@ -215,8 +200,8 @@ class DataValueOperations {
             }
         }
 
-        if (dv2.dataType() == DataType.STRING) {
-            if (dv1.dataType() == DataType.DOUBLE || dv1.dataType() == DataType.LONG) {
+        if (t2 == DataType.STRING) {
+            if (t1 == DataType.DOUBLE || t1 == DataType.LONG) {
                 StringBuilder sb = new StringBuilder();
                 for (int i = (int)dv1.asLong(); i > 0; i--) {
                     sb.append(dv2.asString());
@@ -229,11 +214,7 @@ class DataValueOperations {
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(dv1.asDouble() * dv2.asDouble());
-        } else {
-            return DataValueFactory.longValue(dv1.asLong() * dv2.asLong());
-        }
+        return multiplyNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
 
 
     }
@@ -252,50 +233,45 @@ class DataValueOperations {
     public static DataValue divide(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
-
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return divideNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // division two lists or to a list.
-        if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
+        if (t1 == DataType.LIST || t2 == DataType.LIST) {
             throw new UnsupportedOperationException("Can not perform division with a list.");
         }
 
         // division of or by a null
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform sdivision with a null.");
         }
 
         // Division of or by a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not perform division with a dictionary.");
         }
 
         // Division with a boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not perform division with a boolean.");
         }
 
         // Division with a string.
-        if (dv1.dataType() == DataType.STRING || dv2.dataType() == DataType.STRING) {
+        if (t1 == DataType.STRING || t2 == DataType.STRING) {
             throw new UnsupportedOperationException("Can not perform division with a String.");
         }
 
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(dv1.asDouble() / dv2.asDouble());
-        } else {
-            return DataValueFactory.longValue(dv1.asLong() / dv2.asLong());
-        }
+        return divideNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
 
     }
 
@@ -312,50 +288,45 @@ class DataValueOperations {
     public static DataValue remainder(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
-
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return remainderNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // division two lists or to a list.
-        if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
+        if (t1 == DataType.LIST || t2 == DataType.LIST) {
             throw new UnsupportedOperationException("Can not perform division with a list.");
         }
 
         // division of or by a null
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform sdivision with a null.");
         }
 
         // Division of or by a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not perform division with a dictionary.");
         }
 
         // Division with a boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not perform division with a boolean.");
         }
 
         // Division with a string.
-        if (dv1.dataType() == DataType.STRING || dv2.dataType() == DataType.STRING) {
+        if (t1 == DataType.STRING || t2 == DataType.STRING) {
             throw new UnsupportedOperationException("Can not perform division with a String.");
         }
 
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(dv1.asDouble() % dv2.asDouble());
-        } else {
-            return DataValueFactory.longValue(dv1.asLong() % dv2.asLong());
-        }
+        return remainderNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
 
     }
 
@@ -373,52 +344,176 @@ class DataValueOperations {
     public static DataValue power(DataValue v1, DataValue v2) {
 
         // Get the real value.
-        DataValue dv1 = v1;
-        DataValue dv2 = v2;
-
-        while (dv1.dataType() == DataType.RESULT) {
-            dv1 = dv1.asResult().getValue();
-        }
+        DataValue dv1 = unwrap(v1);
+        DataValue dv2 = unwrap(v2);
+        DataType t1 = dv1.dataType();
+        DataType t2 = dv2.dataType();
 
-        while (dv2.dataType() == DataType.RESULT) {
-            dv2 = dv2.asResult().getValue();
+        // Numbers are by far the most common case so check for them first.
+        if (isNumeric(t1) && isNumeric(t2)) {
+            return powerNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
         }
 
         // division two lists or to a list.
-        if (dv1.dataType() == DataType.LIST || dv2.dataType() == DataType.LIST) {
+        if (t1 == DataType.LIST || t2 == DataType.LIST) {
             throw new UnsupportedOperationException("Can not perform division with a list.");
         }
 
         // division of or by a null
-        if (dv1.dataType() == DataType.NULL || dv2.dataType() == DataType.NULL) {
+        if (t1 == DataType.NULL || t2 == DataType.NULL) {
             throw new UnsupportedOperationException("Can not perform sdivision with a null.");
         }
 
         // Division of or by a dictionary
-        if (dv1.dataType() == DataType.DICTIONARY || dv2.dataType() == DataType.DICTIONARY) {
+        if (t1 == DataType.DICTIONARY || t2 == DataType.DICTIONARY) {
             throw new UnsupportedOperationException("Can not perform division with a dictionary.");
         }
 
         // Division with a boolean
-        if (dv1.dataType() == DataType.BOOLEAN || dv2.dataType() == DataType.BOOLEAN) {
+        if (t1 == DataType.BOOLEAN || t2 == DataType.BOOLEAN) {
             throw new UnsupportedOperationException("Can not perform division with a boolean.");
         }
 
         // Division with a string.
-        if (dv1.dataType() == DataType.STRING || dv2.dataType() == DataType.STRING) {
+        if (t1 == DataType.STRING || t2 == DataType.STRING) {
             throw new UnsupportedOperationException("Can not perform division with a String.");
         }
 
 
 
         // Only numeric types left.
-        if (dv1.dataType() == DataType.DOUBLE || dv2.dataType() == DataType.DOUBLE) {
-            return DataValueFactory.doubleValue(Math.pow(dv1.asDouble(), dv2.asDouble()));
+        return powerNumbers(dv1, dv2, t1 == DataType.DOUBLE || t2 == DataType.DOUBLE);
+
+    }
+
+
+    /**
+     * Returns the value wrapped by any number of results.
+     *
+     * @param val The value to unwrap.
+     *
+     * @return the unwrapped value.
+     */
+    private static DataValue unwrap(DataValue val) {
+        DataValue dv = val;
+        while (dv.dataType() == DataType.RESULT) {
+            dv = dv.asResult().getValue();
+        }
+
+        return dv;
+    }
+
+    /**
+     * Checks to see if a data type is numeric.
+     *
+     * @param type The data type to check.
+     *
+     * @return true if the type is {@link DataType#LONG} or {@link DataType#DOUBLE}.
+     */
+    private static boolean isNumeric(DataType type) {
+        return type == DataType.LONG || type == DataType.DOUBLE;
+    }
+
+    /**
+     * Returns the result of adding two numbers.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue addNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(dv1.asDouble() + dv2.asDouble());
         } else {
-            return DataValueFactory.longValue((long)Math.pow(dv1.asLong(), dv2.asLong()));
+            return DataValueFactory.longValue(dv1.asLong() + dv2.asLong());
+        }
+    }
+
+    /**
+     * Returns the result of subtracting one number from another.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue subtractNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(dv1.asDouble() - dv2.asDouble());
+        } else {
+            return DataValueFactory.longValue(dv1.asLong() - dv2.asLong());
+        }
+    }
+
+    /**
+     * Returns the result of multiplying two numbers.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue multiplyNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(dv1.asDouble() * dv2.asDouble());
+        } else {
+            return DataValueFactory.longValue(dv1.asLong() * dv2.asLong());
+        }
+    }
+
+    /**
+     * Returns the result of dividing one number by another.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue divideNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(dv1.asDouble() / dv2.asDouble());
+        } else {
+            return DataValueFactory.longValue(dv1.asLong() / dv2.asLong());
         }
+    }
 
+    /**
+     * Returns the remainder of dividing one number by another.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue remainderNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(dv1.asDouble() % dv2.asDouble());
+        } else {
+            return DataValueFactory.longValue(dv1.asLong() % dv2.asLong());
+        }
     }
 
+    /**
+     * Returns the result of raising one number to the power of another.
+     *
+     * @param dv1 The first number.
+     * @param dv2 The second number.
+     * @param isDouble Should the operation be performed on floating point values.
+     *
+     * @return the result.
+     */
+    private static DataValue powerNumbers(DataValue dv1, DataValue dv2, boolean isDouble) {
+        if (isDouble) {
+            return DataValueFactory.doubleValue(Math.pow(dv1.asDouble(), dv2.asDouble()));
+        } else {
+            return DataValueFactory.longValue((long)Math.pow(dv1.asLong(), dv2.asLong()));
+        }
+    }
 
 }
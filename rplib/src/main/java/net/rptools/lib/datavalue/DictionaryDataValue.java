@@ -14,8 +14,9 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -30,7 +31,10 @@ import net.rptools.lib.result.ResultBuilder;
 final class DictionaryDataValue implements DataValue {
 	
 	/** The name to DataValue map. */
-	private final Map<String, DataValue> values;
+	private final PersistentOrderedMap<String, DataValue> values;
+
+	/** The value of the dictionary as a string, created when it is first needed. */
+	private String string;
 	
 	/**
 	 * Creates a DataValue with the name to DataValue mapping specified.
@@ -38,28 +42,94 @@ final class DictionaryDataValue implements DataValue {
 	 * @param vals The {@link Map} containing the name/DataType relationships.
 	 */
 	DictionaryDataValue(Map<String, DataValue> vals) {
-		Map<String, DataValue> newMap = new LinkedHashMap<String, DataValue>();
-		newMap.putAll(vals);
-		values = Collections.unmodifiableMap(newMap);
+		values = PersistentOrderedMap.fromMap(vals);
+	}
+
+	/**
+	 * Creates a DataValue with the name to DataValue mapping in a {@link PersistentOrderedMap}.
+	 * 
+	 * @param vals The name/DataType relationships.
+	 */
+	DictionaryDataValue(PersistentOrderedMap<String, DataValue> vals) {
+		values = vals;
+	}
+
+	/**
+	 * Returns a new dictionary with the mappings in this one plus the specified mappings,
+	 * which replace any existing mappings for the same names.
+	 * 
+	 * @param vals The mappings to add.
+	 * 
+	 * @return the new dictionary.
+	 */
+	DictionaryDataValue withAll(Map<String, DataValue> vals) {
+		return new DictionaryDataValue(values.withAll(vals));
+	}
+
+	/**
+	 * Returns a new dictionary without the mappings for the specified names.
+	 * 
+	 * @param names The names to remove.
+	 * 
+	 * @return the new dictionary.
+	 */
+	DictionaryDataValue without(Collection<String> names) {
+		PersistentOrderedMap<String, DataValue> newValues = values;
+		for (String name : names) {
+			newValues = newValues.without(name);
+		}
+		return new DictionaryDataValue(newValues);
 	}
 	
 	@Override
 	public String asString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("{ ");
+		// Like String.hashCode() a race only means the string may be created more than once. 
+		String str = string;
+		if (str == null) {
+			StringBuilder sb = new StringBuilder();
+			try {
+				appendValues(sb);
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // Can not happen with a StringBuilder.
+			}
+			str = sb.toString();
+			string = str;
+		}
+		return str;
+	}
+
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		String str = string;
+		if (str != null) {
+			out.append(str);
+		} else {
+			appendValues(out);
+		}
+	}
+
+	/**
+	 * Appends the mappings in the dictionary to an {@link Appendable} in the format 
+	 * returned by {@link #asString()}.
+	 * 
+	 * @param out The {@link Appendable} to append to.
+	 * 
+	 * @throws IOException if an error occurs appending to out.
+	 */
+	private void appendValues(Appendable out) throws IOException {
+		out.append("{ ");
 		boolean first = true;
-		for (String key : values.keySet()) {
+		for (Map.Entry<String, DataValue> entry : values.entrySet()) {
 			if (first == false) {
-				sb.append(", ");
+				out.append(", ");
 			} else {
 				first = false;
 			}
-			sb.append(key);
-			sb.append(":");
-			sb.append(values.get(key).asString());
+			out.append(entry.getKey());
+			out.append(":");
+			entry.getValue().appendTo(out);
 		}
-		sb.append(" }");
-		return sb.toString();
+		out.append(" }");
 	}
 
 	@Override
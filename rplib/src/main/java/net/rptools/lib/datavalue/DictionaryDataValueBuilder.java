@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.Map;
+
+/**
+ * The DictionaryDataValueBuilder class is used to build a {@link DataType#DICTIONARY}
+ * {@link DataValue} a mapping at a time. The mappings are stored directly in the 
+ * new dictionary rather than being collected and then copied, so this should be used 
+ * instead of building a {@link Map} and passing it to 
+ * {@link DataValueFactory#dictionaryValue(Map)}. The mappings are kept in the order
+ * that the names were first added.
+ *
+ */
+public class DictionaryDataValueBuilder {
+
+	/** The mappings of the dictionary. */
+	private PersistentOrderedMap<String, DataValue> values = PersistentOrderedMap.empty();
+
+	/**
+	 * Maps a name to a value in the dictionary, replacing any existing value for the name.
+	 * 
+	 * @param name The name.
+	 * @param val The value.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws NullPointerException if name or val is null.
+	 */
+	public DictionaryDataValueBuilder put(String name, DataValue val) {
+		if (name == null) {
+			throw new NullPointerException("Name for dictionary value can not be null.");
+		}
+
+		if (val == null) {
+			throw new NullPointerException("Value for dictionary can not be null.");
+		}
+
+		values = values.withPut(name, val);
+		return this;
+	}
+
+	/**
+	 * Adds all of the mappings from a {@link Map} to the dictionary.
+	 * 
+	 * @param vals The mappings to add.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 * 
+	 * @throws NullPointerException if any of the names or values are null.
+	 */
+	public DictionaryDataValueBuilder putAll(Map<String, DataValue> vals) {
+		for (Map.Entry<String, DataValue> entry : vals.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+		return this;
+	}
+
+	/**
+	 * Checks to see if a name has been added to the dictionary.
+	 * 
+	 * @param name The name to check for.
+	 * 
+	 * @return true if the name has been added.
+	 */
+	public boolean containsName(String name) {
+		return values.containsKey(name);
+	}
+
+	/**
+	 * Returns the number of mappings that have been added.
+	 * 
+	 * @return the number of mappings.
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Returns a {@link DataType#DICTIONARY} {@link DataValue} containing the mappings added
+	 * so far. More mappings can be added afterwards without affecting the dictionary that 
+	 * has been returned.
+	 * 
+	 * @return the {@link DataValue}.
+	 */
+	public DataValue toDataValue() {
+		return DataValueFactory.dictionaryValue(values);
+	}
+}
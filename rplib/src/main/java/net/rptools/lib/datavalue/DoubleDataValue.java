@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -46,6 +47,11 @@ final class DoubleDataValue implements DataValue {
 		return Double.toString(value);
 	}
 
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		out.append(asString());
+	}
+
 	@Override
 	public long asLong() {
 		return (long) value;
@@ -63,32 +69,56 @@ final class DoubleDataValue implements DataValue {
 
 	@Override
 	public DataValue add(DataValue val) {
+		if (val instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(value + ((DoubleDataValue) val).value);
+		}
+
         return DataValueOperations.add(this, val);
 	}
 
 	@Override
 	public DataValue subtract(DataValue val) {
+		if (val instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(value - ((DoubleDataValue) val).value);
+		}
+
         return DataValueOperations.subtract(this, val);
 	}
 
 
 	@Override
 	public DataValue multiply(DataValue val) {
+		if (val instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(value * ((DoubleDataValue) val).value);
+		}
+
         return DataValueOperations.multiply(this, val);
 	}
 
 	@Override
 	public DataValue divide(DataValue val) {
+		if (val instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(value / ((DoubleDataValue) val).value);
+		}
+
         return DataValueOperations.divide(this, val);
 	}
 
 	@Override
 	public DataValue remainder(DataValue val) {
+		if (val instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(value % ((DoubleDataValue) val).value);
+		}
+
         return DataValueOperations.remainder(this, val);
 	}
 
 	@Override
 	public DataValue power(DataValue exp) {
+		if (exp instanceof DoubleDataValue) {
+			return DataValueFactory.doubleValue(Math.pow(value, ((DoubleDataValue) exp).value));
+		}
+
         return DataValueOperations.power(this, exp);
 	}	
 	
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The DoubleListDataValue represents a list of floating point script values that
+ * are stored as an array of doubles. The {@link DataType#DOUBLE} values in the list
+ * are only created when they are accessed through {@link #asList()}.
+ *
+ */
+final class DoubleListDataValue extends AbstractListDataValue implements NumericListDataValue {
+
+	/** The values in the list. */
+	private final double[] values;
+
+	/** The view of the values as a list of DataValues. */
+	private final List<DataValue> list = new ValueList();
+
+	/**
+	 * Creates a new DoubleListDataValue. The array is not copied so it must not be
+	 * modified after the DoubleListDataValue has been created.
+	 *
+	 * @param vals The values in the list.
+	 */
+	DoubleListDataValue(double[] vals) {
+		values = vals;
+	}
+
+	@Override
+	public List<DataValue> asList() {
+		return list;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return false;
+	}
+
+	@Override
+	public long getLong(int index) {
+		return (long) values[index];
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return values[index];
+	}
+
+	@Override
+	public int hashCode() {
+		// The same as the hash code of a list of DoubleDataValues.
+		int hash = 31;
+		for (double val : values) {
+			long bits = Double.doubleToLongBits(val);
+			hash = hash + 31 * (31 + (int) (bits ^ (bits >>> 32)));
+		}
+		return hash;
+	}
+
+	/**
+	 * Unmodifiable view of the values as {@link DataType#DOUBLE} DataValues.
+	 */
+	private final class ValueList extends AbstractList<DataValue> implements RandomAccess {
+
+		@Override
+		public DataValue get(int index) {
+			return DataValueFactory.doubleValue(values[index]);
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+	}
+}
@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +57,11 @@ final class LabeledDataValue implements DataValue {
 		return value.asString();
 	}
 
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		value.appendTo(out);
+	}
+
 	@Override
 	public long asLong() {
 		return value.asLong();
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.Collection;
+
+/**
+ * The ListDataValueBuilder class is used to build a {@link DataType#LIST} 
+ * {@link DataValue} a value at a time. The values are stored directly in the 
+ * new list rather than being collected and then copied, so this should be used 
+ * instead of building a {@link java.util.List} and passing it to 
+ * {@link DataValueFactory#listValue(Collection)}.
+ *
+ */
+public class ListDataValueBuilder {
+
+	/** The builder for the values of the list. */
+	private final PersistentVector.Builder<DataValue> values = new PersistentVector.Builder<>();
+
+	/**
+	 * Adds a value to the end of the list. A null value, such as the value of an undefined
+	 * variable, is added as a {@link DataType#NULL} value.
+	 * 
+	 * @param val The value to add.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 */
+	public ListDataValueBuilder add(DataValue val) {
+		values.add(val == null ? DataValueFactory.nullDataValue() : val);
+		return this;
+	}
+
+	/**
+	 * Adds all of the values in a collection to the end of the list.
+	 * 
+	 * @param vals The values to add.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 */
+	public ListDataValueBuilder addAll(Collection<? extends DataValue> vals) {
+		for (DataValue val : vals) {
+			add(val);
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the number of values that have been added.
+	 * 
+	 * @return the number of values.
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Returns a {@link DataType#LIST} {@link DataValue} containing the values added so far.
+	 * More values can be added afterwards to build a longer list without affecting the 
+	 * list that has been returned.
+	 * 
+	 * @return the {@link DataValue}.
+	 */
+	public DataValue toDataValue() {
+		return DataValueFactory.listValue(values.toPersistentVector());
+	}
+}
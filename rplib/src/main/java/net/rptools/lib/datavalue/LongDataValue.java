@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +45,11 @@ final class LongDataValue implements DataValue {
 		return Long.toString(value);
 	}
 
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		out.append(asString());
+	}
+
 	@Override
 	public long asLong() {
 		return value;
@@ -63,32 +69,56 @@ final class LongDataValue implements DataValue {
 
 	@Override
 	public DataValue add(DataValue val) {
+		if (val instanceof LongDataValue) {
+			return DataValueFactory.longValue(value + ((LongDataValue) val).value);
+		}
+
         return DataValueOperations.add(this, val);
 	}
 
 	@Override()
 	public DataValue subtract(DataValue val) {
+		if (val instanceof LongDataValue) {
+			return DataValueFactory.longValue(value - ((LongDataValue) val).value);
+		}
+
         return DataValueOperations.subtract(this, val);
 	}
 
 
 	@Override
 	public DataValue multiply(DataValue val) {
+		if (val instanceof LongDataValue) {
+			return DataValueFactory.longValue(value * ((LongDataValue) val).value);
+		}
+
         return DataValueOperations.multiply(this, val);
 	}
 
 	@Override
 	public DataValue divide(DataValue val) {
+		if (val instanceof LongDataValue) {
+			return DataValueFactory.longValue(value / ((LongDataValue) val).value);
+		}
+
         return DataValueOperations.divide(this, val);
 	}
 
 	@Override
 	public DataValue remainder(DataValue val) {
+		if (val instanceof LongDataValue) {
+			return DataValueFactory.longValue(value % ((LongDataValue) val).value);
+		}
+
         return DataValueOperations.remainder(this, val);
 	}
 
 	@Override
 	public DataValue power(DataValue exp) {
+		if (exp instanceof LongDataValue) {
+			return DataValueFactory.longValue((long)Math.pow(value, ((LongDataValue) exp).value));
+		}
+
         return DataValueOperations.power(this, exp);
 	}	
 	
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The LongListDataValue represents a list of integer script values that are
+ * stored as an array of longs. The {@link DataType#LONG} values in the list are
+ * only created when they are accessed through {@link #asList()}.
+ *
+ */
+final class LongListDataValue extends AbstractListDataValue implements NumericListDataValue {
+
+	/** The values in the list. */
+	private final long[] values;
+
+	/** The view of the values as a list of DataValues. */
+	private final List<DataValue> list = new ValueList();
+
+	/**
+	 * Creates a new LongListDataValue. The array is not copied so it must not be
+	 * modified after the LongListDataValue has been created.
+	 *
+	 * @param vals The values in the list.
+	 */
+	LongListDataValue(long[] vals) {
+		values = vals;
+	}
+
+	@Override
+	public List<DataValue> asList() {
+		return list;
+	}
+
+	@Override
+	public int size() {
+		return values.length;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return true;
+	}
+
+	@Override
+	public long getLong(int index) {
+		return values[index];
+	}
+
+	@Override
+	public double getDouble(int index) {
+		return (double) values[index];
+	}
+
+	@Override
+	public int hashCode() {
+		// The same as the hash code of a list of LongDataValues.
+		int hash = 31;
+		for (long val : values) {
+			hash = hash + 31 * (31 + (int) (val ^ (val >>> 32)));
+		}
+		return hash;
+	}
+
+	/**
+	 * Unmodifiable view of the values as {@link DataType#LONG} DataValues.
+	 */
+	private final class ValueList extends AbstractList<DataValue> implements RandomAccess {
+
+		@Override
+		public DataValue get(int index) {
+			return DataValueFactory.longValue(values[index]);
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+	}
+}
@@ -16,6 +16,7 @@ package net.rptools.lib.datavalue;
 
 import net.rptools.lib.result.Result;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +52,11 @@ public class NullDataValue implements DataValue {
         throw new UnsupportedOperationException("Can not convert null to a string.");
     }
 
+    @Override
+    public void appendTo(Appendable out) throws IOException {
+        throw new UnsupportedOperationException("Can not convert null to a string.");
+    }
+
     @Override
     public long asLong() {
         throw new UnsupportedOperationException("Can not convert null to a number.");
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+/**
+ * NumericListDataValue is implemented by {@link DataType#LIST} values that only contain
+ * numbers and store them as primitives. It allows the numbers to be read without creating
+ * a {@link DataValue} for each one. The values returned by {@link DataValue#asList()} are
+ * equal to the numbers returned by this interface.
+ *
+ */
+public interface NumericListDataValue extends DataValue {
+
+	/**
+	 * Returns the number of values in the list.
+	 *
+	 * @return the number of values.
+	 */
+	public int size();
+
+	/**
+	 * Checks to see if the values in the list are all integers, if so the list
+	 * contains {@link DataType#LONG} values otherwise it contains {@link DataType#DOUBLE}
+	 * values.
+	 *
+	 * @return true if the list contains integers.
+	 */
+	public boolean isIntegral();
+
+	/**
+	 * Returns a value in the list as a long.
+	 *
+	 * @param index The index of the value.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IndexOutOfBoundsException if index is out of range.
+	 */
+	public long getLong(int index);
+
+	/**
+	 * Returns a value in the list as a double.
+	 *
+	 * @param index The index of the value.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IndexOutOfBoundsException if index is out of range.
+	 */
+	public double getDouble(int index);
+}
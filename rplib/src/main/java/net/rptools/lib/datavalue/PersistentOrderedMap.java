@@ -0,0 +1,527 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * PersistentOrderedMap is an immutable map that shares structure with the map it was
+ * created from when entries are added, replaced or removed. Like a
+ * {@link java.util.LinkedHashMap} entries are iterated in the order that the keys were
+ * first added.
+ * <p>
+ * The entries are held in a {@link PersistentVector} in insertion order and a hash array
+ * mapped trie maps each key to the index of its entry, so looking up, adding, replacing
+ * or removing an entry is O(log<sub>32</sub> n). Removed entries leave a gap in the vector
+ * which is skipped when iterating, the vector is compacted once more than half of it is
+ * gaps.
+ * </p>
+ * <p>
+ * The {@link Map} methods that would modify the map throw
+ * {@link UnsupportedOperationException}, use {@link #withPut(Object, Object)} and
+ * {@link #without(Object)} instead which return a new map leaving this one unchanged.
+ * </p>
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+final class PersistentOrderedMap<K, V> extends AbstractMap<K, V> {
+
+	/** The number of bits of the hash code used for each level of the trie. */
+	private static final int BITS = 5;
+
+	/** Mask used to get the index of a child from a hash code. */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/** The minimum number of gaps in the entries before they are compacted. */
+	private static final int MINIMUM_COMPACT = 32;
+
+	/** The empty map. */
+	private static final PersistentOrderedMap<Object, Object> EMPTY =
+			new PersistentOrderedMap<>(null, PersistentVector.<Map.Entry<Object, Object>>empty(), 0);
+
+	/** The root of the trie that maps keys to the index of their entry, null if the map is empty. */
+	private final Node root;
+
+	/** The entries in insertion order, null where entries have been removed. */
+	private final PersistentVector<Map.Entry<K, V>> entries;
+
+	/** The number of entries in the map. */
+	private final int size;
+
+	/** The entry set view of the map. */
+	private final Set<Map.Entry<K, V>> entrySet = new EntrySet();
+
+	/**
+	 * Creates a new PersistentOrderedMap.
+	 *
+	 * @param rt The root of the trie.
+	 * @param ents The entries in insertion order.
+	 * @param cnt The number of entries.
+	 */
+	private PersistentOrderedMap(Node rt, PersistentVector<Map.Entry<K, V>> ents, int cnt) {
+		root = rt;
+		entries = ents;
+		size = cnt;
+	}
+
+	/**
+	 * Returns the empty PersistentOrderedMap.
+	 *
+	 * @param <K> The type of the keys.
+	 * @param <V> The type of the values.
+	 *
+	 * @return the empty map.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static <K, V> PersistentOrderedMap<K, V> empty() {
+		return (PersistentOrderedMap) EMPTY;
+	}
+
+	/**
+	 * Returns a PersistentOrderedMap containing the entries of another map.
+	 *
+	 * @param <K> The type of the keys.
+	 * @param <V> The type of the values.
+	 * @param map The map to copy.
+	 *
+	 * @return the new map.
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> PersistentOrderedMap<K, V> fromMap(Map<? extends K, ? extends V> map) {
+		if (map instanceof PersistentOrderedMap) {
+			return (PersistentOrderedMap<K, V>) map;
+		}
+
+		return PersistentOrderedMap.<K, V>empty().withAll(map);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : entries.get(index).getValue();
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return entrySet;
+	}
+
+	/**
+	 * Returns a new map with a key mapped to a value. If the key is already in the map
+	 * it keeps its position otherwise it is added to the end.
+	 *
+	 * @param key The key.
+	 * @param val The value.
+	 *
+	 * @return the new map.
+	 */
+	PersistentOrderedMap<K, V> withPut(K key, V val) {
+		Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(key, val);
+		int index = indexOf(key);
+		if (index >= 0) {
+			return new PersistentOrderedMap<>(root, entries.withSet(index, entry), size);
+		}
+
+		Node newRoot = put(root, hash(key), key, entries.size(), 0);
+		return new PersistentOrderedMap<>(newRoot, entries.withAppended(entry), size + 1);
+	}
+
+	/**
+	 * Returns a new map with all of the entries of another map added to this one.
+	 *
+	 * @param map The entries to add.
+	 *
+	 * @return the new map.
+	 */
+	PersistentOrderedMap<K, V> withAll(Map<? extends K, ? extends V> map) {
+		PersistentOrderedMap<K, V> newMap = this;
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			newMap = newMap.withPut(entry.getKey(), entry.getValue());
+		}
+		return newMap;
+	}
+
+	/**
+	 * Returns a new map without a key.
+	 *
+	 * @param key The key to remove.
+	 *
+	 * @return the new map, or this map if it does not contain the key.
+	 */
+	PersistentOrderedMap<K, V> without(Object key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return this;
+		}
+
+		if (size == 1) {
+			return empty();
+		}
+
+		int gaps = entries.size() - size + 1;
+		if (gaps >= MINIMUM_COMPACT && gaps > size - 1) {
+			// Too many gaps, rebuild without the removed entry.
+			PersistentOrderedMap<K, V> newMap = empty();
+			for (Map.Entry<K, V> entry : entrySet) {
+				if (entry != entries.get(index)) {
+					newMap = newMap.withPut(entry.getKey(), entry.getValue());
+				}
+			}
+			return newMap;
+		}
+
+		Node newRoot = remove(root, hash(key), key, 0);
+		return new PersistentOrderedMap<>(newRoot, entries.withSet(index, null), size - 1);
+	}
+
+	/**
+	 * Returns the index of the entry for a key.
+	 *
+	 * @param key The key to look for.
+	 *
+	 * @return the index of the entry, or -1 if the key is not in the map.
+	 */
+	private int indexOf(Object key) {
+		int hash = hash(key);
+		Object node = root;
+		int shift = 0;
+
+		while (node != null) {
+			if (node instanceof Leaf) {
+				Leaf leaf = (Leaf) node;
+				return leaf.hash == hash && equal(leaf.key, key) ? leaf.index : -1;
+			} else if (node instanceof Collision) {
+				for (Leaf leaf : ((Collision) node).leaves) {
+					if (equal(leaf.key, key)) {
+						return leaf.index;
+					}
+				}
+				return -1;
+			} else {
+				Node n = (Node) node;
+				int bit = 1 << ((hash >>> shift) & MASK);
+				if ((n.bitmap & bit) == 0) {
+					return -1;
+				}
+				node = n.children[Integer.bitCount(n.bitmap & (bit - 1))];
+				shift += BITS;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the hash code for a key.
+	 *
+	 * @param key The key.
+	 *
+	 * @return the hash code.
+	 */
+	private static int hash(Object key) {
+		return key == null ? 0 : key.hashCode();
+	}
+
+	/**
+	 * Checks to see if two keys are equal.
+	 *
+	 * @param k1 The first key.
+	 * @param k2 The second key.
+	 *
+	 * @return true if the keys are equal.
+	 */
+	private static boolean equal(Object k1, Object k2) {
+		return k1 == null ? k2 == null : k1.equals(k2);
+	}
+
+	/**
+	 * Returns a copy of a node in the trie with a key added. The key must not already be
+	 * in the trie.
+	 *
+	 * @param node The node to add to, or null if the trie is empty.
+	 * @param hash The hash code of the key.
+	 * @param key The key.
+	 * @param index The index of the entry for the key.
+	 * @param shift The number of bits of the hash code used by the levels above this node.
+	 *
+	 * @return the new node.
+	 */
+	private static Node put(Node node, int hash, Object key, int index, int shift) {
+		Leaf leaf = new Leaf(hash, key, index);
+		int bit = 1 << ((hash >>> shift) & MASK);
+
+		if (node == null) {
+			return new Node(bit, new Object[] { leaf });
+		}
+
+		int pos = Integer.bitCount(node.bitmap & (bit - 1));
+		if ((node.bitmap & bit) == 0) {
+			Object[] children = new Object[node.children.length + 1];
+			System.arraycopy(node.children, 0, children, 0, pos);
+			children[pos] = leaf;
+			System.arraycopy(node.children, pos, children, pos + 1, node.children.length - pos);
+			return new Node(node.bitmap | bit, children);
+		}
+
+		Object child = node.children[pos];
+		Object newChild;
+		if (child instanceof Node) {
+			newChild = put((Node) child, hash, key, index, shift + BITS);
+		} else {
+			newChild = merge(child, leaf, shift + BITS);
+		}
+
+		Object[] children = node.children.clone();
+		children[pos] = newChild;
+		return new Node(node.bitmap, children);
+	}
+
+	/**
+	 * Merges an existing leaf or collision with a new leaf.
+	 *
+	 * @param existing The existing {@link Leaf} or {@link Collision}.
+	 * @param leaf The new leaf.
+	 * @param shift The number of bits of the hash code used by the levels above the merged node.
+	 *
+	 * @return the merged node.
+	 */
+	private static Object merge(Object existing, Leaf leaf, int shift) {
+		int existingHash = existing instanceof Leaf ? ((Leaf) existing).hash : ((Collision) existing).hash;
+
+		if (existingHash == leaf.hash) {
+			Leaf[] leaves;
+			if (existing instanceof Leaf) {
+				leaves = new Leaf[] { (Leaf) existing, leaf };
+			} else {
+				Leaf[] old = ((Collision) existing).leaves;
+				leaves = new Leaf[old.length + 1];
+				System.arraycopy(old, 0, leaves, 0, old.length);
+				leaves[old.length] = leaf;
+			}
+			return new Collision(leaf.hash, leaves);
+		}
+
+		int existingPos = (existingHash >>> shift) & MASK;
+		int leafPos = (leaf.hash >>> shift) & MASK;
+		int existingBit = 1 << existingPos;
+		int bit = 1 << leafPos;
+		if (existingPos == leafPos) {
+			return new Node(bit, new Object[] { merge(existing, leaf, shift + BITS) });
+		} else if (existingPos < leafPos) {
+			return new Node(existingBit | bit, new Object[] { existing, leaf });
+		} else {
+			return new Node(existingBit | bit, new Object[] { leaf, existing });
+		}
+	}
+
+	/**
+	 * Returns a copy of a node in the trie with a key removed. The key must be in the trie.
+	 *
+	 * @param node The node to remove from.
+	 * @param hash The hash code of the key.
+	 * @param key The key.
+	 * @param shift The number of bits of the hash code used by the levels above this node.
+	 *
+	 * @return the new node, or null if the node is now empty.
+	 */
+	private static Node remove(Node node, int hash, Object key, int shift) {
+		int bit = 1 << ((hash >>> shift) & MASK);
+		int pos = Integer.bitCount(node.bitmap & (bit - 1));
+		Object child = node.children[pos];
+
+		Object newChild;
+		if (child instanceof Node) {
+			Node newNode = remove((Node) child, hash, key, shift + BITS);
+			// Pull a lone leaf up rather than keeping a node for it.
+			if (newNode != null && newNode.children.length == 1 && !(newNode.children[0] instanceof Node)) {
+				newChild = newNode.children[0];
+			} else {
+				newChild = newNode;
+			}
+		} else if (child instanceof Collision) {
+			Leaf[] old = ((Collision) child).leaves;
+			Leaf[] leaves = new Leaf[old.length - 1];
+			int i = 0;
+			for (Leaf leaf : old) {
+				if (!equal(leaf.key, key)) {
+					leaves[i++] = leaf;
+				}
+			}
+			newChild = leaves.length == 1 ? leaves[0] : new Collision(hash, leaves);
+		} else {
+			newChild = null;
+		}
+
+		if (newChild != null) {
+			Object[] children = node.children.clone();
+			children[pos] = newChild;
+			return new Node(node.bitmap, children);
+		}
+
+		if (node.children.length == 1) {
+			return null;
+		}
+
+		Object[] children = new Object[node.children.length - 1];
+		System.arraycopy(node.children, 0, children, 0, pos);
+		System.arraycopy(node.children, pos + 1, children, pos, children.length - pos);
+		return new Node(node.bitmap & ~bit, children);
+	}
+
+	/**
+	 * A branch of the trie. Each child is either a {@link Node}, {@link Leaf} or {@link Collision}.
+	 */
+	private static final class Node {
+
+		/** The bit for each child that is present. */
+		final int bitmap;
+
+		/** The children that are present, in bit order. */
+		final Object[] children;
+
+		/**
+		 * Creates a new Node.
+		 *
+		 * @param bm The bit for each child that is present.
+		 * @param ch The children.
+		 */
+		Node(int bm, Object[] ch) {
+			bitmap = bm;
+			children = ch;
+		}
+	}
+
+	/**
+	 * A key in the trie and the index of its entry.
+	 */
+	private static final class Leaf {
+
+		/** The hash code of the key. */
+		final int hash;
+
+		/** The key. */
+		final Object key;
+
+		/** The index of the entry for the key. */
+		final int index;
+
+		/**
+		 * Creates a new Leaf.
+		 *
+		 * @param h The hash code of the key.
+		 * @param k The key.
+		 * @param i The index of the entry for the key.
+		 */
+		Leaf(int h, Object k, int i) {
+			hash = h;
+			key = k;
+			index = i;
+		}
+	}
+
+	/**
+	 * Keys in the trie that have the same hash code.
+	 */
+	private static final class Collision {
+
+		/** The hash code of the keys. */
+		final int hash;
+
+		/** The keys. */
+		final Leaf[] leaves;
+
+		/**
+		 * Creates a new Collision.
+		 *
+		 * @param h The hash code of the keys.
+		 * @param lvs The keys.
+		 */
+		Collision(int h, Leaf[] lvs) {
+			hash = h;
+			leaves = lvs;
+		}
+	}
+
+	/**
+	 * The entry set view of the map.
+	 */
+	private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new Iterator<Map.Entry<K, V>>() {
+
+				/** The index of the next entry. */
+				private int next = advance(0);
+
+				/**
+				 * Returns the index of the first entry at or after an index.
+				 *
+				 * @param from The index to start from.
+				 *
+				 * @return the index of the entry.
+				 */
+				private int advance(int from) {
+					int i = from;
+					while (i < entries.size() && entries.get(i) == null) {
+						i++;
+					}
+					return i;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next < entries.size();
+				}
+
+				@Override
+				public Map.Entry<K, V> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					Map.Entry<K, V> entry = entries.get(next);
+					next = advance(next + 1);
+					return entry;
+				}
+
+				@Override
+				public void remove() {
+					throw new UnsupportedOperationException("Map can not be modified.");
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
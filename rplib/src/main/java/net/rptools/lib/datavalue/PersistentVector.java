@@ -0,0 +1,405 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.datavalue;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * PersistentVector is an immutable list that shares structure with the list it was
+ * created from when values are appended or replaced. The values are stored in a tree
+ * with 32 values in each leaf and up to 32 children for each branch plus a tail array
+ * that holds the last (up to) 32 values, so looking up, appending or replacing a value
+ * copies at most one array for each level of the tree which is O(log<sub>32</sub> n).
+ * <p>
+ * The {@link java.util.List} methods that would modify the list throw
+ * {@link UnsupportedOperationException}, use {@link #withAppended(Object)},
+ * {@link #withAll(Collection)} and {@link #withSet(int, Object)} instead which return
+ * a new list leaving this one unchanged.
+ * </p>
+ *
+ * @param <E> The type of the values in the list.
+ */
+final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+	/** The number of bits of the index used for each level of the tree. */
+	private static final int BITS = 5;
+
+	/** The number of children for each node in the tree. */
+	private static final int WIDTH = 1 << BITS;
+
+	/** Mask used to get the index of a child from an index. */
+	private static final int MASK = WIDTH - 1;
+
+	/** The empty vector. */
+	private static final PersistentVector<Object> EMPTY = new PersistentVector<>(0, BITS, new Object[0], new Object[0]);
+
+	/** The number of values in the list. */
+	private final int size;
+
+	/** The number of bits to shift the index by to find the child of the root. */
+	private final int shift;
+
+	/** The root of the tree. */
+	private final Object[] root;
+
+	/** The values at the end of the list that are not in the tree. */
+	private final Object[] tail;
+
+	/**
+	 * Creates a new PersistentVector.
+	 *
+	 * @param cnt The number of values in the list.
+	 * @param sh The number of bits to shift the index by to find the child of the root.
+	 * @param rt The root of the tree.
+	 * @param tl The values at the end of the list that are not in the tree.
+	 */
+	private PersistentVector(int cnt, int sh, Object[] rt, Object[] tl) {
+		size = cnt;
+		shift = sh;
+		root = rt;
+		tail = tl;
+	}
+
+	/**
+	 * Returns the empty PersistentVector.
+	 *
+	 * @param <E> The type of the values in the list.
+	 *
+	 * @return the empty vector.
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> PersistentVector<E> empty() {
+		return (PersistentVector<E>) EMPTY;
+	}
+
+	/**
+	 * Returns a PersistentVector containing the values in a collection.
+	 *
+	 * @param <E> The type of the values in the list.
+	 * @param vals The values.
+	 *
+	 * @return the vector.
+	 */
+	@SuppressWarnings("unchecked")
+	static <E> PersistentVector<E> fromCollection(Collection<? extends E> vals) {
+		if (vals instanceof PersistentVector) {
+			return (PersistentVector<E>) vals;
+		}
+
+		return PersistentVector.<E>empty().withAll(vals);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		return (E) arrayFor(index)[index & MASK];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a new list with a value added to the end of this list.
+	 *
+	 * @param val The value to add.
+	 *
+	 * @return the new list.
+	 */
+	PersistentVector<E> withAppended(E val) {
+		if (size - tailOffset() < WIDTH) {
+			Object[] newTail = new Object[tail.length + 1];
+			System.arraycopy(tail, 0, newTail, 0, tail.length);
+			newTail[tail.length] = val;
+			return new PersistentVector<>(size + 1, shift, root, newTail);
+		}
+
+		return pushTail(new Object[] { val });
+	}
+
+	/**
+	 * Returns a new list with the values in a collection added to the end of this list.
+	 *
+	 * @param vals The values to add.
+	 *
+	 * @return the new list.
+	 */
+	PersistentVector<E> withAll(Collection<? extends E> vals) {
+		if (vals.isEmpty()) {
+			return this;
+		}
+
+		Object[] arr = vals.toArray();
+		int pos = 0;
+		PersistentVector<E> vec = this;
+
+		// Fill the current tail first.
+		int space = WIDTH - (vec.size - vec.tailOffset());
+		if (space > 0) {
+			int n = Math.min(space, arr.length);
+			Object[] newTail = new Object[vec.tail.length + n];
+			System.arraycopy(vec.tail, 0, newTail, 0, vec.tail.length);
+			System.arraycopy(arr, 0, newTail, vec.tail.length, n);
+			vec = new PersistentVector<>(vec.size + n, vec.shift, vec.root, newTail);
+			pos = n;
+		}
+
+		// Then push full leaves into the tree, a leaf at a time.
+		while (pos < arr.length) {
+			int n = Math.min(WIDTH, arr.length - pos);
+			Object[] newTail = new Object[n];
+			System.arraycopy(arr, pos, newTail, 0, n);
+			vec = vec.pushTail(newTail);
+			pos += n;
+		}
+
+		return vec;
+	}
+
+	/**
+	 * Returns a new list with the values in an array of at most 32 values added to the 
+	 * end of this list. The new list may use the array itself so it must not be modified
+	 * afterwards.
+	 *
+	 * @param leaf The values to add.
+	 *
+	 * @return the new list.
+	 */
+	@SuppressWarnings("unchecked")
+	PersistentVector<E> withLeaf(Object[] leaf) {
+		assert leaf.length <= WIDTH : "Too many values for a leaf.";
+
+		if (leaf.length == 0) {
+			return this;
+		} else if (size == 0) {
+			return new PersistentVector<>(leaf.length, shift, root, leaf);
+		} else if (tail.length == WIDTH) {
+			return pushTail(leaf);
+		}
+
+		return withAll((List<E>) Arrays.asList(leaf));
+	}
+
+	/**
+	 * Returns a new list with the value at an index replaced.
+	 *
+	 * @param index The index of the value to replace.
+	 * @param val The new value.
+	 *
+	 * @return the new list.
+	 *
+	 * @throws IndexOutOfBoundsException if index is out of range.
+	 */
+	PersistentVector<E> withSet(int index, E val) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		if (index >= tailOffset()) {
+			Object[] newTail = tail.clone();
+			newTail[index & MASK] = val;
+			return new PersistentVector<>(size, shift, root, newTail);
+		}
+
+		return new PersistentVector<>(size, shift, setInNode(shift, root, index, val), tail);
+	}
+
+	/**
+	 * Returns the index of the first value that is held in the tail.
+	 *
+	 * @return the index of the first value in the tail.
+	 */
+	private int tailOffset() {
+		return size - tail.length;
+	}
+
+	/**
+	 * Returns the array that holds the value at an index.
+	 *
+	 * @param index The index of the value.
+	 *
+	 * @return the array holding the value.
+	 *
+	 * @throws IndexOutOfBoundsException if index is out of range.
+	 */
+	private Object[] arrayFor(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		if (index >= tailOffset()) {
+			return tail;
+		}
+
+		Object[] node = root;
+		for (int level = shift; level > 0; level -= BITS) {
+			node = (Object[]) node[(index >>> level) & MASK];
+		}
+		return node;
+	}
+
+	/**
+	 * Returns a new list with the current tail (which must be full) moved into the
+	 * tree and a new tail.
+	 *
+	 * @param newTail The new tail.
+	 *
+	 * @return the new list.
+	 */
+	private PersistentVector<E> pushTail(Object[] newTail) {
+		Object[] newRoot;
+		int newShift = shift;
+
+		// Is the tree full? If so add a level.
+		if ((size >>> BITS) > (1 << shift)) {
+			newRoot = new Object[] { root, newPath(shift, tail) };
+			newShift += BITS;
+		} else {
+			newRoot = pushLeaf(shift, root, tail);
+		}
+
+		return new PersistentVector<>(size + newTail.length, newShift, newRoot, newTail);
+	}
+
+	/**
+	 * Returns a copy of a branch of the tree with a leaf added at the end.
+	 *
+	 * @param level The level of the branch.
+	 * @param parent The branch.
+	 * @param leaf The leaf to add.
+	 *
+	 * @return the new branch.
+	 */
+	private Object[] pushLeaf(int level, Object[] parent, Object[] leaf) {
+		int subIndex = ((size - 1) >>> level) & MASK;
+		Object[] node = new Object[subIndex + 1];
+		System.arraycopy(parent, 0, node, 0, Math.min(parent.length, subIndex + 1));
+
+		if (level == BITS) {
+			node[subIndex] = leaf;
+		} else if (subIndex < parent.length && parent[subIndex] != null) {
+			node[subIndex] = pushLeaf(level - BITS, (Object[]) parent[subIndex], leaf);
+		} else {
+			node[subIndex] = newPath(level - BITS, leaf);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Returns a new path from a level of the tree down to a leaf.
+	 *
+	 * @param level The level to start the path at.
+	 * @param leaf The leaf at the end of the path.
+	 *
+	 * @return the start of the path.
+	 */
+	private static Object[] newPath(int level, Object[] leaf) {
+		if (level == 0) {
+			return leaf;
+		}
+		return new Object[] { newPath(level - BITS, leaf) };
+	}
+
+	/**
+	 * Returns a copy of a node of the tree with the value at an index replaced.
+	 *
+	 * @param level The level of the node.
+	 * @param node The node.
+	 * @param index The index of the value to replace.
+	 * @param val The new value.
+	 *
+	 * @return the new node.
+	 */
+	private static Object[] setInNode(int level, Object[] node, int index, Object val) {
+		Object[] newNode = node.clone();
+		if (level == 0) {
+			newNode[index & MASK] = val;
+		} else {
+			int subIndex = (index >>> level) & MASK;
+			newNode[subIndex] = setInNode(level - BITS, (Object[]) node[subIndex], index, val);
+		}
+		return newNode;
+	}
+
+	/**
+	 * Builds a PersistentVector a value at a time, the values are written straight into 
+	 * the leaves of the new vector rather than being collected and copied.
+	 *
+	 * @param <E> The type of the values in the list.
+	 */
+	static final class Builder<E> {
+
+		/** The vector containing the values in the full leaves added so far. */
+		private PersistentVector<E> vector = empty();
+
+		/** The leaf that values are currently being added to. */
+		private Object[] leaf = new Object[WIDTH];
+
+		/** The number of values in the current leaf. */
+		private int count;
+
+		/**
+		 * Adds a value to the end of the list being built.
+		 *
+		 * @param val The value to add.
+		 *
+		 * @return {@code this} so that methods can be chained.
+		 */
+		Builder<E> add(E val) {
+			if (count == WIDTH) {
+				vector = vector.withLeaf(leaf);
+				leaf = new Object[WIDTH];
+				count = 0;
+			}
+			leaf[count++] = val;
+			return this;
+		}
+
+		/**
+		 * Returns the number of values added so far.
+		 *
+		 * @return the number of values.
+		 */
+		int size() {
+			return vector.size() + count;
+		}
+
+		/**
+		 * Returns a PersistentVector containing the values added so far. More values can
+		 * be added to the builder afterwards without affecting the returned vector.
+		 *
+		 * @return the vector.
+		 */
+		PersistentVector<E> toPersistentVector() {
+			if (count == WIDTH) {
+				vector = vector.withLeaf(leaf);
+				leaf = new Object[WIDTH];
+				count = 0;
+			} else if (count > 0) {
+				vector = vector.withLeaf(Arrays.copyOf(leaf, count));
+				leaf = new Object[WIDTH];
+				count = 0;
+			}
+
+			return vector;
+		}
+	}
+}
@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -60,6 +61,11 @@ final class ResultDataValue implements DataValue {
 		return value.asString();
 	}
 
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		value.appendTo(out);
+	}
+
 	@Override
 	public long asLong() {
 		return value.asLong();
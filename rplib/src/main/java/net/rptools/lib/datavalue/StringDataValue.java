@@ -14,6 +14,7 @@
  */
 package net.rptools.lib.datavalue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -44,6 +45,11 @@ final class StringDataValue implements DataValue {
 		return value;
 	}
 
+	@Override
+	public void appendTo(Appendable out) throws IOException {
+		out.append(value);
+	}
+
 	@Override
 	public long asLong() {
 		return Long.parseLong(value);
@@ -136,8 +136,21 @@ public class ResultBuilder {
 	 * @return {@code this} so that methods can be chained.
 	 */
 	public ResultBuilder setIndividualValues(Collection<DataValue> vals) {
-		values.clear();
-		values.addAll(vals);
+		values = new ArrayList<>(vals);
+		return this;
+	}
+
+	/**
+	 * Sets the individual values that make up the {@link Result} that this will
+	 * create from a {@link DataType#LIST} value. Since DataValues are immutable 
+	 * the values are used directly rather than being copied.
+	 * 
+	 * @param vals The {@link DataType#LIST} containing the individual values.
+	 * 
+	 * @return {@code this} so that methods can be chained.
+	 */
+	public ResultBuilder setIndividualValues(DataValue vals) {
+		values = vals.asList();
 		return this;
 	}
 	
@@ -172,6 +185,7 @@ public class ResultBuilder {
 		}
 		
 		if (values.size() == 0) {
+			values = new ArrayList<>(1);
 			values.add(value);
 		}
 		
@@ -0,0 +1,325 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The DiceDistribution class holds the probability of each possible total for a number of dice without
+ * rolling them. The probabilities are calculated by convolving the faces of one die with the probabilities for
+ * the previous dice, which keeps them accurate even for totals that are very unlikely, although totals less
+ * likely than the smallest double are given a probability of 0. Distributions are cached once they have been
+ * calculated so asking for the same dice again is cheap.
+ */
+public final class DiceDistribution {
+
+    /** The maximum number of dice that a distribution can be calculated for. */
+    public static final int MAX_DICE = 1000;
+
+    /** The maximum number of different totals that a distribution can be calculated for. */
+    public static final int MAX_OUTCOMES = 10000;
+
+    /** The maximum number of distributions that are cached before the cache is cleared. */
+    private static final int MAX_CACHED = 256;
+
+    /** The distributions that have already been calculated. */
+    private static final Map<String, DiceDistribution> cache = new ConcurrentHashMap<>();
+
+    /** The lowest possible total. */
+    private final long min;
+
+    /** The probability of each total indexed by total - {@link #min}. */
+    private final double[] probabilities;
+
+    /** The expected total. */
+    private final double mean;
+
+    /** The variance of the total. */
+    private final double variance;
+
+    /**
+     * Creates a new DiceDistribution.
+     *
+     * @param low The lowest possible total.
+     * @param probs The probability of each total indexed by total - low.
+     * @param m The expected total.
+     * @param v The variance of the total.
+     */
+    private DiceDistribution(long low, double[] probs, double m, double v) {
+        min = low;
+        probabilities = probs;
+        mean = m;
+        variance = v;
+    }
+
+    /**
+     * Returns the distribution of the total of a number of dice with faces numbered from 1 to sides.
+     *
+     * @param number The number of dice.
+     * @param sides The number of sides of the dice.
+     *
+     * @return the distribution of the total.
+     *
+     * @throws IllegalArgumentException if number is negative, sides is less than 1 or there are too many dice
+     *                                  or possible totals to calculate the distribution.
+     */
+    public static DiceDistribution of(int number, int sides) {
+        checkArguments(number, sides);
+
+        String key = number + "d" + sides;
+        DiceDistribution dist = cache.get(key);
+        if (dist == null) {
+            long[] weights = new long[sides];
+            Arrays.fill(weights, 1);
+            double mean = number * (sides + 1) / 2.0;
+            double variance = number * ((double) sides * sides - 1) / 12.0;
+            dist = cached(key, new DiceDistribution(number, calculate(number, weights), mean, variance));
+        }
+
+        return dist;
+    }
+
+    /**
+     * Returns the distribution of the number of dice that roll one of a set of faces, for example how many of
+     * 3d20 roll at least 15 (which is 6 of the faces).
+     *
+     * @param number The number of dice.
+     * @param sides The number of sides of the dice.
+     * @param matchingFaces The number of faces that are counted.
+     *
+     * @return the distribution of the number of dice that roll one of the faces.
+     *
+     * @throws IllegalArgumentException if number is negative, sides is less than 1, matchingFaces is not between
+     *                                  0 and sides or there are too many dice to calculate the distribution.
+     */
+    public static DiceDistribution ofMatches(int number, int sides, int matchingFaces) {
+        checkArguments(number, 2);
+        if (sides < 1) {
+            throw new IllegalArgumentException("Dice must have at least one side.");
+        }
+        if (matchingFaces < 0 || matchingFaces > sides) {
+            throw new IllegalArgumentException("Number of matching faces must be between 0 and " + sides + ".");
+        }
+
+        String key = number + "d" + sides + "m" + matchingFaces;
+        DiceDistribution dist = cache.get(key);
+        if (dist == null) {
+            double p = (double) matchingFaces / sides;
+            long[] weights = { sides - matchingFaces, matchingFaces };
+            dist = cached(key, new DiceDistribution(0, calculate(number, weights), number * p, number * p * (1 - p)));
+        }
+
+        return dist;
+    }
+
+    /**
+     * Checks that the distribution for a number of dice can be calculated.
+     *
+     * @param number The number of dice.
+     * @param sides The number of sides of the dice.
+     *
+     * @throws IllegalArgumentException if the distribution can not be calculated.
+     */
+    private static void checkArguments(int number, int sides) {
+        if (number < 0) {
+            throw new IllegalArgumentException("Number of dice can not be negative.");
+        }
+        if (sides < 1) {
+            throw new IllegalArgumentException("Dice must have at least one side.");
+        }
+        if (number > MAX_DICE) {
+            throw new IllegalArgumentException("Can not calculate the distribution for more than " + MAX_DICE
+                    + " dice.");
+        }
+        if ((long) number * (sides - 1) + 1 > MAX_OUTCOMES) {
+            throw new IllegalArgumentException("Can not calculate the distribution for more than " + MAX_OUTCOMES
+                    + " possible totals.");
+        }
+    }
+
+    /**
+     * Adds a distribution to the cache, clearing the cache first if it is full.
+     *
+     * @param key The key for the distribution.
+     * @param dist The distribution.
+     *
+     * @return the distribution.
+     */
+    private static DiceDistribution cached(String key, DiceDistribution dist) {
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(key, dist);
+
+        return dist;
+    }
+
+    /**
+     * Calculates the probability of each total of a number of dice.
+     *
+     * @param number The number of dice.
+     * @param weights The number of faces of each die with each value, indexed from the lowest value.
+     *
+     * @return the probability of each total, indexed from the lowest total.
+     */
+    private static double[] calculate(int number, long[] weights) {
+        long faces = 0;
+        for (long w : weights) {
+            faces += w;
+        }
+
+        double[] faceProbs = new double[weights.length];
+        for (int f = 0; f < weights.length; f++) {
+            faceProbs[f] = (double) weights[f] / faces;
+        }
+
+        double[] probs = { 1.0 };
+        for (int i = 0; i < number; i++) {
+            probs = convolve(probs, faceProbs);
+        }
+
+        return probs;
+    }
+
+    /**
+     * Returns the probability of each total after adding one more die.
+     *
+     * @param probs The probability of each total with the previous dice.
+     * @param faceProbs The probability of the die rolling each value.
+     *
+     * @return the probability of each total including the new die.
+     */
+    private static double[] convolve(double[] probs, double[] faceProbs) {
+        double[] result = new double[probs.length + faceProbs.length - 1];
+
+        // Every term is positive so summing them directly keeps the relative accuracy of very unlikely totals,
+        // which a sliding window that subtracts would lose.
+        for (int f = 0; f < faceProbs.length; f++) {
+            double p = faceProbs[f];
+            if (p == 0) {
+                continue;
+            }
+            for (int i = 0; i < probs.length; i++) {
+                result[i + f] += probs[i] * p;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the lowest possible total.
+     *
+     * @return the lowest total.
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the highest possible total.
+     *
+     * @return the highest total.
+     */
+    public long getMax() {
+        return min + probabilities.length - 1;
+    }
+
+    /**
+     * Returns the probability of rolling a total.
+     *
+     * @param total The total.
+     *
+     * @return the probability of rolling the total, 0 if it can not be rolled.
+     */
+    public double getProbability(long total) {
+        if (total < min || total > getMax()) {
+            return 0;
+        }
+
+        return probabilities[(int) (total - min)];
+    }
+
+    /**
+     * Returns the probability of rolling a total between two values.
+     *
+     * @param low The lowest total to include.
+     * @param high The highest total to include.
+     *
+     * @return the probability of rolling a total between low and high inclusive.
+     */
+    public double getProbabilityBetween(long low, long high) {
+        long from = Math.max(low, min);
+        long to = Math.min(high, getMax());
+
+        double prob = 0;
+        for (long t = from; t <= to; t++) {
+            prob += probabilities[(int) (t - min)];
+        }
+
+        return Math.min(prob, 1.0);
+    }
+
+    /**
+     * Returns the probability of rolling at least a total.
+     *
+     * @param total The total.
+     *
+     * @return the probability of rolling the total or higher.
+     */
+    public double getProbabilityAtLeast(long total) {
+        return getProbabilityBetween(total, getMax());
+    }
+
+    /**
+     * Returns the probability of rolling at most a total.
+     *
+     * @param total The total.
+     *
+     * @return the probability of rolling the total or lower.
+     */
+    public double getProbabilityAtMost(long total) {
+        return getProbabilityBetween(min, total);
+    }
+
+    /**
+     * Returns the expected total.
+     *
+     * @return the mean of the total.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the variance of the total.
+     *
+     * @return the variance.
+     */
+    public double getVariance() {
+        return variance;
+    }
+
+    /**
+     * Returns the standard deviation of the total.
+     *
+     * @return the standard deviation.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.util;
+
+import java.util.Random;
+
+/**
+ * The DiceRollSummary class holds the total, lowest and highest roll and how many times each face was rolled
+ * for a number of dice rolled with {@link RandomUtil#rollDiceSummary(int, int, boolean)}. The individual rolls 
+ * are only kept if they were asked for, and the count for each face is only kept for dice with at most 
+ * {@link #MAX_HISTOGRAM_SIDES} sides. When the rolls are kept the face counts are only worked out from them 
+ * the first time they are asked for.
+ */
+public final class DiceRollSummary {
+
+    /** The maximum number of sides the dice can have for the number of times each face was rolled to be kept. */
+    public static final int MAX_HISTOGRAM_SIDES = 1024;
+
+    /** The number of dice rolled. */
+    private final int number;
+
+    /** The number of sides of the dice. */
+    private final int sides;
+
+    /** The total of the rolls. */
+    private final long sum;
+
+    /** The lowest roll. */
+    private final int min;
+
+    /** The highest roll. */
+    private final int max;
+
+    /** The number of times each face was rolled indexed by face, or {@code null} if not kept or not counted yet. */
+    private volatile int[] histogram;
+
+    /** The individual rolls, or {@code null} if not kept. */
+    private final int[] rolls;
+
+    /**
+     * Creates a new DiceRollSummary.
+     *
+     * @param num The number of dice rolled.
+     * @param sds The number of sides of the dice.
+     * @param total The total of the rolls.
+     * @param low The lowest roll.
+     * @param high The highest roll.
+     * @param hist The number of times each face was rolled indexed by face, or {@code null}.
+     * @param rls The individual rolls, or {@code null}.
+     */
+    private DiceRollSummary(int num, int sds, long total, int low, int high, int[] hist, int[] rls) {
+        number = num;
+        sides = sds;
+        sum = total;
+        min = low;
+        max = high;
+        histogram = hist;
+        rolls = rls;
+    }
+
+    /**
+     * Rolls part of the dice for a summary.
+     *
+     * @param random The {@link Random} used to roll the dice.
+     * @param from The index of the first die to roll.
+     * @param to The index after the last die to roll.
+     * @param sides The number of sides of the dice.
+     * @param rolls The array to store the rolls in at their index, or {@code null} if they are not kept.
+     *
+     * @return the summary of the dice that were rolled.
+     */
+    static DiceRollSummary roll(Random random, int from, int to, int sides, int[] rolls) {
+        // Kept rolls are counted when the counts are first asked for, if they ever are.
+        int[] hist = rolls == null && sides <= MAX_HISTOGRAM_SIDES ? new int[sides + 1] : null;
+        long total = 0;
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+
+        for (int i = from; i < to; i++) {
+            int roll = random.nextInt(sides) + 1;
+            total += roll;
+            if (roll < low) {
+                low = roll;
+            }
+            if (roll > high) {
+                high = roll;
+            }
+            if (hist != null) {
+                hist[roll]++;
+            }
+            if (rolls != null) {
+                rolls[i] = roll;
+            }
+        }
+
+        return new DiceRollSummary(to - from, sides, total, low, high, hist, rolls);
+    }
+
+    /**
+     * Returns the summary of the dice in this summary and another summary of the same dice. The face counts 
+     * of this summary are reused so it must not be used afterwards.
+     *
+     * @param other The other summary.
+     *
+     * @return the combined summary.
+     */
+    DiceRollSummary combine(DiceRollSummary other) {
+        assert sides == other.sides : "Can not combine different dice.";
+
+        int[] hist = null;
+        if (histogram != null) {
+            hist = histogram;
+            for (int i = 0; i < hist.length; i++) {
+                hist[i] += other.histogram[i];
+            }
+        }
+
+        // Both parts store their rolls in the same array.
+        return new DiceRollSummary(number + other.number, sides, sum + other.sum, Math.min(min, other.min), 
+                Math.max(max, other.max), hist, rolls);
+    }
+
+    /**
+     * Returns the number of dice rolled.
+     *
+     * @return the number of dice.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the number of sides of the dice.
+     *
+     * @return the number of sides.
+     */
+    public int getSides() {
+        return sides;
+    }
+
+    /**
+     * Returns the total of all the rolls.
+     *
+     * @return the total.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the lowest roll, if no dice were rolled this is {@link Integer#MAX_VALUE}.
+     *
+     * @return the lowest roll.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the highest roll, if no dice were rolled this is {@link Integer#MIN_VALUE}.
+     *
+     * @return the highest roll.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Checks to see if the number of times each face was rolled has been kept.
+     *
+     * @return true if the counts have been kept.
+     */
+    public boolean hasHistogram() {
+        return sides <= MAX_HISTOGRAM_SIDES && (histogram != null || rolls != null);
+    }
+
+    /**
+     * Returns the number of times a face was rolled.
+     *
+     * @param face The face.
+     *
+     * @return the number of times the face was rolled.
+     *
+     * @throws IllegalStateException if the counts were not kept.
+     */
+    public int getCount(int face) {
+        if (!hasHistogram()) {
+            throw new IllegalStateException("Face counts are not kept for dice with more than " + MAX_HISTOGRAM_SIDES 
+                    + " sides.");
+        }
+
+        if (face < 1 || face > sides) {
+            return 0;
+        }
+
+        int[] hist = histogram;
+        if (hist == null) {
+            hist = new int[sides + 1];
+            for (int roll : rolls) {
+                hist[roll]++;
+            }
+            histogram = hist;
+        }
+
+        return hist[face];
+    }
+
+    /**
+     * Checks to see if the individual rolls have been kept.
+     *
+     * @return true if the rolls have been kept.
+     */
+    public boolean hasRolls() {
+        return rolls != null;
+    }
+
+    /**
+     * Returns the individual rolls. The array is not copied so it must not be changed.
+     *
+     * @return the rolls.
+     *
+     * @throws IllegalStateException if the rolls were not kept.
+     */
+    public int[] getRolls() {
+        if (rolls == null) {
+            throw new IllegalStateException("Individual rolls were not kept.");
+        }
+
+        return rolls;
+    }
+}
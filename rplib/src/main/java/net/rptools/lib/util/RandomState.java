@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The RandomState class holds a snapshot of the state of a seeded {@link RandomUtil}, see 
+ * {@link RandomUtil#getState()}. RandomState objects are immutable and can be serialized so that
+ * rolls can be replayed in a later session.
+ */
+public final class RandomState implements Serializable {
+
+    /** Serial version UID for serialization. */
+    private static final long serialVersionUID = 1L;
+
+    /** The words of the generator state. */
+    private final long[] words;
+
+    /**
+     * Creates a new RandomState.
+     *
+     * @param w0 The first word of the generator state.
+     * @param w1 The second word of the generator state.
+     * @param w2 The third word of the generator state.
+     * @param w3 The fourth word of the generator state.
+     */
+    RandomState(long w0, long w1, long w2, long w3) {
+        words = new long[] { w0, w1, w2, w3 };
+    }
+
+    /**
+     * Returns a word of the generator state.
+     *
+     * @param index The index of the word.
+     *
+     * @return the word.
+     */
+    long getWord(int index) {
+        return words[index];
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof RandomState == false) {
+            return false;
+        }
+        return Arrays.equals(words, ((RandomState) obj).words);
+    }
+
+    @Override
+    public String toString() {
+        return "RandomState" + Arrays.toString(words);
+    }
+}
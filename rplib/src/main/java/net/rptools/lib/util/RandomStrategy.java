@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.util;
+
+/**
+ * The strategies that {@link RandomUtil} can use to generate random numbers.
+ */
+public enum RandomStrategy {
+    /**
+     * A single {@link java.security.SecureRandom} shared by all threads. The numbers can not be predicted but 
+     * generating them is slow, and threads generating numbers at the same time wait for each other.
+     */
+    SECURE,
+
+    /**
+     * A fast non-cryptographic generator (xoshiro256**) for each thread. The numbers are statistically 
+     * random but could be predicted by someone who has seen enough of them, and threads never wait for
+     * each other.
+     */
+    FAST
+}
@@ -16,35 +16,215 @@ package net.rptools.lib.util;
 
 
 import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
- * Utility class used for creating "random" numbers.
+ * Utility class used for creating "random" numbers. There is a shared instance of RandomUtil for each
+ * {@link RandomStrategy}, the default instance uses {@link RandomStrategy#SECURE}. 
+ * <p>
+ * Seeded instances created with {@link #getSeededInstance(long)} produce the same numbers every time for the 
+ * same seed, and their state can be saved with {@link #getState()} and restored with 
+ * {@link #setState(RandomState)} so that a sequence of rolls can be replayed exactly. Each seeded instance has 
+ * its own generator so it should only be used by one thread at a time, for example by a single script context.
+ * </p>
  */
 public class RandomUtil {
 
-    /** The singleton instance. */
-    private static final RandomUtil INSTANCE = new RandomUtil();
-
-    /** Random object used to generate random values. */
+    /** Random object used to generate random values for the secure instance and seed the per thread generators. */
     // There is no need to seed this as after 1.4.2 seeding is guaranteed to be secure
     // (and probably better than we could manage ourselves).
-    private Random random = new SecureRandom();
+    private static final Random SECURE_RANDOM = new SecureRandom();
+
+    /** The number of dice above which {@link RandomStrategy#FAST} rolls are split across threads. */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /** The number of dice each thread rolls at a time when rolls are split across threads. */
+    private static final int PARALLEL_CHUNK = 1 << 14;
+
+    /** The pool used to roll large numbers of dice. */
+    private static final ForkJoinPool ROLL_POOL = new ForkJoinPool();
+
+    /** The instance that uses {@link RandomStrategy#SECURE}. */
+    private static final RandomUtil SECURE_INSTANCE = new RandomUtil(RandomStrategy.SECURE);
+
+    /** The instance that uses {@link RandomStrategy#FAST}. */
+    private static final RandomUtil FAST_INSTANCE = new RandomUtil(RandomStrategy.FAST);
+
+    /** The strategy used to generate random values. */
+    private final RandomStrategy strategy;
+
+    /** The Random object used by each thread, or {@code null} if all threads share {@link #sharedRandom}. */
+    private final ThreadLocal<Random> threadRandom;
+
+    /** The Random object shared by all threads, or {@code null} if each thread has its own. */
+    private final Random sharedRandom;
 
+    /** The generator of a seeded instance, or {@code null} if this instance is not seeded. */
+    private final Xoshiro256StarStarRandom seededRandom;
 
 
-    private RandomUtil() {
-        // Stop instantiation.
+    /**
+     * Creates a new RandomUtil.
+     *
+     * @param strat The strategy used to generate random values.
+     */
+    private RandomUtil(RandomStrategy strat) {
+        strategy = strat;
+        seededRandom = null;
+        if (strat == RandomStrategy.FAST) {
+            sharedRandom = null;
+            threadRandom = new ThreadLocal<Random>() {
+                @Override
+                protected Random initialValue() {
+                    return new Xoshiro256StarStarRandom(SECURE_RANDOM.nextLong());
+                }
+            };
+        } else {
+            sharedRandom = SECURE_RANDOM;
+            threadRandom = null;
+        }
+    }
+
+    /**
+     * Creates a new seeded RandomUtil.
+     *
+     * @param random The generator.
+     */
+    private RandomUtil(Xoshiro256StarStarRandom random) {
+        strategy = RandomStrategy.FAST;
+        seededRandom = random;
+        sharedRandom = random;
+        threadRandom = null;
     }
 
 
     /**
-     * Returns an instance of RandomUtil.
+     * Returns an instance of RandomUtil that uses {@link RandomStrategy#SECURE}.
      *
      * @return an instance of RandomUtil.
      */
     public static RandomUtil getInstance() {
-        return INSTANCE;
+        return SECURE_INSTANCE;
+    }
+
+    /**
+     * Returns an instance of RandomUtil that uses the specified strategy.
+     *
+     * @param strat The strategy used to generate random values.
+     *
+     * @return an instance of RandomUtil.
+     *
+     * @throws NullPointerException if strat is null.
+     */
+    public static RandomUtil getInstance(RandomStrategy strat) {
+        if (strat == null) {
+            throw new NullPointerException("Random strategy can not be null.");
+        }
+
+        return strat == RandomStrategy.FAST ? FAST_INSTANCE : SECURE_INSTANCE;
+    }
+
+    /**
+     * Returns a new RandomUtil that generates the same numbers every time for the same seed. Seeded instances
+     * use the {@link RandomStrategy#FAST} generator but never split rolls across threads, so the numbers do not
+     * depend on thread scheduling.
+     *
+     * @param seed The seed.
+     *
+     * @return the new RandomUtil.
+     */
+    public static RandomUtil getSeededInstance(long seed) {
+        return new RandomUtil(new Xoshiro256StarStarRandom(seed));
+    }
+
+    /**
+     * Returns a new seeded RandomUtil that continues from a saved state.
+     *
+     * @param state The state to continue from.
+     *
+     * @return the new RandomUtil.
+     *
+     * @throws NullPointerException if state is null.
+     *
+     * @see #getState()
+     */
+    public static RandomUtil getSeededInstance(RandomState state) {
+        if (state == null) {
+            throw new NullPointerException("Random state can not be null.");
+        }
+
+        Xoshiro256StarStarRandom random = new Xoshiro256StarStarRandom(0);
+        random.setState(state);
+        return new RandomUtil(random);
+    }
+
+    /**
+     * Returns the strategy this RandomUtil uses to generate random values.
+     *
+     * @return the strategy.
+     */
+    public RandomStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Checks to see if this is a seeded RandomUtil whose state can be saved and restored.
+     *
+     * @return true if this RandomUtil is seeded.
+     */
+    public boolean isSeeded() {
+        return seededRandom != null;
+    }
+
+    /**
+     * Returns the current state of a seeded RandomUtil. Restoring this state later with 
+     * {@link #setState(RandomState)} makes the RandomUtil generate the same numbers again.
+     *
+     * @return the current state.
+     *
+     * @throws UnsupportedOperationException if this RandomUtil is not seeded.
+     */
+    public RandomState getState() {
+        if (seededRandom == null) {
+            throw new UnsupportedOperationException("Only seeded random number generators have a state.");
+        }
+
+        return seededRandom.getState();
+    }
+
+    /**
+     * Restores the state of a seeded RandomUtil.
+     *
+     * @param state The state to restore.
+     *
+     * @throws UnsupportedOperationException if this RandomUtil is not seeded.
+     * @throws NullPointerException if state is null.
+     *
+     * @see #getState()
+     */
+    public void setState(RandomState state) {
+        if (seededRandom == null) {
+            throw new UnsupportedOperationException("Only seeded random number generators have a state.");
+        }
+
+        if (state == null) {
+            throw new NullPointerException("Random state can not be null.");
+        }
+
+        seededRandom.setState(state);
+    }
+
+    /**
+     * Returns the {@link Random} to use to generate random values on the current thread.
+     *
+     * @return the {@link Random}.
+     */
+    private Random random() {
+        return threadRandom == null ? sharedRandom : threadRandom.get();
     }
 
     /**
@@ -56,7 +236,7 @@ public class RandomUtil {
      * @return the random number.
      */
     public int rollDie(int sides) {
-        return random.nextInt(sides) + 1;
+        return random().nextInt(sides) + 1;
     }
 
 
@@ -71,13 +251,89 @@ public class RandomUtil {
      * @return the array of random numbers.
      */
     public int[] rollDice(int number, int sides) {
+        Random rnd = random();
         int[] vals = new int[number];
         for (int i = 0; i < number; i++) {
-            vals[i] = rollDie(sides);
+            vals[i] = rnd.nextInt(sides) + 1;
         }
         return vals;
     }
 
+    /**
+     * Rolls dice of the specified number of sides and returns the total, lowest and highest roll and how many
+     * times each face was rolled, all worked out as the dice are rolled. With {@link RandomStrategy#FAST} large
+     * numbers of dice are rolled on several threads.
+     *
+     * @param number The number of dice to roll.
+     * @param sides The number of sides for the dice.
+     * @param keepRolls Should the individual rolls be kept.
+     *
+     * @return the summary of the rolls.
+     */
+    public DiceRollSummary rollDiceSummary(int number, int sides, boolean keepRolls) {
+        int[] rolls = keepRolls ? new int[number] : null;
+        if (isParallel(number)) {
+            return ROLL_POOL.invoke(new SummaryTask(this, 0, number, sides, rolls));
+        }
+
+        return DiceRollSummary.roll(random(), 0, number, sides, rolls);
+    }
+
+    /**
+     * Returns the total of rolling dice of the specified number of sides without keeping the individual rolls.
+     * With {@link RandomStrategy#FAST} large numbers of dice are rolled on several threads.
+     *
+     * @param number The number of dice to roll.
+     * @param sides The number of sides for the dice.
+     *
+     * @return the total of the rolls.
+     */
+    public long rollDiceSum(int number, int sides) {
+        if (isParallel(number)) {
+            return ROLL_POOL.invoke(new SumTask(this, 0, number, sides));
+        }
+
+        return sumRolls(random(), number, sides);
+    }
+
+    /**
+     * Returns the total of rolling dice.
+     *
+     * @param rnd The {@link Random} used to roll the dice.
+     * @param number The number of dice to roll.
+     * @param sides The number of sides for the dice.
+     *
+     * @return the total of the rolls.
+     */
+    private static long sumRolls(Random rnd, int number, int sides) {
+        long total = 0;
+        for (int i = 0; i < number; i++) {
+            total += rnd.nextInt(sides) + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Checks to see if rolling a number of dice should be split across threads. Only the per thread generators
+     * of {@link RandomStrategy#FAST} benefit from this.
+     *
+     * @param number The number of dice to roll.
+     *
+     * @return true if the dice should be rolled on several threads.
+     */
+    private boolean isParallel(int number) {
+        return threadRandom != null && number > PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Randomly shuffles a list in place.
+     *
+     * @param list The list to shuffle.
+     */
+    public void shuffle(List<?> list) {
+        Collections.shuffle(list, random());
+    }
+
     /**
      * Returns a random integer between 0 inclusive and {@code max} exclusive.
      *
@@ -86,7 +342,7 @@ public class RandomUtil {
      * @return the random integer.
      */
     public int randomInt(int lessThan) {
-        return random.nextInt(lessThan);
+        return random().nextInt(lessThan);
     }
 
     /**
@@ -113,7 +369,7 @@ public class RandomUtil {
      * @return the random integer.
      */
     public int randomInt(int min, int lessThan) {
-        return min + random.nextInt(lessThan - min);
+        return min + random().nextInt(lessThan - min);
     }
 
     /**
@@ -135,5 +391,106 @@ public class RandomUtil {
     }
 
 
+    /**
+     * Task that rolls a range of dice for a {@link DiceRollSummary}, splitting the range between threads.
+     */
+    private static final class SummaryTask extends RecursiveTask<DiceRollSummary> {
+
+        /** Serial version UID for serialization. */
+        private static final long serialVersionUID = 1L;
+
+        /** The RandomUtil rolling the dice. */
+        private final RandomUtil randomUtil;
+
+        /** The index of the first die to roll. */
+        private final int from;
+
+        /** The index after the last die to roll. */
+        private final int to;
+
+        /** The number of sides for the dice. */
+        private final int sides;
+
+        /** The array the rolls are stored in, or {@code null}. */
+        private final int[] rolls;
+
+        /**
+         * Creates a new SummaryTask.
+         *
+         * @param util The RandomUtil rolling the dice.
+         * @param start The index of the first die to roll.
+         * @param end The index after the last die to roll.
+         * @param sds The number of sides for the dice.
+         * @param rls The array the rolls are stored in, or {@code null}.
+         */
+        private SummaryTask(RandomUtil util, int start, int end, int sds, int[] rls) {
+            randomUtil = util;
+            from = start;
+            to = end;
+            sides = sds;
+            rolls = rls;
+        }
 
+        @Override
+        protected DiceRollSummary compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                return DiceRollSummary.roll(randomUtil.random(), from, to, sides, rolls);
+            }
+
+            int mid = (from + to) >>> 1;
+            SummaryTask left = new SummaryTask(randomUtil, from, mid, sides, rolls);
+            left.fork();
+            DiceRollSummary right = new SummaryTask(randomUtil, mid, to, sides, rolls).compute();
+            return left.join().combine(right);
+        }
+    }
+
+    /**
+     * Task that totals a range of dice rolls, splitting the range between threads.
+     */
+    private static final class SumTask extends RecursiveTask<Long> {
+
+        /** Serial version UID for serialization. */
+        private static final long serialVersionUID = 1L;
+
+        /** The RandomUtil rolling the dice. */
+        private final RandomUtil randomUtil;
+
+        /** The index of the first die to roll. */
+        private final int from;
+
+        /** The index after the last die to roll. */
+        private final int to;
+
+        /** The number of sides for the dice. */
+        private final int sides;
+
+        /**
+         * Creates a new SumTask.
+         *
+         * @param util The RandomUtil rolling the dice.
+         * @param start The index of the first die to roll.
+         * @param end The index after the last die to roll.
+         * @param sds The number of sides for the dice.
+         */
+        private SumTask(RandomUtil util, int start, int end, int sds) {
+            randomUtil = util;
+            from = start;
+            to = end;
+            sides = sds;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                return sumRolls(randomUtil.random(), to - from, sides);
+            }
+
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(randomUtil, from, mid, sides);
+            left.fork();
+            long right = new SumTask(randomUtil, mid, to, sides).compute();
+            return left.join() + right;
+        }
+    }
 }
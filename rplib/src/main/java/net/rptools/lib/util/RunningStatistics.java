@@ -0,0 +1,269 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package net.rptools.lib.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The RunningStatistics class gathers the count, mean, variance, lowest and highest value and a histogram of
+ * a stream of values without keeping the values themselves. The mean and variance are updated with Welford's
+ * method so they stay accurate for a large number of values, and statistics gathered separately (for example
+ * on different threads) can be combined with {@link #addAll(RunningStatistics)}. The histogram counts each
+ * value under the largest integer that is not greater than it. So that the histogram does not grow without limit
+ * it has at most {@link #MAX_BUCKETS} buckets, when there would be more the width of every bucket is doubled.
+ * The width only depends on the values added, not the order they were added or combined in.
+ * <p>
+ * RunningStatistics objects are not thread safe.
+ * </p>
+ */
+public final class RunningStatistics {
+
+    /** The maximum number of buckets in the histogram. */
+    public static final int MAX_BUCKETS = 4096;
+
+    /** The number of values added. */
+    private long count;
+
+    /** The mean of the values added. */
+    private double mean;
+
+    /** The sum of the squared differences from the mean of the values added. */
+    private double sumSquares;
+
+    /** The lowest value added. */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /** The highest value added. */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /** The number of values added for each histogram bucket, keyed by the lowest value of the bucket. */
+    private SortedMap<Long, long[]> histogram = new TreeMap<>();
+
+    /** The width of each histogram bucket, which is always a power of two. */
+    private long bucketWidth = 1;
+
+    /**
+     * Adds a value to the statistics.
+     *
+     * @param val The value to add.
+     *
+     * @throws IllegalArgumentException if val is not a number.
+     */
+    public void add(double val) {
+        if (Double.isNaN(val)) {
+            throw new IllegalArgumentException("Can not add NaN to statistics.");
+        }
+
+        count++;
+        double delta = val - mean;
+        mean += delta / count;
+        sumSquares += delta * (val - mean);
+        min = Math.min(min, val);
+        max = Math.max(max, val);
+
+        addToBucket(bucketOf((long) Math.floor(val)), 1);
+        limitBuckets();
+    }
+
+    /**
+     * Adds all of the values that were added to another RunningStatistics to this one.
+     *
+     * @param other The statistics to add.
+     *
+     * @throws NullPointerException if other is null.
+     */
+    public void addAll(RunningStatistics other) {
+        if (other == null) {
+            throw new NullPointerException("Statistics to add can not be null.");
+        }
+        if (other.count == 0) {
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        sumSquares += other.sumSquares + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        if (other.bucketWidth > bucketWidth) {
+            setBucketWidth(other.bucketWidth);
+        }
+        for (Map.Entry<Long, long[]> entry : other.histogram.entrySet()) {
+            addToBucket(bucketOf(entry.getKey()), entry.getValue()[0]);
+        }
+        limitBuckets();
+    }
+
+    /**
+     * Returns the histogram bucket that a value is counted in.
+     *
+     * @param val The value, rounded down to an integer.
+     *
+     * @return the lowest value of the bucket.
+     */
+    private long bucketOf(long val) {
+        // The width is a power of two so clearing the low bits rounds down, including for negative values.
+        return val & -bucketWidth;
+    }
+
+    /**
+     * Adds to the number of values in a histogram bucket.
+     *
+     * @param bucket The lowest value of the bucket.
+     * @param number The number of values to add.
+     */
+    private void addToBucket(long bucket, long number) {
+        long[] bucketCount = histogram.get(bucket);
+        if (bucketCount == null) {
+            histogram.put(bucket, new long[] { number });
+        } else {
+            bucketCount[0] += number;
+        }
+    }
+
+    /**
+     * Doubles the width of the histogram buckets until there are no more than {@link #MAX_BUCKETS} of them.
+     */
+    private void limitBuckets() {
+        while (histogram.size() > MAX_BUCKETS) {
+            setBucketWidth(bucketWidth * 2);
+        }
+    }
+
+    /**
+     * Changes the width of the histogram buckets, merging the counts of the buckets that now share a bucket.
+     * Buckets are aligned to multiples of their width so each wider bucket is made up of whole narrower buckets.
+     *
+     * @param width The new width, a power of two that is larger than the current width.
+     */
+    private void setBucketWidth(long width) {
+        SortedMap<Long, long[]> old = histogram;
+        histogram = new TreeMap<>();
+        bucketWidth = width;
+        for (Map.Entry<Long, long[]> entry : old.entrySet()) {
+            addToBucket(bucketOf(entry.getKey()), entry.getValue()[0]);
+        }
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values added.
+     *
+     * @return the mean, or 0 if no values have been added.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the population variance of the values added.
+     *
+     * @return the variance, or 0 if no values have been added.
+     */
+    public double getVariance() {
+        return count == 0 ? 0 : sumSquares / count;
+    }
+
+    /**
+     * Returns the population standard deviation of the values added.
+     *
+     * @return the standard deviation, or 0 if no values have been added.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the lowest value added.
+     *
+     * @return the lowest value, or {@link Double#POSITIVE_INFINITY} if no values have been added.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the highest value added.
+     *
+     * @return the highest value, or {@link Double#NEGATIVE_INFINITY} if no values have been added.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the width of the histogram buckets, each bucket counts the values that are at least its key and less
+     * than its key plus the width.
+     *
+     * @return the width of the buckets, which is 1 unless there were too many buckets.
+     */
+    public long getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * Returns the number of values added that are in a histogram bucket.
+     *
+     * @param bucket A value in the bucket, when the bucket width is 1 the values counted are at least bucket and
+     *               less than bucket + 1.
+     *
+     * @return the number of values in the bucket.
+     */
+    public long getFrequency(long bucket) {
+        long[] bucketCount = histogram.get(bucketOf(bucket));
+        return bucketCount == null ? 0 : bucketCount[0];
+    }
+
+    /**
+     * Returns the fraction of the values added that are in a histogram bucket.
+     *
+     * @param bucket A value in the bucket, when the bucket width is 1 the values counted are at least bucket and
+     *               less than bucket + 1.
+     *
+     * @return the fraction of the values in the bucket, or 0 if no values have been added.
+     */
+    public double getProportion(long bucket) {
+        return count == 0 ? 0 : (double) getFrequency(bucket) / count;
+    }
+
+    /**
+     * Returns the histogram of the values added, mapping the lowest value of each bucket to the number of values
+     * in it. Buckets are {@link #getBucketWidth()} wide.
+     *
+     * @return an unmodifiable copy of the histogram in increasing bucket order.
+     */
+    public SortedMap<Long, Long> getHistogram() {
+        SortedMap<Long, Long> hist = new TreeMap<>();
+        for (Map.Entry<Long, long[]> entry : histogram.entrySet()) {
+            hist.put(entry.getKey(), entry.getValue()[0]);
+        }
+
+        return Collections.unmodifiableSortedMap(hist);
+    }
+}
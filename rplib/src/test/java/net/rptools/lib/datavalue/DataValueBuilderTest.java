@@ -0,0 +1,91 @@
+package net.rptools.lib.datavalue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DataValueBuilderTest {
+
+	Random random = new Random(1);
+
+	@Test public void listBuilder() {
+		int[] sizes = { 1, 31, 32, 33, 64, 1023, 1024, 1025, 1056, 1057, 40000 };
+		for (int size : sizes) {
+			ListDataValueBuilder builder = new ListDataValueBuilder();
+			List<DataValue> expected = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				DataValue val = DataValueFactory.longValue(random.nextInt());
+				builder.add(val);
+				expected.add(val);
+			}
+			assertEquals(size, builder.size());
+			assertEquals(DataValueFactory.listValue(expected), builder.toDataValue());
+		}
+	}
+
+	@Test public void listBuilderReuse() {
+		ListDataValueBuilder builder = new ListDataValueBuilder();
+		List<DataValue> expected = new ArrayList<>();
+		List<DataValue> built = new ArrayList<>();
+		List<Integer> builtSizes = new ArrayList<>();
+
+		for (int i = 0; i < 100; i++) {
+			int n = random.nextInt(80);
+			for (int j = 0; j < n; j++) {
+				DataValue val = DataValueFactory.longValue(j);
+				builder.add(val);
+				expected.add(val);
+			}
+			built.add(builder.toDataValue());
+			builtSizes.add(expected.size());
+		}
+
+		// Values built earlier are not affected by values added afterwards.
+		for (int i = 0; i < built.size(); i++) {
+			assertEquals(expected.subList(0, builtSizes.get(i)), built.get(i).asList());
+		}
+	}
+
+	@Test public void dictionaryBuilder() {
+		DictionaryDataValueBuilder builder = new DictionaryDataValueBuilder();
+		Map<String, DataValue> expected = new LinkedHashMap<>();
+
+		for (int i = 0; i < 2000; i++) {
+			String name = "n" + random.nextInt(500);
+			DataValue val = DataValueFactory.longValue(i);
+			builder.put(name, val);
+			expected.put(name, val);
+		}
+
+		DataValue dict = builder.toDataValue();
+		assertEquals(expected.size(), builder.size());
+		assertEquals(DataValueFactory.dictionaryValue(expected), dict);
+		assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(dict.asDictionary().keySet()));
+
+		builder.put("extra", DataValueFactory.longValue(1));
+		assertTrue(builder.containsName("extra"));
+		assertFalse(dict.asDictionary().containsKey("extra"));
+	}
+
+	@Test public void empty() {
+		assertSame(DataValueFactory.listValue(new ArrayList<DataValue>()), new ListDataValueBuilder().toDataValue());
+		assertSame(DataValueFactory.dictionaryValue(new LinkedHashMap<String, DataValue>()), new DictionaryDataValueBuilder().toDataValue());
+	}
+
+	@Test public void nullListValue() {
+		DataValue list = new ListDataValueBuilder().add(null).add(DataValueFactory.longValue(1)).toDataValue();
+
+		assertEquals(2, list.asList().size());
+		assertEquals(DataType.NULL, list.asList().get(0).dataType());
+		assertEquals(1, list.asList().get(1).asLong());
+	}
+}
@@ -1,8 +1,13 @@
 package net.rptools.lib.datavalue;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 
 import org.junit.Test;
 
@@ -41,5 +46,40 @@ public class DataValueFactoryTest {
 		
 	}
 
+	@Test public void cachedLongDataValue() {
+		assertSame(DataValueFactory.longValue(0), DataValueFactory.longValue(0));
+		assertSame(DataValueFactory.longValue(20), DataValueFactory.longValue(20));
+		assertSame(DataValueFactory.longValue(-1), DataValueFactory.longValue(-1));
+		assertNotSame(DataValueFactory.longValue(Long.MAX_VALUE), DataValueFactory.longValue(Long.MAX_VALUE));
+		assertEquals(Long.MAX_VALUE, DataValueFactory.longValue(Long.MAX_VALUE).asLong());
+		assertEquals(20, DataValueFactory.longValue(20).asLong());
+	}
+
+	@Test public void longCacheRangeExtremes() {
+		assertArrayEquals(new long[] { -128, 1024 }, DataValueFactory.longCacheRange(-128, 1024));
+		assertArrayEquals(new long[] { Integer.MIN_VALUE, Integer.MIN_VALUE + (1 << 16) - 1 },
+				DataValueFactory.longCacheRange(Long.MIN_VALUE, Long.MAX_VALUE));
+		assertArrayEquals(new long[] { Integer.MIN_VALUE, Integer.MIN_VALUE },
+				DataValueFactory.longCacheRange(Long.MIN_VALUE, Long.MIN_VALUE));
+		assertArrayEquals(new long[] { Integer.MAX_VALUE, Integer.MAX_VALUE - 1L },
+				DataValueFactory.longCacheRange(Long.MAX_VALUE, 0));
+		assertArrayEquals(new long[] { Integer.MAX_VALUE, Integer.MAX_VALUE },
+				DataValueFactory.longCacheRange(Long.MAX_VALUE, Long.MAX_VALUE));
+	}
 
+	@Test public void emptyValues() {
+		DataValue list = DataValueFactory.listValue(new ArrayList<DataValue>());
+		assertSame(list, DataValueFactory.listValue(new ArrayList<DataValue>()));
+		assertEquals(DataType.LIST, list.dataType());
+		assertEquals(0, list.asList().size());
+
+		DataValue dict = DataValueFactory.dictionaryValue(new HashMap<String, DataValue>());
+		assertSame(dict, DataValueFactory.dictionaryValue(new HashMap<String, DataValue>()));
+		assertEquals(DataType.DICTIONARY, dict.dataType());
+		assertEquals(0, dict.asDictionary().size());
+
+		DataValue str = DataValueFactory.stringValue("");
+		assertSame(str, DataValueFactory.stringValue(new String()));
+		assertEquals("", str.asString());
+	}
 }
@@ -4,9 +4,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.Test;
@@ -79,6 +82,36 @@ public class ListDataValueTest {
 		assertEquals(lst1.size(), vals.length);
 	}
 
+	@Test public void appendTo() throws IOException {
+		final List<DataValue> lst = generateList();
+		lst.add(new ListDataValue(generateList()));
+		Map<String, DataValue> dict = new LinkedHashMap<>();
+		dict.put("a", new LongDataValue(1));
+		dict.put("b", new ListDataValue(generateList()));
+		lst.add(new DictionaryDataValue(dict));
+		final DataValue dv = new ListDataValue(lst);
+
+		StringBuilder expected = new StringBuilder("[ ");
+		for (int i = 0; i < lst.size(); i++) {
+			if (i > 0) {
+				expected.append(", ");
+			}
+			expected.append(lst.get(i).asString());
+		}
+		expected.append(" ]");
+
+		StringBuilder sb = new StringBuilder();
+		dv.appendTo(sb);
+		assertEquals(expected.toString(), sb.toString());
+		assertEquals(expected.toString(), dv.asString());
+		assertTrue(dv.asString() == dv.asString());
+
+		sb = new StringBuilder();
+		dv.appendTo(sb);
+		assertEquals(expected.toString(), sb.toString());
+		assertEquals(dv.toString(), dv.toString());
+	}
+
 	@Test public void asList() {
 		for (int i = 0; i < 20; i++) {
 			final List<DataValue> lst = generateList();
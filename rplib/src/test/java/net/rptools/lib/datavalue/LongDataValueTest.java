@@ -5,6 +5,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
+import net.rptools.lib.result.ResultBuilder;
+
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -411,6 +413,23 @@ public class LongDataValueTest {
 	}
 
 
+	@Test public void arithmeticOnResult() {
+		for (int i = 0; i < 20; i++) {
+			final long l1 = random.nextLong();
+			final long l2 = random.nextLong();
+			
+			DataValue result = DataValueFactory.resultValue(new ResultBuilder().setValue(new LongDataValue(l2)).toResult());
+			
+			DataValue dv = new LongDataValue(l1).add(result);
+			assertEquals(DataType.LONG, dv.dataType());
+			assertEquals(l1 + l2, dv.asLong());
+			
+			dv = result.multiply(new DoubleDataValue(2.5));
+			assertEquals(DataType.DOUBLE, dv.dataType());
+			assertEquals(l2 * 2.5, dv.asDouble(), 0.0);
+		}
+	}
+
 	
 	@Test public void negate() {
 		for (int i = 0; i < 20; i++) {
@@ -0,0 +1,84 @@
+package net.rptools.lib.datavalue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NumericListDataValueTest {
+
+	Random random = new Random(1);
+
+	@Test public void longList() {
+		long[] arr = new long[50];
+		List<DataValue> lst = new ArrayList<>();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = random.nextLong();
+			lst.add(new LongDataValue(arr[i]));
+		}
+
+		DataValue dv = DataValueFactory.listValueFromArray(arr);
+		DataValue expected = new ListDataValue(lst);
+
+		assertTrue(dv instanceof NumericListDataValue);
+		assertTrue(((NumericListDataValue) dv).isIntegral());
+		assertEquals(DataType.LIST, dv.dataType());
+		assertEquals(expected.asList(), dv.asList());
+		assertEquals(expected.asString(), dv.asString());
+		assertEquals(expected.toString(), dv.toString());
+		assertTrue(expected.equals(dv));
+		assertTrue(dv.equals(expected));
+		assertEquals(expected.hashCode(), dv.hashCode());
+
+		arr[0] = arr[0] + 1;
+		assertEquals(lst.get(0).asLong(), ((NumericListDataValue) dv).getLong(0));
+	}
+
+	@Test public void doubleList() {
+		double[] arr = new double[50];
+		List<DataValue> lst = new ArrayList<>();
+		for (int i = 0; i < arr.length; i++) {
+			arr[i] = random.nextDouble();
+			lst.add(new DoubleDataValue(arr[i]));
+		}
+
+		DataValue dv = DataValueFactory.listValueFromArray(arr);
+		DataValue expected = new ListDataValue(lst);
+
+		assertTrue(dv instanceof NumericListDataValue);
+		assertFalse(((NumericListDataValue) dv).isIntegral());
+		assertEquals(expected.asList(), dv.asList());
+		assertEquals(expected.asString(), dv.asString());
+		assertTrue(expected.equals(dv));
+		assertTrue(dv.equals(expected));
+		assertEquals(expected.hashCode(), dv.hashCode());
+	}
+
+	@Test public void intList() {
+		DataValue dv = DataValueFactory.listValueFromArray(new int[] { 3, 1, 6 });
+		DataValue expected = DataValueFactory.listValue(Arrays.asList(
+				DataValueFactory.longValue(3), DataValueFactory.longValue(1), DataValueFactory.longValue(6)));
+
+		assertEquals(expected, dv);
+		assertEquals(3, ((NumericListDataValue) dv).size());
+		assertEquals(6.0, ((NumericListDataValue) dv).getDouble(2), 0.0);
+		assertEquals(DataType.LIST, dv.add(DataValueFactory.longValue(2)).dataType());
+		assertEquals(4, dv.add(DataValueFactory.longValue(2)).asList().size());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void unmodifiable() {
+		DataValueFactory.listValueFromArray(new int[] { 1, 2 }).asList().set(0, DataValueFactory.longValue(3));
+	}
+
+	@Test public void empty() {
+		assertEquals(0, DataValueFactory.listValueFromArray(new int[0]).asList().size());
+		assertEquals(DataValueFactory.listValue(new ArrayList<DataValue>()), DataValueFactory.listValueFromArray(new long[0]));
+	}
+}
@@ -0,0 +1,179 @@
+package net.rptools.lib.datavalue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PersistentCollectionsTest {
+
+	Random random = new Random(1);
+
+	@Test public void vectorAppend() {
+		List<Integer> expected = new ArrayList<>();
+		PersistentVector<Integer> vec = PersistentVector.empty();
+		List<PersistentVector<Integer>> versions = new ArrayList<>();
+
+		for (int i = 0; i < 40000; i++) {
+			expected.add(i);
+			vec = vec.withAppended(i);
+			if (i % 997 == 0) {
+				versions.add(vec);
+			}
+		}
+
+		assertEquals(expected, vec);
+
+		// Earlier versions are unchanged.
+		for (PersistentVector<Integer> v : versions) {
+			assertEquals(expected.subList(0, v.size()), v);
+		}
+	}
+
+	@Test public void vectorAppendAll() {
+		List<Integer> expected = new ArrayList<>();
+		PersistentVector<Integer> vec = PersistentVector.empty();
+
+		for (int i = 0; i < 200; i++) {
+			List<Integer> chunk = new ArrayList<>();
+			int n = random.nextInt(100);
+			for (int j = 0; j < n; j++) {
+				chunk.add(random.nextInt());
+			}
+			PersistentVector<Integer> old = vec;
+			List<Integer> oldExpected = new ArrayList<>(expected);
+
+			vec = vec.withAll(chunk);
+			expected.addAll(chunk);
+
+			assertEquals(expected, vec);
+			assertEquals(oldExpected, old);
+		}
+	}
+
+	@Test public void vectorSet() {
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			expected.add(i);
+		}
+		PersistentVector<Integer> original = PersistentVector.fromCollection(expected);
+		PersistentVector<Integer> vec = original;
+
+		for (int i = 0; i < 1000; i++) {
+			int index = random.nextInt(expected.size());
+			expected.set(index, -i);
+			vec = vec.withSet(index, -i);
+		}
+
+		assertEquals(expected, vec);
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(Integer.valueOf(i), original.get(i));
+		}
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void vectorUnmodifiable() {
+		PersistentVector.fromCollection(Arrays.asList(1, 2, 3)).add(4);
+	}
+
+	@Test public void mapPutAndRemove() {
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.empty();
+
+		for (int i = 0; i < 20000; i++) {
+			String key = "k" + random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				expected.remove(key);
+				map = map.without(key);
+			} else {
+				expected.put(key, i);
+				map = map.withPut(key, i);
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+		assertEquals(expected, map);
+		assertEquals(expected.hashCode(), map.hashCode());
+
+		for (int i = 0; i < 5000; i++) {
+			String key = "k" + i;
+			assertEquals(expected.containsKey(key), map.containsKey(key));
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+
+	@Test public void mapPersistence() {
+		PersistentOrderedMap<String, Integer> map1 = PersistentOrderedMap.<String, Integer>empty().withPut("a", 1).withPut("b", 2);
+		PersistentOrderedMap<String, Integer> map2 = map1.withPut("a", 3).withPut("c", 4);
+		PersistentOrderedMap<String, Integer> map3 = map2.without("b");
+
+		assertEquals("{a=1, b=2}", map1.toString());
+		assertEquals("{a=3, b=2, c=4}", map2.toString());
+		assertEquals("{a=3, c=4}", map3.toString());
+		assertFalse(map3.containsKey("b"));
+		assertTrue(map1.containsKey("b"));
+	}
+
+	@Test public void mapHashCollisions() {
+		// "Aa" and "BB" have the same hash code.
+		PersistentOrderedMap<String, Integer> map = PersistentOrderedMap.empty();
+		map = map.withPut("Aa", 1).withPut("BB", 2).withPut("AaAa", 3).withPut("BBBB", 4).withPut("AaBB", 5);
+
+		assertEquals(Integer.valueOf(1), map.get("Aa"));
+		assertEquals(Integer.valueOf(2), map.get("BB"));
+		assertEquals(Integer.valueOf(5), map.get("AaBB"));
+
+		map = map.without("Aa");
+		assertFalse(map.containsKey("Aa"));
+		assertEquals(Integer.valueOf(2), map.get("BB"));
+		assertEquals(4, map.size());
+
+		map = map.without("BB").without("AaAa").without("BBBB");
+		assertEquals(1, map.size());
+		assertEquals(Integer.valueOf(5), map.get("AaBB"));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void mapUnmodifiable() {
+		Map<String, Integer> src = new HashMap<>();
+		src.put("a", 1);
+		PersistentOrderedMap.fromMap(src).put("b", 2);
+	}
+
+	@Test public void dataValues() {
+		DataValue lst = DataValueFactory.listValue(new ArrayList<DataValue>());
+		List<DataValue> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			lst = lst.add(DataValueFactory.longValue(i));
+			expected.add(DataValueFactory.longValue(i));
+		}
+		assertEquals(DataValueFactory.listValue(expected), lst);
+
+		DataValue both = DataValueFactory.listValueConcat(lst, lst);
+		assertEquals(2000, both.asList().size());
+		assertEquals(1000, lst.asList().size());
+
+		DataValue dict = DataValueFactory.dictionaryValue(new HashMap<String, DataValue>());
+		for (int i = 0; i < 100; i++) {
+			Map<String, DataValue> vals = new HashMap<>();
+			vals.put("v" + i, DataValueFactory.longValue(i));
+			dict = DataValueFactory.dictionaryValuePut(dict, vals);
+		}
+		assertEquals(100, dict.asDictionary().size());
+
+		DataValue removed = DataValueFactory.dictionaryValueRemove(dict, Arrays.asList("v1", "v50", "missing"));
+		assertEquals(98, removed.asDictionary().size());
+		assertFalse(removed.asDictionary().containsKey("v50"));
+		assertTrue(dict.asDictionary().containsKey("v50"));
+	}
+}
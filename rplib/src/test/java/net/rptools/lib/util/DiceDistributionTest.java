@@ -0,0 +1,81 @@
+package net.rptools.lib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class DiceDistributionTest {
+
+	@Test public void twoDice() {
+		DiceDistribution dist = DiceDistribution.of(2, 6);
+
+		assertEquals(2, dist.getMin());
+		assertEquals(12, dist.getMax());
+		for (int total = 2; total <= 12; total++) {
+			assertEquals(Integer.toString(total), (6 - Math.abs(total - 7)) / 36.0, dist.getProbability(total), 1e-15);
+		}
+		assertEquals(0.0, dist.getProbability(1), 0.0);
+		assertEquals(0.0, dist.getProbability(13), 0.0);
+		assertEquals(7.0, dist.getMean(), 1e-12);
+		assertEquals(35.0 / 6.0, dist.getVariance(), 1e-12);
+		assertEquals(6.0 / 36.0, dist.getProbabilityAtLeast(11) + dist.getProbabilityAtMost(3), 1e-15);
+	}
+
+	@Test public void totals() {
+		DiceDistribution dist = DiceDistribution.of(10, 10);
+
+		assertEquals(1.0, dist.getProbabilityBetween(Long.MIN_VALUE, Long.MAX_VALUE), 1e-12);
+		assertEquals(55.0, dist.getMean(), 1e-9);
+		assertEquals(dist.getProbability(30), dist.getProbability(80), 1e-18);
+		assertEquals(0.5, dist.getProbabilityAtMost(55) - dist.getProbability(55) / 2, 1e-12);
+	}
+
+	@Test public void unlikelyTotals() {
+		DiceDistribution dist = DiceDistribution.of(100, 6);
+
+		assertEquals(1.0, dist.getProbability(600) / Math.pow(6, -100), 1e-12);
+		assertEquals(1.0, dist.getProbability(101) / (100 * Math.pow(6, -100)), 1e-12);
+	}
+
+	@Test public void largeDistributions() {
+		DiceDistribution dist = DiceDistribution.of(1000, 10);
+
+		assertEquals(1.0, dist.getProbabilityBetween(Long.MIN_VALUE, Long.MAX_VALUE), 1e-9);
+		assertEquals(5500.0, dist.getMean(), 1e-9);
+		assertEquals(1.0, dist.getProbability(5000) / dist.getProbability(6000), 1e-9);
+		assertEquals(0.0, dist.getProbability(1001), 0.0);
+
+		DiceDistribution matches = DiceDistribution.ofMatches(1000, 20, 6);
+		assertEquals(1.0, matches.getProbabilityAtLeast(0), 1e-9);
+		assertEquals(Math.pow(0.7, 1000), matches.getProbability(0), Math.pow(0.7, 1000) * 1e-9);
+	}
+
+	@Test public void matches() {
+		// How many of 3d20 roll at least 15.
+		DiceDistribution dist = DiceDistribution.ofMatches(3, 20, 6);
+
+		assertEquals(0, dist.getMin());
+		assertEquals(3, dist.getMax());
+		assertEquals(0.7 * 0.7 * 0.7, dist.getProbability(0), 1e-15);
+		assertEquals(3 * 0.3 * 0.7 * 0.7, dist.getProbability(1), 1e-15);
+		assertEquals(0.3 * 0.3 * 0.3, dist.getProbability(3), 1e-15);
+		assertEquals(0.9, dist.getMean(), 1e-12);
+	}
+
+	@Test public void cached() {
+		assertSame(DiceDistribution.of(4, 6), DiceDistribution.of(4, 6));
+		assertSame(DiceDistribution.ofMatches(4, 6, 2), DiceDistribution.ofMatches(4, 6, 2));
+		assertEquals(1.0, DiceDistribution.of(0, 6).getProbability(0), 0.0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void tooManyOutcomes() {
+		DiceDistribution.of(100, 1000);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void noSides() {
+		DiceDistribution.of(1, 0);
+	}
+}
@@ -0,0 +1,163 @@
+package net.rptools.lib.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RandomUtilTest {
+
+	@Test public void instances() {
+		assertSame(RandomUtil.getInstance(), RandomUtil.getInstance(RandomStrategy.SECURE));
+		assertEquals(RandomStrategy.SECURE, RandomUtil.getInstance().getStrategy());
+		assertEquals(RandomStrategy.FAST, RandomUtil.getInstance(RandomStrategy.FAST).getStrategy());
+	}
+
+	@Test(expected=NullPointerException.class)
+	public void nullStrategy() {
+		RandomUtil.getInstance(null);
+	}
+
+	@Test public void rollDice() {
+		for (RandomStrategy strat : RandomStrategy.values()) {
+			RandomUtil randomUtil = RandomUtil.getInstance(strat);
+			int[] counts = new int[7];
+			for (int roll : randomUtil.rollDice(60000, 6)) {
+				assertTrue(roll >= 1 && roll <= 6);
+				counts[roll]++;
+			}
+			for (int i = 1; i <= 6; i++) {
+				assertTrue(strat + " " + i, counts[i] > 9000 && counts[i] < 11000);
+			}
+
+			for (int val : randomUtil.randomInts(1000, 5, 10)) {
+				assertTrue(val >= 5 && val < 10);
+			}
+		}
+	}
+
+	@Test public void rollDiceSummary() {
+		for (RandomStrategy strat : RandomStrategy.values()) {
+			RandomUtil randomUtil = RandomUtil.getInstance(strat);
+			for (int number : new int[] { 0, 1, 100, 200000 }) {
+				DiceRollSummary summary = randomUtil.rollDiceSummary(number, 20, true);
+				int[] rolls = summary.getRolls();
+				assertSame(rolls, summary.getRolls());
+				assertTrue(summary.hasHistogram());
+				assertEquals(number, rolls.length);
+				assertEquals(number, summary.getNumber());
+
+				long sum = 0;
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				int[] counts = new int[21];
+				for (int roll : rolls) {
+					assertTrue(roll >= 1 && roll <= 20);
+					sum += roll;
+					min = Math.min(min, roll);
+					max = Math.max(max, roll);
+					counts[roll]++;
+				}
+				assertEquals(sum, summary.getSum());
+				assertEquals(min, summary.getMin());
+				assertEquals(max, summary.getMax());
+				for (int i = 1; i <= 20; i++) {
+					assertEquals(counts[i], summary.getCount(i));
+				}
+			}
+
+			DiceRollSummary noRolls = randomUtil.rollDiceSummary(200000, 5000, false);
+			assertFalse(noRolls.hasRolls());
+			assertFalse(noRolls.hasHistogram());
+			assertTrue(noRolls.getSum() >= 200000 && noRolls.getSum() <= 200000L * 5000);
+
+			long total = randomUtil.rollDiceSum(300000, 6);
+			assertTrue(total > 300000 * 3.4 && total < 300000 * 3.6);
+		}
+	}
+
+	@Test public void seeded() {
+		RandomUtil r1 = RandomUtil.getSeededInstance(42);
+		RandomUtil r2 = RandomUtil.getSeededInstance(42);
+		assertTrue(r1.isSeeded());
+		assertFalse(RandomUtil.getInstance().isSeeded());
+
+		assertArrayEquals(r1.rollDice(100, 6), r2.rollDice(100, 6));
+		assertEquals(r1.rollDiceSum(200000, 6), r2.rollDiceSum(200000, 6));
+		assertArrayEquals(r1.rollDiceSummary(200000, 8, true).getRolls(), r2.rollDiceSummary(200000, 8, true).getRolls());
+
+		List<Integer> l1 = new ArrayList<>();
+		List<Integer> l2 = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			l1.add(i);
+			l2.add(i);
+		}
+		r1.shuffle(l1);
+		r2.shuffle(l2);
+		assertEquals(l1, l2);
+	}
+
+	@Test public void saveAndRestoreState() {
+		RandomUtil random = RandomUtil.getSeededInstance(7);
+		random.rollDice(10, 20);
+		RandomState state = random.getState();
+		int[] expected = random.rollDice(100, 20);
+
+		assertFalse(state.equals(random.getState()));
+		random.setState(state);
+		assertEquals(state, random.getState());
+		assertArrayEquals(expected, random.rollDice(100, 20));
+
+		assertArrayEquals(expected, RandomUtil.getSeededInstance(state).rollDice(100, 20));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void unseededState() {
+		RandomUtil.getInstance(RandomStrategy.FAST).getState();
+	}
+
+	@Test public void xoshiro() {
+		// Reference values from the C implementation seeded with SplitMix64.
+		Xoshiro256StarStarRandom random = new Xoshiro256StarStarRandom(12345);
+		assertEquals(-4725905248023948133L, random.nextLong());
+		assertEquals(2398916695208396998L, random.nextLong());
+		assertEquals(-676359223724682360L, random.nextLong());
+
+		random.setSeed(12345);
+		assertEquals(-4725905248023948133L, random.nextLong());
+	}
+
+	@Test public void threads() throws InterruptedException {
+		final RandomUtil randomUtil = RandomUtil.getInstance(RandomStrategy.FAST);
+		final List<int[]> results = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					int[] rolls = randomUtil.rollDice(1000, 1000000);
+					synchronized (results) {
+						results.add(rolls);
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// Each thread has its own differently seeded generator.
+		assertEquals(4, results.size());
+		for (int i = 1; i < results.size(); i++) {
+			assertTrue(results.get(0)[0] != results.get(i)[0] || results.get(0)[1] != results.get(i)[1]);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package net.rptools.lib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+public class RunningStatisticsTest {
+
+	Random random = new Random(1);
+
+	@Test public void statistics() {
+		RunningStatistics stats = new RunningStatistics();
+		double[] vals = { 3, 7, 7, 19, 2.5 };
+		for (double val : vals) {
+			stats.add(val);
+		}
+
+		double mean = (3 + 7 + 7 + 19 + 2.5) / 5;
+		double var = 0;
+		for (double val : vals) {
+			var += (val - mean) * (val - mean);
+		}
+		var /= vals.length;
+
+		assertEquals(5, stats.getCount());
+		assertEquals(mean, stats.getMean(), 1e-12);
+		assertEquals(var, stats.getVariance(), 1e-12);
+		assertEquals(2.5, stats.getMin(), 0.0);
+		assertEquals(19.0, stats.getMax(), 0.0);
+		assertEquals(2, stats.getFrequency(7));
+		assertEquals(1, stats.getFrequency(2));
+		assertEquals(0, stats.getFrequency(4));
+		assertEquals(0.4, stats.getProportion(7), 1e-12);
+
+		SortedMap<Long, Long> hist = stats.getHistogram();
+		assertEquals(4, hist.size());
+		assertEquals(Long.valueOf(2), hist.firstKey());
+		assertEquals(Long.valueOf(19), hist.lastKey());
+	}
+
+	@Test public void combine() {
+		RunningStatistics all = new RunningStatistics();
+		RunningStatistics first = new RunningStatistics();
+		RunningStatistics second = new RunningStatistics();
+
+		for (int i = 0; i < 10000; i++) {
+			int val = random.nextInt(20) + 1;
+			all.add(val);
+			if (i < 3000) {
+				first.add(val);
+			} else {
+				second.add(val);
+			}
+		}
+
+		first.addAll(second);
+		first.addAll(new RunningStatistics());
+
+		assertEquals(all.getCount(), first.getCount());
+		assertEquals(all.getMean(), first.getMean(), 1e-9);
+		assertEquals(all.getVariance(), first.getVariance(), 1e-9);
+		assertEquals(all.getMin(), first.getMin(), 0.0);
+		assertEquals(all.getMax(), first.getMax(), 0.0);
+		assertEquals(all.getHistogram(), first.getHistogram());
+	}
+
+	@Test public void limitedBuckets() {
+		RunningStatistics all = new RunningStatistics();
+		RunningStatistics[] parts = new RunningStatistics[4];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new RunningStatistics();
+		}
+
+		for (int i = 0; i < 100000; i++) {
+			double val = (random.nextDouble() - 0.3) * 100000;
+			all.add(val);
+			parts[i % parts.length].add(val);
+		}
+
+		assertTrue(all.getHistogram().size() <= RunningStatistics.MAX_BUCKETS);
+		assertEquals(32, all.getBucketWidth());
+
+		long total = 0;
+		for (Map.Entry<Long, Long> entry : all.getHistogram().entrySet()) {
+			assertEquals(0, entry.getKey() % all.getBucketWidth());
+			assertEquals(entry.getValue().longValue(), all.getFrequency(entry.getKey() + all.getBucketWidth() - 1));
+			total += entry.getValue();
+		}
+		assertEquals(all.getCount(), total);
+
+		// Combining in any order gives the same histogram as adding the values one at a time.
+		RunningStatistics forward = new RunningStatistics();
+		RunningStatistics backward = new RunningStatistics();
+		for (int i = 0; i < parts.length; i++) {
+			forward.addAll(parts[i]);
+			backward.addAll(parts[parts.length - 1 - i]);
+		}
+		assertEquals(all.getBucketWidth(), forward.getBucketWidth());
+		assertEquals(all.getHistogram(), forward.getHistogram());
+		assertEquals(all.getHistogram(), backward.getHistogram());
+	}
+
+	@Test public void empty() {
+		RunningStatistics stats = new RunningStatistics();
+		assertEquals(0, stats.getCount());
+		assertEquals(0.0, stats.getVariance(), 0.0);
+		assertEquals(0.0, stats.getProportion(1), 0.0);
+
+		RunningStatistics other = new RunningStatistics();
+		other.add(-1.5);
+		stats.addAll(other);
+		assertEquals(-1.5, stats.getMean(), 0.0);
+		assertEquals(1, stats.getFrequency(-2));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void notANumber() {
+		new RunningStatistics().add(Double.NaN);
+	}
+}